@@ -0,0 +1,201 @@
+package com.example.android.inventory;
+
+import android.app.Instrumentation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls the catalogue from its first to its 10,000th product on a device, a fixed distance every
+ * frame, as fast as a fling, with the pages loading as the list nears their end. Times every
+ * frame with {@link Choreographer}, and reports the median, 90th and 99th percentile frame time
+ * and the number of janky frames, those that missed at least one vsync.
+ * <p>
+ * The catalogue is emptied and filled with the benchmark's products before the run, and emptied
+ * again after it, so it's meant for a test device.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+@SdkSuppress(minSdkVersion = 16)
+public class CatalogScrollBenchmark {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = CatalogScrollBenchmark.class.getSimpleName();
+
+    /**
+     * Number of products scrolled through, and inserted per transaction to fill the catalogue
+     */
+    private static final int PRODUCTS = 10000;
+    private static final int FILL_BATCH_SIZE = 500;
+
+    /**
+     * Distance scrolled every frame, about 3,000 dp per second at 60 frames per second
+     */
+    private static final int SCROLL_DP_PER_FRAME = 48;
+
+    /**
+     * Time between two vsyncs at 60 frames per second. A frame taking half as long again
+     * missed a vsync.
+     */
+    private static final long VSYNC_NANOS = 16666667;
+
+    /**
+     * Longest the scroll may take before the benchmark fails
+     */
+    private static final long TIMEOUT_SECONDS = 300;
+
+    @Rule
+    public final ActivityTestRule<CatalogActivity> mActivityRule =
+            new ActivityTestRule<>(CatalogActivity.class, false, false);
+
+    @Before
+    public void fillCatalogue() {
+        ContentResolver resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+        ContentValues[] batch = new ContentValues[FILL_BATCH_SIZE];
+        for (int n = 0; n < PRODUCTS; n++) {
+            ContentValues values = new ContentValues();
+            values.put(ProductEntry.COLUMN_NAME, "Book " + n);
+            values.put(ProductEntry.COLUMN_AUTHOR, "Author " + (n % 500));
+            values.put(ProductEntry.COLUMN_SUPP_NAME, "Supplier " + (n % 50));
+            values.put(ProductEntry.COLUMN_SUPP_PHONE, String.format(Locale.US, "555-%04d", n % 50));
+            values.put(ProductEntry.COLUMN_PRICE, n % 100);
+            values.put(ProductEntry.COLUMN_QUANTITY, n % 20);
+            batch[n % FILL_BATCH_SIZE] = values;
+            if (n % FILL_BATCH_SIZE == FILL_BATCH_SIZE - 1) {
+                assertEquals(FILL_BATCH_SIZE, resolver.bulkInsert(ProductEntry.CONTENT_URI, batch));
+            }
+        }
+    }
+
+    @After
+    public void emptyCatalogue() {
+        InstrumentationRegistry.getTargetContext().getContentResolver().delete(ProductEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void scrollThroughCatalogue() throws InterruptedException {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        CatalogActivity activity = mActivityRule.launchActivity(null);
+        RecyclerView list = (RecyclerView) activity.findViewById(R.id.list);
+        int scrollPixels = Math.round(SCROLL_DP_PER_FRAME * activity.getResources().getDisplayMetrics().density);
+        final ScrollRecorder recorder = new ScrollRecorder(list, scrollPixels);
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(recorder);
+            }
+        });
+        assertTrue("Scroll didn't reach the end within " + TIMEOUT_SECONDS + " s",
+                recorder.mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        long[] frames = Arrays.copyOf(recorder.mFrameNanos, recorder.mFrameCount);
+        Arrays.sort(frames);
+        int janky = 0;
+        for (long frame : frames) {
+            if (frame > VSYNC_NANOS * 3 / 2) {
+                janky++;
+            }
+        }
+        Bundle results = new Bundle();
+        results.putInt("frames", frames.length);
+        results.putInt("janky_frames", janky);
+        results.putDouble("frame_p50_ms", percentile(frames, 0.50) / 1e6);
+        results.putDouble("frame_p90_ms", percentile(frames, 0.90) / 1e6);
+        results.putDouble("frame_p99_ms", percentile(frames, 0.99) / 1e6);
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d products, %d frames: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, %d janky (%.1f%%)",
+                PRODUCTS, frames.length, results.getDouble("frame_p50_ms"), results.getDouble("frame_p90_ms"),
+                results.getDouble("frame_p99_ms"), janky, 100.0 * janky / frames.length));
+        instrumentation.sendStatus(0, results);
+
+        assertEquals(PRODUCTS, list.getAdapter().getItemCount());
+    }
+
+    /**
+     * Return the given percentile of the sorted frame times, with the nearest rank method.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Scrolls the list on every frame and records the time between frames, until every product
+     * has been loaded and the list can't scroll further. Runs on the main thread.
+     */
+    private static final class ScrollRecorder implements Choreographer.FrameCallback {
+
+        private final RecyclerView mList;
+        private final int mScrollPixels;
+
+        /**
+         * Time between each frame and the one before, of which the first mFrameCount are used
+         */
+        long[] mFrameNanos = new long[4096];
+        int mFrameCount;
+
+        /**
+         * Counted down once the end of the catalogue has been reached
+         */
+        final CountDownLatch mDone = new CountDownLatch(1);
+
+        /**
+         * Start of the last frame, 0 before the first
+         */
+        private long mLastFrameTimeNanos;
+
+        ScrollRecorder(RecyclerView list, int scrollPixels) {
+            mList = list;
+            mScrollPixels = scrollPixels;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mLastFrameTimeNanos != 0) {
+                if (mFrameCount == mFrameNanos.length) {
+                    mFrameNanos = Arrays.copyOf(mFrameNanos, mFrameCount * 2);
+                }
+                mFrameNanos[mFrameCount++] = frameTimeNanos - mLastFrameTimeNanos;
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+
+            if (mList.getAdapter().getItemCount() >= PRODUCTS && !mList.canScrollVertically(1)) {
+                mDone.countDown();
+                return;
+            }
+            // Scrolling near the end of the loaded pages has the catalogue load the next one
+            mList.scrollBy(0, mScrollPixels);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
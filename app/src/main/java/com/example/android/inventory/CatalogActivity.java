@@ -1,46 +1,186 @@
 package com.example.android.inventory;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.Loader;
-import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.InputType;
+import android.text.TextUtils;
 import android.util.Log;
+import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.inputmethod.EditorInfo;
+import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.data.CatalogFormat;
 import com.example.android.inventory.data.InventoryContract.ProductEntry;
+import com.example.android.inventory.data.InventoryContract.SummaryEntry;
+import com.example.android.inventory.data.LowStockMonitor;
+import com.example.android.inventory.data.QuantityWriteQueue;
 
 /**
  * Displays list of inventory that were entered and stored in the app.
  */
-public class CatalogActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class CatalogActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<CatalogSnapshot> {
 
     /**
      * Identifier for the product data loader
      */
     private static final int PRODUCT_LOADER = 0;
     /**
-     * Adapter for the ListView
+     * Identifier for the inventory totals loader
      */
-    ProductCursorAdapter mCursorAdapter;
+    private static final int SUMMARY_LOADER = 1;
+    /**
+     * Loader argument holding the text to search the products for
+     */
+    private static final String ARG_SEARCH_TEXT = "search_text";
+    /**
+     * How long to wait after the last keystroke before searching
+     */
+    private static final long SEARCH_DELAY_MILLIS = 300;
+    /**
+     * Request codes for picking the file to import from, and to export to
+     */
+    private static final int REQUEST_IMPORT = 1;
+    private static final int REQUEST_EXPORT = 2;
+    /**
+     * Keys of the order and filters of the catalogue in the saved instance state
+     */
+    private static final String STATE_SORT = "sort";
+    private static final String STATE_IN_STOCK_ONLY = "in_stock_only";
+    private static final String STATE_MIN_PRICE = "min_price";
+    private static final String STATE_MAX_PRICE = "max_price";
+    /**
+     * Preference remembering the base URL of the sync server last synced with
+     */
+    private static final String PREF_SYNC_SERVER_URL = "sync_server_url";
+    /**
+     * Suggested base URL of the sync server: the stand-in server of the benchmark module, on the
+     * machine running the emulator
+     */
+    private static final String DEFAULT_SYNC_SERVER_URL = "http://10.0.2.2:8080";
+    /**
+     * Orders of the catalogue offered in the menu, and their menu items at the same position
+     */
+    private static final String[] SORTS = {ProductEntry.SORT_ID, ProductEntry.SORT_NAME,
+            ProductEntry.SORT_AUTHOR, ProductEntry.SORT_PRICE, ProductEntry.SORT_QUANTITY};
+    private static final int[] SORT_ITEM_IDS = {R.id.sort_id, R.id.sort_name, R.id.sort_author,
+            R.id.sort_price, R.id.sort_quantity};
+    /**
+     * Adapter for the RecyclerView
+     */
+    ProductAdapter mAdapter;
+    /**
+     * Text currently typed in the search box, and the text the list is currently filtered by
+     */
+    private String mSearchText = "";
+    private String mAppliedSearchText = "";
+    /**
+     * Order of the catalogue, one of the SORT constants of {@link ProductEntry}
+     */
+    private String mSort = ProductEntry.SORT_ID;
+    /**
+     * Filters of the catalogue: only products in stock, and the price range, -1 for no bound
+     */
+    private boolean mInStockOnly;
+    private long mMinPrice = -1;
+    private long mMaxPrice = -1;
+    /**
+     * True when the order or filters changed, so the next list shown starts at the top
+     */
+    private boolean mScrollToTop;
+    /**
+     * Layout manager of the list of products
+     */
+    private LinearLayoutManager mLayoutManager;
+    /**
+     * Handler used to debounce keystrokes in the search box
+     */
+    private final Handler mSearchHandler = new Handler();
+    /**
+     * Import or export currently running, or null
+     */
+    private CatalogTransferTask mTransferTask;
+    /**
+     * Sync currently running, or null
+     */
+    private SyncTask mSyncTask;
+    /**
+     * Header showing the inventory totals
+     */
+    private TextView mSummaryTextView;
+    /**
+     * Shows the inventory totals in the header whenever they change
+     */
+    private final LoaderManager.LoaderCallbacks<Bundle> mSummaryCallbacks = new LoaderManager.LoaderCallbacks<Bundle>() {
+        @Override
+        public Loader<Bundle> onCreateLoader(int id, Bundle args) {
+            return new SummaryLoader(CatalogActivity.this);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<Bundle> loader, Bundle summary) {
+            showSummary(summary);
+        }
+
+        @Override
+        public void onLoaderReset(Loader<Bundle> loader) {
+            showSummary(null);
+        }
+    };
+    /**
+     * Restarts the loader with the text in the search box, once the user stopped typing
+     */
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mSearchText.equals(mAppliedSearchText)) {
+                return;
+            }
+            mAppliedSearchText = mSearchText;
+            Bundle args = null;
+            if (!TextUtils.isEmpty(mSearchText)) {
+                args = new Bundle();
+                args.putString(ARG_SEARCH_TEXT, mSearchText);
+            }
+            getLoaderManager().restartLoader(PRODUCT_LOADER, args, CatalogActivity.this);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_catalog);
 
+        // Restore the order and filters, so the loader kept across a configuration change is
+        // asked for the same catalogue and the list stays where it was
+        if (savedInstanceState != null) {
+            mSort = savedInstanceState.getString(STATE_SORT, ProductEntry.SORT_ID);
+            mInStockOnly = savedInstanceState.getBoolean(STATE_IN_STOCK_ONLY);
+            mMinPrice = savedInstanceState.getLong(STATE_MIN_PRICE, -1);
+            mMaxPrice = savedInstanceState.getLong(STATE_MAX_PRICE, -1);
+        }
+
         // Setup FAB to open EditorActivity
         FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
@@ -51,20 +191,137 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             }
         });
 
-        // Find the ListView which will be populated with the product data
-        ListView productListView = (ListView) findViewById(R.id.list);
+        // Find the RecyclerView which will be populated with the product data
+        RecyclerView productListView = (RecyclerView) findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        productListView.setLayoutManager(mLayoutManager);
+        productListView.setHasFixedSize(true);
+
+        // Setup an Adapter to create a list item for each product.
+        // There is no product data yet (until the loader finishes).
+        mAdapter = new ProductAdapter(this);
+        productListView.setAdapter(mAdapter);
+
+        // Find the empty view, and only show it when the list has 0 items
+        final View emptyView = findViewById(R.id.empty_view);
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                emptyView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            }
 
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        productListView.setEmptyView(emptyView);
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                onChanged();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                onChanged();
+            }
+        });
+
+        // Fetch the next page of products before the user reaches the end of the list
+        productListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = mAdapter.getItemCount();
+                if (totalItemCount > 0
+                        && mLayoutManager.findLastVisibleItemPosition() >= totalItemCount - ProductPageLoader.PAGE_SIZE / 2) {
+                    Loader<CatalogSnapshot> loader = getLoaderManager().getLoader(PRODUCT_LOADER);
+                    // Search results aren't paged, only the full catalogue is
+                    if (loader instanceof ProductPageLoader) {
+                        ((ProductPageLoader) loader).loadNextPage();
+                    }
+                }
+            }
+        });
 
-        // Setup an Adapter to create a list item for each row of product data in the Cursor.
-        // There is no product data yet (until the loader finishes) so pass in null for the Cursor.
-        mCursorAdapter = new ProductCursorAdapter(this, null);
-        productListView.setAdapter(mCursorAdapter);
+        mSummaryTextView = (TextView) findViewById(R.id.summary);
 
-        // Kick off the loader
+        // Kick off the loaders
         getLoaderManager().initLoader(PRODUCT_LOADER, null, this);
+        getLoaderManager().initLoader(SUMMARY_LOADER, null, mSummaryCallbacks);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SORT, mSort);
+        outState.putBoolean(STATE_IN_STOCK_ONLY, mInStockOnly);
+        outState.putLong(STATE_MIN_PRICE, mMinPrice);
+        outState.putLong(STATE_MAX_PRICE, mMaxPrice);
+    }
+
+    /**
+     * Tells the user when a sale couldn't be written because the book ran out of stock meanwhile,
+     * or a scanned barcode couldn't be sold
+     */
+    private final QuantityWriteQueue.OnFlushListener mFlushListener = new QuantityWriteQueue.OnFlushListener() {
+        @Override
+        public void onFlushed(long[] rejectedIds, String[] rejectedIsbns, long flushMillis) {
+            if (rejectedIsbns.length > 0) {
+                Toast.makeText(CatalogActivity.this, getString(R.string.scan_rejected,
+                        TextUtils.join(", ", rejectedIsbns)), Toast.LENGTH_LONG).show();
+            } else if (rejectedIds.length > 0) {
+                Toast.makeText(CatalogActivity.this, R.string.book_unavailable, Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    /**
+     * Tells the user when a book drops to its reorder threshold
+     */
+    private final LowStockMonitor.Listener mLowStockListener = new LowStockMonitor.Listener() {
+        @Override
+        public void onThresholdCrossed(LowStockMonitor.Crossing crossing) {
+            if (crossing.mLow) {
+                Toast.makeText(CatalogActivity.this,
+                        getString(R.string.low_stock_alert, crossing.mName, crossing.mQuantity),
+                        Toast.LENGTH_LONG).show();
+            }
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        QuantityWriteQueue.getInstance(this).addOnFlushListener(mFlushListener);
+        LowStockMonitor.getInstance().addListener(mLowStockListener);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        QuantityWriteQueue.getInstance(this).removeOnFlushListener(mFlushListener);
+        LowStockMonitor.getInstance().removeListener(mLowStockListener);
+    }
+
+    /**
+     * Show the given inventory totals in the header, or hide it if there are no products.
+     */
+    private void showSummary(Bundle summary) {
+        long skuCount = summary == null ? 0 : summary.getLong(SummaryEntry.COLUMN_SKU_COUNT);
+        if (skuCount == 0) {
+            mSummaryTextView.setVisibility(View.GONE);
+            return;
+        }
+        String text = getString(R.string.summary_totals,
+                skuCount,
+                summary.getLong(SummaryEntry.COLUMN_UNITS),
+                summary.getLong(SummaryEntry.COLUMN_VALUATION),
+                summary.getLong(SummaryEntry.COLUMN_OUT_OF_STOCK));
+
+        // Suppliers come most valuable first
+        String[] supplierNames = summary.getStringArray(SummaryEntry.EXTRA_SUPPLIER_NAMES);
+        if (supplierNames != null && supplierNames.length > 1 && !TextUtils.isEmpty(supplierNames[0])) {
+            text += "\n" + getString(R.string.summary_top_supplier,
+                    supplierNames[0],
+                    summary.getLongArray(SummaryEntry.EXTRA_SUPPLIER_UNITS)[0],
+                    summary.getLongArray(SummaryEntry.EXTRA_SUPPLIER_VALUATIONS)[0]);
+        }
+        mSummaryTextView.setText(text);
+        mSummaryTextView.setVisibility(View.VISIBLE);
     }
 
     /**
@@ -102,13 +359,240 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Search the products as the user types, but only once they pause typing
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(menu.findItem(R.id.action_search));
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mSearchText = query.trim();
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                mSearchRunnable.run();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mSearchText = newText.trim();
+                mSearchHandler.removeCallbacks(mSearchRunnable);
+                mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DELAY_MILLIS);
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        super.onPrepareOptionsMenu(menu);
+        // Creating a file for the export needs the storage access framework
+        menu.findItem(R.id.action_export_catalogue).setVisible(
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT);
+
+        // Tick the current order and filters
+        for (int i = 0; i < SORTS.length; i++) {
+            if (SORTS[i].equals(mSort)) {
+                menu.findItem(SORT_ITEM_IDS[i]).setChecked(true);
+            }
+        }
+        menu.findItem(R.id.action_in_stock_only).setChecked(mInStockOnly);
+        return true;
+    }
+
+    /**
+     * Build the products URI asking the provider for the catalogue in the current order and
+     * with the current filters. Each of them is served by an index of the inventory table.
+     */
+    private Uri buildCatalogueUri() {
+        Uri.Builder builder = ProductEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(ProductEntry.QUERY_PARAMETER_SORT, mSort);
+        if (mInStockOnly) {
+            builder.appendQueryParameter(ProductEntry.QUERY_PARAMETER_IN_STOCK, String.valueOf(true));
+        }
+        if (mMinPrice >= 0) {
+            builder.appendQueryParameter(ProductEntry.QUERY_PARAMETER_MIN_PRICE, String.valueOf(mMinPrice));
+        }
+        if (mMaxPrice >= 0) {
+            builder.appendQueryParameter(ProductEntry.QUERY_PARAMETER_MAX_PRICE, String.valueOf(mMaxPrice));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Load the catalogue again in the current order and with the current filters. Search results
+     * keep their own order, so they're left alone until the search is cleared.
+     */
+    private void reloadCatalogue() {
+        invalidateOptionsMenu();
+        if (!TextUtils.isEmpty(mAppliedSearchText)) {
+            return;
+        }
+        mScrollToTop = true;
+        getLoaderManager().restartLoader(PRODUCT_LOADER, null, this);
+    }
+
+    /**
+     * Ask the user for the price range of the products to show.
+     */
+    private void showPriceRangeDialog() {
+        View view = getLayoutInflater().inflate(R.layout.dialog_price_range, null);
+        final EditText minPriceEditText = (EditText) view.findViewById(R.id.edit_min_price);
+        final EditText maxPriceEditText = (EditText) view.findViewById(R.id.edit_max_price);
+        if (mMinPrice >= 0) {
+            minPriceEditText.setText(String.valueOf(mMinPrice));
+        }
+        if (mMaxPrice >= 0) {
+            maxPriceEditText.setText(String.valueOf(mMaxPrice));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.price_range_dialog_title)
+                .setView(view)
+                .setPositiveButton(R.string.apply, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mMinPrice = parsePrice(minPriceEditText.getText().toString());
+                        mMaxPrice = parsePrice(maxPriceEditText.getText().toString());
+                        reloadCatalogue();
+                    }
+                })
+                .setNeutralButton(R.string.clear, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mMinPrice = -1;
+                        mMaxPrice = -1;
+                        reloadCatalogue();
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Ask the user for the base URL of the sync server, remembered from the last sync, and sync
+     * with it in the background. The catalogue updates itself.
+     */
+    private void showSyncDialog() {
+        final SharedPreferences preferences = getPreferences(MODE_PRIVATE);
+        final EditText serverUrlEditText = new EditText(this);
+        serverUrlEditText.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        serverUrlEditText.setText(preferences.getString(PREF_SYNC_SERVER_URL, DEFAULT_SYNC_SERVER_URL));
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.sync_dialog_title)
+                .setView(serverUrlEditText)
+                .setPositiveButton(R.string.action_sync, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        String serverUrl = serverUrlEditText.getText().toString().trim();
+                        if (serverUrl.isEmpty()) {
+                            return;
+                        }
+                        preferences.edit().putString(PREF_SYNC_SERVER_URL, serverUrl).apply();
+                        mSyncTask = new SyncTask(CatalogActivity.this, serverUrl);
+                        mSyncTask.execute();
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog selling a copy of every barcode scanned into it, until it's closed. USB and
+     * Bluetooth scanners type the digits and then Enter, which queues the sale and clears the
+     * field for the next scan. The sales are written in the background by the
+     * {@link QuantityWriteQueue}, so scans are taken as fast as the scanner fires them, and the
+     * rejected ones are reported once written.
+     */
+    private void showScanDialog() {
+        final EditText scanEditText = new EditText(this);
+        scanEditText.setSingleLine(true);
+        scanEditText.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
+        scanEditText.setImeOptions(EditorInfo.IME_ACTION_DONE);
+        scanEditText.setHint(R.string.hint_scan);
+
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.scan_dialog_title)
+                .setMessage(getString(R.string.scan_count, 0))
+                .setView(scanEditText)
+                .setPositiveButton(R.string.scan_done, null)
+                .show();
+        scanEditText.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+            private int mScanCount;
+
+            @Override
+            public boolean onEditorAction(TextView view, int actionId, KeyEvent event) {
+                // Enter from a scanner comes as a key down and a key up: sell on the first only
+                if (event != null && event.getAction() != KeyEvent.ACTION_DOWN) {
+                    return true;
+                }
+                String isbn = view.getText().toString();
+                view.setText("");
+                try {
+                    QuantityWriteQueue.getInstance(CatalogActivity.this).sellByIsbn(isbn);
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(CatalogActivity.this, getString(R.string.scan_invalid, isbn),
+                            Toast.LENGTH_SHORT).show();
+                    return true;
+                }
+                if (!TextUtils.isEmpty(isbn.trim())) {
+                    dialog.setMessage(getString(R.string.scan_count, ++mScanCount));
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Return the price typed in a field of the price range dialog, or -1 if there is none.
+     */
+    private static long parsePrice(String text) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (mTransferTask != null) {
+            mTransferTask.detach();
+        }
+        if (mSyncTask != null) {
+            mSyncTask.detach();
+        }
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // User clicked on a menu option in the app bar overflow menu
         switch (item.getItemId()) {
+            // Respond to a click on one of the "Sort By" menu options
+            case R.id.sort_id:
+            case R.id.sort_name:
+            case R.id.sort_author:
+            case R.id.sort_price:
+            case R.id.sort_quantity:
+                for (int i = 0; i < SORT_ITEM_IDS.length; i++) {
+                    if (SORT_ITEM_IDS[i] == item.getItemId() && !SORTS[i].equals(mSort)) {
+                        mSort = SORTS[i];
+                        reloadCatalogue();
+                    }
+                }
+                return true;
+            // Respond to a click on the "In Stock Only" menu option
+            case R.id.action_in_stock_only:
+                mInStockOnly = !mInStockOnly;
+                reloadCatalogue();
+                return true;
+            // Respond to a click on the "Price Range" menu option
+            case R.id.action_price_range:
+                showPriceRangeDialog();
+                return true;
             // Respond to a click on the "Insert dummy data" menu option
             case R.id.action_insert_dummy_data:
                 insertProduct();
@@ -117,38 +601,81 @@ public class CatalogActivity extends AppCompatActivity implements LoaderManager.
             case R.id.action_delete_all_entries:
                 deleteAllProducts();
                 return true;
+            // Respond to a click on the "Import Books" menu option
+            case R.id.action_import_catalogue:
+                Intent importIntent = new Intent(Intent.ACTION_GET_CONTENT);
+                importIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                importIntent.setType("*/*");
+                startActivityForResult(importIntent, REQUEST_IMPORT);
+                return true;
+            // Respond to a click on the "Export Books" menu option
+            case R.id.action_export_catalogue:
+                Intent exportIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                exportIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                exportIntent.setType(CatalogFormat.CSV.getMimeType());
+                exportIntent.putExtra(Intent.EXTRA_TITLE, getString(R.string.export_file_name)
+                        + CatalogFormat.CSV.getExtension());
+                startActivityForResult(exportIntent, REQUEST_EXPORT);
+                return true;
+            // Respond to a click on the "Sync" menu option
+            case R.id.action_sync:
+                showSyncDialog();
+                return true;
+            // Respond to a click on the "Scan to Sell" menu option
+            case R.id.action_scan_sale:
+                showScanDialog();
+                return true;
+            // Respond to a click on the "Provider Metrics" menu option
+            case R.id.action_show_metrics:
+                startActivity(new Intent(this, MetricsActivity.class));
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the columns from the table we care about.
-        String[] projection = {
-                ProductEntry._ID,
-                ProductEntry.COLUMN_NAME,
-                ProductEntry.COLUMN_AUTHOR,
-                ProductEntry.COLUMN_PRICE,
-                ProductEntry.COLUMN_QUANTITY};
-
-        // This loader will execute the ContentProvider's query method on a background thread
-        return new CursorLoader(this,   // Parent activity context
-                ProductEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if ((requestCode != REQUEST_IMPORT && requestCode != REQUEST_EXPORT)
+                || resultCode != RESULT_OK || data == null || data.getData() == null) {
+            return;
+        }
+        // Read or write the picked file in the background, the catalogue updates itself
+        mTransferTask = new CatalogTransferTask(this, data.getData(), requestCode == REQUEST_EXPORT);
+        mTransferTask.execute();
+    }
+
+    @Override
+    public Loader<CatalogSnapshot> onCreateLoader(int i, Bundle bundle) {
+        // If the user is searching, load the search results instead of the whole catalogue
+        String searchText = bundle == null ? null : bundle.getString(ARG_SEARCH_TEXT);
+        if (searchText != null) {
+            return new ProductSearchLoader(this, searchText);
+        }
+
+        // This loader will execute the ContentProvider's query method on a background thread,
+        // one page of products at a time, in the order and with the filters picked in the menu
+        return new ProductPageLoader(this, buildCatalogueUri());
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link ProductCursorAdapter} with this new cursor containing updated product data
-        mCursorAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<CatalogSnapshot> loader, CatalogSnapshot data) {
+        // Update {@link ProductAdapter} with the new product data
+        if (mScrollToTop) {
+            // A new order or filter shows another list altogether, so don't diff it against
+            // the old one but show it from the top
+            mScrollToTop = false;
+            mAdapter.setSnapshot(null);
+            mAdapter.setSnapshot(data);
+            mLayoutManager.scrollToPosition(0);
+            return;
+        }
+        mAdapter.setSnapshot(data);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<CatalogSnapshot> loader) {
         // Callback called when the data needs to be deleted
-        mCursorAdapter.swapCursor(null);
+        mAdapter.setSnapshot(null);
     }
-}
\ No newline at end of file
+}
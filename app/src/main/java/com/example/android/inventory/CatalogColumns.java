@@ -0,0 +1,80 @@
+package com.example.android.inventory;
+
+import android.database.Cursor;
+
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+/**
+ * Reads the products of the catalogue from a Cursor into a {@link CatalogSnapshot}. Products are
+ * read on the loader's background thread, so the list can be bound and diffed without touching a
+ * Cursor.
+ */
+final class CatalogColumns {
+
+    /**
+     * Columns the catalogue reads for every product
+     */
+    static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_NAME,
+            ProductEntry.COLUMN_AUTHOR,
+            ProductEntry.COLUMN_PRICE,
+            ProductEntry.COLUMN_QUANTITY};
+
+    /**
+     * Indices of the {@link #PROJECTION} columns, resolved once per Cursor rather than per row
+     */
+    private final int mId;
+    private final int mName;
+    private final int mAuthor;
+    private final int mPrice;
+    private final int mQuantity;
+
+    CatalogColumns(Cursor cursor) {
+        mId = cursor.getColumnIndexOrThrow(ProductEntry._ID);
+        mName = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_NAME);
+        mAuthor = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_AUTHOR);
+        mPrice = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRICE);
+        mQuantity = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_QUANTITY);
+    }
+
+    /**
+     * Add the product at the current position of the cursor to the given builder.
+     */
+    void add(Cursor cursor, CatalogSnapshot.Builder builder) {
+        builder.add(cursor.getLong(mId), cursor.getString(mName), cursor.getString(mAuthor),
+                getPrice(cursor), cursor.getInt(mQuantity));
+    }
+
+    /**
+     * Replace the product at the given position of the given builder with the product at the
+     * current position of the cursor.
+     */
+    void set(Cursor cursor, CatalogSnapshot.Builder builder, int position) {
+        builder.set(position, cursor.getLong(mId), cursor.getString(mName), cursor.getString(mAuthor),
+                getPrice(cursor), cursor.getInt(mQuantity));
+    }
+
+    private int getPrice(Cursor cursor) {
+        return cursor.isNull(mPrice) ? CatalogSnapshot.NO_PRICE : cursor.getInt(mPrice);
+    }
+
+    /**
+     * Add all products of the given cursor to the given builder, and close it. Return the number
+     * of products added.
+     */
+    static int addAll(Cursor cursor, CatalogSnapshot.Builder builder) {
+        try {
+            CatalogColumns columns = new CatalogColumns(cursor);
+            int count = 0;
+            while (cursor.moveToNext()) {
+                columns.add(cursor, builder);
+                count++;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+}
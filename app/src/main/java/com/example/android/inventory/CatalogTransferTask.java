@@ -0,0 +1,161 @@
+package com.example.android.inventory;
+
+import android.app.Activity;
+import android.app.ProgressDialog;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.example.android.inventory.data.CatalogExporter;
+import com.example.android.inventory.data.CatalogFormat;
+import com.example.android.inventory.data.CatalogImporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Imports the catalogue from, or exports it to, a file picked by the user, showing the progress
+ * in a dialog. The outcome is shown as a toast, even if the activity has gone away meanwhile.
+ */
+public class CatalogTransferTask extends AsyncTask<Void, Integer, String> {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = CatalogTransferTask.class.getSimpleName();
+
+    /**
+     * Application context, which outlives the activity that started the task
+     */
+    private final Context mContext;
+
+    /**
+     * File to import from or export to
+     */
+    private final Uri mUri;
+
+    /**
+     * True to export the catalogue, false to import it
+     */
+    private final boolean mExport;
+
+    /**
+     * Dialog showing the progress, or null once the activity has gone away
+     */
+    private ProgressDialog mProgressDialog;
+
+    /**
+     * Constructs a new {@link CatalogTransferTask}.
+     *
+     * @param activity showing the progress
+     * @param uri      of the file to import from or export to
+     * @param export   true to export the catalogue, false to import it
+     */
+    public CatalogTransferTask(Activity activity, Uri uri, boolean export) {
+        mContext = activity.getApplicationContext();
+        mUri = uri;
+        mExport = export;
+        mProgressDialog = new ProgressDialog(activity);
+        mProgressDialog.setIndeterminate(true);
+        mProgressDialog.setCancelable(false);
+        mProgressDialog.setMessage(activity.getString(export ? R.string.export_progress : R.string.import_progress_start));
+    }
+
+    /**
+     * Stop showing the progress, because the activity is going away. The task keeps running.
+     */
+    public void detach() {
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+    }
+
+    @Override
+    protected void onPreExecute() {
+        mProgressDialog.show();
+    }
+
+    @Override
+    protected String doInBackground(Void... params) {
+        ContentResolver resolver = mContext.getContentResolver();
+        CatalogFormat format = CatalogFormat.guess(resolver.getType(mUri), queryDisplayName(resolver));
+        try {
+            return mExport ? export(resolver, format) : importFrom(resolver, format);
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to transfer the catalogue with " + mUri, e);
+            return mContext.getString(mExport ? R.string.export_failed : R.string.import_failed, e.getMessage());
+        }
+    }
+
+    /**
+     * Import the file, and return the outcome to show the user.
+     */
+    private String importFrom(ContentResolver resolver, CatalogFormat format) throws IOException {
+        InputStream in = resolver.openInputStream(mUri);
+        if (in == null) {
+            throw new IOException("Failed to open " + mUri);
+        }
+        CatalogImporter importer = new CatalogImporter(resolver, new CatalogImporter.ProgressListener() {
+            @Override
+            public void onProgress(int rowsRead, int rowsImported) {
+                publishProgress(rowsImported);
+            }
+        });
+        CatalogImporter.Result result = importer.importFrom(in, format);
+        for (CatalogImporter.Rejection rejection : result.mRejections) {
+            Log.w(LOG_TAG, "Skipped row " + rejection);
+        }
+        return mContext.getString(R.string.import_done, result.mRowsImported, result.mRowsRejected);
+    }
+
+    /**
+     * Export the catalogue to the file, and return the outcome to show the user.
+     */
+    private String export(ContentResolver resolver, CatalogFormat format) throws IOException {
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(mUri, "w");
+        if (descriptor == null) {
+            throw new IOException("Failed to open " + mUri);
+        }
+        try {
+            int count = new CatalogExporter(resolver).exportTo(descriptor.getFileDescriptor(), format);
+            return mContext.getString(R.string.export_done, count);
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    /**
+     * Return the name of the picked file, or null if the provider doesn't tell.
+     */
+    private String queryDisplayName(ContentResolver resolver) {
+        Cursor cursor = resolver.query(mUri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null);
+        if (cursor == null) {
+            return mUri.getLastPathSegment();
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (mProgressDialog != null) {
+            mProgressDialog.setMessage(mContext.getString(R.string.import_progress, values[0]));
+        }
+    }
+
+    @Override
+    protected void onPostExecute(String message) {
+        detach();
+        Toast.makeText(mContext, message, Toast.LENGTH_LONG).show();
+    }
+}
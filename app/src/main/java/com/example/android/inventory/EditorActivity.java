@@ -33,12 +33,18 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
-import com.example.android.inventory.data.InventoryContract;
+import com.example.android.inventory.core.ProductRules;
 import com.example.android.inventory.data.InventoryContract.ProductEntry;
+import com.example.android.inventory.data.InventoryContract.SupplierEntry;
+import com.example.android.inventory.data.ProductConflictException;
+import com.example.android.inventory.data.QuantityWriteQueue;
 
 /**
  * Allows user to create a new product or edit an existing one.
@@ -51,6 +57,11 @@ public class EditorActivity extends AppCompatActivity implements
      */
     private static final int EXISTING_BOOK_LOADER = 0;
 
+    /**
+     * Identifier for the suppliers loader
+     */
+    private static final int SUPPLIERS_LOADER = 1;
+
     /**
      * Content URI for the existing product (null if it's a new product)
      */
@@ -67,9 +78,14 @@ public class EditorActivity extends AppCompatActivity implements
     private EditText mAuthorEditText;
 
     /**
-     * EditText field to enter the supplier's name
+     * EditText field to enter the supplier's name, or pick one of the known suppliers
      */
-    private EditText mSuppNameEditText;
+    private AutoCompleteTextView mSuppNameEditText;
+
+    /**
+     * Known suppliers suggested while the supplier's name is typed
+     */
+    private ArrayAdapter<Supplier> mSupplierAdapter;
 
     /**
      * EditText field to enter the supplier's phone
@@ -86,6 +102,62 @@ public class EditorActivity extends AppCompatActivity implements
      */
     private EditText mQuantityEditText;
 
+    /**
+     * EditText field to enter the quantity at which the product should be reordered
+     */
+    private EditText mReorderThresholdEditText;
+
+    /**
+     * EditText field to enter or scan the product's ISBN
+     */
+    private EditText mIsbnEditText;
+
+    /**
+     * Columns the editor writes, and the position of each in {@link #mFieldEditTexts} and
+     * {@link #mLoadedValues}
+     */
+    private static final String[] FIELD_COLUMNS = {
+            ProductEntry.COLUMN_NAME,
+            ProductEntry.COLUMN_AUTHOR,
+            ProductEntry.COLUMN_SUPP_NAME,
+            ProductEntry.COLUMN_SUPP_PHONE,
+            ProductEntry.COLUMN_PRICE,
+            ProductEntry.COLUMN_QUANTITY,
+            ProductEntry.COLUMN_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_ISBN};
+    private static final int FIELD_PRICE = 4;
+    private static final int FIELD_QUANTITY = 5;
+    private static final int FIELD_REORDER_THRESHOLD = 6;
+
+    /**
+     * EditText field of each of the {@link #FIELD_COLUMNS}
+     */
+    private EditText[] mFieldEditTexts;
+
+    /**
+     * Value of each of the {@link #FIELD_COLUMNS} of the existing product as last shown in its
+     * field, or null before the product is loaded. A field that shows something else has been
+     * edited, and only the edited fields are saved.
+     */
+    private String[] mLoadedValues;
+
+    /**
+     * Row version of the existing product the edits are based on. Saving fails with a conflict
+     * if the product has changed since.
+     */
+    private long mLoadedRowVersion;
+
+    /**
+     * True once a field the user edited has been changed in the database too, so the edits are
+     * no longer based on the latest row version
+     */
+    private boolean mEditConflict;
+
+    /**
+     * Quantity of the existing product as last loaded from the database
+     */
+    private int mStoredQuantity;
+
     /**
      * Boolean flag that keeps track of whether the product has been edited (true) or not (false)
      */
@@ -103,6 +175,37 @@ public class EditorActivity extends AppCompatActivity implements
         }
     };
 
+    /**
+     * Fills the supplier suggestions from the suppliers table
+     */
+    private final LoaderManager.LoaderCallbacks<Cursor> mSuppliersCallbacks = new LoaderManager.LoaderCallbacks<Cursor>() {
+        @Override
+        public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+            String[] projection = {SupplierEntry._ID, SupplierEntry.COLUMN_NAME, SupplierEntry.COLUMN_PHONE};
+            return new CursorLoader(EditorActivity.this, SupplierEntry.CONTENT_URI, projection, null, null, null);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+            // There's one row per supplier, few enough to copy on the main thread
+            mSupplierAdapter.clear();
+            int nameColumnIndex = cursor.getColumnIndex(SupplierEntry.COLUMN_NAME);
+            int phoneColumnIndex = cursor.getColumnIndex(SupplierEntry.COLUMN_PHONE);
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameColumnIndex);
+                if (!TextUtils.isEmpty(name)) {
+                    mSupplierAdapter.add(new Supplier(name, cursor.getString(phoneColumnIndex)));
+                }
+            }
+        }
+
+        @Override
+        public void onLoaderReset(Loader<Cursor> loader) {
+            mSupplierAdapter.clear();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -134,10 +237,14 @@ public class EditorActivity extends AppCompatActivity implements
         // Find all relevant views that we will need to read user input from
         mNameEditText = (EditText) findViewById(R.id.edit_name);
         mAuthorEditText = (EditText) findViewById(R.id.edit_author);
-        mSuppNameEditText = (EditText) findViewById(R.id.edit_supplier_name);
+        mSuppNameEditText = (AutoCompleteTextView) findViewById(R.id.edit_supplier_name);
         mSuppPhoneEditText = (EditText) findViewById(R.id.edit_supplier_phone);
         mPriceEditText = (EditText) findViewById(R.id.edit_price);
         mQuantityEditText = (EditText) findViewById(R.id.edit_quantity);
+        mReorderThresholdEditText = (EditText) findViewById(R.id.edit_reorder_threshold);
+        mIsbnEditText = (EditText) findViewById(R.id.edit_isbn);
+        mFieldEditTexts = new EditText[]{mNameEditText, mAuthorEditText, mSuppNameEditText, mSuppPhoneEditText,
+                mPriceEditText, mQuantityEditText, mReorderThresholdEditText, mIsbnEditText};
 
         // Setup OnTouchListeners on all the input fields, so we can determine if the user
         // has touched or modified them. This will let us know if there are unsaved changes
@@ -148,6 +255,24 @@ public class EditorActivity extends AppCompatActivity implements
         mSuppPhoneEditText.setOnTouchListener(mTouchListener);
         mPriceEditText.setOnTouchListener(mTouchListener);
         mQuantityEditText.setOnTouchListener(mTouchListener);
+        mReorderThresholdEditText.setOnTouchListener(mTouchListener);
+        mIsbnEditText.setOnTouchListener(mTouchListener);
+
+        // Suggest the known suppliers while the supplier's name is typed, and fill in the phone
+        // of the one picked, so it's stored as the same supplier
+        mSupplierAdapter = new ArrayAdapter<>(this, android.R.layout.simple_dropdown_item_1line);
+        mSuppNameEditText.setAdapter(mSupplierAdapter);
+        mSuppNameEditText.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                Supplier supplier = mSupplierAdapter.getItem(position);
+                mSuppNameEditText.setText(supplier.mName);
+                mSuppNameEditText.setSelection(supplier.mName.length());
+                mSuppPhoneEditText.setText(supplier.mPhone);
+                mProductHasChanged = true;
+            }
+        });
+        getLoaderManager().initLoader(SUPPLIERS_LOADER, null, mSuppliersCallbacks);
 
         /**
          * Intent to dial supplier's contact number
@@ -168,7 +293,8 @@ public class EditorActivity extends AppCompatActivity implements
     }
 
     /**
-     * Get user input from editor and save new product into database.
+     * Get user input from editor and save new product into database, or save the fields edited
+     * in the existing product.
      */
     private void saveProduct() {
         // Read from input fields
@@ -177,8 +303,6 @@ public class EditorActivity extends AppCompatActivity implements
         String authorString = mAuthorEditText.getText().toString().trim();
         String suppNameString = mSuppNameEditText.getText().toString().trim();
         String suppPhoneString = mSuppPhoneEditText.getText().toString().trim();
-        String priceString = mPriceEditText.getText().toString().trim();
-        String quantityString = mQuantityEditText.getText().toString().trim();
 
         // Check if this is supposed to be a new product
         // and check if all the fields in the editor are blank
@@ -191,34 +315,15 @@ public class EditorActivity extends AppCompatActivity implements
             return;
         }
 
-        // Create a ContentValues object where column names are the keys,
-        // and product attributes from the editor are the values.
-        ContentValues values = new ContentValues();
-        values.put(ProductEntry.COLUMN_NAME, nameString);
-        values.put(ProductEntry.COLUMN_AUTHOR, authorString);
-        values.put(ProductEntry.COLUMN_SUPP_NAME, suppNameString);
-        values.put(ProductEntry.COLUMN_SUPP_PHONE, suppPhoneString);
-
-        // If the price is not provided by the user, don't try to parse the string into an
-        // integer value. Use 0 by default.
-        int price = 0;
-        if (!TextUtils.isEmpty(priceString)) {
-            price = Integer.parseInt(priceString);
-        }
-        values.put(ProductEntry.COLUMN_PRICE, price);
-
-        // If the quantity is not provided by the user, don't try to parse the string into an
-        // integer value. Use 0 by default.
-        int quantity = 0;
-        if (!TextUtils.isEmpty(quantityString)) {
-            quantity = Integer.parseInt(quantityString);
-        }
-        values.put(ProductEntry.COLUMN_QUANTITY, quantity);
-
-        // Determine if this is a new or existing product by checking if mCurrentProductUri is null or not
+        // This is a NEW product, so create a ContentValues object where column names are the
+        // keys, and product attributes from the editor are the values.
         if (mCurrentProductUri == null) {
-            // This is a NEW product, so insert a new product into the provider,
-            // returning the content URI for the new product.
+            ContentValues values = new ContentValues();
+            for (int field = 0; field < FIELD_COLUMNS.length; field++) {
+                putFieldValue(values, field);
+            }
+
+            // Insert a new product into the provider, returning the content URI for the new product.
             try {
                 Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, values);
 
@@ -234,30 +339,122 @@ public class EditorActivity extends AppCompatActivity implements
             } catch (IllegalArgumentException e) {
                 Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
             }
-        } else {
-            // Otherwise this is an EXISTING product, so update the product with content URI: mCurrentProductUri
-            // and pass in the new ContentValues. Pass in null for the selection and selection args
-            // because mCurrentProductUri will already identify the correct row in the database that
-            // we want to modify.
-            try {
-                int rowsAffected = getContentResolver().update(mCurrentProductUri, values, null, null);
+            return;
+        }
 
-                // Show a toast message depending on whether or not the update was successful.
-                if (rowsAffected == 0) {
-                    // If no rows were affected, then there was an error with the update.
-                    Toast.makeText(this, getString(R.string.editor_update_product_failed),
-                            Toast.LENGTH_SHORT).show();
-                } else {
-                    // Otherwise, the update was successful and we can display a toast.
-                    Toast.makeText(this, getString(R.string.editor_update_product_successful), Toast.LENGTH_SHORT).show();
-                    finish();
-                }
-            } catch (IllegalArgumentException e) {
-                Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
+        // Otherwise this is an EXISTING product, so only write the fields the user edited, and
+        // leave the other columns to whoever else changes them meanwhile
+        if (mLoadedValues == null) {
+            // Not loaded yet, so nothing can have been edited
+            return;
+        }
+        ContentValues values = new ContentValues();
+        for (int field = 0; field < FIELD_COLUMNS.length; field++) {
+            if (isFieldEdited(field)) {
+                putFieldValue(values, field);
+            }
+        }
+        if (values.size() == 0) {
+            finish();
+            return;
+        }
+        // Only update the product if it's still at the row version the edits are based on, so
+        // a change made meanwhile, such as a sale from the catalogue, isn't silently overwritten
+        updateProduct(ProductEntry.buildExpectedVersionUri(ContentUris.parseId(mCurrentProductUri),
+                mLoadedRowVersion), values);
+    }
+
+    /**
+     * Update the existing product with the given values through the given URI, and close the
+     * editor if that worked. If the product has changed since it was loaded, ask the user what
+     * to do instead.
+     * <p>
+     * A quantity typed already includes the '+'/'-' taps that haven't been written yet, so they
+     * are taken off the queue rather than added again on top of it, and put back if the update
+     * fails.
+     */
+    private void updateProduct(Uri uri, final ContentValues values) {
+        QuantityWriteQueue writeQueue = QuantityWriteQueue.getInstance(this);
+        long id = ContentUris.parseId(mCurrentProductUri);
+        int discardedDelta = values.containsKey(ProductEntry.COLUMN_QUANTITY)
+                ? writeQueue.discardPendingDelta(id) : 0;
+        boolean updated = false;
+        try {
+            int rowsAffected = getContentResolver().update(uri, values, null, null);
+
+            // Show a toast message depending on whether or not the update was successful.
+            if (rowsAffected == 0) {
+                // If no rows were affected, then there was an error with the update.
+                Toast.makeText(this, getString(R.string.editor_update_product_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                // Otherwise, the update was successful and we can display a toast.
+                updated = true;
+                Toast.makeText(this, getString(R.string.editor_update_product_successful), Toast.LENGTH_SHORT).show();
+                finish();
             }
+        } catch (ProductConflictException e) {
+            showConflictDialog(values);
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, e.getMessage(), Toast.LENGTH_SHORT).show();
+        } finally {
+            if (!updated && discardedDelta != 0) {
+                writeQueue.adjust(id, discardedDelta);
+            }
+        }
+    }
+
+    /**
+     * Put the value typed in the given field into the given values, under its column. Numbers
+     * that aren't provided by the user default to 0, so a book with no reorder threshold is low
+     * once it's sold out.
+     */
+    private void putFieldValue(ContentValues values, int field) {
+        String text = mFieldEditTexts[field].getText().toString().trim();
+        if (field == FIELD_PRICE || field == FIELD_QUANTITY || field == FIELD_REORDER_THRESHOLD) {
+            values.put(FIELD_COLUMNS[field], TextUtils.isEmpty(text) ? 0 : Integer.parseInt(text));
+        } else {
+            values.put(FIELD_COLUMNS[field], text);
         }
     }
 
+    /**
+     * Return true if the given field shows something else than the product as loaded, the
+     * quantity including the '+'/'-' taps that haven't been written yet.
+     */
+    private boolean isFieldEdited(int field) {
+        String loaded = field == FIELD_QUANTITY
+                ? Integer.toString(mStoredQuantity + getPendingDelta()) : mLoadedValues[field];
+        return !mFieldEditTexts[field].getText().toString().trim().equals(loaded);
+    }
+
+    /**
+     * Tell the user the product was changed while they were editing it, and let them either save
+     * their edits over that change, or load the product again and lose their edits.
+     */
+    private void showConflictDialog(final ContentValues values) {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.editor_conflict_title)
+                .setMessage(R.string.editor_conflict_msg)
+                .setPositiveButton(R.string.editor_conflict_overwrite, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        updateProduct(mCurrentProductUri, values);
+                    }
+                })
+                .setNeutralButton(R.string.editor_conflict_reload, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mLoadedValues = null;
+                        mEditConflict = false;
+                        mProductHasChanged = false;
+                        getLoaderManager().restartLoader(EXISTING_BOOK_LOADER, null, EditorActivity.this);
+                    }
+                })
+                .setNegativeButton(R.string.keep_editing, null)
+                .show();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu options from the res/menu/menu_editor.xml file.
@@ -360,7 +557,10 @@ public class EditorActivity extends AppCompatActivity implements
                 ProductEntry.COLUMN_SUPP_NAME,
                 ProductEntry.COLUMN_SUPP_PHONE,
                 ProductEntry.COLUMN_PRICE,
-                ProductEntry.COLUMN_QUANTITY};
+                ProductEntry.COLUMN_QUANTITY,
+                ProductEntry.COLUMN_REORDER_THRESHOLD,
+                ProductEntry.COLUMN_ISBN,
+                ProductEntry.COLUMN_ROW_VERSION};
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
@@ -377,48 +577,60 @@ public class EditorActivity extends AppCompatActivity implements
         // Proceed with moving to the first row of the cursor and reading data from it
         // (This should be the only row in the cursor)
         if (cursor.moveToFirst()) {
-            // Find the columns of product attributes that we're interested in
-            int nameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_NAME);
-            int authorColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_AUTHOR);
-            int suppNameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_SUPP_NAME);
-            int suppPhoneColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_SUPP_PHONE);
-            int priceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRICE);
-            int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_QUANTITY);
-
-            // Extract out the value from the Cursor for the given column index
-            String name = cursor.getString(nameColumnIndex);
-            String author = cursor.getString(authorColumnIndex);
-            String suppName = cursor.getString(suppNameColumnIndex);
-            String suppPhone = cursor.getString(suppPhoneColumnIndex);
-            int price = cursor.getInt(priceColumnIndex);
-            final int quantity = cursor.getInt(quantityColumnIndex);
+            // Extract out the value of every field from the Cursor, as it would be shown
+            String[] values = new String[FIELD_COLUMNS.length];
+            for (int field = 0; field < FIELD_COLUMNS.length; field++) {
+                String value = cursor.getString(cursor.getColumnIndex(FIELD_COLUMNS[field]));
+                values[field] = value == null ? "" : value;
+            }
+            long rowVersion = cursor.getLong(cursor.getColumnIndex(ProductEntry.COLUMN_ROW_VERSION));
+            // Set before telling which fields were edited, so the quantity is compared with the
+            // new stored quantity plus the taps still pending: once the editor's own '+'/'-' taps
+            // are written, the quantity shown matches it again and isn't taken for an edit
+            mStoredQuantity = Integer.parseInt(values[FIELD_QUANTITY]);
+
+            // The product is loaded again every time it changes. Keep what the user edited, and
+            // if the database changed an edited field too, keep the old row version so saving
+            // reports the conflict instead of overwriting that change.
+            boolean[] edited = new boolean[FIELD_COLUMNS.length];
+            if (mLoadedValues == null) {
+                mLoadedValues = new String[FIELD_COLUMNS.length];
+            } else {
+                for (int field = 0; field < FIELD_COLUMNS.length; field++) {
+                    edited[field] = isFieldEdited(field);
+                    if (edited[field] && !values[field].equals(mLoadedValues[field])) {
+                        mEditConflict = true;
+                    }
+                }
+            }
+            if (!mEditConflict) {
+                mLoadedRowVersion = rowVersion;
+            }
 
             // Update the views on the screen with the values from the database
-            mNameEditText.setText(name);
-            mAuthorEditText.setText(author);
-            mSuppNameEditText.setText(suppName);
-            mSuppPhoneEditText.setText(suppPhone);
-            mPriceEditText.setText(Integer.toString(price));
-            mQuantityEditText.setText(Integer.toString(quantity));
+            for (int field = 0; field < FIELD_COLUMNS.length; field++) {
+                if (!edited[field]) {
+                    mLoadedValues[field] = values[field];
+                    mFieldEditTexts[field].setText(values[field]);
+                }
+            }
+            if (!edited[FIELD_QUANTITY]) {
+                // Include the '+'/'-' taps that haven't been written to the database yet
+                mQuantityEditText.setText(Integer.toString(mStoredQuantity + getPendingDelta()));
+            }
 
             // Setup '-' button to reduce quantity
             Button deductionButton = (Button) findViewById(R.id.deduct_1);
             deductionButton.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
-                    if (quantity == 0) {
+                    if (!ProductRules.canAdjust(mStoredQuantity + getPendingDelta(), -1)) {
                         // Show an error message as a toast
                         Toast.makeText(EditorActivity.this, R.string.book_negative, Toast.LENGTH_SHORT).show();
                         // Exit this method ends early as there is nothing more to do
                         return;
                     }
-                    mQuantityEditText.setText(Integer.toString(quantity - 1));
-
-                    // Create a ContentValues object where column names are the keys,
-                    // and product attributes from the editor are the values.
-                    ContentValues values = new ContentValues();
-                    values.put(InventoryContract.ProductEntry.COLUMN_QUANTITY, quantity - 1);
-                    getContentResolver().update(mCurrentProductUri, values, null, null);
+                    adjustQuantity(-1);
                 }
             });
 
@@ -427,23 +639,58 @@ public class EditorActivity extends AppCompatActivity implements
             addButton.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
-                    mQuantityEditText.setText(Integer.toString(quantity + 1));
-
-                    // Create a ContentValues object where column names are the keys,
-                    // and product attributes from the editor are the values.
-                    ContentValues values = new ContentValues();
-                    values.put(InventoryContract.ProductEntry.COLUMN_QUANTITY, quantity + 1);
-                    getContentResolver().update(mCurrentProductUri, values, null, null);
+                    adjustQuantity(1);
                 }
             });
         }
     }
 
+    /**
+     * Change the quantity of the current product by the given amount. The change is shown straight
+     * away and written to the database in the background by the {@link QuantityWriteQueue}.
+     */
+    private void adjustQuantity(int delta) {
+        QuantityWriteQueue.getInstance(this).adjust(ContentUris.parseId(mCurrentProductUri), delta);
+        mQuantityEditText.setText(Integer.toString(mStoredQuantity + getPendingDelta()));
+    }
+
+    /**
+     * Return the change to the quantity of the current product that hasn't been written yet.
+     */
+    private int getPendingDelta() {
+        return QuantityWriteQueue.getInstance(this).getPendingDelta(ContentUris.parseId(mCurrentProductUri));
+    }
+
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
 
     }
 
+    /**
+     * A supplier suggested for the supplier fields
+     */
+    private static final class Supplier {
+
+        /**
+         * Name and phone of the supplier, the phone empty if unknown
+         */
+        final String mName;
+        final String mPhone;
+
+        Supplier(String name, String phone) {
+            mName = name;
+            mPhone = phone;
+        }
+
+        /**
+         * Return the text shown in the suggestions, which the typed text is matched against.
+         */
+        @Override
+        public String toString() {
+            return TextUtils.isEmpty(mPhone) ? mName : mName + " · " + mPhone;
+        }
+    }
+
     /**
      * Show a dialog that warns the user there are unsaved changes that will be lost
      * if they continue leaving the editor.
@@ -0,0 +1,129 @@
+package com.example.android.inventory;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.TextView;
+
+import com.example.android.inventory.data.InventoryContract;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.util.Locale;
+
+/**
+ * Debug screen showing the provider's metrics and product cache counters, and turning the
+ * metrics on and off. The metrics are kept in memory by the provider, so they're read on the
+ * main thread without touching the database.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    /**
+     * Turns the metrics on and off
+     */
+    private CheckBox mRecordCheckBox;
+
+    /**
+     * Shows the metrics as a table
+     */
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        mRecordCheckBox = (CheckBox) findViewById(R.id.record_metrics);
+        mMetricsTextView = (TextView) findViewById(R.id.metrics);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics(call(InventoryContract.METHOD_GET_METRICS, null));
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        // Inflate the menu options from the res/menu/menu_metrics.xml file.
+        getMenuInflater().inflate(R.menu.menu_metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            // Respond to a click on the "Refresh" menu option
+            case R.id.action_refresh_metrics:
+                showMetrics(call(InventoryContract.METHOD_GET_METRICS, null));
+                return true;
+            // Respond to a click on the "Reset" menu option
+            case R.id.action_reset_metrics:
+                showMetrics(call(InventoryContract.METHOD_RESET_METRICS, null));
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Call the given method of the provider, and return its result.
+     */
+    private Bundle call(String method, String arg) {
+        return getContentResolver().call(ProductEntry.CONTENT_URI, method, arg, null);
+    }
+
+    /**
+     * Show the given snapshot of the metrics, along with the product cache counters.
+     */
+    private void showMetrics(Bundle metrics) {
+        // Update the check box without telling its listener, which would call the provider again
+        mRecordCheckBox.setOnCheckedChangeListener(null);
+        mRecordCheckBox.setChecked(metrics.getBoolean(InventoryContract.EXTRA_METRICS_ENABLED));
+        mRecordCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                showMetrics(call(InventoryContract.METHOD_SET_METRICS_ENABLED, String.valueOf(isChecked)));
+            }
+        });
+
+        StringBuilder text = new StringBuilder();
+        Bundle cacheStats = call(InventoryContract.METHOD_GET_CACHE_STATS, null);
+        text.append(getString(R.string.metrics_cache,
+                cacheStats.getInt(InventoryContract.EXTRA_CACHE_HITS),
+                cacheStats.getInt(InventoryContract.EXTRA_CACHE_MISSES),
+                cacheStats.getInt(InventoryContract.EXTRA_CACHE_EVICTIONS)));
+        text.append("\n\n");
+
+        String[] operations = metrics.getStringArray(InventoryContract.EXTRA_METRICS_OPERATIONS);
+        if (operations == null || operations.length == 0) {
+            text.append(getString(R.string.metrics_empty));
+            mMetricsTextView.setText(text);
+            return;
+        }
+        long[] calls = metrics.getLongArray(InventoryContract.EXTRA_METRICS_CALLS);
+        long[] errors = metrics.getLongArray(InventoryContract.EXTRA_METRICS_ERRORS);
+        long[] rows = metrics.getLongArray(InventoryContract.EXTRA_METRICS_ROWS);
+        long[] mean = metrics.getLongArray(InventoryContract.EXTRA_METRICS_MEAN_MICROS);
+        long[] p50 = metrics.getLongArray(InventoryContract.EXTRA_METRICS_P50_MICROS);
+        long[] p95 = metrics.getLongArray(InventoryContract.EXTRA_METRICS_P95_MICROS);
+        long[] p99 = metrics.getLongArray(InventoryContract.EXTRA_METRICS_P99_MICROS);
+        long[] max = metrics.getLongArray(InventoryContract.EXTRA_METRICS_MAX_MICROS);
+        text.append(String.format(Locale.US, "%-32s %7s %6s %8s %8s %8s %8s %8s %8s\n",
+                "operation", "calls", "errors", "rows", "mean us", "p50 us", "p95 us", "p99 us", "max us"));
+        for (int i = 0; i < operations.length; i++) {
+            text.append(String.format(Locale.US, "%-32s %7d %6d %8d %8d %8d %8d %8d %8d\n",
+                    operations[i], calls[i], errors[i], rows[i], mean[i], p50[i], p95[i], p99[i], max[i]));
+        }
+
+        String[] uris = metrics.getStringArray(InventoryContract.EXTRA_METRICS_URIS);
+        long[] windowFills = metrics.getLongArray(InventoryContract.EXTRA_METRICS_WINDOW_FILLS);
+        long[] notifications = metrics.getLongArray(InventoryContract.EXTRA_METRICS_NOTIFICATIONS);
+        text.append(String.format(Locale.US, "\n%-32s %12s %13s\n", "uri", "window fills", "notifications"));
+        for (int i = 0; i < uris.length; i++) {
+            text.append(String.format(Locale.US, "%-32s %12d %13d\n", uris[i], windowFills[i], notifications[i]));
+        }
+        mMetricsTextView.setText(text);
+    }
+}
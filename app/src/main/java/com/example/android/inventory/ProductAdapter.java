@@ -0,0 +1,313 @@
+package com.example.android.inventory;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.data.InventoryContract;
+import com.example.android.inventory.data.QuantityWriteQueue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link ProductAdapter} is an adapter for a {@link RecyclerView} that uses a
+ * {@link CatalogSnapshot} as its data source. This adapter knows how to create list items for each
+ * product, and works out what changed between two snapshots off the main thread.
+ * <p>
+ * Binding a product allocates nothing: names and authors are the snapshot's own strings, and
+ * prices and quantities are written as digits into buffers kept by each list item.
+ */
+public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ViewHolder> {
+
+    /**
+     * Thread computing the differences between the old and new lists of products
+     */
+    private static final ExecutorService sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Handler of the main thread, where the differences are applied
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Context used to reach the write queue and start the editor
+     */
+    private final Context mContext;
+
+    /**
+     * Queue the sales are written through
+     */
+    private final QuantityWriteQueue mWriteQueue;
+
+    /**
+     * Text shown before and after the digits of a price, and instead of a missing price
+     */
+    private final char[] mPricePrefix;
+    private final char[] mPriceSuffix;
+    private final String mUnknownPrice;
+
+    /**
+     * Products currently shown
+     */
+    private CatalogSnapshot mSnapshot = CatalogSnapshot.EMPTY;
+
+    /**
+     * Incremented for every new list, so a diff finished after a newer list came in is dropped
+     */
+    private int mGeneration;
+
+    /**
+     * Opens EditorActivity for the clicked product. Shared by all list items.
+     */
+    private final View.OnClickListener mItemClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            int position = getPosition((ViewHolder) view.getTag());
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Intent intent = new Intent(mContext, EditorActivity.class);
+            Uri currentProductUri = ContentUris.withAppendedId(InventoryContract.ProductEntry.CONTENT_URI,
+                    mSnapshot.getId(position));
+
+            // Set the URI on the data field of the intent
+            intent.setData(currentProductUri);
+            mContext.startActivity(intent);
+        }
+    };
+
+    /**
+     * Sells one copy of the product whose 'SALE' button was clicked. Shared by all list items.
+     */
+    private final View.OnClickListener mSaleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            ViewHolder holder = (ViewHolder) view.getTag();
+            int position = getPosition(holder);
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            long id = mSnapshot.getId(position);
+            int quantity = mSnapshot.getQuantity(position) + mWriteQueue.getPendingDelta(id);
+            if (!ProductRules.canAdjust(quantity, -1)) {
+                // Show an error message as a toast
+                Toast.makeText(mContext, R.string.book_unavailable, Toast.LENGTH_SHORT).show();
+                // Exit this method ends early as there is nothing more to do
+                return;
+            }
+            // Show the sale straight away, and let the write queue take the book out of
+            // stock in the background together with any other taps made meanwhile
+            mWriteQueue.adjust(id, -1);
+            holder.setQuantity(quantity - 1);
+        }
+    };
+
+    /**
+     * Constructs a new {@link ProductAdapter}.
+     *
+     * @param context The context
+     */
+    public ProductAdapter(Context context) {
+        mContext = context;
+        mWriteQueue = QuantityWriteQueue.getInstance(context);
+
+        // Split the price format around the digits once, so prices are shown without formatting
+        // a String for every product
+        String placeholder = "\u0000";
+        String priceFormat = context.getString(R.string.price_with_unit, placeholder);
+        int digits = priceFormat.indexOf(placeholder);
+        mPricePrefix = priceFormat.substring(0, digits).toCharArray();
+        mPriceSuffix = priceFormat.substring(digits + placeholder.length()).toCharArray();
+        mUnknownPrice = context.getString(R.string.unknown_price);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the given products. The differences with the products shown now are computed on a
+     * background thread, then applied as item changes, insertions and removals.
+     *
+     * @param snapshot the products to show, or null to show none
+     */
+    public void setSnapshot(CatalogSnapshot snapshot) {
+        final CatalogSnapshot newSnapshot = snapshot == null ? CatalogSnapshot.EMPTY : snapshot;
+        final CatalogSnapshot oldSnapshot = mSnapshot;
+        final int generation = ++mGeneration;
+
+        // Nothing to compare when the list is filled or emptied
+        if (oldSnapshot.isEmpty() || newSnapshot.isEmpty()) {
+            mSnapshot = newSnapshot;
+            notifyDataSetChanged();
+            return;
+        }
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffCallback(oldSnapshot, newSnapshot));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            // A newer list came in meanwhile, which will be diffed against this one
+                            return;
+                        }
+                        mSnapshot = newSnapshot;
+                        result.dispatchUpdatesTo(ProductAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Return the position of the product shown by the given holder, or
+     * {@link RecyclerView#NO_POSITION} if it's being removed.
+     */
+    private int getPosition(ViewHolder holder) {
+        int position = holder.getAdapterPosition();
+        if (position >= mSnapshot.size()) {
+            return RecyclerView.NO_POSITION;
+        }
+        return position;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mSnapshot.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mSnapshot.getId(position);
+    }
+
+    /**
+     * Makes a new blank list item view and its holder. No data is set (or bound) to the views yet.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in list_item.xml
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        holder.mSaleButton.setTag(holder);
+        view.setOnClickListener(mItemClickListener);
+        holder.mSaleButton.setOnClickListener(mSaleClickListener);
+        return holder;
+    }
+
+    /**
+     * This method binds the product at the given position to the views of the given holder.
+     */
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        CatalogSnapshot snapshot = mSnapshot;
+        holder.mNameTextView.setText(snapshot.getName(position));
+        holder.mAuthorTextView.setText(snapshot.getAuthor(position));
+
+        // If the product has no price, then use some default text that says "Unknown price",
+        // so the TextView isn't blank.
+        int price = snapshot.getPrice(position);
+        if (price == CatalogSnapshot.NO_PRICE) {
+            holder.mPriceTextView.setText(mUnknownPrice);
+        } else {
+            holder.setPrice(mPricePrefix, price, mPriceSuffix);
+        }
+
+        // Include the sales that haven't been written to the database yet
+        holder.setQuantity(snapshot.getQuantity(position) + mWriteQueue.getPendingDelta(snapshot.getId(position)));
+    }
+
+    /**
+     * Holds the views of a list item, so they're only looked up once, and the characters of its
+     * price and quantity, which their TextViews show without copying.
+     */
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView mNameTextView;
+        final TextView mAuthorTextView;
+        final TextView mPriceTextView;
+        final TextView mQuantityTextView;
+        final Button mSaleButton;
+
+        /**
+         * Characters shown by the price and quantity TextViews. A TextView keeps showing the
+         * array it was given, so each is only written right before it's set again.
+         */
+        private char[] mPriceChars;
+        private final char[] mQuantityChars = new char[CatalogSnapshot.MAX_DECIMAL_LENGTH];
+
+        ViewHolder(View view) {
+            super(view);
+            mNameTextView = (TextView) view.findViewById(R.id.name);
+            mAuthorTextView = (TextView) view.findViewById(R.id.author);
+            mPriceTextView = (TextView) view.findViewById(R.id.price);
+            mQuantityTextView = (TextView) view.findViewById(R.id.quantity);
+            mSaleButton = (Button) view.findViewById(R.id.sale);
+        }
+
+        /**
+         * Show the given price between the given prefix and suffix.
+         */
+        void setPrice(char[] prefix, int price, char[] suffix) {
+            if (mPriceChars == null) {
+                mPriceChars = new char[prefix.length + CatalogSnapshot.MAX_DECIMAL_LENGTH + suffix.length];
+            }
+            System.arraycopy(prefix, 0, mPriceChars, 0, prefix.length);
+            int length = CatalogSnapshot.writeDecimal(price, mPriceChars, prefix.length);
+            System.arraycopy(suffix, 0, mPriceChars, length, suffix.length);
+            mPriceTextView.setText(mPriceChars, 0, length + suffix.length);
+        }
+
+        void setQuantity(int quantity) {
+            mQuantityTextView.setText(mQuantityChars, 0, CatalogSnapshot.writeDecimal(quantity, mQuantityChars, 0));
+        }
+    }
+
+    /**
+     * Compares two snapshots of products: items are the same product if their IDs match, and have
+     * the same contents if everything shown about them is equal.
+     */
+    private static final class DiffCallback extends DiffUtil.Callback {
+        private final CatalogSnapshot mOldSnapshot;
+        private final CatalogSnapshot mNewSnapshot;
+
+        DiffCallback(CatalogSnapshot oldSnapshot, CatalogSnapshot newSnapshot) {
+            mOldSnapshot = oldSnapshot;
+            mNewSnapshot = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldSnapshot.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewSnapshot.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldSnapshot.getId(oldItemPosition) == mNewSnapshot.getId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldSnapshot.contentsEqual(oldItemPosition, mNewSnapshot, newItemPosition);
+        }
+    }
+}
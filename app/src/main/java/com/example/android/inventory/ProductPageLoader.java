@@ -0,0 +1,215 @@
+package com.example.android.inventory;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+
+import com.example.android.inventory.core.CatalogPager;
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+/**
+ * Loads the product catalogue one page at a time, in one of the orders of the contract, using
+ * keyset pagination on the sort key and {@link ProductEntry#_ID}. Only the first page is queried
+ * up front, so the list shows up equally fast for 500 or 500k products; call
+ * {@link #loadNextPage()} as the user nears the end of the list to append the next one.
+ * <p>
+ * Changes notified by the provider are handed to a {@link CatalogPager}, which decides whether
+ * the next load only queries the products that were updated again, or requeries the pages. Every
+ * page is read into a {@link CatalogSnapshot} and closed straight away, so no Cursor outlives the
+ * load, and the products loaded are kept by column rather than one object each.
+ */
+public class ProductPageLoader extends AsyncTaskLoader<CatalogSnapshot> implements CatalogPager.Source {
+
+    /**
+     * Number of products fetched per page
+     */
+    public static final int PAGE_SIZE = 50;
+
+    /**
+     * Products URI with the order and filters of the catalogue, which the pages are queried from
+     */
+    private final Uri mCatalogueUri;
+
+    /**
+     * Order of the catalogue, one of the SORT constants of {@link ProductEntry}
+     */
+    private final String mSort;
+
+    /**
+     * Collects the changes to the products and brings the pages up to date with them
+     */
+    private final CatalogPager mPager;
+
+    /**
+     * Observer that has the pages patched or reloaded when the product data changes
+     */
+    private final ContentObserver mObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            mPager.onChange(uri == null ? null : uri.getPathSegments(),
+                    uri == null ? null : uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_CHANGED_COLUMNS));
+            onContentChanged();
+        }
+    };
+
+    /**
+     * The result that was delivered last (null until the first page has been loaded)
+     */
+    private volatile CatalogPager.Pages mPages;
+
+    /**
+     * The result of the last load, which may still be delivered or canceled
+     */
+    private volatile CatalogPager.Pages mLoaded;
+
+    /**
+     * True when the next load should append one page to the loaded ones
+     */
+    private volatile boolean mAppendRequested;
+
+    /**
+     * Constructs a new {@link ProductPageLoader}.
+     *
+     * @param context      of the app
+     * @param catalogueUri {@link ProductEntry#CONTENT_URI}, possibly with the sort and filter
+     *                     query parameters of the contract
+     */
+    public ProductPageLoader(Context context, Uri catalogueUri) {
+        super(context);
+        mCatalogueUri = catalogueUri;
+        String sort = catalogueUri.getQueryParameter(ProductEntry.QUERY_PARAMETER_SORT);
+        mSort = sort == null ? ProductEntry.SORT_ID : sort;
+        mPager = new CatalogPager(mSort,
+                catalogueUri.getQueryParameter(ProductEntry.QUERY_PARAMETER_IN_STOCK) != null,
+                catalogueUri.getQueryParameter(ProductEntry.QUERY_PARAMETER_MIN_PRICE) != null
+                        || catalogueUri.getQueryParameter(ProductEntry.QUERY_PARAMETER_MAX_PRICE) != null,
+                PAGE_SIZE);
+        getContext().getContentResolver().registerContentObserver(ProductEntry.CONTENT_URI, true, mObserver);
+    }
+
+    /**
+     * Fetch the page after the last one loaded, unless a page is already being fetched or
+     * the end of the catalogue has been reached.
+     */
+    public void loadNextPage() {
+        CatalogPager.Pages pages = mPages;
+        if (pages == null || !pages.mHasMore || mAppendRequested) {
+            return;
+        }
+        mAppendRequested = true;
+        forceLoad();
+    }
+
+    @Override
+    public CatalogSnapshot loadInBackground() {
+        CatalogPager.Pages pages = mPager.load(mPages, mAppendRequested, this);
+        mAppendRequested = false;
+        mLoaded = pages;
+        return pages.mSnapshot;
+    }
+
+    /**
+     * Query the page of products following the last one in the given builder, and add it to
+     * them.
+     */
+    @Override
+    public int readPage(CatalogSnapshot.Builder builder, int limit) {
+        Uri.Builder uriBuilder = mCatalogueUri.buildUpon()
+                .appendQueryParameter(ProductEntry.QUERY_PARAMETER_LIMIT, String.valueOf(limit));
+        int size = builder.size();
+        if (size > 0) {
+            uriBuilder.appendQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_ID,
+                    String.valueOf(builder.getId(size - 1)));
+            String lastKey = builder.getSortKey(size - 1, mSort);
+            if (lastKey != null) {
+                uriBuilder.appendQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_KEY, lastKey);
+            }
+        }
+        return CatalogColumns.addAll(getContext().getContentResolver().query(
+                uriBuilder.build(), CatalogColumns.PROJECTION, null, null, null), builder);
+    }
+
+    /**
+     * Query the current values of a single product and replace it in the given builder.
+     */
+    @Override
+    public boolean readProduct(CatalogSnapshot.Builder builder, int position, long id) {
+        Cursor cursor = getContext().getContentResolver().query(
+                ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id), CatalogColumns.PROJECTION, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return false;
+            }
+            new CatalogColumns(cursor).set(cursor, builder, position);
+            return true;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(CatalogSnapshot snapshot) {
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            return;
+        }
+        CatalogPager.Pages loaded = mLoaded;
+        if (loaded != null && loaded.mSnapshot == snapshot) {
+            mPages = loaded;
+        }
+
+        if (isStarted()) {
+            super.deliverResult(snapshot);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mPages != null) {
+            deliverResult(mPages.mSnapshot);
+        }
+        if (takeContentChanged() || mPages == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible
+        cancelLoad();
+    }
+
+    @Override
+    public void onCanceled(CatalogSnapshot snapshot) {
+        CatalogPager.Pages pages = mLoaded;
+        mAppendRequested = false;
+        if (pages == null || pages.mSnapshot != snapshot) {
+            return;
+        }
+
+        // The changes this load picked up were never delivered, so the next load has to redo them
+        mPager.restore(pages);
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        getContext().getContentResolver().unregisterContentObserver(mObserver);
+        mPages = null;
+        mLoaded = null;
+    }
+}
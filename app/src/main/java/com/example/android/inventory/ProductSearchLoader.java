@@ -0,0 +1,90 @@
+package com.example.android.inventory;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.net.Uri;
+
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+/**
+ * Loads the products matching a search, best match first. The results are read again whenever
+ * the product data changes.
+ */
+public class ProductSearchLoader extends AsyncTaskLoader<CatalogSnapshot> {
+
+    /**
+     * Reloads the results when the product data changes
+     */
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    /**
+     * URI of the search results
+     */
+    private final Uri mSearchUri;
+
+    /**
+     * The results that were delivered last
+     */
+    private CatalogSnapshot mItems;
+
+    /**
+     * Constructs a new {@link ProductSearchLoader}.
+     *
+     * @param context    of the app
+     * @param searchText text to search the products for
+     */
+    public ProductSearchLoader(Context context, String searchText) {
+        super(context);
+        mSearchUri = ProductEntry.CONTENT_SEARCH_URI.buildUpon().appendPath(searchText).build();
+        getContext().getContentResolver().registerContentObserver(ProductEntry.CONTENT_URI, true, mObserver);
+    }
+
+    @Override
+    public CatalogSnapshot loadInBackground() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(ProductPageLoader.PAGE_SIZE);
+        CatalogColumns.addAll(getContext().getContentResolver().query(
+                mSearchUri, CatalogColumns.PROJECTION, null, null, null), builder);
+        return builder.build();
+    }
+
+    @Override
+    public void deliverResult(CatalogSnapshot items) {
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            return;
+        }
+        mItems = items;
+
+        if (isStarted()) {
+            super.deliverResult(items);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mItems != null) {
+            deliverResult(mItems);
+        }
+        if (takeContentChanged() || mItems == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        getContext().getContentResolver().unregisterContentObserver(mObserver);
+        mItems = null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.android.inventory;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.os.Bundle;
+
+import com.example.android.inventory.data.InventoryContract;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+/**
+ * Loads the inventory totals through {@link InventoryContract#METHOD_GET_SUMMARY}, and loads them
+ * again whenever the product data changes.
+ */
+public class SummaryLoader extends AsyncTaskLoader<Bundle> {
+
+    /**
+     * Reloads the totals when the product data changes
+     */
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    /**
+     * The totals that were delivered last
+     */
+    private Bundle mSummary;
+
+    /**
+     * Constructs a new {@link SummaryLoader}.
+     *
+     * @param context of the app
+     */
+    public SummaryLoader(Context context) {
+        super(context);
+        getContext().getContentResolver().registerContentObserver(ProductEntry.CONTENT_URI, true, mObserver);
+    }
+
+    @Override
+    public Bundle loadInBackground() {
+        return getContext().getContentResolver().call(ProductEntry.CONTENT_URI,
+                InventoryContract.METHOD_GET_SUMMARY, null, null);
+    }
+
+    @Override
+    public void deliverResult(Bundle summary) {
+        if (isReset()) {
+            // An async query came in while the loader is stopped
+            return;
+        }
+        mSummary = summary;
+
+        if (isStarted()) {
+            super.deliverResult(summary);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mSummary != null) {
+            deliverResult(mSummary);
+        }
+        if (takeContentChanged() || mSummary == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        // Attempt to cancel the current load task if possible
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        // Ensure the loader is stopped
+        onStopLoading();
+
+        getContext().getContentResolver().unregisterContentObserver(mObserver);
+        mSummary = null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.inventory;
+
+import android.app.Activity;
+import android.app.ProgressDialog;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.example.android.inventory.data.InventoryContract;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+/**
+ * Syncs the catalogue with a sync server through the provider, showing the progress in a dialog.
+ * The outcome is shown as a toast, even if the activity has gone away meanwhile.
+ */
+public class SyncTask extends AsyncTask<Void, Void, String> {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = SyncTask.class.getSimpleName();
+
+    /**
+     * Application context, which outlives the activity that started the task
+     */
+    private final Context mContext;
+
+    /**
+     * Base URL of the sync server
+     */
+    private final String mServerUrl;
+
+    /**
+     * Dialog showing the progress, or null once the activity has gone away
+     */
+    private ProgressDialog mProgressDialog;
+
+    /**
+     * Constructs a new {@link SyncTask}.
+     *
+     * @param activity  showing the progress
+     * @param serverUrl base URL of the sync server
+     */
+    public SyncTask(Activity activity, String serverUrl) {
+        mContext = activity.getApplicationContext();
+        mServerUrl = serverUrl;
+        mProgressDialog = new ProgressDialog(activity);
+        mProgressDialog.setIndeterminate(true);
+        mProgressDialog.setCancelable(false);
+        mProgressDialog.setMessage(activity.getString(R.string.sync_progress));
+    }
+
+    /**
+     * Stop showing the progress, because the activity is going away. The task keeps running.
+     */
+    public void detach() {
+        if (mProgressDialog != null) {
+            mProgressDialog.dismiss();
+            mProgressDialog = null;
+        }
+    }
+
+    @Override
+    protected void onPreExecute() {
+        mProgressDialog.show();
+    }
+
+    @Override
+    protected String doInBackground(Void... params) {
+        Bundle result;
+        try {
+            result = mContext.getContentResolver().call(ProductEntry.CONTENT_URI,
+                    InventoryContract.METHOD_SYNC, mServerUrl, null);
+        } catch (RuntimeException e) {
+            Log.e(LOG_TAG, "Failed to sync with " + mServerUrl, e);
+            return mContext.getString(R.string.sync_failed, e.getMessage());
+        }
+        if (result == null) {
+            return mContext.getString(R.string.sync_failed, mServerUrl);
+        }
+        String error = result.getString(InventoryContract.EXTRA_SYNC_ERROR);
+        if (error != null) {
+            return mContext.getString(R.string.sync_failed, error);
+        }
+        return mContext.getString(R.string.sync_done, result.getInt(InventoryContract.EXTRA_SYNC_PUSHED),
+                result.getInt(InventoryContract.EXTRA_SYNC_PULLED));
+    }
+
+    @Override
+    protected void onPostExecute(String message) {
+        detach();
+        Toast.makeText(mContext, message, Toast.LENGTH_LONG).show();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.inventory.core.SqlDatabase;
+
+/**
+ * {@link SqlDatabase} on an Android {@link SQLiteDatabase}, so the inventory-core schema and
+ * repository run on the app's database. Transactions are the database's own, so they nest with
+ * the ones the provider and SQLiteOpenHelper open.
+ */
+final class AndroidSqlDatabase implements SqlDatabase {
+
+    /**
+     * The database the statements run on
+     */
+    private final SQLiteDatabase mDatabase;
+
+    AndroidSqlDatabase(SQLiteDatabase database) {
+        mDatabase = database;
+    }
+
+    @Override
+    public Statement compileStatement(String sql) {
+        return new CompiledStatement(mDatabase.compileStatement(sql));
+    }
+
+    @Override
+    public void execute(String sql, Object... bindArgs) {
+        if (bindArgs.length == 0) {
+            mDatabase.execSQL(sql);
+        } else {
+            mDatabase.execSQL(sql, bindArgs);
+        }
+    }
+
+    @Override
+    public long executeInsert(String sql, Object... bindArgs) {
+        SQLiteStatement statement = compile(sql, bindArgs);
+        try {
+            return statement.executeInsert();
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object... bindArgs) {
+        SQLiteStatement statement = compile(sql, bindArgs);
+        try {
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public Rows query(String sql, Object... bindArgs) {
+        // rawQuery() only binds text, which SQLite converts back to a number when comparing it
+        // with a column of numeric affinity
+        String[] selectionArgs = new String[bindArgs.length];
+        for (int i = 0; i < bindArgs.length; i++) {
+            selectionArgs[i] = bindArgs[i] == null ? null : bindArgs[i].toString();
+        }
+        return new CursorRows(mDatabase.rawQuery(sql, selectionArgs));
+    }
+
+    /**
+     * Compile the given statement and bind the given arguments to it. The caller must close it.
+     */
+    private SQLiteStatement compile(String sql, Object... bindArgs) {
+        SQLiteStatement statement = mDatabase.compileStatement(sql);
+        for (int i = 0; i < bindArgs.length; i++) {
+            Object arg = bindArgs[i];
+            if (arg == null) {
+                statement.bindNull(i + 1);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.bindDouble(i + 1, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                statement.bindLong(i + 1, ((Number) arg).longValue());
+            } else {
+                statement.bindString(i + 1, arg.toString());
+            }
+        }
+        return statement;
+    }
+
+    @Override
+    public void beginTransaction() {
+        mDatabase.beginTransaction();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        mDatabase.setTransactionSuccessful();
+    }
+
+    @Override
+    public void endTransaction() {
+        mDatabase.endTransaction();
+    }
+
+    /**
+     * A compiled {@link SQLiteStatement}. The statement only holds a database connection while it
+     * runs, so it can be kept for as long as the database is open.
+     */
+    private static final class CompiledStatement implements Statement {
+
+        private final SQLiteStatement mStatement;
+
+        CompiledStatement(SQLiteStatement statement) {
+            mStatement = statement;
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            mStatement.bindLong(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            mStatement.bindString(index, value);
+        }
+
+        @Override
+        public void bindNull(int index) {
+            mStatement.bindNull(index);
+        }
+
+        @Override
+        public long executeInsert() {
+            return mStatement.executeInsert();
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            return mStatement.executeUpdateDelete();
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            try {
+                return mStatement.simpleQueryForLong();
+            } catch (SQLiteDoneException e) {
+                // The query returned no row
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() {
+            mStatement.close();
+        }
+    }
+
+    /**
+     * Rows read from a cursor.
+     */
+    private static final class CursorRows implements Rows {
+
+        private final Cursor mCursor;
+
+        CursorRows(Cursor cursor) {
+            mCursor = cursor;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return mCursor.moveToNext();
+        }
+
+        @Override
+        public long getLong(int column) {
+            return mCursor.getLong(column);
+        }
+
+        @Override
+        public String getString(int column) {
+            return mCursor.getString(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return mCursor.isNull(column);
+        }
+
+        @Override
+        public void close() {
+            mCursor.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.inventory.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.util.JsonWriter;
+
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Exports the catalogue to a CSV or JSON file that {@link CatalogImporter} can read back. Products
+ * are written straight from the query's Cursor as it's moved through, so only the Cursor's
+ * current window of rows is ever held in memory.
+ */
+public final class CatalogExporter {
+
+    /**
+     * Encoding of the exported files
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Resolver the products are read through
+     */
+    private final ContentResolver mResolver;
+
+    /**
+     * Constructs a new {@link CatalogExporter}.
+     *
+     * @param resolver to read the products through
+     */
+    public CatalogExporter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Write every product to the given file, in {@link ProductEntry#_ID} order. Return the
+     * number of products written.
+     *
+     * @param fd     of the file to write, which is left open
+     * @param format to write the file in
+     * @throws IOException if the file can't be written
+     */
+    public int exportTo(FileDescriptor fd, CatalogFormat format) throws IOException {
+        Cursor cursor = mResolver.query(ProductEntry.CONTENT_URI, CatalogFormat.COLUMNS, null, null,
+                ProductEntry._ID + " ASC");
+        if (cursor == null) {
+            throw new IOException("Failed to query " + ProductEntry.CONTENT_URI);
+        }
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fd), UTF_8));
+            int count = format == CatalogFormat.JSON ? writeJson(cursor, writer) : writeCsv(cursor, writer);
+            // Flush rather than close, as the descriptor belongs to the caller
+            writer.flush();
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Write a header naming the columns, then one record per product.
+     */
+    private static int writeCsv(Cursor cursor, Writer writer) throws IOException {
+        writeCsvRecord(writer, CatalogFormat.COLUMNS);
+        String[] fields = new String[CatalogFormat.COLUMNS.length];
+        while (cursor.moveToNext()) {
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = cursor.getString(i);
+            }
+            writeCsvRecord(writer, fields);
+        }
+        return cursor.getCount();
+    }
+
+    /**
+     * Write a CSV record, quoting the fields that need it, followed by a line break.
+     */
+    private static void writeCsvRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Write a JSON array with one object per product. Prices and quantities are written as
+     * numbers, and null values are left out.
+     */
+    private static int writeJson(Cursor cursor, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginArray();
+        while (cursor.moveToNext()) {
+            json.beginObject();
+            for (int i = 0; i < CatalogFormat.COLUMNS.length; i++) {
+                if (cursor.isNull(i)) {
+                    continue;
+                }
+                json.name(CatalogFormat.COLUMNS[i]);
+                if (cursor.getType(i) == Cursor.FIELD_TYPE_INTEGER) {
+                    json.value(cursor.getLong(i));
+                } else {
+                    json.value(cursor.getString(i));
+                }
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.flush();
+        return cursor.getCount();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.inventory.data;
+
+import com.example.android.inventory.core.CatalogRows;
+
+import java.util.Locale;
+
+/**
+ * File formats the catalogue can be imported from and exported to.
+ */
+public enum CatalogFormat {
+
+    /**
+     * Comma separated values, with a header row naming the columns
+     */
+    CSV("text/csv", ".csv"),
+
+    /**
+     * A JSON array of product objects, or one product object per line (JSON Lines)
+     */
+    JSON("application/json", ".json");
+
+    /**
+     * Columns of a product that are imported and exported, keyed by their column name in both
+     * formats
+     */
+    static final String[] COLUMNS = CatalogRows.COLUMNS;
+
+    /**
+     * MIME type of files in this format
+     */
+    private final String mMimeType;
+
+    /**
+     * Extension of file names in this format, including the dot
+     */
+    private final String mExtension;
+
+    CatalogFormat(String mimeType, String extension) {
+        mMimeType = mimeType;
+        mExtension = extension;
+    }
+
+    /**
+     * Return the MIME type of files in this format.
+     */
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    /**
+     * Return the extension of file names in this format, including the dot.
+     */
+    public String getExtension() {
+        return mExtension;
+    }
+
+    /**
+     * Guess the format of a file from its MIME type or name. Anything that doesn't look like
+     * JSON is read as CSV, as spreadsheets often export CSV as text/plain or
+     * application/octet-stream.
+     *
+     * @param mimeType of the file, or null if unknown
+     * @param name     of the file, or null if unknown
+     */
+    public static CatalogFormat guess(String mimeType, String name) {
+        if (mimeType != null && mimeType.contains("json")) {
+            return JSON;
+        }
+        if (name != null) {
+            String lowerName = name.toLowerCase(Locale.US);
+            if (lowerName.endsWith(".json") || lowerName.endsWith(".jsonl")) {
+                return JSON;
+            }
+        }
+        return CSV;
+    }
+}
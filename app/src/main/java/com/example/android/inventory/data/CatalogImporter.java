@@ -0,0 +1,325 @@
+package com.example.android.inventory.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.example.android.inventory.core.CatalogRows;
+import com.example.android.inventory.core.CsvReader;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Imports products from a CSV or JSON file, reading one product at a time so files of any size
+ * can be imported with bounded memory. Products are inserted with
+ * {@link InventoryContract#METHOD_INSERT_PRODUCTS} in chunks of {@link #CHUNK_SIZE}, each in its
+ * own transaction.
+ * <p>
+ * Every product is checked with the inventory-core {@link ProductRules}, as
+ * {@link InventoryProvider#insert} does, before it's sent. Products that don't pass are skipped and reported in the {@link Result}, instead of
+ * making the whole chunk fail, and so are products whose ISBN another product already has.
+ */
+public final class CatalogImporter {
+
+    /**
+     * Number of products inserted per transaction
+     */
+    public static final int CHUNK_SIZE = 500;
+
+    /**
+     * Number of rejected products whose reason is kept in the result. Only the count is kept for
+     * the others, so a file full of bad rows can't use up all memory.
+     */
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+
+    /**
+     * Encoding of the imported files
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Listener notified after every chunk has been inserted, on the importing thread.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called after a chunk of products has been inserted.
+         *
+         * @param rowsRead     number of products read from the file so far
+         * @param rowsImported number of products inserted so far
+         */
+        void onProgress(int rowsRead, int rowsImported);
+    }
+
+    /**
+     * A product of the imported file that wasn't imported.
+     */
+    public static final class Rejection {
+
+        /**
+         * Line of a CSV file, or position in a JSON file counting from 1, of the product
+         */
+        public final int mRow;
+
+        /**
+         * Why the product was rejected
+         */
+        public final String mReason;
+
+        Rejection(int row, String reason) {
+            mRow = row;
+            mReason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return mRow + ": " + mReason;
+        }
+    }
+
+    /**
+     * Outcome of an import.
+     */
+    public static final class Result {
+
+        /**
+         * Number of products read from the file, and inserted into the catalogue
+         */
+        public final int mRowsRead;
+        public final int mRowsImported;
+
+        /**
+         * Number of products rejected, and the reasons for the first
+         * {@link #MAX_REPORTED_REJECTIONS} of them
+         */
+        public final int mRowsRejected;
+        public final List<Rejection> mRejections;
+
+        Result(int rowsRead, int rowsImported, int rowsRejected, List<Rejection> rejections) {
+            mRowsRead = rowsRead;
+            mRowsImported = rowsImported;
+            mRowsRejected = rowsRejected;
+            mRejections = Collections.unmodifiableList(rejections);
+        }
+    }
+
+    /**
+     * Resolver the products are inserted through
+     */
+    private final ContentResolver mResolver;
+
+    /**
+     * Listener notified of the progress, or null
+     */
+    private final ProgressListener mListener;
+
+    /**
+     * Products read but not inserted yet
+     */
+    private final ArrayList<ContentValues> mChunk = new ArrayList<>(CHUNK_SIZE);
+
+    /**
+     * Position in the file of each product of {@link #mChunk}
+     */
+    private final int[] mChunkPositions = new int[CHUNK_SIZE];
+
+    /**
+     * Rejected products whose reason is reported
+     */
+    private final ArrayList<Rejection> mRejections = new ArrayList<>();
+
+    private int mRowsRead;
+    private int mRowsImported;
+    private int mRowsRejected;
+
+    /**
+     * Constructs a new {@link CatalogImporter}.
+     *
+     * @param resolver to insert the products through
+     * @param listener notified of the progress, or null
+     */
+    public CatalogImporter(ContentResolver resolver, ProgressListener listener) {
+        mResolver = resolver;
+        mListener = listener;
+    }
+
+    /**
+     * Import the products of the given file. Chunks inserted before a read error stay inserted.
+     *
+     * @param in     UTF-8 encoded file, closed once the import is done
+     * @param format of the file
+     * @throws IOException if the file can't be read, or isn't valid CSV or JSON
+     */
+    public Result importFrom(InputStream in, CatalogFormat format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        try {
+            if (format == CatalogFormat.JSON) {
+                readJson(reader);
+            } else {
+                readCsv(reader);
+            }
+            flushChunk();
+        } finally {
+            reader.close();
+        }
+        return new Result(mRowsRead, mRowsImported, mRowsRejected, mRejections);
+    }
+
+    /**
+     * Read a CSV file whose first record names the columns. Unknown columns are ignored.
+     */
+    private void readCsv(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            return;
+        }
+
+        // Find where each product column is, ignoring a byte order mark and letter case
+        int[] positions = CatalogRows.mapHeader(header);
+        if (positions[0] == -1) {
+            throw new IOException("CSV file requires a " + ProductEntry.COLUMN_NAME + " column");
+        }
+
+        String[] row = new String[CatalogFormat.COLUMNS.length];
+        List<String> record;
+        while ((record = csv.readRecord()) != null) {
+            CatalogRows.readRecord(record, positions, row);
+            addRow(csv.getRecordLine(), row);
+        }
+    }
+
+    /**
+     * Read a JSON array of product objects, or a sequence of product objects such as one per line.
+     * Unknown names are ignored.
+     */
+    private void readJson(BufferedReader reader) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        // Lenient, so a sequence of top level objects (JSON Lines) is accepted too
+        json.setLenient(true);
+        if (json.peek() == JsonToken.END_DOCUMENT) {
+            return;
+        }
+        boolean array = json.peek() == JsonToken.BEGIN_ARRAY;
+        if (array) {
+            json.beginArray();
+        }
+
+        String[] row = new String[CatalogFormat.COLUMNS.length];
+        int position = 0;
+        while (array ? json.hasNext() : json.peek() != JsonToken.END_DOCUMENT) {
+            position++;
+            for (int i = 0; i < row.length; i++) {
+                row[i] = null;
+            }
+            String error = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                int column = CatalogRows.indexOfColumn(name);
+                if (column < 0) {
+                    json.skipValue();
+                    continue;
+                }
+                switch (json.peek()) {
+                    case NULL:
+                        json.nextNull();
+                        break;
+                    case STRING:
+                    case NUMBER:
+                        row[column] = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                        error = "Unsupported value for " + name;
+                }
+            }
+            json.endObject();
+            if (error != null) {
+                mRowsRead++;
+                reject(position, error);
+            } else {
+                addRow(position, row);
+            }
+        }
+        if (array) {
+            json.endArray();
+        }
+    }
+
+    /**
+     * Check a product read from the file, and queue it for insertion if it's valid.
+     *
+     * @param position of the product in the file, for the rejection reason
+     * @param row      values in the order of {@link CatalogFormat#COLUMNS}
+     */
+    private void addRow(int position, String[] row) {
+        mRowsRead++;
+        Product product;
+        try {
+            product = CatalogRows.toProduct(row);
+        } catch (IllegalArgumentException e) {
+            reject(position, e.getMessage());
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_NAME, product.mName);
+        values.put(ProductEntry.COLUMN_AUTHOR, product.mAuthor);
+        values.put(ProductEntry.COLUMN_SUPP_NAME, product.mSupplierName);
+        values.put(ProductEntry.COLUMN_SUPP_PHONE, product.mSupplierPhone);
+        values.put(ProductEntry.COLUMN_PRICE, product.mPrice);
+        values.put(ProductEntry.COLUMN_QUANTITY, product.mQuantity);
+        values.put(ProductEntry.COLUMN_REORDER_THRESHOLD, product.mReorderThreshold);
+        values.put(ProductEntry.COLUMN_ISBN, product.mIsbn);
+        mChunkPositions[mChunk.size()] = position;
+        mChunk.add(values);
+        if (mChunk.size() == CHUNK_SIZE) {
+            flushChunk();
+        }
+    }
+
+    private void reject(int position, String reason) {
+        mRowsRejected++;
+        if (mRejections.size() < MAX_REPORTED_REJECTIONS) {
+            mRejections.add(new Rejection(position, reason));
+        }
+    }
+
+    /**
+     * Insert the queued products in one transaction, reject those whose ISBN was taken, and
+     * report the progress.
+     */
+    private void flushChunk() {
+        if (!mChunk.isEmpty()) {
+            Bundle extras = new Bundle();
+            extras.putParcelableArray(InventoryContract.EXTRA_PRODUCTS,
+                    mChunk.toArray(new ContentValues[mChunk.size()]));
+            Bundle result = mResolver.call(ProductEntry.CONTENT_URI, InventoryContract.METHOD_INSERT_PRODUCTS,
+                    null, extras);
+            int[] duplicates = result.getIntArray(InventoryContract.EXTRA_REJECTED_POSITIONS);
+            for (int position : duplicates) {
+                reject(mChunkPositions[position], "ISBN "
+                        + mChunk.get(position).getAsString(ProductEntry.COLUMN_ISBN)
+                        + " already belongs to another product");
+            }
+            mRowsImported += mChunk.size() - duplicates.length;
+            mChunk.clear();
+        }
+        if (mListener != null) {
+            mListener.onProgress(mRowsRead, mRowsImported);
+        }
+    }
+}
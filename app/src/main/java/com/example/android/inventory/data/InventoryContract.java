@@ -1,11 +1,22 @@
 package com.example.android.inventory.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import com.example.android.inventory.core.CatalogQuery;
+import com.example.android.inventory.core.InventorySchema.DailyStockTable;
+import com.example.android.inventory.core.InventorySchema.LocationTable;
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.StockLevelTable;
+import com.example.android.inventory.core.InventorySchema.SummaryTable;
+import com.example.android.inventory.core.InventorySchema.SupplierTable;
+
 /**
- * API Contract for the Inventory app.
+ * API Contract for the Inventory app. Table and column names come from the
+ * {@link com.example.android.inventory.core.InventorySchema} of the inventory-core module.
  */
 public final class InventoryContract {
 
@@ -29,6 +40,201 @@ public final class InventoryContract {
      */
     public static final String PATH_INVENTORY = "inventory";
 
+    /**
+     * Path (appended to the products content URI) for full-text searches of the inventory.
+     * For instance, content://com.example.android.inventory/inventory/search/rowling
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path (appended to the content URI of a single product) for changing its quantity by a
+     * relative amount. For instance, content://com.example.android.inventory/inventory/3/adjust?delta=-1
+     */
+    public static final String PATH_ADJUST = "adjust";
+
+    /**
+     * Path (appended to the content URI of a single product) for the history of its stock
+     * movements. For instance, content://com.example.android.inventory/inventory/3/movements
+     */
+    public static final String PATH_MOVEMENTS = "movements";
+
+    /**
+     * Path (appended to the products content URI) for the products at or below their reorder
+     * threshold. For instance, content://com.example.android.inventory/inventory/low_stock
+     */
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    /**
+     * Path (appended to the content URI of a single product) for its stock movements totalled
+     * per day. For instance, content://com.example.android.inventory/inventory/3/daily
+     */
+    public static final String PATH_DAILY = "daily";
+
+    /**
+     * Path (appended to base content URI) for the list of suppliers.
+     * For instance, content://com.example.android.inventory/suppliers
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Path (appended to base content URI) for the list of locations stock is kept at.
+     * For instance, content://com.example.android.inventory/locations
+     */
+    public static final String PATH_LOCATIONS = "locations";
+
+    /**
+     * Path (appended to the content URI of a single product or location) for its stock levels.
+     * For instance, content://com.example.android.inventory/inventory/3/stock lists where product
+     * 3 is kept, and content://com.example.android.inventory/locations/2/stock what's kept at
+     * location 2
+     */
+    public static final String PATH_STOCK = "stock";
+
+    /**
+     * Path (appended to the content URI of a single product) for moving its stock from one
+     * location to another.
+     * For instance, content://com.example.android.inventory/inventory/3/transfer?from=1&to=2&count=5
+     */
+    public static final String PATH_TRANSFER = "transfer";
+
+    /**
+     * Path (appended to the products content URI) for the product with a given ISBN or barcode.
+     * For instance, content://com.example.android.inventory/inventory/isbn/9780747532699, which
+     * can be followed by {@link #PATH_ADJUST} to change its quantity
+     */
+    public static final String PATH_ISBN = "isbn";
+
+    /**
+     * Method for {@link ContentResolver#call} returning the counters of the provider's product
+     * cache, under {@link #EXTRA_CACHE_HITS}, {@link #EXTRA_CACHE_MISSES} and
+     * {@link #EXTRA_CACHE_EVICTIONS}.
+     */
+    public static final String METHOD_GET_CACHE_STATS = "get_cache_stats";
+
+    /**
+     * Number of single product queries answered from the cache, as an int
+     */
+    public static final String EXTRA_CACHE_HITS = "cache_hits";
+
+    /**
+     * Number of single product queries that had to read the database, as an int
+     */
+    public static final String EXTRA_CACHE_MISSES = "cache_misses";
+
+    /**
+     * Number of products dropped from the cache to bound its memory use, as an int
+     */
+    public static final String EXTRA_CACHE_EVICTIONS = "cache_evictions";
+
+    /**
+     * Method for {@link ContentResolver#call} returning the inventory totals kept in the summary
+     * tables. The result holds a long for each column of {@link SummaryEntry} under the column's
+     * name, and the totals per supplier under the SummaryEntry.EXTRA_SUPPLIER keys.
+     */
+    public static final String METHOD_GET_SUMMARY = "get_summary";
+
+    /**
+     * Method for {@link ContentResolver#call} returning the provider's metrics. For every
+     * operation called on a kind of URI since the metrics were reset, the result holds a name
+     * such as "query inventory/#" under {@link #EXTRA_METRICS_OPERATIONS}, and its counters at
+     * the same position of the other EXTRA_METRICS long arrays. Cursor window fills and change
+     * notifications are counted per kind of URI, named under {@link #EXTRA_METRICS_URIS}.
+     */
+    public static final String METHOD_GET_METRICS = "get_metrics";
+
+    /**
+     * Method for {@link ContentResolver#call} starting to record metrics if its argument is
+     * "true", or stopping otherwise. Metrics are off until they're started.
+     */
+    public static final String METHOD_SET_METRICS_ENABLED = "set_metrics_enabled";
+
+    /**
+     * Method for {@link ContentResolver#call} setting every metric back to 0
+     */
+    public static final String METHOD_RESET_METRICS = "reset_metrics";
+
+    /**
+     * Whether metrics are being recorded, as a boolean
+     */
+    public static final String EXTRA_METRICS_ENABLED = "metrics_enabled";
+
+    /**
+     * Operation and kind of URI of each entry, as a String array
+     */
+    public static final String EXTRA_METRICS_OPERATIONS = "metrics_operations";
+
+    /**
+     * Number of calls, and of calls that threw, per entry, as long arrays
+     */
+    public static final String EXTRA_METRICS_CALLS = "metrics_calls";
+    public static final String EXTRA_METRICS_ERRORS = "metrics_errors";
+
+    /**
+     * Number of rows returned or written per entry, as a long array
+     */
+    public static final String EXTRA_METRICS_ROWS = "metrics_rows";
+
+    /**
+     * Mean, median, 95th and 99th percentile, and longest latency per entry in microseconds, as
+     * long arrays. Percentiles are rounded up to the next power of two.
+     */
+    public static final String EXTRA_METRICS_MEAN_MICROS = "metrics_mean_micros";
+    public static final String EXTRA_METRICS_P50_MICROS = "metrics_p50_micros";
+    public static final String EXTRA_METRICS_P95_MICROS = "metrics_p95_micros";
+    public static final String EXTRA_METRICS_P99_MICROS = "metrics_p99_micros";
+    public static final String EXTRA_METRICS_MAX_MICROS = "metrics_max_micros";
+
+    /**
+     * Name of each kind of URI, as a String array
+     */
+    public static final String EXTRA_METRICS_URIS = "metrics_uris";
+
+    /**
+     * Number of cursor windows filled, and change notifications sent, per kind of URI, as long
+     * arrays
+     */
+    public static final String EXTRA_METRICS_WINDOW_FILLS = "metrics_window_fills";
+    public static final String EXTRA_METRICS_NOTIFICATIONS = "metrics_notifications";
+
+    /**
+     * Method for {@link ContentResolver#call} syncing the products with the sync server whose
+     * base URL is its argument, sending and receiving only the products changed since the last
+     * sync. It waits on the network, so call it off the main thread. The result holds
+     * {@link #EXTRA_SYNC_PUSHED} and {@link #EXTRA_SYNC_PULLED}, or {@link #EXTRA_SYNC_ERROR} if
+     * the server couldn't be reached, sent something unreadable or the database failed; the
+     * batches synced before an error are kept.
+     */
+    public static final String METHOD_SYNC = "sync";
+
+    /**
+     * Number of changed products sent to, and received from, the sync server, as ints
+     */
+    public static final String EXTRA_SYNC_PUSHED = "sync_pushed";
+    public static final String EXTRA_SYNC_PULLED = "sync_pulled";
+
+    /**
+     * Why the sync failed, as a String
+     */
+    public static final String EXTRA_SYNC_ERROR = "sync_error";
+
+    /**
+     * Method for {@link ContentResolver#call} inserting the products given as a ContentValues
+     * array under {@link #EXTRA_PRODUCTS}, as {@link ContentResolver#bulkInsert} does, but also
+     * telling which were left out because another product has their ISBN. The result holds
+     * their positions in the array, in increasing order, under {@link #EXTRA_REJECTED_POSITIONS}.
+     */
+    public static final String METHOD_INSERT_PRODUCTS = "insert_products";
+
+    /**
+     * Products to insert, as a ContentValues array
+     */
+    public static final String EXTRA_PRODUCTS = "products";
+
+    /**
+     * Positions of the products whose ISBN was taken, as an int array
+     */
+    public static final String EXTRA_REJECTED_POSITIONS = "rejected_positions";
+
     // To prevent someone from accidentally instantiating the contract class,
     // give it an empty constructor.
     private InventoryContract() {
@@ -45,6 +251,19 @@ public final class InventoryContract {
          */
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
 
+        /**
+         * The content URI to search the product data in the provider. Append the search text as
+         * the last path segment; products matching it in their name, author or supplier name are
+         * returned best match first.
+         */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI listing the products whose {@link #COLUMN_QUANTITY} is at or below
+         * their {@link #COLUMN_REORDER_THRESHOLD}, in {@link #_ID} order.
+         */
+        public static final Uri CONTENT_LOW_STOCK_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of products.
          */
@@ -57,10 +276,105 @@ public final class InventoryContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
 
+        /**
+         * Query parameter for the {@link #CONTENT_URI} limiting the number of products returned.
+         * The list can be paged with {@link #QUERY_PARAMETER_AFTER_ID}.
+         */
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Query parameter for the {@link #CONTENT_URI} returning only the products after the
+         * one with the given {@link #_ID} in the order of the query, i.e. the page after the last
+         * product shown. Unless the products are sorted by ID, the sort key of that product must
+         * be given with {@link #QUERY_PARAMETER_AFTER_KEY}.
+         */
+        public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+
+        /**
+         * Query parameter for the {@link #CONTENT_URI} holding the value of the sort column of
+         * the product given by {@link #QUERY_PARAMETER_AFTER_ID}. Left out when that value is
+         * null, e.g. for a product without an author.
+         */
+        public static final String QUERY_PARAMETER_AFTER_KEY = "after_key";
+
+        /**
+         * Query parameter for the {@link #CONTENT_URI} choosing the order of the products, one
+         * of the SORT constants. Every order is served by an index, and products with the same
+         * sort key come in {@link #_ID} order. Defaults to {@link #SORT_ID}.
+         * <p>
+         * The provider only accepts a sortOrder argument that is the ORDER BY clause of one of
+         * these orders, e.g. "_id ASC" or "name ASC, _id ASC", as any other order would have
+         * SQLite sort the whole table.
+         */
+        public static final String QUERY_PARAMETER_SORT = "sort";
+
+        /**
+         * Possible values of {@link #QUERY_PARAMETER_SORT}, all ascending
+         */
+        public static final String SORT_ID = CatalogQuery.SORT_ID;
+        public static final String SORT_NAME = CatalogQuery.SORT_NAME;
+        public static final String SORT_AUTHOR = CatalogQuery.SORT_AUTHOR;
+        public static final String SORT_PRICE = CatalogQuery.SORT_PRICE;
+        public static final String SORT_QUANTITY = CatalogQuery.SORT_QUANTITY;
+
+        /**
+         * Query parameter for the {@link #CONTENT_URI} returning only the products in stock when
+         * it's "true".
+         */
+        public static final String QUERY_PARAMETER_IN_STOCK = "in_stock";
+
+        /**
+         * Query parameters for the {@link #CONTENT_URI} returning only the products whose price
+         * is at least, or at most, the given one. Both bounds are included.
+         */
+        public static final String QUERY_PARAMETER_MIN_PRICE = "min_price";
+        public static final String QUERY_PARAMETER_MAX_PRICE = "max_price";
+
+        /**
+         * Query parameter of the URI passed to content observers when a single product has been
+         * updated, holding the comma separated names of the columns that were changed. For
+         * instance, content://com.example.android.inventory/inventory/3?changed=quantity
+         * <p>
+         * It's empty when only the stock levels of the product changed, by a transfer between
+         * locations. A product URI notified without it means the product has been inserted or
+         * deleted, and a notification for {@link #CONTENT_URI} means any number of products may
+         * have changed.
+         */
+        public static final String QUERY_PARAMETER_CHANGED_COLUMNS = "changed";
+
+        /**
+         * Query parameter for the adjust URI of a product, holding the amount to add to its
+         * quantity (negative to remove stock). The amount can also be passed as a content value
+         * of the same name, e.g. for a {@link android.content.ContentProviderOperation}.
+         */
+        public static final String QUERY_PARAMETER_DELTA = "delta";
+
+        /**
+         * Query parameter for the URI of a single product passed to {@link ContentResolver#update},
+         * holding the {@link #COLUMN_ROW_VERSION} the values were edited from. If the product has
+         * changed since, the update writes nothing and throws a {@link ProductConflictException}
+         * instead of overwriting that change.
+         */
+        public static final String QUERY_PARAMETER_EXPECTED_ROW_VERSION = "expected_row_version";
+
+        /**
+         * Optional query parameter (or content value) for the adjust URI of a product, holding
+         * the {@link MovementEntry#COLUMN_REASON} recorded for the change. Defaults to
+         * {@link MovementEntry#REASON_SALE} when stock is removed and
+         * {@link MovementEntry#REASON_RESTOCK} when it's added.
+         */
+        public static final String QUERY_PARAMETER_REASON = "reason";
+
         /**
          * Name of database table for inventory
          */
-        public final static String TABLE_NAME = "inventory";
+        public final static String TABLE_NAME = ProductTable.TABLE_NAME;
+
+        /**
+         * Name of the full-text search table mirroring the name, author and supplier name of
+         * every product. Its docid is the {@link #_ID} of the product.
+         */
+        public final static String SEARCH_TABLE_NAME = ProductTable.SEARCH_TABLE_NAME;
 
         /**
          * Unique ID number for the product (only for use in the database table).
@@ -74,42 +388,525 @@ public final class InventoryContract {
          * <p>
          * Type: TEXT
          */
-        public final static String COLUMN_NAME = "name";
+        public final static String COLUMN_NAME = ProductTable.COLUMN_NAME;
 
         /**
          * Author of the product.
          * <p>
          * Type: TEXT
          */
-        public final static String COLUMN_AUTHOR = "author";
+        public final static String COLUMN_AUTHOR = ProductTable.COLUMN_AUTHOR;
 
         /**
          * Supplier's of the product name.
          * <p>
          * Type: TEXT
+         * <p>
+         * The supplier is stored once in {@link SupplierEntry} and read through the product, so
+         * the column can be read and written as before, but a selection can't refer to it: select
+         * by {@link #COLUMN_SUPPLIER_ID} instead. A product's name and phone are written together;
+         * when an update only gives one of them, it must only update a single product.
          */
-        public final static String COLUMN_SUPP_NAME = "supplier_name";
+        public final static String COLUMN_SUPP_NAME = ProductTable.COLUMN_SUPP_NAME;
 
         /**
          * Supplier's of the product phone.
          * <p>
          * Type: TEXT
+         * <p>
+         * Stored in {@link SupplierEntry} like {@link #COLUMN_SUPP_NAME}.
          */
-        public final static String COLUMN_SUPP_PHONE = "supplier_phone";
+        public final static String COLUMN_SUPP_PHONE = ProductTable.COLUMN_SUPP_PHONE;
+
+        /**
+         * ID of the supplier of the product in {@link SupplierEntry}, null if it has none. Set by
+         * the provider from {@link #COLUMN_SUPP_NAME} and {@link #COLUMN_SUPP_PHONE}.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SUPPLIER_ID = ProductTable.COLUMN_SUPPLIER_ID;
 
         /**
          * Price of the product.
          * <p>
          * Type: INTEGER
          */
-        public final static String COLUMN_PRICE = "price";
+        public final static String COLUMN_PRICE = ProductTable.COLUMN_PRICE;
 
         /**
          * Quantity of the product.
          * <p>
          * Type: INTEGER
          */
-        public final static String COLUMN_QUANTITY = "quantity";
+        public final static String COLUMN_QUANTITY = ProductTable.COLUMN_QUANTITY;
+
+        /**
+         * Quantity at or below which the product should be reordered. Defaults to 0, so a
+         * product is low on stock once it's sold out.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_REORDER_THRESHOLD = ProductTable.COLUMN_REORDER_THRESHOLD;
+
+        /**
+         * Number of times the product was changed, here or by a sync. Maintained by the
+         * database, so it can't be written. Read-only.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ROW_VERSION = ProductTable.COLUMN_ROW_VERSION;
+
+        /**
+         * ISBN or other barcode of the product, or null if it has none. Unique among the
+         * products. Written without hyphens or spaces, which the provider strips; anything
+         * else but 8 to 14 digits, or an ISBN-10 ending in X, is rejected.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_ISBN = ProductTable.COLUMN_ISBN;
+
+        /**
+         * Build the URI that changes the quantity of the given product by delta when passed to
+         * {@link ContentResolver#update}. The change is applied in a single statement and only if
+         * the quantity stays greater than or equal to 0, so the update returns 0 rows otherwise.
+         *
+         * @param id    of the product
+         * @param delta amount to add to the quantity, negative to remove stock
+         */
+        public static Uri buildAdjustUri(long id, int delta) {
+            return ContentUris.withAppendedId(CONTENT_URI, id).buildUpon()
+                    .appendPath(PATH_ADJUST)
+                    .appendQueryParameter(QUERY_PARAMETER_DELTA, String.valueOf(delta))
+                    .build();
+        }
+
+        /**
+         * Build the URI that reads the product with the given ISBN or barcode, found by a unique
+         * index. The cursor has no row if no product has it.
+         */
+        public static Uri buildIsbnUri(String isbn) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_ISBN)
+                    .appendPath(isbn)
+                    .build();
+        }
+
+        /**
+         * Build the URI that changes the quantity of the product with the given ISBN or barcode
+         * by delta when passed to {@link ContentResolver#update}, as a scan at the till does. The
+         * product is found and changed in a single statement, like {@link #buildAdjustUri}, and
+         * the update returns 0 rows if no product has the ISBN or it doesn't have enough stock.
+         *
+         * @param isbn  of the product
+         * @param delta amount to add to the quantity, negative to remove stock
+         */
+        public static Uri buildIsbnAdjustUri(String isbn, int delta) {
+            return buildIsbnUri(isbn).buildUpon()
+                    .appendPath(PATH_ADJUST)
+                    .appendQueryParameter(QUERY_PARAMETER_DELTA, String.valueOf(delta))
+                    .build();
+        }
+
+        /**
+         * Build the URI that updates the given product when passed to
+         * {@link ContentResolver#update}, only if it's still at the given row version.
+         *
+         * @param id         of the product
+         * @param rowVersion {@link #COLUMN_ROW_VERSION} the new values were edited from
+         */
+        public static Uri buildExpectedVersionUri(long id, long rowVersion) {
+            return ContentUris.withAppendedId(CONTENT_URI, id).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_EXPECTED_ROW_VERSION, String.valueOf(rowVersion))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the suppliers table. Each entry is one
+     * distinct supplier name and phone, shared by all the products it supplies. Suppliers are
+     * added by the provider as products are written with them, and never changed.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /**
+         * The content URI listing the suppliers, by name then phone. The list is read-only.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * Name of database table for suppliers
+         */
+        public final static String TABLE_NAME = SupplierTable.TABLE_NAME;
+
+        /**
+         * Name of the supplier, empty if unknown.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_NAME = SupplierTable.COLUMN_NAME;
+
+        /**
+         * Phone of the supplier, empty if unknown.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_PHONE = SupplierTable.COLUMN_PHONE;
+    }
+
+    /**
+     * Inner class that defines constant values for the locations table. Each entry is a place
+     * stock is kept at. Every database starts with the {@link #DEFAULT_ID} location, which holds
+     * the stock of every product until it's transferred elsewhere. Locations can be inserted,
+     * but not changed or deleted.
+     */
+    public static final class LocationEntry implements BaseColumns {
+
+        /**
+         * The content URI listing the locations, by name, and inserting new ones.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_LOCATIONS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of locations.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_LOCATIONS;
+
+        /**
+         * Name of database table for locations
+         */
+        public final static String TABLE_NAME = LocationTable.TABLE_NAME;
+
+        /**
+         * Name of the location, unique.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_NAME = LocationTable.COLUMN_NAME;
+
+        /**
+         * {@link #_ID} of the location every change to the quantity of a product is made at,
+         * unless it's a transfer.
+         */
+        public static final long DEFAULT_ID = LocationTable.DEFAULT_ID;
+
+        /**
+         * Build the URI listing the stock levels of the products kept at the given location, in
+         * the order of their IDs. Append {@link ProductEntry#QUERY_PARAMETER_AFTER_ID} and
+         * {@link ProductEntry#QUERY_PARAMETER_LIMIT} to read them a page at a time.
+         *
+         * @param locationId of the location
+         */
+        public static Uri buildLocationStockUri(long locationId) {
+            return ContentUris.withAppendedId(CONTENT_URI, locationId).buildUpon()
+                    .appendPath(PATH_STOCK)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the stock levels table, holding the quantity
+     * of every product at every location it's kept at. The levels of a product add up to its
+     * {@link ProductEntry#COLUMN_QUANTITY}, which stays the number on hand: quantity changes are
+     * made at {@link LocationEntry#DEFAULT_ID} by the database, and transfers move stock between
+     * levels without changing it. Levels are local to the device; only the total on hand is
+     * synced.
+     */
+    public static final class StockLevelEntry {
+
+        /**
+         * The MIME type of the stock URIs of a product or a location, for a list of levels.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK;
+
+        /**
+         * Name of database table for stock levels
+         */
+        public final static String TABLE_NAME = StockLevelTable.TABLE_NAME;
+
+        /**
+         * {@link ProductEntry#_ID} of the product and {@link LocationEntry#_ID} of the location.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = StockLevelTable.COLUMN_PRODUCT_ID;
+        public final static String COLUMN_LOCATION_ID = StockLevelTable.COLUMN_LOCATION_ID;
+
+        /**
+         * Number of copies of the product at the location. Only the level at
+         * {@link LocationEntry#DEFAULT_ID} can be negative, when stock kept elsewhere was sold
+         * without being transferred first.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_QUANTITY = StockLevelTable.COLUMN_QUANTITY;
+
+        /**
+         * Name of the location, only in the stock levels of a product. Read-only.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_LOCATION_NAME = "location_name";
+
+        /**
+         * Name of the product, only in the stock levels at a location. Read-only.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_PRODUCT_NAME = "product_name";
+
+        /**
+         * Query parameters (or content values) of the transfer URI: the {@link LocationEntry#_ID}
+         * to move the stock from and to, and the number of copies to move
+         */
+        public static final String QUERY_PARAMETER_FROM = "from";
+        public static final String QUERY_PARAMETER_TO = "to";
+        public static final String QUERY_PARAMETER_COUNT = "count";
+
+        /**
+         * Build the URI listing the stock levels of the given product at every location it's
+         * kept at, by location.
+         *
+         * @param productId of the product
+         */
+        public static Uri buildProductStockUri(long productId) {
+            return ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId).buildUpon()
+                    .appendPath(PATH_STOCK)
+                    .build();
+        }
+
+        /**
+         * Build the URI that moves copies of the given product from one location to another when
+         * passed to {@link ContentResolver#update}. Both levels change in one transaction, and
+         * only if the source location has that many copies, so the update returns 0 rows
+         * otherwise.
+         *
+         * @param productId      of the product
+         * @param fromLocationId location to take the copies from
+         * @param toLocationId   location to put them at
+         * @param count          number of copies to move, greater than 0
+         */
+        public static Uri buildTransferUri(long productId, long fromLocationId, long toLocationId, int count) {
+            return ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId).buildUpon()
+                    .appendPath(PATH_TRANSFER)
+                    .appendQueryParameter(QUERY_PARAMETER_FROM, String.valueOf(fromLocationId))
+                    .appendQueryParameter(QUERY_PARAMETER_TO, String.valueOf(toLocationId))
+                    .appendQueryParameter(QUERY_PARAMETER_COUNT, String.valueOf(count))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the stock movements table. Each entry records
+     * a change to the quantity of a product, written in the same transaction as the change. The
+     * table is append-only: the database rejects updates and deletes.
+     */
+    public static final class MovementEntry implements BaseColumns {
+
+        /**
+         * The MIME type of the movements URI of a product, for a list of movements.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_MOVEMENTS;
+
+        /**
+         * Name of database table for stock movements
+         */
+        public final static String TABLE_NAME = MovementTable.TABLE_NAME;
+
+        /**
+         * Unique ID number for the movement (only for use in the database table).
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * {@link ProductEntry#_ID} of the product whose quantity changed. Movements are kept
+         * after the product has been deleted.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = MovementTable.COLUMN_PRODUCT_ID;
+
+        /**
+         * Amount added to the quantity, negative when stock was removed.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELTA = MovementTable.COLUMN_DELTA;
+
+        /**
+         * Why the quantity changed, one of the REASON constants or any other text given with
+         * {@link ProductEntry#QUERY_PARAMETER_REASON}.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_REASON = MovementTable.COLUMN_REASON;
+
+        /**
+         * When the quantity changed, in milliseconds since the epoch.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TIMESTAMP = MovementTable.COLUMN_TIMESTAMP;
+
+        /**
+         * Possible values for the reason of a movement.
+         */
+        public static final String REASON_INITIAL = MovementTable.REASON_INITIAL;
+        public static final String REASON_SALE = MovementTable.REASON_SALE;
+        public static final String REASON_RESTOCK = MovementTable.REASON_RESTOCK;
+        public static final String REASON_CORRECTION = MovementTable.REASON_CORRECTION;
+
+        /**
+         * Build the URI listing the movements of the given product, latest first. Append
+         * {@link ProductEntry#QUERY_PARAMETER_LIMIT} to only get the latest ones.
+         *
+         * @param productId of the product
+         */
+        public static Uri buildProductMovementsUri(long productId) {
+            return ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId).buildUpon()
+                    .appendPath(PATH_MOVEMENTS)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the daily stock table, which totals the stock
+     * movements of every product per day. It's kept up to date by the database as movements are
+     * recorded, so reading it never scans the movements.
+     */
+    public static final class DailyStockEntry {
+
+        /**
+         * The MIME type of the daily URI of a product, for a list of days.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DAILY;
+
+        /**
+         * Name of database table for daily stock totals
+         */
+        public final static String TABLE_NAME = DailyStockTable.TABLE_NAME;
+
+        /**
+         * {@link ProductEntry#_ID} of the product.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_ID = DailyStockTable.COLUMN_PRODUCT_ID;
+
+        /**
+         * Day of the movements, as YYYY-MM-DD in the local time of the device when they were
+         * recorded.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_DAY = DailyStockTable.COLUMN_DAY;
+
+        /**
+         * Total stock added on the day.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS_IN = DailyStockTable.COLUMN_UNITS_IN;
 
+        /**
+         * Total stock removed on the day, as a positive number.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS_OUT = DailyStockTable.COLUMN_UNITS_OUT;
+
+        /**
+         * Number of movements on the day.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_MOVEMENT_COUNT = DailyStockTable.COLUMN_MOVEMENT_COUNT;
+
+        /**
+         * Build the URI listing the daily totals of the given product, latest day first. Append
+         * {@link ProductEntry#QUERY_PARAMETER_LIMIT} to only get the latest days.
+         *
+         * @param productId of the product
+         */
+        public static Uri buildProductDailyUri(long productId) {
+            return ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId).buildUpon()
+                    .appendPath(PATH_DAILY)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the summary tables, which hold the totals of
+     * the whole inventory and of every supplier. The database keeps them up to date as products
+     * are inserted, updated and deleted, so reading them costs the same for any number of
+     * products. Read them with {@link #METHOD_GET_SUMMARY}.
+     */
+    public static final class SummaryEntry {
+
+        /**
+         * Name of the database table holding the single row of inventory totals
+         */
+        public final static String TABLE_NAME = SummaryTable.TABLE_NAME;
+
+        /**
+         * Name of the database table holding the totals of every supplier
+         */
+        public final static String SUPPLIER_TABLE_NAME = SummaryTable.SUPPLIER_TABLE_NAME;
+
+        /**
+         * Number of different products.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SKU_COUNT = SummaryTable.COLUMN_SKU_COUNT;
+
+        /**
+         * Number of books on hand, over all products.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNITS = SummaryTable.COLUMN_UNITS;
+
+        /**
+         * Worth of the stock on hand, the sum of price times quantity, in USD.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_VALUATION = SummaryTable.COLUMN_VALUATION;
+
+        /**
+         * Number of products with no books on hand. Only in the inventory totals.
+         * <p>
+         * Type: INTEGER
+         */
+        public final static String COLUMN_OUT_OF_STOCK = SummaryTable.COLUMN_OUT_OF_STOCK;
+
+        /**
+         * Name of the supplier, empty for products without one. Only in the supplier totals.
+         * <p>
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER = SummaryTable.COLUMN_SUPPLIER;
+
+        /**
+         * Keys of the supplier totals returned by {@link #METHOD_GET_SUMMARY}: the supplier names
+         * as a String array, and their {@link #COLUMN_SKU_COUNT}, {@link #COLUMN_UNITS} and
+         * {@link #COLUMN_VALUATION} as long arrays in the same order, most valuable first.
+         */
+        public static final String EXTRA_SUPPLIER_NAMES = "supplier_names";
+        public static final String EXTRA_SUPPLIER_SKU_COUNTS = "supplier_sku_counts";
+        public static final String EXTRA_SUPPLIER_UNITS = "supplier_units";
+        public static final String EXTRA_SUPPLIER_VALUATIONS = "supplier_valuations";
     }
-}
\ No newline at end of file
+}
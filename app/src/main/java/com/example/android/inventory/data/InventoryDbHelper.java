@@ -16,13 +16,19 @@
 package com.example.android.inventory.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 
-import com.example.android.inventory.data.InventoryContract.ProductEntry;
+import com.example.android.inventory.core.InventorySchema;
 
 /**
- * Database helper for Inventory app. Manages database creation and version management.
+ * Database helper for Inventory app. Manages database creation and version management, with the
+ * statements of {@link InventorySchema}, and tunes the connection for the app.
  */
 public class InventoryDbHelper extends SQLiteOpenHelper {
 
@@ -32,9 +38,46 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "products.db";
 
     /**
-     * Database version. If you change the database schema, you must increment the database version.
+     * Database version, which is the version of the inventory-core schema
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = InventorySchema.VERSION;
+
+    /**
+     * Number of pages the page cache of a connection may hold (2MB with 4KB pages)
+     */
+    private static final int CACHE_SIZE_PAGES = 512;
+
+    /**
+     * Number of pages the write-ahead log may grow to before a commit checkpoints it inline. The
+     * background checkpoint normally runs long before that, so writers don't pay for it.
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /**
+     * How long to wait after the last write before checkpointing the write-ahead log
+     */
+    private static final long CHECKPOINT_DELAY_MILLIS = 2000;
+
+    /**
+     * Handler of the background thread checkpointing the write-ahead log
+     */
+    private final Handler mCheckpointHandler;
+
+    /**
+     * Copies the pages in the write-ahead log back into the database file, without waiting for
+     * readers that are still using them
+     */
+    private final Runnable mCheckpointRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Cursor cursor = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(PASSIVE);", null);
+            try {
+                cursor.moveToFirst();
+            } finally {
+                cursor.close();
+            }
+        }
+    };
 
     /**
      * Constructs a new instance of {@link InventoryDbHelper}.
@@ -43,6 +86,68 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     public InventoryDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        // Write-ahead logging lets the catalogue keep reading while a write is in progress
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        HandlerThread checkpointThread = new HandlerThread("InventoryCheckpoint",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        checkpointThread.start();
+        mCheckpointHandler = new Handler(checkpointThread.getLooper());
+    }
+
+    /**
+     * This is called when the database connection is being configured, before it's created or
+     * upgraded. Only called from API level 16 on, see {@link #onOpen(SQLiteDatabase)}.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        configure(db);
+    }
+
+    /**
+     * This is called when the database has been opened.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        // Older platforms don't call onConfigure() or setWriteAheadLoggingEnabled()
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+            configure(db);
+        }
+        // The database may have been created before a system update brought partial indexes
+        if (!db.isReadOnly()) {
+            InventorySchema.createLowStockIndex(new AndroidSqlDatabase(db));
+        }
+    }
+
+    /**
+     * Tune the connection for the write-ahead log.
+     */
+    private static void configure(SQLiteDatabase db) {
+        // With a write-ahead log a commit is still durable against app crashes without syncing
+        // the disk on every transaction, only a power loss can roll back the last commits
+        db.execSQL("PRAGMA synchronous = NORMAL;");
+        db.execSQL("PRAGMA cache_size = " + CACHE_SIZE_PAGES + ";");
+
+        // This pragma returns the new setting, so it has to be run as a query
+        Cursor cursor = db.rawQuery("PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES + ";", null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Checkpoint the write-ahead log on a background thread once writes have settled down. Called
+     * after every committed write.
+     */
+    void scheduleCheckpoint() {
+        mCheckpointHandler.removeCallbacks(mCheckpointRunnable);
+        mCheckpointHandler.postDelayed(mCheckpointRunnable, CHECKPOINT_DELAY_MILLIS);
     }
 
     /**
@@ -50,25 +155,15 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the inventory table
-        String SQL_CREATE_INVENTORY_TABLE = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
-                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + ProductEntry.COLUMN_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_AUTHOR + " TEXT, "
-                + ProductEntry.COLUMN_SUPP_NAME + " TEXT, "
-                + ProductEntry.COLUMN_SUPP_PHONE + " TEXT, "
-                + ProductEntry.COLUMN_PRICE + " INTEGER NOT NULL DEFAULT 0,"
-                + ProductEntry.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0);";
-
-        // Execute the SQL statement
-        db.execSQL(SQL_CREATE_INVENTORY_TABLE);
+        InventorySchema.create(new AndroidSqlDatabase(db));
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. Every migration step between the old
+     * and the new version is run in order, inside the transaction opened by SQLiteOpenHelper.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        InventorySchema.upgrade(new AndroidSqlDatabase(db), oldVersion, newVersion);
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,54 @@
 package com.example.android.inventory.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.database.AbstractWindowedCursor;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.text.TextUtils;
 import android.util.Log;
 
+import com.example.android.inventory.core.CatalogQuery;
+import com.example.android.inventory.core.HttpSyncTransport;
+import com.example.android.inventory.core.InventoryRepository;
+import com.example.android.inventory.core.InventorySchema;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+import com.example.android.inventory.core.StockChange;
+import com.example.android.inventory.core.SyncEngine;
+import com.example.android.inventory.data.InventoryContract.DailyStockEntry;
+import com.example.android.inventory.data.InventoryContract.LocationEntry;
+import com.example.android.inventory.data.InventoryContract.MovementEntry;
+import com.example.android.inventory.data.InventoryContract.StockLevelEntry;
+import com.example.android.inventory.data.InventoryContract.SummaryEntry;
+import com.example.android.inventory.data.InventoryContract.SupplierEntry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
- * {@link ContentProvider} for Inventory app.
+ * {@link ContentProvider} for Inventory app. Products are written through the
+ * {@link InventoryRepository} of the inventory-core module, which applies the same rules on a
+ * device and on a JVM; the provider adds what's specific to Android on top: URIs, cursors, the
+ * product cache, change notifications and metrics.
  */
 public class InventoryProvider extends ContentProvider {
 
@@ -26,6 +64,48 @@ public class InventoryProvider extends ContentProvider {
      * URI matcher code for the content URI for a single product in the products table
      */
     private static final int PRODUCT_ID = 101;
+    /**
+     * URI matcher code for the content URI for a full-text search of the products table
+     */
+    private static final int PRODUCT_SEARCH = 102;
+    /**
+     * URI matcher code for the content URI adjusting the quantity of a single product
+     */
+    private static final int PRODUCT_ADJUST = 103;
+    /**
+     * URI matcher codes for the content URIs for the stock movements of a single product, one by
+     * one and totalled per day
+     */
+    private static final int PRODUCT_MOVEMENTS = 104;
+    private static final int PRODUCT_DAILY = 105;
+    /**
+     * URI matcher code for the content URI for the products at or below their reorder threshold
+     */
+    private static final int LOW_STOCK = 106;
+    /**
+     * URI matcher code for the content URI for the list of suppliers
+     */
+    private static final int SUPPLIERS = 107;
+    /**
+     * URI matcher codes for the content URIs for the list of locations, and for the stock levels
+     * at a single location
+     */
+    private static final int LOCATIONS = 108;
+    private static final int LOCATION_STOCK = 109;
+    /**
+     * URI matcher codes for the content URIs for the stock levels of a single product, and for
+     * moving its stock between locations
+     */
+    private static final int PRODUCT_STOCK = 110;
+    private static final int PRODUCT_TRANSFER = 111;
+
+    /**
+     * URI matcher codes for the product with a given ISBN, and for changing its quantity, which
+     * is what a barcode scan at the till does
+     */
+    private static final int PRODUCT_ISBN = 112;
+    private static final int ISBN_ADJUST = 113;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -41,6 +121,142 @@ public class InventoryProvider extends ContentProvider {
 
         sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY, PRODUCTS);
         sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", PRODUCT_ID);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH + "/*", PRODUCT_SEARCH);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_ADJUST, PRODUCT_ADJUST);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_MOVEMENTS, PRODUCT_MOVEMENTS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_DAILY, PRODUCT_DAILY);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOW_STOCK, LOW_STOCK);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_LOCATIONS, LOCATIONS);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_LOCATIONS + "/#/" + InventoryContract.PATH_STOCK, LOCATION_STOCK);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_STOCK, PRODUCT_STOCK);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_TRANSFER, PRODUCT_TRANSFER);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY,
+                InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_ISBN + "/*", PRODUCT_ISBN);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/"
+                + InventoryContract.PATH_ISBN + "/*/" + InventoryContract.PATH_ADJUST, ISBN_ADJUST);
+    }
+
+    /**
+     * Names of the kinds of URI the metrics are kept for, in the order of the URI matcher codes.
+     * The first one counts the URIs that don't match.
+     */
+    private static final String[] METRICS_URI_NAMES = {
+            "unknown",
+            InventoryContract.PATH_INVENTORY,
+            InventoryContract.PATH_INVENTORY + "/#",
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH + "/*",
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_ADJUST,
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_MOVEMENTS,
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_DAILY,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_LOW_STOCK,
+            InventoryContract.PATH_SUPPLIERS,
+            InventoryContract.PATH_LOCATIONS,
+            InventoryContract.PATH_LOCATIONS + "/#/" + InventoryContract.PATH_STOCK,
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_STOCK,
+            InventoryContract.PATH_INVENTORY + "/#/" + InventoryContract.PATH_TRANSFER,
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_ISBN + "/*",
+            InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_ISBN + "/*/" + InventoryContract.PATH_ADJUST};
+
+    /**
+     * Tables joined by a full-text search: the products and their search table entries
+     */
+    private static final String SEARCH_TABLES = InventoryContract.ProductEntry.TABLE_NAME + " JOIN "
+            + InventoryContract.ProductEntry.SEARCH_TABLE_NAME + " ON "
+            + InventoryContract.ProductEntry.TABLE_NAME + "." + InventoryContract.ProductEntry._ID + " = "
+            + InventoryContract.ProductEntry.SEARCH_TABLE_NAME + ".docid";
+
+    /**
+     * Default order of search results: products with the most matching terms come first.
+     * offsets() lists every match, so a longer result means a better match.
+     */
+    private static final String SEARCH_RANK_ORDER =
+            "length(offsets(" + InventoryContract.ProductEntry.SEARCH_TABLE_NAME + ")) DESC";
+
+    /**
+     * Maps the product columns to the SQL reading them: the supplier name and phone from the
+     * suppliers table, the other columns from the inventory table, as the search table has
+     * columns of the same name.
+     */
+    private static final HashMap<String, String> sProductProjectionMap = new HashMap<>();
+
+    static {
+        for (String column : ProductTable.COLUMNS) {
+            sProductProjectionMap.put(column, ProductTable.selectColumn(column));
+        }
+        sProductProjectionMap.put(ProductTable.COLUMN_SUPPLIER_ID,
+                ProductTable.selectColumn(ProductTable.COLUMN_SUPPLIER_ID));
+        sProductProjectionMap.put(ProductTable.COLUMN_ROW_VERSION,
+                ProductTable.selectColumn(ProductTable.COLUMN_ROW_VERSION));
+    }
+
+    /**
+     * Tables joined by the stock levels at a location: the levels and their products, read in
+     * the order of the location's index
+     */
+    private static final String LOCATION_STOCK_TABLES = StockLevelEntry.TABLE_NAME + " JOIN "
+            + InventoryContract.ProductEntry.TABLE_NAME + " ON "
+            + InventoryContract.ProductEntry.TABLE_NAME + "." + InventoryContract.ProductEntry._ID + " = "
+            + StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_PRODUCT_ID;
+
+    /**
+     * Tables joined by the stock levels of a product: the levels and their locations
+     */
+    private static final String PRODUCT_STOCK_TABLES = StockLevelEntry.TABLE_NAME + " JOIN "
+            + LocationEntry.TABLE_NAME + " ON "
+            + LocationEntry.TABLE_NAME + "." + LocationEntry._ID + " = "
+            + StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_LOCATION_ID;
+
+    /**
+     * Map the stock level columns to the SQL reading them from the joined tables, as the
+     * products and locations have columns of the same name. The _ID of the stock levels of a
+     * product is the location, and the one of the stock levels at a location is the product, so
+     * lists of either can be shown by a CursorAdapter.
+     */
+    private static final HashMap<String, String> sLocationStockProjectionMap = new HashMap<>();
+    private static final HashMap<String, String> sProductStockProjectionMap = new HashMap<>();
+
+    static {
+        for (String column : new String[]{StockLevelEntry.COLUMN_PRODUCT_ID, StockLevelEntry.COLUMN_LOCATION_ID,
+                StockLevelEntry.COLUMN_QUANTITY}) {
+            sLocationStockProjectionMap.put(column, StockLevelEntry.TABLE_NAME + "." + column);
+            sProductStockProjectionMap.put(column, StockLevelEntry.TABLE_NAME + "." + column);
+        }
+        sLocationStockProjectionMap.put(LocationEntry._ID, StockLevelEntry.TABLE_NAME + "."
+                + StockLevelEntry.COLUMN_PRODUCT_ID + " AS " + LocationEntry._ID);
+        sLocationStockProjectionMap.put(StockLevelEntry.COLUMN_PRODUCT_NAME,
+                InventoryContract.ProductEntry.TABLE_NAME + "." + InventoryContract.ProductEntry.COLUMN_NAME
+                        + " AS " + StockLevelEntry.COLUMN_PRODUCT_NAME);
+        sProductStockProjectionMap.put(LocationEntry._ID, StockLevelEntry.TABLE_NAME + "."
+                + StockLevelEntry.COLUMN_LOCATION_ID + " AS " + LocationEntry._ID);
+        sProductStockProjectionMap.put(StockLevelEntry.COLUMN_LOCATION_NAME,
+                LocationEntry.TABLE_NAME + "." + LocationEntry.COLUMN_NAME
+                        + " AS " + StockLevelEntry.COLUMN_LOCATION_NAME);
+    }
+
+    /**
+     * Reads the whole row of the product with the given ID, for the product cache. The SQL is
+     * built once rather than by query() on every miss, and as its text never changes the
+     * connection finds it already compiled in its statement cache.
+     */
+    private static final String SQL_QUERY_PRODUCT;
+
+    static {
+        String[] columns = new String[ProductCache.COLUMNS.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = sProductProjectionMap.get(ProductCache.COLUMNS[i]);
+        }
+        SQL_QUERY_PRODUCT = "SELECT " + TextUtils.join(", ", columns)
+                + " FROM " + InventoryContract.ProductEntry.TABLE_NAME
+                + " WHERE " + InventoryContract.ProductEntry._ID + "=?";
     }
 
     /**
@@ -48,6 +264,44 @@ public class InventoryProvider extends ContentProvider {
      */
     private InventoryDbHelper mDbHelper;
 
+    /**
+     * Repository writing the products to the writable database, created when it's first needed
+     * as opening the database may upgrade it
+     */
+    private SqliteInventoryRepository mRepository;
+
+    /**
+     * Recently read products, answering single product queries without going to the database
+     */
+    private ProductCache mProductCache;
+
+    /**
+     * Engine syncing the products with the server at {@link #mSyncServerUrl}, kept for as long as
+     * the provider so its statements are compiled once per thread rather than on every sync.
+     * Both guarded by {@link #mSyncLock}, which also keeps two syncs from running at once.
+     */
+    private SyncEngine mSyncEngine;
+    private String mSyncServerUrl;
+    private final Object mSyncLock = new Object();
+
+    /**
+     * Latencies and counters of the calls to the provider, off until they're asked for
+     */
+    private final ProviderMetrics mMetrics = new ProviderMetrics(METRICS_URI_NAMES);
+
+    /**
+     * URIs changed by the batch the current thread is applying in {@link #applyBatch(ArrayList)},
+     * or null outside of a batch. Single operations collect their URI here instead of notifying
+     * it, so the batch notifies only once at the end.
+     */
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
+
+    /**
+     * Reorder threshold crossings of the batch the current thread is applying, published once
+     * the batch has been committed, or null outside of a batch
+     */
+    private final ThreadLocal<List<LowStockMonitor.Crossing>> mBatchCrossings = new ThreadLocal<>();
+
     /**
      * Initialize the provider and the database helper object.
      */
@@ -55,15 +309,62 @@ public class InventoryProvider extends ContentProvider {
     public boolean onCreate() {
         // InventoryDbHelper object that gains access to the products database.
         mDbHelper = new InventoryDbHelper(getContext());
+        mProductCache = new ProductCache();
         return true;
     }
 
     /**
-     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     * Return the repository writing to the database, opening the database if needed.
+     */
+    private synchronized SqliteInventoryRepository getRepository() {
+        if (mRepository == null) {
+            mRepository = new SqliteInventoryRepository(new AndroidSqlDatabase(mDbHelper.getWritableDatabase()));
+        }
+        return mRepository;
+    }
+
+    /**
+     * Return the slot the metrics of the given URI are kept in.
+     */
+    private static int getMetricsSlot(Uri uri) {
+        int match = sUriMatcher.match(uri);
+        return match >= PRODUCTS ? match - PRODUCTS + 1 : 0;
+    }
+
+    /**
+     * Perform the query for the given URI, recording how long it takes if metrics are on.
      */
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        long start = mMetrics.start();
+        if (start == ProviderMetrics.NOT_RECORDING) {
+            return queryUri(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        int slot = getMetricsSlot(uri);
+        Cursor cursor;
+        int rows = -1;
+        try {
+            cursor = queryUri(uri, projection, selection, selectionArgs, sortOrder);
+            // Run the statement while timing, as a CursorLoader would straight away anyway,
+            // otherwise only the time to compile it would be recorded
+            rows = cursor.getCount();
+        } finally {
+            mMetrics.record(ProviderMetrics.OPERATION_QUERY, slot, start, Math.max(rows, 0), rows < 0);
+        }
+        if (cursor instanceof AbstractWindowedCursor) {
+            // Counting the rows filled the first window
+            mMetrics.recordWindowFill(slot);
+            return new MeteredCursor((AbstractWindowedCursor) cursor, mMetrics, slot);
+        }
+        return cursor;
+    }
+
+    /**
+     * Perform the query for the given URI. Use the given projection, selection, selection arguments, and sort order.
+     */
+    private Cursor queryUri(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
@@ -77,11 +378,32 @@ public class InventoryProvider extends ContentProvider {
                 // For the PRODUCTS code, query the products table directly with the given
                 // projection, selection, selection arguments, and sort order. The cursor
                 // could contain multiple rows of the products table.
-                cursor = database.query(InventoryContract.ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                //
+                // The products are sorted and filtered by a CatalogQuery, which only offers the
+                // orders an index serves, so SQLite walks that index and stops after a page
+                // instead of sorting the whole table. If the URI asks for a page, seek past the
+                // last product already shown (keyset pagination) instead of skipping rows with
+                // OFFSET, so every page costs the same no matter how deep into the table it is.
+                CatalogQuery catalogQuery = buildCatalogQuery(uri, sortOrder);
+                selection = DatabaseUtils.concatenateWhere(selection, catalogQuery.getSelection());
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, catalogQuery.getSelectionArgs());
+                String limit = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_LIMIT);
+                if (limit != null) {
+                    limit = String.valueOf(parseQueryParameter(uri, limit));
+                }
+                cursor = newProductQueryBuilder().query(database, projection, selection, selectionArgs,
+                        null, null, catalogQuery.getOrderBy(), limit);
                 break;
             case PRODUCT_ID:
-                // For the PRODUCT_ID code, extract out the ID from the URI.
+                // For the PRODUCT_ID code, serve the product from memory if it has been read
+                // recently and hasn't been written since.
+                long productId = ContentUris.parseId(uri);
+                cursor = mProductCache.query(productId, projection);
+                if (cursor != null) {
+                    break;
+                }
+
+                // Otherwise extract out the ID from the URI.
                 // For an example URI such as "content://com.example.android.products/products/3",
                 // the selection will be "_id=?" and the selection argument will be a
                 // String array containing the actual ID of 3 in this case.
@@ -90,13 +412,170 @@ public class InventoryProvider extends ContentProvider {
                 // arguments that will fill in the "?". Since we have 1 question mark in the
                 // selection, we have 1 String in the selection arguments' String array.
                 selection = InventoryContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                selectionArgs = new String[]{String.valueOf(productId)};
 
                 // This will perform a query on the products table where the _id equals 3 to return a
-                // Cursor containing that row of the table.
-                cursor = database.query(InventoryContract.ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
+                // Cursor containing that row of the table. If only plain columns are asked for,
+                // read the whole row instead so it can be cached for the next query.
+                if (ProductCache.isCacheable(projection)) {
+                    long generation = mProductCache.getWriteGeneration();
+                    Cursor row = database.rawQuery(SQL_QUERY_PRODUCT, selectionArgs);
+                    try {
+                        cursor = mProductCache.load(productId, projection, row, generation);
+                    } finally {
+                        row.close();
+                    }
+                } else {
+                    cursor = newProductQueryBuilder().query(database, projection, selection,
+                            selectionArgs, null, null, sortOrder);
+                }
+                break;
+            case PRODUCT_SEARCH:
+                // For the PRODUCT_SEARCH code, look the search text up in the full-text index and
+                // join the matches back to the products table, best match first.
+                String matchQuery = buildMatchQuery(uri.getLastPathSegment());
+                SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+                builder.setTables(SEARCH_TABLES);
+                builder.setProjectionMap(sProductProjectionMap);
+                if (matchQuery.isEmpty()) {
+                    // Nothing searchable was typed (e.g. only punctuation), so nothing matches
+                    builder.appendWhere("0");
+                } else {
+                    builder.appendWhere(InventoryContract.ProductEntry.SEARCH_TABLE_NAME + " MATCH ");
+                    builder.appendWhereEscapeString(matchQuery);
+                }
+                if (sortOrder == null) {
+                    sortOrder = SEARCH_RANK_ORDER;
+                }
+                cursor = builder.query(database, projection, selection, selectionArgs, null, null, sortOrder);
+                break;
+            case PRODUCT_MOVEMENTS:
+            case PRODUCT_DAILY:
+                // For the PRODUCT_MOVEMENTS and PRODUCT_DAILY codes, the product ID is the second
+                // path segment. Both tables are keyed by product first, so only the rows of this
+                // product are read, latest first, straight from the index.
+                String table;
+                if (match == PRODUCT_MOVEMENTS) {
+                    table = MovementEntry.TABLE_NAME;
+                    if (sortOrder == null) {
+                        sortOrder = MovementEntry.COLUMN_TIMESTAMP + " DESC, " + MovementEntry._ID + " DESC";
+                    }
+                } else {
+                    table = DailyStockEntry.TABLE_NAME;
+                    if (sortOrder == null) {
+                        sortOrder = DailyStockEntry.COLUMN_DAY + " DESC";
+                    }
+                }
+                selection = DatabaseUtils.concatenateWhere(selection, MovementEntry.COLUMN_PRODUCT_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{uri.getPathSegments().get(1)});
+                String historyLimit = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_LIMIT);
+                if (historyLimit != null) {
+                    historyLimit = String.valueOf(parseQueryParameter(uri, historyLimit));
+                }
+                cursor = database.query(table, projection, selection, selectionArgs, null, null, sortOrder,
+                        historyLimit);
+                break;
+            case LOW_STOCK:
+                // For the LOW_STOCK code, list the products at or below their reorder threshold.
+                // The condition is spelled exactly as in the partial index, so SQLite reads the
+                // few low products from the index instead of scanning the table.
+                selection = DatabaseUtils.concatenateWhere(InventorySchema.LOW_STOCK_CONDITION, selection);
+                if (sortOrder == null) {
+                    sortOrder = InventoryContract.ProductEntry._ID + " ASC";
+                }
+                cursor = newProductQueryBuilder().query(database, projection, selection,
+                        selectionArgs, null, null, sortOrder);
+                // Products become low through their own URIs, which aren't below this one, so
+                // watch every product instead
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.ProductEntry.CONTENT_URI);
+                return cursor;
+            case SUPPLIERS:
+                // For the SUPPLIERS code, list the suppliers to pick from. There's one row per
+                // supplier, a handful compared with the products.
+                if (sortOrder == null) {
+                    sortOrder = SupplierEntry.COLUMN_NAME + " ASC, " + SupplierEntry.COLUMN_PHONE + " ASC";
+                }
+                // Suppliers are added as a side effect of writing products, which isn't notified on
+                // this URI: the list is read when a supplier is picked, and not watched
+                return database.query(SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+            case LOCATIONS:
+                // For the LOCATIONS code, list the locations to pick from, a handful at most
+                if (sortOrder == null) {
+                    sortOrder = LocationEntry.COLUMN_NAME + " ASC";
+                }
+                cursor = database.query(LocationEntry.TABLE_NAME, projection, selection, selectionArgs,
                         null, null, sortOrder);
                 break;
+            case LOCATION_STOCK:
+                // For the LOCATION_STOCK code, the location ID is the second path segment. The
+                // index on the location and product IDs serves the levels at the location in
+                // product order, and holds their quantity, so a page is read straight from it
+                // and only the names come from the products. Pages seek past the last product
+                // shown, as the catalogue's do.
+                SQLiteQueryBuilder locationBuilder = new SQLiteQueryBuilder();
+                locationBuilder.setTables(LOCATION_STOCK_TABLES);
+                locationBuilder.setProjectionMap(sLocationStockProjectionMap);
+                locationBuilder.appendWhere(StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_LOCATION_ID
+                        + " = " + Long.parseLong(uri.getPathSegments().get(1)));
+                String afterProductId = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_AFTER_ID);
+                if (afterProductId != null) {
+                    selection = DatabaseUtils.concatenateWhere(selection, StockLevelEntry.TABLE_NAME + "."
+                            + StockLevelEntry.COLUMN_PRODUCT_ID + " > " + parseQueryParameter(uri, afterProductId));
+                }
+                if (sortOrder == null) {
+                    sortOrder = StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_PRODUCT_ID + " ASC";
+                }
+                String stockLimit = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_LIMIT);
+                if (stockLimit != null) {
+                    stockLimit = String.valueOf(parseQueryParameter(uri, stockLimit));
+                }
+                cursor = locationBuilder.query(database, projection, selection, selectionArgs, null, null,
+                        sortOrder, stockLimit);
+                // Every sale or restock changes the stock at the default location, through the
+                // URI of its product, so watch every product
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.ProductEntry.CONTENT_URI);
+                return cursor;
+            case PRODUCT_STOCK:
+                // For the PRODUCT_STOCK code, the product ID is the second path segment. Its
+                // levels are the first rows of the primary key, one per location.
+                long stockProductId = Long.parseLong(uri.getPathSegments().get(1));
+                SQLiteQueryBuilder productBuilder = new SQLiteQueryBuilder();
+                productBuilder.setTables(PRODUCT_STOCK_TABLES);
+                productBuilder.setProjectionMap(sProductStockProjectionMap);
+                productBuilder.appendWhere(StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_PRODUCT_ID
+                        + " = " + stockProductId);
+                if (sortOrder == null) {
+                    sortOrder = StockLevelEntry.TABLE_NAME + "." + StockLevelEntry.COLUMN_LOCATION_ID + " ASC";
+                }
+                cursor = productBuilder.query(database, projection, selection, selectionArgs, null, null,
+                        sortOrder);
+                // The levels change with the quantity and with transfers, which are both notified
+                // on the URI of the product
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        ContentUris.withAppendedId(InventoryContract.ProductEntry.CONTENT_URI, stockProductId));
+                return cursor;
+            case PRODUCT_ISBN:
+                // For the PRODUCT_ISBN code, the ISBN is the third path segment. The unique index
+                // on the ISBN finds the product with one seek, whatever the size of the catalogue.
+                String isbn = ProductRules.normalizeIsbn(uri.getPathSegments().get(2));
+                SQLiteQueryBuilder isbnBuilder = newProductQueryBuilder();
+                if (isbn == null) {
+                    isbnBuilder.appendWhere("0");
+                } else {
+                    isbnBuilder.appendWhere(InventoryContract.ProductEntry.TABLE_NAME + "."
+                            + InventoryContract.ProductEntry.COLUMN_ISBN + " = ");
+                    isbnBuilder.appendWhereEscapeString(isbn);
+                }
+                cursor = isbnBuilder.query(database, projection, selection, selectionArgs, null, null, sortOrder);
+                // The product changes through its own URI, which isn't below this one, and
+                // another product may be given the ISBN, so watch every product
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryContract.ProductEntry.CONTENT_URI);
+                return cursor;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -110,14 +589,127 @@ public class InventoryProvider extends ContentProvider {
     }
 
     /**
-     * Insert new data into the provider with the given ContentValues.
+     * Return a query builder reading the columns of the products, see
+     * {@link ProductTable#selectColumn(String)}.
+     */
+    private static SQLiteQueryBuilder newProductQueryBuilder() {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(InventoryContract.ProductEntry.TABLE_NAME);
+        builder.setProjectionMap(sProductProjectionMap);
+        return builder;
+    }
+
+    /**
+     * Build the query of the catalogue asked for by the given products URI and sort order,
+     * throwing an {@link IllegalArgumentException} if they ask for an order no index serves.
+     */
+    private static CatalogQuery buildCatalogQuery(Uri uri, String sortOrder) {
+        String sort = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_SORT);
+        if (sortOrder != null) {
+            String orderBySort = CatalogQuery.getSortForOrderBy(sortOrder);
+            if (orderBySort == null || (sort != null && !sort.equals(orderBySort))) {
+                throw new IllegalArgumentException("Unsupported sort order " + sortOrder + " for " + uri);
+            }
+            sort = orderBySort;
+        }
+        CatalogQuery query;
+        try {
+            query = new CatalogQuery(sort);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " for " + uri);
+        }
+
+        if (Boolean.parseBoolean(uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_IN_STOCK))) {
+            query.inStockOnly();
+        }
+        String minPrice = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_MIN_PRICE);
+        if (minPrice != null) {
+            query.minPrice(parseQueryParameter(uri, minPrice));
+        }
+        String maxPrice = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_MAX_PRICE);
+        if (maxPrice != null) {
+            query.maxPrice(parseQueryParameter(uri, maxPrice));
+        }
+        String afterId = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_AFTER_ID);
+        if (afterId != null) {
+            long id = parseQueryParameter(uri, afterId);
+            String afterKey = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_AFTER_KEY);
+            try {
+                query.after(afterKey, id);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(e.getMessage() + " for " + uri);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Turn the text typed by the user into a full-text MATCH query that finds every product
+     * containing all of the words, the last one possibly still being typed.
+     */
+    private static String buildMatchQuery(String searchText) {
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : searchText.split("\\s+")) {
+            // Drop anything that has a meaning in the full-text query syntax
+            word = word.replaceAll("[^\\p{L}\\p{N}]", "");
+            if (!word.isEmpty()) {
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                matchQuery.append(word).append('*');
+            }
+        }
+        return matchQuery.toString();
+    }
+
+    /**
+     * Parse a numeric query parameter of the given URI, throwing an
+     * {@link IllegalArgumentException} if it isn't a non-negative number.
+     */
+    private static long parseQueryParameter(Uri uri, String value) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the exception below
+        }
+        throw new IllegalArgumentException("Invalid query parameter " + value + " for " + uri);
+    }
+
+    /**
+     * Insert new data into the provider with the given ContentValues, recording how long it takes
+     * if metrics are on.
      */
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = mMetrics.start();
+        if (start == ProviderMetrics.NOT_RECORDING) {
+            return insertUri(uri, contentValues);
+        }
+        Uri newUri = null;
+        boolean failed = true;
+        try {
+            newUri = insertUri(uri, contentValues);
+            failed = false;
+            return newUri;
+        } finally {
+            mMetrics.record(ProviderMetrics.OPERATION_INSERT, getMetricsSlot(uri), start,
+                    newUri == null ? 0 : 1, failed);
+        }
+    }
+
+    /**
+     * Insert new data into the provider with the given ContentValues.
+     */
+    private Uri insertUri(Uri uri, ContentValues contentValues) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
                 return insertProduct(uri, contentValues);
+            case LOCATIONS:
+                return insertLocation(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
@@ -128,57 +720,304 @@ public class InventoryProvider extends ContentProvider {
      * for that specific row in the database.
      */
     private Uri insertProduct(Uri uri, ContentValues values) {
-        // Check that the name is not null
-        String name = values.getAsString(InventoryContract.ProductEntry.COLUMN_NAME);
-        if (name == null || name.isEmpty()) {
-            throw new IllegalArgumentException("Book requires valid name");
+        // Insert the new product with the given values, once checked, and record its stock in the
+        // same transaction
+        Product product = toProduct(values);
+        long id = getRepository().insertProduct(product);
+        // If the ID is -1, then the insertion failed. Tell the caller if it's because the ISBN
+        // is taken, otherwise log an error and return null.
+        if (id == -1) {
+            checkIsbnTaken(product);
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
         }
 
-        // If the price is provided, check that it's greater than or equal to 0 USD
-        Integer price = values.getAsInteger(InventoryContract.ProductEntry.COLUMN_PRICE);
-        if (price != null && price < 0) {
-            throw new IllegalArgumentException("Book requires valid price");
-        }
-        // If the quantity is provided, check that it's greater than or equal to 0
-        Integer quantity = values.getAsInteger(InventoryContract.ProductEntry.COLUMN_QUANTITY);
-        if (quantity != null && quantity < 0) {
-            throw new IllegalArgumentException("Book requires valid quantity");
+        // Notify all listeners that a product has been inserted. There's nothing to invalidate,
+        // as only existing products are cached.
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+
+        // Return the new URI with the ID (of the newly inserted row) appended at the end
+        return newUri;
+    }
+
+    /**
+     * Throw an {@link IllegalArgumentException} if the given product has an ISBN another product
+     * already has, which is why the repository didn't insert it.
+     */
+    private void checkIsbnTaken(Product product) {
+        if (product.mIsbn != null && getRepository().findProductByIsbn(product.mIsbn) != -1) {
+            throw new IllegalArgumentException("Product requires unique ISBN " + product.mIsbn);
         }
-        // Get writeable database
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+    }
 
-        // Insert the new product with the given values
-        long id = database.insert(InventoryContract.ProductEntry.TABLE_NAME, null, values);
-        // If the ID is -1, then the insertion failed. Log an error and return null.
+    /**
+     * Insert a location into the database with the given content values. Return the new content
+     * URI for that location, or null if there's already one with that name.
+     */
+    private Uri insertLocation(Uri uri, ContentValues values) {
+        long id = getRepository().insertLocation(values.getAsString(LocationEntry.COLUMN_NAME));
         if (id == -1) {
             Log.e(LOG_TAG, "Failed to insert row for " + uri);
             return null;
         }
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+        return newUri;
+    }
+
+    /**
+     * Return the new product described by the given content values. Values that are missing are
+     * left to their defaults, and the ISBN is normalized.
+     */
+    private static Product toProduct(ContentValues values) {
+        return new Product(Product.NO_ID,
+                values.getAsString(InventoryContract.ProductEntry.COLUMN_NAME),
+                values.getAsString(InventoryContract.ProductEntry.COLUMN_AUTHOR),
+                values.getAsString(InventoryContract.ProductEntry.COLUMN_SUPP_NAME),
+                values.getAsString(InventoryContract.ProductEntry.COLUMN_SUPP_PHONE),
+                getInt(values, InventoryContract.ProductEntry.COLUMN_PRICE),
+                getInt(values, InventoryContract.ProductEntry.COLUMN_QUANTITY),
+                getInt(values, InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD),
+                ProductRules.normalizeIsbn(values.getAsString(InventoryContract.ProductEntry.COLUMN_ISBN)));
+    }
+
+    /**
+     * Return the given number of the content values, or 0 if it's missing.
+     */
+    private static int getInt(ContentValues values, String key) {
+        Integer value = values.getAsInteger(key);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Insert many products at once. Every row is validated before anything is written, and all
+     * rows are inserted in a single transaction, so the import costs one journal sync and one
+     * notifyChange() instead of one of each per row.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] valuesArray) {
+        return valuesArray.length - recordBulkInsert(uri, valuesArray).length;
+    }
+
+    /**
+     * Insert many products at once, as described by {@link #bulkInsert}, recording the call in
+     * the metrics. Return the positions of the products whose ISBN was taken.
+     */
+    private int[] recordBulkInsert(Uri uri, ContentValues[] valuesArray) {
+        long start = mMetrics.start();
+        if (start == ProviderMetrics.NOT_RECORDING) {
+            return bulkInsertUri(uri, valuesArray);
+        }
+        int rowsInserted = 0;
+        boolean failed = true;
+        try {
+            int[] rejected = bulkInsertUri(uri, valuesArray);
+            rowsInserted = valuesArray.length - rejected.length;
+            failed = false;
+            return rejected;
+        } finally {
+            mMetrics.record(ProviderMetrics.OPERATION_BULK_INSERT, getMetricsSlot(uri), start, rowsInserted,
+                    failed);
+        }
+    }
+
+    /**
+     * Insert many products at once, as described by {@link #bulkInsert}. Return the positions of
+     * the products whose ISBN was taken.
+     */
+    private int[] bulkInsertUri(Uri uri, ContentValues[] valuesArray) {
+        final int match = sUriMatcher.match(uri);
+        if (match != PRODUCTS) {
+            throw new IllegalArgumentException("Bulk insertion is not supported for " + uri);
+        }
+
+        // The repository rejects the whole batch before touching the database if any row is
+        // invalid, and inserts the rest in one transaction
+        List<Product> products = new ArrayList<>(valuesArray.length);
+        for (ContentValues values : valuesArray) {
+            products.add(toProduct(values));
+        }
+        int[] rejected = getRepository().insertProducts(products);
+        if (rejected.length != 0) {
+            Log.e(LOG_TAG, "Failed to insert " + rejected.length + " rows for " + uri);
+        }
+
+        // If 1 or more rows were inserted, then notify all listeners once for the whole batch
+        if (rejected.length != products.size()) {
+            notifyChange(uri);
+        }
+        return rejected;
+    }
+
+    /**
+     * Apply a batch of operations in a single transaction. Each operation is validated by the
+     * regular insert/update/delete path, and any failure rolls back the whole batch. Listeners are
+     * notified once after the batch has been committed: for the changed product if the batch only
+     * changed one, for the product content URI otherwise.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        ContentProviderResult[] results;
+        Set<Uri> changes = new LinkedHashSet<>();
+        List<LowStockMonitor.Crossing> crossings = new ArrayList<>();
+        mBatchChanges.set(changes);
+        mBatchCrossings.set(crossings);
+        // Products read by other threads until the batch is committed may be changed by it
+        mProductCache.beginBatch();
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mProductCache.endBatch();
+            mBatchChanges.remove();
+            mBatchCrossings.remove();
+        }
 
-        // Notify all listeners that the data has changed for the product content URI
+        // Notify all listeners once for the whole batch
+        if (changes.size() == 1) {
+            notifyChange(changes.iterator().next());
+        } else if (!changes.isEmpty()) {
+            notifyChange(InventoryContract.ProductEntry.CONTENT_URI);
+        }
+        LowStockMonitor.getInstance().publish(crossings);
+        return results;
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed, unless the change is part
+     * of a batch that will notify once when it is done. Every change notified has been committed,
+     * so this also schedules a checkpoint of the write-ahead log.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            batchChanges.add(uri);
+            return;
+        }
+        mDbHelper.scheduleCheckpoint();
+        if (mMetrics.isEnabled()) {
+            mMetrics.recordNotification(getMetricsSlot(uri));
+        }
         getContext().getContentResolver().notifyChange(uri, null);
+    }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+    /**
+     * Publish committed reorder threshold crossings, unless they're part of a batch that will
+     * publish them once it has been committed.
+     */
+    private void publishCrossings(List<LowStockMonitor.Crossing> crossings) {
+        List<LowStockMonitor.Crossing> batchCrossings = mBatchCrossings.get();
+        if (batchCrossings != null) {
+            batchCrossings.addAll(crossings);
+            return;
+        }
+        LowStockMonitor.getInstance().publish(crossings);
     }
 
     /**
-     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     * Return the URI to notify when the given columns of a single product have been updated, so
+     * observers can refresh just those values instead of requerying every product.
+     */
+    private static Uri buildChangeUri(long id, Set<String> columns) {
+        return ContentUris.withAppendedId(InventoryContract.ProductEntry.CONTENT_URI, id).buildUpon()
+                .appendQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_CHANGED_COLUMNS,
+                        TextUtils.join(",", columns))
+                .build();
+    }
+
+    /**
+     * Updates the data at the given selection and selection arguments, with the new ContentValues,
+     * recording how long it takes if metrics are on.
      */
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long start = mMetrics.start();
+        if (start == ProviderMetrics.NOT_RECORDING) {
+            return updateUri(uri, contentValues, selection, selectionArgs);
+        }
+        int rowsUpdated = 0;
+        boolean failed = true;
+        try {
+            rowsUpdated = updateUri(uri, contentValues, selection, selectionArgs);
+            failed = false;
+            return rowsUpdated;
+        } finally {
+            mMetrics.record(ProviderMetrics.OPERATION_UPDATE, getMetricsSlot(uri), start, rowsUpdated, failed);
+        }
+    }
+
+    /**
+     * Updates the data at the given selection and selection arguments, with the new ContentValues.
+     */
+    private int updateUri(Uri uri, ContentValues contentValues, String selection,
+                          String[] selectionArgs) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                int rowsUpdated = updateProduct(contentValues, selection, selectionArgs, -1);
+                if (rowsUpdated != 0) {
+                    // Any number of products may have changed. Drop them from the cache before
+                    // telling listeners, so the queries they make again don't read old values.
+                    mProductCache.invalidateAll();
+                    notifyChange(uri);
+                }
+                return rowsUpdated;
             case PRODUCT_ID:
                 // For the PRODUCT_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
+                long productId = ContentUris.parseId(uri);
                 selection = InventoryContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                selectionArgs = new String[]{String.valueOf(productId)};
+                // If the values were edited from a given row version, only write them if the
+                // product is still at that version
+                String expectedRowVersion = uri.getQueryParameter(
+                        InventoryContract.ProductEntry.QUERY_PARAMETER_EXPECTED_ROW_VERSION);
+                long conflictId = -1;
+                if (expectedRowVersion != null) {
+                    selection += " AND " + InventoryContract.ProductEntry.COLUMN_ROW_VERSION + "=?";
+                    selectionArgs = new String[]{String.valueOf(productId),
+                            String.valueOf(parseQueryParameter(uri, expectedRowVersion))};
+                    conflictId = productId;
+                }
+                rowsUpdated = updateProduct(contentValues, selection, selectionArgs, conflictId);
+                if (rowsUpdated != 0) {
+                    mProductCache.invalidate(productId);
+                    // Only tell listeners about the columns that were written for this product
+                    notifyChange(buildChangeUri(productId, contentValues.keySet()));
+                }
+                return rowsUpdated;
+            case PRODUCT_ADJUST:
+                // For the PRODUCT_ADJUST code, the ID is the second path segment and the change
+                // in quantity is given by the delta query parameter or content value.
+                long id = Long.parseLong(uri.getPathSegments().get(1));
+                int delta = parseDelta(uri, contentValues);
+                return adjustQuantity(id, delta, parseReason(uri, contentValues, delta));
+            case PRODUCT_TRANSFER:
+                // For the PRODUCT_TRANSFER code, the ID is the second path segment and the
+                // locations and count are given by query parameters or content values.
+                long transferId = Long.parseLong(uri.getPathSegments().get(1));
+                return transferStock(transferId,
+                        parseTransferParameter(uri, contentValues, StockLevelEntry.QUERY_PARAMETER_FROM),
+                        parseTransferParameter(uri, contentValues, StockLevelEntry.QUERY_PARAMETER_TO),
+                        parseTransferParameter(uri, contentValues, StockLevelEntry.QUERY_PARAMETER_COUNT));
+            case ISBN_ADJUST:
+                // For the ISBN_ADJUST code, the ISBN is the third path segment and the change in
+                // quantity is given as for PRODUCT_ADJUST.
+                String isbn = ProductRules.normalizeIsbn(uri.getPathSegments().get(2));
+                if (isbn == null) {
+                    return 0;
+                }
+                int isbnDelta = parseDelta(uri, contentValues);
+                return adjustQuantityByIsbn(isbn, isbnDelta, parseReason(uri, contentValues, isbnDelta));
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -187,37 +1026,39 @@ public class InventoryProvider extends ContentProvider {
     /**
      * Update products in the database with the given content values. Apply the changes to the rows
      * specified in the selection and selection arguments (which could be 0 or 1 or more products).
-     * Return the number of rows that were successfully updated.
+     * Return the number of rows that were successfully updated; the caller drops them from the
+     * product cache and then notifies listeners.
+     *
+     * @param conflictId ID of the product the selection expects at a given row version, or -1.
+     *                   If nothing was updated but that product exists, it has changed since,
+     *                   and a {@link ProductConflictException} rolls the update back.
      */
-    private int updateProduct(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateProduct(ContentValues values, String selection, String[] selectionArgs,
+                              long conflictId) {
 
-        // If the {@link ProductEntry#COLUMN_NAME} key is present,
-        // check that the name value is not null.
+        // Check every value that is present with the same rules as the other ways of writing
+        // products
+        if (values.containsKey(InventoryContract.ProductEntry.COLUMN_ROW_VERSION)) {
+            throw new IllegalArgumentException("Product row version is maintained by the database");
+        }
         if (values.containsKey(InventoryContract.ProductEntry.COLUMN_NAME)) {
-            String name = values.getAsString(InventoryContract.ProductEntry.COLUMN_NAME);
-            if (name == null || name.isEmpty()) {
-                throw new IllegalArgumentException("Product requires a name");
-            }
+            ProductRules.checkName(values.getAsString(InventoryContract.ProductEntry.COLUMN_NAME));
         }
-
-        // If the {@link ProductEntry#COLUMN_PRICE} key is present,
-        // check that the weight value is valid.
         if (values.containsKey(InventoryContract.ProductEntry.COLUMN_PRICE)) {
-            // Check that the weight is greater than or equal to 0 USD
-            Integer price = values.getAsInteger(InventoryContract.ProductEntry.COLUMN_PRICE);
-            if (price != null && price < 0) {
-                throw new IllegalArgumentException("Product requires valid price");
-            }
+            ProductRules.checkPrice(values.getAsInteger(InventoryContract.ProductEntry.COLUMN_PRICE));
         }
-
-        // If the {@link ProductEntry#COLUMN_QUANTITY} key is present,
-        // check that the weight value is valid.
         if (values.containsKey(InventoryContract.ProductEntry.COLUMN_QUANTITY)) {
-            // Check that the weight is greater than or equal to 0
-            Integer quantity = values.getAsInteger(InventoryContract.ProductEntry.COLUMN_QUANTITY);
-            if (quantity != null && quantity < 0) {
-                throw new IllegalArgumentException("Product requires valid quantity");
-            }
+            ProductRules.checkQuantity(values.getAsInteger(InventoryContract.ProductEntry.COLUMN_QUANTITY));
+        }
+        if (values.containsKey(InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD)) {
+            ProductRules.checkReorderThreshold(
+                    values.getAsInteger(InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD));
+        }
+        if (values.containsKey(InventoryContract.ProductEntry.COLUMN_ISBN)) {
+            // Stored normalized, so a scan finds it however it was typed
+            String isbn = ProductRules.normalizeIsbn(values.getAsString(InventoryContract.ProductEntry.COLUMN_ISBN));
+            values = new ContentValues(values);
+            values.put(InventoryContract.ProductEntry.COLUMN_ISBN, isbn);
         }
         // If there are no values to update, then don't try to update the database
         if (values.size() == 0) {
@@ -226,24 +1067,297 @@ public class InventoryProvider extends ContentProvider {
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(InventoryContract.ProductEntry.TABLE_NAME, values, selection, selectionArgs);
-
-        // If 1 or more rows were updated, then notify all listeners that the data at the
-        // given URI has changed
-        if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        // Perform the update on the database and get the number of rows affected. Quantities that
+        // are overwritten are recorded as stock movements, and products whose new quantity or
+        // threshold makes them cross their threshold are published once committed.
+        int rowsUpdated;
+        List<LowStockMonitor.Crossing> crossings = new ArrayList<>();
+        database.beginTransaction();
+        try {
+            values = internSupplier(database, values, selection, selectionArgs);
+            if (values.getAsLong(InventoryContract.ProductEntry.COLUMN_QUANTITY) != null
+                    || values.containsKey(InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD)) {
+                rowsUpdated = updateStock(database, values, selection, selectionArgs, crossings);
+            } else {
+                rowsUpdated = database.update(InventoryContract.ProductEntry.TABLE_NAME, values, selection,
+                        selectionArgs);
+            }
+            if (rowsUpdated == 0 && conflictId != -1 && DatabaseUtils.queryNumEntries(database,
+                    InventoryContract.ProductEntry.TABLE_NAME, InventoryContract.ProductEntry._ID + "=?",
+                    new String[]{String.valueOf(conflictId)}) != 0) {
+                throw new ProductConflictException(conflictId);
+            }
+            database.setTransactionSuccessful();
+        } catch (SQLiteConstraintException e) {
+            // The only constraint the checked values can break is the unique index on the ISBN
+            if (!values.containsKey(InventoryContract.ProductEntry.COLUMN_ISBN)) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Product requires unique ISBN "
+                    + values.getAsString(InventoryContract.ProductEntry.COLUMN_ISBN));
+        } finally {
+            database.endTransaction();
         }
+        publishCrossings(crossings);
 
         // Return the number of rows updated
         return rowsUpdated;
     }
 
     /**
-     * Delete the data at the given selection and selection arguments.
+     * Return the given values with the supplier name and phone replaced by the ID of that
+     * supplier, inserting it if it's new, as they're stored once per supplier. If only one of
+     * them is given, the other one is kept from the product being updated. Must be called in the
+     * transaction of the update.
+     *
+     * @throws IllegalArgumentException if only one of them is given for several products
+     */
+    private ContentValues internSupplier(SQLiteDatabase database, ContentValues values, String selection,
+                                         String[] selectionArgs) {
+        boolean hasName = values.containsKey(InventoryContract.ProductEntry.COLUMN_SUPP_NAME);
+        boolean hasPhone = values.containsKey(InventoryContract.ProductEntry.COLUMN_SUPP_PHONE);
+        if (!hasName && !hasPhone) {
+            return values;
+        }
+        String name = values.getAsString(InventoryContract.ProductEntry.COLUMN_SUPP_NAME);
+        String phone = values.getAsString(InventoryContract.ProductEntry.COLUMN_SUPP_PHONE);
+        if (!hasName || !hasPhone) {
+            Cursor cursor = newProductQueryBuilder().query(database, new String[]{
+                            InventoryContract.ProductEntry.COLUMN_SUPP_NAME,
+                            InventoryContract.ProductEntry.COLUMN_SUPP_PHONE},
+                    selection, selectionArgs, null, null, null, "2");
+            try {
+                if (cursor.getCount() > 1) {
+                    throw new IllegalArgumentException(
+                            "Supplier name and phone must be updated together for several products");
+                }
+                if (cursor.moveToFirst()) {
+                    if (!hasName) {
+                        name = cursor.getString(0);
+                    } else {
+                        phone = cursor.getString(1);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        ContentValues interned = new ContentValues(values);
+        interned.remove(InventoryContract.ProductEntry.COLUMN_SUPP_NAME);
+        interned.remove(InventoryContract.ProductEntry.COLUMN_SUPP_PHONE);
+        long supplierId = getRepository().internSupplier(name, phone);
+        if (supplierId == -1) {
+            interned.putNull(InventoryContract.ProductEntry.COLUMN_SUPPLIER_ID);
+        } else {
+            interned.put(InventoryContract.ProductEntry.COLUMN_SUPPLIER_ID, supplierId);
+        }
+        return interned;
+    }
+
+    /**
+     * Update products whose values include a new quantity or reorder threshold, in one
+     * transaction. The difference with the quantity each of them had is recorded as a
+     * {@link MovementEntry#REASON_CORRECTION} movement, and the products that cross their
+     * threshold are added to the given list. Return the number of rows updated.
+     */
+    private int updateStock(SQLiteDatabase database, ContentValues values, String selection,
+                            String[] selectionArgs, List<LowStockMonitor.Crossing> crossings) {
+        InventoryRepository repository = getRepository();
+        Long newQuantity = values.getAsLong(InventoryContract.ProductEntry.COLUMN_QUANTITY);
+        Long newThreshold = values.getAsLong(InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD);
+        String newName = values.getAsString(InventoryContract.ProductEntry.COLUMN_NAME);
+        database.beginTransaction();
+        try {
+            // Read the stock levels about to be overwritten
+            long[] ids;
+            long[] oldQuantities;
+            long[] oldThresholds;
+            String[] names;
+            Cursor cursor = database.query(InventoryContract.ProductEntry.TABLE_NAME,
+                    new String[]{
+                            InventoryContract.ProductEntry._ID,
+                            InventoryContract.ProductEntry.COLUMN_QUANTITY,
+                            InventoryContract.ProductEntry.COLUMN_REORDER_THRESHOLD,
+                            InventoryContract.ProductEntry.COLUMN_NAME},
+                    selection, selectionArgs, null, null, null);
+            try {
+                ids = new long[cursor.getCount()];
+                oldQuantities = new long[ids.length];
+                oldThresholds = new long[ids.length];
+                names = new String[ids.length];
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(0);
+                    oldQuantities[i] = cursor.getLong(1);
+                    oldThresholds[i] = cursor.getLong(2);
+                    names[i] = cursor.getString(3);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            int rowsUpdated = database.update(InventoryContract.ProductEntry.TABLE_NAME, values, selection,
+                    selectionArgs);
+            for (int i = 0; i < ids.length; i++) {
+                long quantity = newQuantity != null ? newQuantity : oldQuantities[i];
+                long threshold = newThreshold != null ? newThreshold : oldThresholds[i];
+                if (quantity != oldQuantities[i]) {
+                    repository.recordMovement(ids[i], quantity - oldQuantities[i], MovementEntry.REASON_CORRECTION);
+                }
+                if (ProductRules.isLow(quantity, threshold)
+                        != ProductRules.isLow(oldQuantities[i], oldThresholds[i])) {
+                    crossings.add(new LowStockMonitor.Crossing(ids[i], newName != null ? newName : names[i],
+                            quantity, threshold));
+                }
+            }
+            database.setTransactionSuccessful();
+            return rowsUpdated;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Change the quantity of a single product by the given amount, in one statement so concurrent
+     * changes can't overwrite each other, and record the change as a stock movement in the same
+     * transaction. Return the number of rows updated, which is 0 if the product doesn't exist or
+     * the change would make its quantity negative.
+     */
+    private int adjustQuantity(long id, int delta, String reason) {
+        StockChange change = getRepository().adjustQuantity(id, delta, reason);
+        if (change == null) {
+            return 0;
+        }
+        if (change.crossesThreshold()) {
+            publishCrossings(Collections.singletonList(new LowStockMonitor.Crossing(id, change.mName,
+                    change.mNewQuantity, change.mThreshold)));
+        }
+
+        // The quantity changed, so notify all listeners that the product has changed
+        mProductCache.invalidate(id);
+        notifyChange(buildChangeUri(id, Collections.singleton(InventoryContract.ProductEntry.COLUMN_QUANTITY)));
+        return 1;
+    }
+
+    /**
+     * Change the quantity of the product with the given ISBN by the given amount, finding and
+     * changing it in one statement, and record the change as a stock movement in the same
+     * transaction. Return the number of rows updated, which is 0 if no product has the ISBN or
+     * the change would make its quantity negative.
+     */
+    private int adjustQuantityByIsbn(String isbn, int delta, String reason) {
+        StockChange change = getRepository().adjustQuantityByIsbn(isbn, delta, reason);
+        if (change == null) {
+            return 0;
+        }
+        if (change.crossesThreshold()) {
+            publishCrossings(Collections.singletonList(new LowStockMonitor.Crossing(change.mProductId, change.mName,
+                    change.mNewQuantity, change.mThreshold)));
+        }
+
+        // Notified on the URI of the product, as for any other change of its quantity, so the
+        // catalogue patches the one row
+        mProductCache.invalidate(change.mProductId);
+        notifyChange(buildChangeUri(change.mProductId,
+                Collections.singleton(InventoryContract.ProductEntry.COLUMN_QUANTITY)));
+        return 1;
+    }
+
+    /**
+     * Move stock of a single product from one location to another, taking it from the source and
+     * putting it at the destination in one transaction. Return the number of rows updated, which
+     * is 0 if the source doesn't have that many copies.
+     */
+    private int transferStock(long id, long fromLocationId, long toLocationId, long count) {
+        if (count > Integer.MAX_VALUE
+                || !getRepository().transferStock(id, fromLocationId, toLocationId, (int) count)) {
+            return 0;
+        }
+        // The total on hand, and so every column of the product, stays the same: only the
+        // observers of its stock levels need to requery, the product cache stays valid
+        notifyChange(buildChangeUri(id, Collections.<String>emptySet()));
+        return 1;
+    }
+
+    /**
+     * Read the given parameter of the given transfer URI from the content values, or from its
+     * query parameter if there's no such value. Throw an {@link IllegalArgumentException} if it's
+     * missing or isn't a non-negative number.
+     */
+    private static long parseTransferParameter(Uri uri, ContentValues values, String key) {
+        String value;
+        if (values != null && values.containsKey(key)) {
+            value = values.getAsString(key);
+        } else {
+            value = uri.getQueryParameter(key);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Transfer requires " + key + " " + uri);
+        }
+        return parseQueryParameter(uri, value);
+    }
+
+    /**
+     * Read the delta of the given adjust URI from the content values, or from its query parameter
+     * if there's no such value. Throw an {@link IllegalArgumentException} if it's missing or
+     * isn't a number.
+     */
+    private static int parseDelta(Uri uri, ContentValues values) {
+        String delta;
+        if (values != null && values.containsKey(InventoryContract.ProductEntry.QUERY_PARAMETER_DELTA)) {
+            delta = values.getAsString(InventoryContract.ProductEntry.QUERY_PARAMETER_DELTA);
+        } else {
+            delta = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_DELTA);
+        }
+        try {
+            return Integer.parseInt(delta);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Adjustment requires a valid delta " + uri);
+        }
+    }
+
+    /**
+     * Read the reason of the given adjust URI from the content values, or from its query parameter
+     * if there's no such value. Default to a sale when stock is removed and a restock otherwise.
+     */
+    private static String parseReason(Uri uri, ContentValues values, int delta) {
+        String reason;
+        if (values != null && values.containsKey(InventoryContract.ProductEntry.QUERY_PARAMETER_REASON)) {
+            reason = values.getAsString(InventoryContract.ProductEntry.QUERY_PARAMETER_REASON);
+        } else {
+            reason = uri.getQueryParameter(InventoryContract.ProductEntry.QUERY_PARAMETER_REASON);
+        }
+        if (TextUtils.isEmpty(reason)) {
+            reason = ProductRules.defaultReason(delta);
+        }
+        return reason;
+    }
+
+    /**
+     * Delete the data at the given selection and selection arguments, recording how long it takes
+     * if metrics are on.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = mMetrics.start();
+        if (start == ProviderMetrics.NOT_RECORDING) {
+            return deleteUri(uri, selection, selectionArgs);
+        }
+        int rowsDeleted = 0;
+        boolean failed = true;
+        try {
+            rowsDeleted = deleteUri(uri, selection, selectionArgs);
+            failed = false;
+            return rowsDeleted;
+        } finally {
+            mMetrics.record(ProviderMetrics.OPERATION_DELETE, getMetricsSlot(uri), start, rowsDeleted, failed);
+        }
+    }
+
+    /**
+     * Delete the data at the given selection and selection arguments.
+     */
+    private int deleteUri(Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
@@ -255,12 +1369,17 @@ public class InventoryProvider extends ContentProvider {
             case PRODUCTS:
                 // Delete all rows that match the selection and selection args
                 rowsDeleted = database.delete(InventoryContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    mProductCache.invalidateAll();
+                }
                 break;
             case PRODUCT_ID:
                 // Delete a single row given by the ID in the URI
-                selection = InventoryContract.ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(InventoryContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
+                long productId = ContentUris.parseId(uri);
+                rowsDeleted = getRepository().deleteProduct(productId);
+                if (rowsDeleted != 0) {
+                    mProductCache.invalidate(productId);
+                }
                 break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
@@ -269,13 +1388,175 @@ public class InventoryProvider extends ContentProvider {
         // If 1 or more rows were deleted, then notify all listeners that the data at the
         // given URI has changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
 
+    /**
+     * Return the counters of the product cache for {@link InventoryContract#METHOD_GET_CACHE_STATS},
+     * the inventory totals for {@link InventoryContract#METHOD_GET_SUMMARY}, or the provider's
+     * metrics for {@link InventoryContract#METHOD_GET_METRICS}. Also starts, stops and resets the
+     * metrics, and syncs with a sync server for {@link InventoryContract#METHOD_SYNC}.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (InventoryContract.METHOD_GET_CACHE_STATS.equals(method)) {
+            Bundle stats = new Bundle();
+            stats.putInt(InventoryContract.EXTRA_CACHE_HITS, mProductCache.getHitCount());
+            stats.putInt(InventoryContract.EXTRA_CACHE_MISSES, mProductCache.getMissCount());
+            stats.putInt(InventoryContract.EXTRA_CACHE_EVICTIONS, mProductCache.getEvictionCount());
+            return stats;
+        }
+        if (InventoryContract.METHOD_GET_SUMMARY.equals(method)) {
+            return getSummary();
+        }
+        if (InventoryContract.METHOD_GET_METRICS.equals(method)) {
+            return mMetrics.snapshot();
+        }
+        if (InventoryContract.METHOD_SET_METRICS_ENABLED.equals(method)) {
+            mMetrics.setEnabled(Boolean.parseBoolean(arg));
+            return mMetrics.snapshot();
+        }
+        if (InventoryContract.METHOD_RESET_METRICS.equals(method)) {
+            mMetrics.reset();
+            return mMetrics.snapshot();
+        }
+        if (InventoryContract.METHOD_SYNC.equals(method)) {
+            return sync(arg);
+        }
+        if (InventoryContract.METHOD_INSERT_PRODUCTS.equals(method)) {
+            return insertProducts(extras);
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Insert the products of the given extras as {@link #bulkInsert} does, and return the
+     * positions of those whose ISBN was taken.
+     */
+    private Bundle insertProducts(Bundle extras) {
+        Parcelable[] parcelables = extras == null ? null
+                : extras.getParcelableArray(InventoryContract.EXTRA_PRODUCTS);
+        if (parcelables == null) {
+            throw new IllegalArgumentException("Inserting products requires " + InventoryContract.EXTRA_PRODUCTS);
+        }
+        ContentValues[] valuesArray = new ContentValues[parcelables.length];
+        for (int i = 0; i < parcelables.length; i++) {
+            valuesArray[i] = (ContentValues) parcelables[i];
+        }
+        Bundle result = new Bundle();
+        result.putIntArray(InventoryContract.EXTRA_REJECTED_POSITIONS,
+                recordBulkInsert(InventoryContract.ProductEntry.CONTENT_URI, valuesArray));
+        return result;
+    }
+
+    /**
+     * Sync the products with the sync server at the given base URL. Batches are committed as
+     * they arrive, so the cache is dropped and the products notified even if the sync fails
+     * part way. A failure, of the network or of the database, is reported in
+     * {@link InventoryContract#EXTRA_SYNC_ERROR} rather than thrown.
+     */
+    private Bundle sync(String serverUrl) {
+        if (TextUtils.isEmpty(serverUrl)) {
+            throw new IllegalArgumentException("Sync requires a server URL");
+        }
+        Bundle result = new Bundle();
+        synchronized (mSyncLock) {
+            try {
+                if (mSyncEngine == null || !serverUrl.equals(mSyncServerUrl)) {
+                    mSyncEngine = new SyncEngine(getRepository(), new HttpSyncTransport(serverUrl),
+                            SyncEngine.DEFAULT_BATCH_SIZE);
+                    mSyncServerUrl = serverUrl;
+                }
+                SyncEngine.Result synced = mSyncEngine.sync();
+                result.putInt(InventoryContract.EXTRA_SYNC_PUSHED, synced.mPushed);
+                result.putInt(InventoryContract.EXTRA_SYNC_PULLED, synced.mPulled);
+            } catch (IOException | RuntimeException e) {
+                // e.g. the server can't be reached, answers with a malformed batch, or the
+                // database fails: the batches committed so far stay
+                Log.e(LOG_TAG, "Failed to sync with " + serverUrl, e);
+                result.putString(InventoryContract.EXTRA_SYNC_ERROR, String.valueOf(e.getMessage()));
+            } finally {
+                mProductCache.invalidateAll();
+                notifyChange(InventoryContract.ProductEntry.CONTENT_URI);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read the inventory totals and the totals of every supplier from the summary tables. This
+     * reads one row per supplier, however many products there are.
+     */
+    private Bundle getSummary() {
+        SQLiteDatabase database = mDbHelper.getReadableDatabase();
+        Bundle summary = new Bundle();
+
+        String[] totals = {
+                SummaryEntry.COLUMN_SKU_COUNT,
+                SummaryEntry.COLUMN_UNITS,
+                SummaryEntry.COLUMN_VALUATION,
+                SummaryEntry.COLUMN_OUT_OF_STOCK};
+        Cursor cursor = database.query(SummaryEntry.TABLE_NAME, totals, null, null, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                for (int i = 0; i < totals.length; i++) {
+                    summary.putLong(totals[i], cursor.getLong(i));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = database.query(SummaryEntry.SUPPLIER_TABLE_NAME, new String[]{
+                        SummaryEntry.COLUMN_SUPPLIER,
+                        SummaryEntry.COLUMN_SKU_COUNT,
+                        SummaryEntry.COLUMN_UNITS,
+                        SummaryEntry.COLUMN_VALUATION},
+                null, null, null, null, SummaryEntry.COLUMN_VALUATION + " DESC");
+        try {
+            int count = cursor.getCount();
+            String[] names = new String[count];
+            long[] skuCounts = new long[count];
+            long[] units = new long[count];
+            long[] valuations = new long[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                names[i] = cursor.getString(0);
+                skuCounts[i] = cursor.getLong(1);
+                units[i] = cursor.getLong(2);
+                valuations[i] = cursor.getLong(3);
+            }
+            summary.putStringArray(SummaryEntry.EXTRA_SUPPLIER_NAMES, names);
+            summary.putLongArray(SummaryEntry.EXTRA_SUPPLIER_SKU_COUNTS, skuCounts);
+            summary.putLongArray(SummaryEntry.EXTRA_SUPPLIER_UNITS, units);
+            summary.putLongArray(SummaryEntry.EXTRA_SUPPLIER_VALUATIONS, valuations);
+        } finally {
+            cursor.close();
+        }
+        return summary;
+    }
+
+    /**
+     * Drop the cached products when the system runs low on memory or the app goes to the
+     * background, as they can always be read again.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            mProductCache.trimMemory();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        mProductCache.trimMemory();
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -284,9 +1565,26 @@ public class InventoryProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
+            case PRODUCT_SEARCH:
+            case LOW_STOCK:
                 return InventoryContract.ProductEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case LOCATIONS:
+                return LocationEntry.CONTENT_LIST_TYPE;
+            case LOCATION_STOCK:
+            case PRODUCT_STOCK:
+                return StockLevelEntry.CONTENT_LIST_TYPE;
             case PRODUCT_ID:
+            case PRODUCT_ADJUST:
+            case PRODUCT_TRANSFER:
+            case PRODUCT_ISBN:
+            case ISBN_ADJUST:
                 return InventoryContract.ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_MOVEMENTS:
+                return MovementEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_DAILY:
+                return DailyStockEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
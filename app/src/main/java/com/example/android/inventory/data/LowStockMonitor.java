@@ -0,0 +1,121 @@
+package com.example.android.inventory.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells listeners when a product drops to or below its {@link ProductEntry#COLUMN_REORDER_THRESHOLD},
+ * or rises back above it. {@link InventoryProvider} works out the crossings from the rows it
+ * writes, in the transaction making the change, so listeners hear about each crossing once
+ * without having to requery the catalogue after every change.
+ */
+public final class LowStockMonitor {
+
+    /**
+     * A product whose stock crossed its reorder threshold.
+     */
+    public static final class Crossing {
+
+        /**
+         * ID and name of the product
+         */
+        public final long mProductId;
+        public final String mName;
+
+        /**
+         * Quantity and reorder threshold of the product after the change
+         */
+        public final long mQuantity;
+        public final long mThreshold;
+
+        /**
+         * True if the product is now low on stock, false if it has been restocked above its
+         * threshold
+         */
+        public final boolean mLow;
+
+        Crossing(long productId, String name, long quantity, long threshold) {
+            mProductId = productId;
+            mName = name;
+            mQuantity = quantity;
+            mThreshold = threshold;
+            mLow = ProductRules.isLow(quantity, threshold);
+        }
+    }
+
+    /**
+     * Listener notified of crossings on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called once the change that made a product cross its threshold has been committed.
+         */
+        void onThresholdCrossed(Crossing crossing);
+    }
+
+    /**
+     * The single instance, shared by the provider and the activities of the app
+     */
+    private static final LowStockMonitor sInstance = new LowStockMonitor();
+
+    /**
+     * Handler posting the crossings to the main thread
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Registered listeners, copied on write so they can be notified while one of them
+     * unregisters itself
+     */
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private LowStockMonitor() {
+    }
+
+    /**
+     * Return the single instance of the monitor.
+     */
+    public static LowStockMonitor getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Start notifying the given listener of crossings.
+     */
+    public void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Stop notifying the given listener.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Notify the listeners of committed crossings, on the main thread.
+     */
+    void publish(List<Crossing> crossings) {
+        if (crossings.isEmpty() || mListeners.isEmpty()) {
+            return;
+        }
+        for (final Crossing crossing : crossings) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Listener listener : mListeners) {
+                        listener.onThresholdCrossed(crossing);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.android.inventory.data;
+
+import android.database.AbstractWindowedCursor;
+import android.database.CrossProcessCursorWrapper;
+import android.database.CursorWindow;
+
+/**
+ * Wraps a database cursor to count how often it fills its window with rows, which is when the
+ * query actually runs. A window is filled whenever the cursor moves to a row outside of it, and
+ * whenever the rows are copied to another process.
+ * <p>
+ * Every move goes through {@link #moveToPosition(int)}, as the wrapped cursor would otherwise
+ * move itself without this wrapper seeing where to.
+ */
+final class MeteredCursor extends CrossProcessCursorWrapper {
+
+    /**
+     * The wrapped cursor
+     */
+    private final AbstractWindowedCursor mCursor;
+
+    /**
+     * Metrics the window fills are recorded in, and the slot of the URI queried
+     */
+    private final ProviderMetrics mMetrics;
+    private final int mUri;
+
+    MeteredCursor(AbstractWindowedCursor cursor, ProviderMetrics metrics, int uri) {
+        super(cursor);
+        mCursor = cursor;
+        mMetrics = metrics;
+        mUri = uri;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position >= 0 && position < getCount()) {
+            CursorWindow window = mCursor.getWindow();
+            if (window == null || position < window.getStartPosition()
+                    || position >= window.getStartPosition() + window.getNumRows()) {
+                mMetrics.recordWindowFill(mUri);
+            }
+        }
+        return super.moveToPosition(position);
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(getPosition() + offset);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(getCount() - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(getPosition() + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(getPosition() - 1);
+    }
+
+    @Override
+    public void fillWindow(int position, CursorWindow window) {
+        mMetrics.recordWindowFill(mUri);
+        super.fillWindow(position, window);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.util.HashMap;
+
+/**
+ * Bounded in-memory cache of whole product rows, keyed by product ID, that lets
+ * {@link InventoryProvider} answer single product queries without going to SQLite. The least
+ * recently used products are evicted once the rows take up more than a small share of the heap.
+ * <p>
+ * The provider invalidates a product after every committed write to it. To keep a read racing
+ * with a write from putting the old row back, a row read from the database is only cached if no
+ * write happened since the read started.
+ */
+final class ProductCache {
+
+    /**
+     * Every column of the products table, in the order the rows are cached in
+     */
+    static final String[] COLUMNS = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_NAME,
+            ProductEntry.COLUMN_AUTHOR,
+            ProductEntry.COLUMN_SUPP_NAME,
+            ProductEntry.COLUMN_SUPP_PHONE,
+            ProductEntry.COLUMN_PRICE,
+            ProductEntry.COLUMN_QUANTITY,
+            ProductEntry.COLUMN_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_ISBN,
+            ProductEntry.COLUMN_ROW_VERSION};
+
+    /**
+     * Position of each column in a cached row
+     */
+    private static final HashMap<String, Integer> sColumnIndices = new HashMap<>();
+
+    static {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sColumnIndices.put(COLUMNS[i], i);
+        }
+    }
+
+    /**
+     * Share of the maximum heap size the cached rows may take up
+     */
+    private static final int HEAP_FRACTION = 128;
+
+    /**
+     * Estimated overhead of a cached row besides its strings, in bytes
+     */
+    private static final int ROW_OVERHEAD_BYTES = 128;
+
+    /**
+     * The cached rows, sized by their estimated memory usage in bytes
+     */
+    private final LruCache<Long, Object[]> mRows;
+
+    /**
+     * Incremented after every write, so reads that started before it don't cache their row.
+     * Guarded by this.
+     */
+    private long mWriteGeneration;
+
+    /**
+     * Number of batches currently writing. Rows read meanwhile may be rolled back or overwritten
+     * before the batch commits, so they're not cached. Guarded by this.
+     */
+    private int mOpenBatches;
+
+    ProductCache() {
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION, Integer.MAX_VALUE);
+        mRows = new LruCache<Long, Object[]>(maxBytes) {
+            @Override
+            protected int sizeOf(Long id, Object[] row) {
+                return estimateSize(row);
+            }
+        };
+    }
+
+    /**
+     * Return a cursor over the cached row of the given product with the given columns, or null
+     * if the product isn't cached or the projection asks for something other than plain columns.
+     *
+     * @param id         of the product
+     * @param projection columns to include, or null for all of them
+     */
+    Cursor query(long id, String[] projection) {
+        int[] indices = resolveProjection(projection);
+        if (indices == null) {
+            return null;
+        }
+        Object[] row = mRows.get(id);
+        if (row == null) {
+            return null;
+        }
+        return toCursor(row, projection == null ? COLUMNS : projection, indices);
+    }
+
+    /**
+     * Return true if the given projection only asks for plain columns, so the query can be
+     * answered from a cached row.
+     */
+    static boolean isCacheable(String[] projection) {
+        return resolveProjection(projection) != null;
+    }
+
+    /**
+     * Return the generation to pass to {@link #load} for a row about to be read from the
+     * database.
+     */
+    synchronized long getWriteGeneration() {
+        return mWriteGeneration;
+    }
+
+    /**
+     * Cache the row read from the database for a query that missed the cache, unless the product
+     * was written since the row was read, and return a cursor over the given columns of it.
+     *
+     * @param id         of the product
+     * @param projection cacheable columns to include, or null for all of them
+     * @param cursor     holding the row of the product with all {@link #COLUMNS}, or no row if
+     *                   the product doesn't exist
+     * @param generation returned by {@link #getWriteGeneration()} before the row was read
+     */
+    Cursor load(long id, String[] projection, Cursor cursor, long generation) {
+        String[] columnNames = projection == null ? COLUMNS : projection;
+        if (!cursor.moveToFirst()) {
+            // Products that don't exist aren't cached, as inserting them doesn't invalidate
+            return new MatrixCursor(columnNames, 0);
+        }
+        Object[] row = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            row[i] = readValue(cursor, cursor.getColumnIndexOrThrow(COLUMNS[i]));
+        }
+        synchronized (this) {
+            if (generation == mWriteGeneration && mOpenBatches == 0) {
+                mRows.put(id, row);
+            }
+        }
+        return toCursor(row, columnNames, resolveProjection(projection));
+    }
+
+    /**
+     * Drop the given product. Called once a write to it has been committed.
+     */
+    synchronized void invalidate(long id) {
+        mWriteGeneration++;
+        mRows.remove(id);
+    }
+
+    /**
+     * Drop every product. Called once a write to an unknown set of products has been committed.
+     */
+    synchronized void invalidateAll() {
+        mWriteGeneration++;
+        mRows.evictAll();
+    }
+
+    /**
+     * Stop caching rows until the matching {@link #endBatch()}.
+     */
+    synchronized void beginBatch() {
+        mOpenBatches++;
+    }
+
+    /**
+     * Resume caching rows once a batch has been committed or rolled back.
+     */
+    synchronized void endBatch() {
+        mOpenBatches--;
+        mWriteGeneration++;
+    }
+
+    /**
+     * Drop every product to free memory, without counting it as a write.
+     */
+    void trimMemory() {
+        mRows.evictAll();
+    }
+
+    /**
+     * Number of queries answered from the cache
+     */
+    int getHitCount() {
+        return mRows.hitCount();
+    }
+
+    /**
+     * Number of queries that had to read the database
+     */
+    int getMissCount() {
+        return mRows.missCount();
+    }
+
+    /**
+     * Number of products dropped to stay within the size limit, to free memory or because any
+     * number of products were written at once
+     */
+    int getEvictionCount() {
+        return mRows.evictionCount();
+    }
+
+    /**
+     * Return the position of each column of the given projection in a cached row, or null if
+     * any of them isn't a plain column of the products table.
+     */
+    private static int[] resolveProjection(String[] projection) {
+        if (projection == null) {
+            projection = COLUMNS;
+        }
+        int[] indices = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            Integer index = sColumnIndices.get(projection[i]);
+            if (index == null) {
+                return null;
+            }
+            indices[i] = index;
+        }
+        return indices;
+    }
+
+    /**
+     * Return a single row cursor with the given columns of the cached row.
+     */
+    private static Cursor toCursor(Object[] row, String[] columnNames, int[] indices) {
+        Object[] values = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            values[i] = row[indices[i]];
+        }
+        MatrixCursor cursor = new MatrixCursor(columnNames, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    /**
+     * Read a value of the given cursor with the type it's stored with.
+     */
+    private static Object readValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    /**
+     * Estimate the memory used by a cached row, in bytes.
+     */
+    private static int estimateSize(Object[] row) {
+        int size = ROW_OVERHEAD_BYTES;
+        for (Object value : row) {
+            if (value instanceof String) {
+                size += 2 * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.android.inventory.data;
+
+/**
+ * Thrown by the provider when an update expected a product at a row version it has moved on
+ * from, because the product was changed meanwhile. Nothing was written; read the product again
+ * before deciding whether to save over the change.
+ */
+public class ProductConflictException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID of the product that changed
+     */
+    private final long mProductId;
+
+    public ProductConflictException(long productId) {
+        super("Product " + productId + " was changed meanwhile");
+        mProductId = productId;
+    }
+
+    /**
+     * Return the ID of the product that changed.
+     */
+    public long getProductId() {
+        return mProductId;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.inventory.data;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of {@link InventoryProvider}, kept per operation and per kind of
+ * content URI. Every counter is an atomic array slot, so recording never takes a lock and
+ * concurrent callers only contend on the slot they both touch.
+ * <p>
+ * Metrics are off by default. While they're off {@link #start()} returns
+ * {@link #NOT_RECORDING} after reading a single volatile field, and the provider skips all the
+ * other bookkeeping.
+ */
+final class ProviderMetrics {
+
+    /**
+     * Operations the latencies are recorded for
+     */
+    static final int OPERATION_QUERY = 0;
+    static final int OPERATION_INSERT = 1;
+    static final int OPERATION_BULK_INSERT = 2;
+    static final int OPERATION_UPDATE = 3;
+    static final int OPERATION_DELETE = 4;
+
+    /**
+     * Names of the operations, in the order of their constants
+     */
+    private static final String[] OPERATION_NAMES = {"query", "insert", "bulkInsert", "update", "delete"};
+
+    /**
+     * Returned by {@link #start()} when metrics are off
+     */
+    static final long NOT_RECORDING = Long.MIN_VALUE;
+
+    /**
+     * Number of latency buckets. Bucket i counts the calls that took from 2^i up to 2^(i+1)
+     * microseconds, the first one also counting anything faster and the last one anything slower.
+     */
+    private static final int BUCKET_COUNT = 20;
+
+    /**
+     * Names of the kinds of content URI, indexed by the slot the provider records them under
+     */
+    private final String[] mUriNames;
+
+    /**
+     * Whether calls are being recorded
+     */
+    private volatile boolean mEnabled;
+
+    /**
+     * Per operation and URI: calls, failed calls, rows returned or written, total and longest
+     * latency in nanoseconds
+     */
+    private final AtomicLongArray mCalls;
+    private final AtomicLongArray mErrors;
+    private final AtomicLongArray mRows;
+    private final AtomicLongArray mTotalNanos;
+    private final AtomicLongArray mMaxNanos;
+
+    /**
+     * Per operation, URI and bucket: number of calls whose latency fell in the bucket
+     */
+    private final AtomicLongArray mHistogram;
+
+    /**
+     * Per URI: cursor windows filled, and change notifications sent
+     */
+    private final AtomicLongArray mWindowFills;
+    private final AtomicLongArray mNotifications;
+
+    /**
+     * Constructs a new {@link ProviderMetrics}.
+     *
+     * @param uriNames names of the kinds of content URI, indexed by the slot they're recorded under
+     */
+    ProviderMetrics(String[] uriNames) {
+        mUriNames = uriNames;
+        int entries = OPERATION_NAMES.length * uriNames.length;
+        mCalls = new AtomicLongArray(entries);
+        mErrors = new AtomicLongArray(entries);
+        mRows = new AtomicLongArray(entries);
+        mTotalNanos = new AtomicLongArray(entries);
+        mMaxNanos = new AtomicLongArray(entries);
+        mHistogram = new AtomicLongArray(entries * BUCKET_COUNT);
+        mWindowFills = new AtomicLongArray(uriNames.length);
+        mNotifications = new AtomicLongArray(uriNames.length);
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Start or stop recording. What has been recorded so far is kept.
+     */
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Set every counter back to 0. Calls recorded meanwhile may be partly kept.
+     */
+    void reset() {
+        clear(mCalls);
+        clear(mErrors);
+        clear(mRows);
+        clear(mTotalNanos);
+        clear(mMaxNanos);
+        clear(mHistogram);
+        clear(mWindowFills);
+        clear(mNotifications);
+    }
+
+    private static void clear(AtomicLongArray array) {
+        for (int i = 0; i < array.length(); i++) {
+            array.set(i, 0);
+        }
+    }
+
+    /**
+     * Return the start time of a call to pass to {@link #record}, or {@link #NOT_RECORDING} if
+     * metrics are off.
+     */
+    long start() {
+        return mEnabled ? System.nanoTime() : NOT_RECORDING;
+    }
+
+    /**
+     * Record a call that started at the given time.
+     *
+     * @param operation one of the OPERATION constants
+     * @param uri       slot of the kind of URI called
+     * @param start     as returned by {@link #start()}
+     * @param rows      number of rows returned or written
+     * @param failed    true if the call threw
+     */
+    void record(int operation, int uri, long start, long rows, boolean failed) {
+        if (start == NOT_RECORDING) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int entry = operation * mUriNames.length + uri;
+        mCalls.incrementAndGet(entry);
+        if (failed) {
+            mErrors.incrementAndGet(entry);
+        }
+        mRows.addAndGet(entry, rows);
+        mTotalNanos.addAndGet(entry, nanos);
+        long max;
+        do {
+            max = mMaxNanos.get(entry);
+        } while (nanos > max && !mMaxNanos.compareAndSet(entry, max, nanos));
+        mHistogram.incrementAndGet(entry * BUCKET_COUNT + bucketOf(nanos));
+    }
+
+    /**
+     * Record that a cursor of the given kind of URI filled a window with rows.
+     */
+    void recordWindowFill(int uri) {
+        if (mEnabled) {
+            mWindowFills.incrementAndGet(uri);
+        }
+    }
+
+    /**
+     * Record that a change notification was sent for the given kind of URI.
+     */
+    void recordNotification(int uri) {
+        if (mEnabled) {
+            mNotifications.incrementAndGet(uri);
+        }
+    }
+
+    /**
+     * Return the histogram bucket of the given latency.
+     */
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Return the upper bound in microseconds of the bucket holding the given fraction of the
+     * calls of an entry, or 0 if it has no calls.
+     */
+    private long percentileMicros(int entry, long calls, double fraction) {
+        long target = (long) Math.ceil(calls * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mHistogram.get(entry * BUCKET_COUNT + i);
+            if (seen >= target && seen > 0) {
+                return 1L << (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return a copy of the counters, as described by {@link InventoryContract#METHOD_GET_METRICS}.
+     * Only the operations called at least once are included. Counters are read one by one, so
+     * calls recorded while the copy is made may be partly included.
+     */
+    Bundle snapshot() {
+        ArrayList<Integer> entries = new ArrayList<>();
+        for (int entry = 0; entry < mCalls.length(); entry++) {
+            if (mCalls.get(entry) > 0) {
+                entries.add(entry);
+            }
+        }
+
+        int count = entries.size();
+        String[] operations = new String[count];
+        long[] calls = new long[count];
+        long[] errors = new long[count];
+        long[] rows = new long[count];
+        long[] meanMicros = new long[count];
+        long[] p50Micros = new long[count];
+        long[] p95Micros = new long[count];
+        long[] p99Micros = new long[count];
+        long[] maxMicros = new long[count];
+        for (int i = 0; i < count; i++) {
+            int entry = entries.get(i);
+            operations[i] = OPERATION_NAMES[entry / mUriNames.length] + " " + mUriNames[entry % mUriNames.length];
+            calls[i] = mCalls.get(entry);
+            errors[i] = mErrors.get(entry);
+            rows[i] = mRows.get(entry);
+            meanMicros[i] = mTotalNanos.get(entry) / calls[i] / 1000;
+            p50Micros[i] = percentileMicros(entry, calls[i], 0.50);
+            p95Micros[i] = percentileMicros(entry, calls[i], 0.95);
+            p99Micros[i] = percentileMicros(entry, calls[i], 0.99);
+            maxMicros[i] = mMaxNanos.get(entry) / 1000;
+        }
+
+        long[] windowFills = new long[mUriNames.length];
+        long[] notifications = new long[mUriNames.length];
+        for (int uri = 0; uri < mUriNames.length; uri++) {
+            windowFills[uri] = mWindowFills.get(uri);
+            notifications[uri] = mNotifications.get(uri);
+        }
+
+        Bundle snapshot = new Bundle();
+        snapshot.putBoolean(InventoryContract.EXTRA_METRICS_ENABLED, mEnabled);
+        snapshot.putStringArray(InventoryContract.EXTRA_METRICS_OPERATIONS, operations);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_CALLS, calls);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_ERRORS, errors);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_ROWS, rows);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_MEAN_MICROS, meanMicros);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_P50_MICROS, p50Micros);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_P95_MICROS, p95Micros);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_P99_MICROS, p99Micros);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_MAX_MICROS, maxMicros);
+        snapshot.putStringArray(InventoryContract.EXTRA_METRICS_URIS, mUriNames.clone());
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_WINDOW_FILLS, windowFills);
+        snapshot.putLongArray(InventoryContract.EXTRA_METRICS_NOTIFICATIONS, notifications);
+        return snapshot;
+    }
+}
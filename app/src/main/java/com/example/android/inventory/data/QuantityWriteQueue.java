@@ -0,0 +1,399 @@
+package com.example.android.inventory.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.core.QuantityDeltas;
+import com.example.android.inventory.data.InventoryContract.ProductEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single background writer for quantity changes made by tapping the sale, '+' and '-' buttons,
+ * and for the sales of scanned barcodes. Changes to the same product made within
+ * {@link #COALESCE_WINDOW_MILLIS} are merged into one delta, and all pending deltas and scans are
+ * written through {@link InventoryProvider#applyBatch} in a single transaction that notifies the
+ * catalogue only once. A burst of scans at the till thus costs one transaction, however fast the
+ * scanner fires, and never waits for the database on the main thread.
+ * <p>
+ * Callers are expected to show the change straight away, using {@link #getPendingDelta(long)}
+ * to add the changes that haven't been written yet to the stored quantity.
+ */
+public final class QuantityWriteQueue {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = QuantityWriteQueue.class.getSimpleName();
+
+    /**
+     * How long changes are collected before they are written to the database
+     */
+    public static final long COALESCE_WINDOW_MILLIS = 250;
+
+    /**
+     * Listener notified on the main thread every time pending changes have been written.
+     */
+    public interface OnFlushListener {
+
+        /**
+         * Called after the pending changes have been written.
+         *
+         * @param rejectedIds   IDs of the products whose change was rejected, because the product
+         *                      doesn't exist anymore or its quantity would have become negative,
+         *                      including those of which only some of the copies tapped were
+         *                      sold, or because the write failed
+         * @param rejectedIsbns ISBNs scanned whose sale was rejected, because no product has
+         *                      them, it's sold out or the write failed, once per rejected scan
+         * @param flushMillis   how long writing the changes took
+         */
+        void onFlushed(long[] rejectedIds, String[] rejectedIsbns, long flushMillis);
+    }
+
+    /**
+     * The queue shared by the whole app
+     */
+    private static QuantityWriteQueue sInstance;
+
+    /**
+     * Application context used to reach the provider
+     */
+    private final Context mContext;
+
+    /**
+     * Handler of the writer thread
+     */
+    private final Handler mWriteHandler;
+
+    /**
+     * Handler of the main thread, where the listeners are called
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Changes not written yet. Guarded by itself.
+     */
+    private final QuantityDeltas mPendingDeltas = new QuantityDeltas();
+
+    /**
+     * Changes taken by the write in progress. They count as pending until they're in the
+     * database, but can't be discarded anymore. Only changed on the writer thread, which thus
+     * reads them without a lock, and guarded by {@link #mPendingDeltas} for the other threads.
+     */
+    private final QuantityDeltas mFlushingDeltas = new QuantityDeltas();
+
+    /**
+     * False while no change of a quantity is pending or being written, so the catalogue binds
+     * its products without taking the lock. Only set holding {@link #mPendingDeltas}.
+     */
+    private volatile boolean mHasDeltas;
+
+    /**
+     * ISBNs scanned and not sold yet, one per copy, in the order they were scanned. Guarded by
+     * {@link #mPendingDeltas}. Unlike taps they aren't merged per product: if fewer copies are
+     * left than were scanned, the scans beyond them are rejected on their own.
+     */
+    private final ArrayList<String> mPendingScans = new ArrayList<>();
+
+    /**
+     * Listeners to call once pending changes have been written
+     */
+    private final List<OnFlushListener> mListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * How long the last write took, in milliseconds
+     */
+    private volatile long mLastFlushMillis;
+
+    /**
+     * Writes all the pending changes
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private QuantityWriteQueue(Context context) {
+        mContext = context.getApplicationContext();
+        HandlerThread writeThread = new HandlerThread("QuantityWriteQueue", Process.THREAD_PRIORITY_BACKGROUND);
+        writeThread.start();
+        mWriteHandler = new Handler(writeThread.getLooper());
+    }
+
+    /**
+     * Return the queue shared by the whole app.
+     *
+     * @param context of the app
+     */
+    public static synchronized QuantityWriteQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new QuantityWriteQueue(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Queue a change of the quantity of the given product. The change is written within
+     * {@link #COALESCE_WINDOW_MILLIS}, together with any other change queued meanwhile.
+     *
+     * @param id    of the product
+     * @param delta amount to add to the quantity, negative to remove stock
+     */
+    public void adjust(long id, int delta) {
+        synchronized (mPendingDeltas) {
+            boolean wasEmpty = isEmpty();
+            mPendingDeltas.add(id, delta);
+            mHasDeltas = true;
+            if (wasEmpty) {
+                mWriteHandler.postDelayed(mFlushRunnable, COALESCE_WINDOW_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Queue the sale of one copy of the product with the given ISBN or barcode, as scanned at the
+     * till. The sale is written within {@link #COALESCE_WINDOW_MILLIS}, together with every
+     * other change queued meanwhile, and reported to the listeners if it's rejected.
+     *
+     * @param isbn as scanned or typed
+     * @throws IllegalArgumentException if it can't be an ISBN or barcode, see
+     *                                  {@link ProductRules#normalizeIsbn}, as it would fail the
+     *                                  whole batch
+     */
+    public void sellByIsbn(String isbn) {
+        isbn = ProductRules.normalizeIsbn(isbn);
+        if (isbn == null) {
+            return;
+        }
+        synchronized (mPendingDeltas) {
+            boolean wasEmpty = isEmpty();
+            mPendingScans.add(isbn);
+            if (wasEmpty) {
+                mWriteHandler.postDelayed(mFlushRunnable, COALESCE_WINDOW_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Return true if nothing is waiting to be written. Must be called holding
+     * {@link #mPendingDeltas}.
+     */
+    private boolean isEmpty() {
+        return mPendingDeltas.isEmpty() && mPendingScans.isEmpty();
+    }
+
+    /**
+     * Remove the change to the quantity of the given product that the writer hasn't taken yet,
+     * and return it. Use this before writing an absolute quantity that already includes it, so
+     * it isn't added again on top, and {@link #adjust(long, int)} it back if that write fails.
+     * A change the writer has already taken is written anyway.
+     */
+    public int discardPendingDelta(long id) {
+        synchronized (mPendingDeltas) {
+            int pending = mPendingDeltas.remove(id);
+            mHasDeltas = !mPendingDeltas.isEmpty() || !mFlushingDeltas.isEmpty();
+            return pending;
+        }
+    }
+
+    /**
+     * Return the change to the quantity of the given product that hasn't been written yet.
+     */
+    public int getPendingDelta(long id) {
+        if (!mHasDeltas) {
+            return 0;
+        }
+        synchronized (mPendingDeltas) {
+            return mPendingDeltas.get(id) + mFlushingDeltas.get(id);
+        }
+    }
+
+    /**
+     * Return the number of products with changes that haven't been written yet.
+     */
+    public int getPendingCount() {
+        synchronized (mPendingDeltas) {
+            int count = mPendingDeltas.size();
+            for (int i = 0; i < mFlushingDeltas.size(); i++) {
+                if (mPendingDeltas.get(mFlushingDeltas.getId(i)) == 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Return the number of scans whose sale hasn't been written yet.
+     */
+    public int getPendingScanCount() {
+        synchronized (mPendingDeltas) {
+            return mPendingScans.size();
+        }
+    }
+
+    /**
+     * Return how long the last write of pending changes took, in milliseconds.
+     */
+    public long getLastFlushMillis() {
+        return mLastFlushMillis;
+    }
+
+    /**
+     * Register a listener called on the main thread every time pending changes have been written.
+     */
+    public void addOnFlushListener(OnFlushListener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener added with {@link #addOnFlushListener(OnFlushListener)}.
+     */
+    public void removeOnFlushListener(OnFlushListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Write all the pending changes in one batch. Runs on the writer thread.
+     */
+    private void flush() {
+        // Take the pending changes, so new ones are collected for the next write. Changes for
+        // products that net out to 0 have nothing to write.
+        QuantityDeltas deltas = mFlushingDeltas;
+        ArrayList<String> scans;
+        synchronized (mPendingDeltas) {
+            for (int i = 0; i < mPendingDeltas.size(); i++) {
+                if (mPendingDeltas.getDelta(i) != 0) {
+                    deltas.add(mPendingDeltas.getId(i), mPendingDeltas.getDelta(i));
+                }
+            }
+            mPendingDeltas.clear();
+            scans = new ArrayList<>(mPendingScans);
+            mPendingScans.clear();
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(deltas.size() + scans.size());
+        for (int i = 0; i < deltas.size(); i++) {
+            operations.add(newAdjustOperation(deltas.getId(i), deltas.getDelta(i)));
+        }
+        // Each scan sells one copy on its own, after the taps, so a scan rejected for lack of
+        // stock leaves the others of the same product sold
+        for (String isbn : scans) {
+            operations.add(ContentProviderOperation
+                    .newUpdate(ProductEntry.buildIsbnUri(isbn).buildUpon()
+                            .appendPath(InventoryContract.PATH_ADJUST).build())
+                    .withValue(ProductEntry.QUERY_PARAMETER_DELTA, -1)
+                    .build());
+        }
+
+        long startNanos = System.nanoTime();
+        ContentProviderResult[] results = operations.isEmpty() ? null : applyBatch(operations);
+        // A sale merged from several taps is rejected whole if fewer copies are left than were
+        // tapped, so sell those taps one by one: as many are sold as there are copies left
+        ArrayList<ContentProviderOperation> taps = new ArrayList<>();
+        ArrayList<Long> tappedIds = new ArrayList<>();
+        if (results != null) {
+            for (int i = 0; i < deltas.size(); i++) {
+                if (!isApplied(results[i]) && deltas.getDelta(i) < -1) {
+                    for (int tap = 0; tap < -deltas.getDelta(i); tap++) {
+                        taps.add(newAdjustOperation(deltas.getId(i), -1));
+                        tappedIds.add(deltas.getId(i));
+                    }
+                }
+            }
+        }
+        ContentProviderResult[] tapResults = taps.isEmpty() ? null : applyBatch(taps);
+        final long flushMillis = (System.nanoTime() - startNanos) / 1000000;
+        mLastFlushMillis = flushMillis;
+
+        final long[] rejectedIds = new long[deltas.size()];
+        int rejectedCount = 0;
+        for (int i = 0; i < deltas.size(); i++) {
+            long id = deltas.getId(i);
+            if (results == null || (!isApplied(results[i]) && !tappedIds.contains(id))) {
+                rejectedIds[rejectedCount++] = id;
+            }
+        }
+        // A product sold tap by tap is reported if any of its taps was rejected
+        for (int i = 0; i < taps.size(); i++) {
+            long id = tappedIds.get(i);
+            if ((tapResults == null || !isApplied(tapResults[i]))
+                    && (rejectedCount == 0 || rejectedIds[rejectedCount - 1] != id)) {
+                rejectedIds[rejectedCount++] = id;
+            }
+        }
+        final String[] rejectedIsbns = new String[scans.size()];
+        int rejectedScanCount = 0;
+        for (int i = 0; i < scans.size(); i++) {
+            if (results == null || !isApplied(results[deltas.size() + i])) {
+                rejectedIsbns[rejectedScanCount++] = scans.get(i);
+            }
+        }
+
+        // The changes are now in the database (or were rejected), so they're no longer pending.
+        // Those queued since are left for the next write, which was posted when they were.
+        synchronized (mPendingDeltas) {
+            mFlushingDeltas.clear();
+            mHasDeltas = !mPendingDeltas.isEmpty();
+        }
+
+        final long[] rejected = Arrays.copyOf(rejectedIds, rejectedCount);
+        final String[] rejectedScans = Arrays.copyOf(rejectedIsbns, rejectedScanCount);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (OnFlushListener listener : mListeners) {
+                    listener.onFlushed(rejected, rejectedScans, flushMillis);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return an operation changing the quantity of the given product by the given amount.
+     */
+    private static ContentProviderOperation newAdjustOperation(long id, int delta) {
+        return ContentProviderOperation
+                .newUpdate(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id)
+                        .buildUpon().appendPath(InventoryContract.PATH_ADJUST).build())
+                .withValue(ProductEntry.QUERY_PARAMETER_DELTA, delta)
+                .build();
+    }
+
+    /**
+     * Apply the given operations in one transaction, and return their results, or null if they
+     * failed, in which case none of them was applied.
+     */
+    private ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) {
+        try {
+            return mContext.getContentResolver().applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException | RuntimeException e) {
+            // A runtime failure, e.g. of the database, is caught too, so the changes are still
+            // taken off the queue and reported as rejected rather than killing the writer thread
+            Log.e(LOG_TAG, "Failed to write " + operations.size() + " quantity changes", e);
+            return null;
+        }
+    }
+
+    /**
+     * Return true if the given result of an adjust operation changed the quantity.
+     */
+    private static boolean isApplied(ContentProviderResult result) {
+        return result.count != null && result.count != 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.inventory.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Latencies of one operation at one table size. Results are written as one JSON object per line,
+ * so a results file is a JSON array that can also be read back a line at a time without a JSON
+ * library.
+ */
+final class BenchmarkResult {
+
+    /**
+     * Matches a result line written by {@link #toJson()}
+     */
+    private static final Pattern JSON_LINE = Pattern.compile(
+            "\\{\"rows\":(\\d+),\"operation\":\"(\\w+)\",\"iterations\":(\\d+),\"rows_per_op\":(\\d+),"
+                    + "\"mean_us\":([\\d.]+),\"p50_us\":([\\d.]+),\"p95_us\":([\\d.]+),\"p99_us\":([\\d.]+),"
+                    + "\"ops_per_sec\":([\\d.]+)\\},?");
+
+    /**
+     * Number of products in the table, and name of the operation
+     */
+    final int mRows;
+    final String mOperation;
+
+    /**
+     * Number of timed iterations, and rows read or written by each
+     */
+    final int mIterations;
+    final int mRowsPerOp;
+
+    /**
+     * Mean, median, 95th and 99th percentile latency in microseconds
+     */
+    final double mMeanMicros;
+    final double mP50Micros;
+    final double mP95Micros;
+    final double mP99Micros;
+
+    BenchmarkResult(int rows, String operation, int rowsPerOp, long[] nanos) {
+        this(rows, operation, nanos.length, rowsPerOp, mean(nanos) / 1000, percentile(nanos, 0.50) / 1000,
+                percentile(nanos, 0.95) / 1000, percentile(nanos, 0.99) / 1000);
+    }
+
+    private BenchmarkResult(int rows, String operation, int iterations, int rowsPerOp, double meanMicros,
+                            double p50Micros, double p95Micros, double p99Micros) {
+        mRows = rows;
+        mOperation = operation;
+        mIterations = iterations;
+        mRowsPerOp = rowsPerOp;
+        mMeanMicros = meanMicros;
+        mP50Micros = p50Micros;
+        mP95Micros = p95Micros;
+        mP99Micros = p99Micros;
+    }
+
+    /**
+     * Return the number of operations per second at the mean latency.
+     */
+    double getOpsPerSecond() {
+        return mMeanMicros == 0 ? 0 : 1000000 / mMeanMicros;
+    }
+
+    private static double mean(long[] nanos) {
+        double total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        return total / nanos.length;
+    }
+
+    /**
+     * Return the given percentile of the latencies, with the nearest rank method.
+     */
+    private static double percentile(long[] nanos, double fraction) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Return the result as a single line JSON object.
+     */
+    String toJson() {
+        return String.format(Locale.US, "{\"rows\":%d,\"operation\":\"%s\",\"iterations\":%d,\"rows_per_op\":%d,"
+                        + "\"mean_us\":%.1f,\"p50_us\":%.1f,\"p95_us\":%.1f,\"p99_us\":%.1f,\"ops_per_sec\":%.1f}",
+                mRows, mOperation, mIterations, mRowsPerOp, mMeanMicros, mP50Micros, mP95Micros, mP99Micros,
+                getOpsPerSecond());
+    }
+
+    /**
+     * Parse a line written by {@link #toJson()}, or return null if the line isn't a result.
+     */
+    static BenchmarkResult fromJson(String line) {
+        Matcher matcher = JSON_LINE.matcher(line.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new BenchmarkResult(Integer.parseInt(matcher.group(1)), matcher.group(2),
+                Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)),
+                Double.parseDouble(matcher.group(5)), Double.parseDouble(matcher.group(6)),
+                Double.parseDouble(matcher.group(7)), Double.parseDouble(matcher.group(8)));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%9d  %-17s %7d %10.1f %10.1f %10.1f %10.1f %12.1f",
+                mRows, mOperation, mIterations, mMeanMicros, mP50Micros, mP95Micros, mP99Micros, getOpsPerSecond());
+    }
+}
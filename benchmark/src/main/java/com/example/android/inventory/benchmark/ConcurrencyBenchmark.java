@@ -0,0 +1,280 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+import com.example.android.inventory.core.StorageException;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures how long the catalogue waits to read a page of products while another connection
+ * writes, as the loader does while an import or a sync runs. A reader connection times pages of
+ * products, first alone, then while a writer connection inserts batches of products with a short
+ * pause between them, as an import parses its next rows or a sync waits for its next page, both in
+ * write-ahead logging mode, as the app opens its database, and with the rollback journal it used
+ * before, where a write locks readers out.
+ * <p>
+ * Usage: ConcurrencyBenchmark [--rows 100000] [--batch 500] [--pause 50] [--iterations 5000]
+ */
+public final class ConcurrencyBenchmark {
+
+    /**
+     * A page of the catalogue after the given ID, as the loader reads it
+     */
+    private static final String SQL_QUERY_PAGE = "SELECT " + ProductTable.SELECT_COLUMNS + " FROM "
+            + ProductTable.TABLE_NAME + " WHERE " + ProductTable._ID + " > ? ORDER BY " + ProductTable._ID
+            + " LIMIT 50";
+
+    /**
+     * Milliseconds a connection waits for another to release its lock before failing, as long as
+     * Android waits
+     */
+    private static final int BUSY_TIMEOUT_MILLIS = 2500;
+
+    /**
+     * Seeded, so every run reads the same pages
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Connection reading the pages, and the repository writing the batches on its own connection
+     */
+    private final JdbcSqlDatabase mReader;
+    private final SqliteInventoryRepository mRepository;
+
+    /**
+     * Number of products the database is filled with, inserted by each write transaction, and
+     * milliseconds the writer waits after each
+     */
+    private final int mRows;
+    private final int mBatch;
+    private final int mPauseMillis;
+
+    /**
+     * Number of reads of the current measure that gave up waiting for the writer
+     */
+    private int mTimeouts;
+
+    private ConcurrencyBenchmark(JdbcSqlDatabase reader, JdbcSqlDatabase writer, int rows, int batch,
+                                 int pauseMillis) {
+        mReader = reader;
+        mRepository = new SqliteInventoryRepository(writer);
+        mRows = rows;
+        mBatch = batch;
+        mPauseMillis = pauseMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int batch = 500;
+        int pauseMillis = 50;
+        int iterations = 5000;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--batch".equals(arg)) {
+                batch = Integer.parseInt(value);
+            } else if ("--pause".equals(arg)) {
+                pauseMillis = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        BenchmarkResult[] wal = run(true, rows, batch, pauseMillis, iterations);
+        BenchmarkResult[] rollback = run(false, rows, batch, pauseMillis, iterations);
+
+        System.out.println(String.format(Locale.US, "%9s  while writing, WAL p50 is %.1fx and p99 %.1fx faster "
+                        + "than the rollback journal's", "",
+                rollback[1].mP50Micros / wal[1].mP50Micros, rollback[1].mP99Micros / wal[1].mP99Micros));
+    }
+
+    /**
+     * Fill a new database in the given journal mode and time its reader alone, then while
+     * writing, and return both results.
+     */
+    private static BenchmarkResult[] run(boolean wal, int rows, int batch, int pauseMillis, int iterations)
+            throws Exception {
+        File file = File.createTempFile("concurrency-benchmark", ".db");
+        if (!file.delete()) {
+            throw new IllegalStateException("Failed to delete " + file);
+        }
+        JdbcSqlDatabase writer = JdbcSqlDatabase.openInventory(file.getPath());
+        JdbcSqlDatabase reader = null;
+        try {
+            if (!wal) {
+                // Changing the journal mode back needs the writer to be the only connection
+                writer.execute("PRAGMA journal_mode = DELETE;");
+            }
+            writer.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS + ";");
+            reader = openReader(file.getPath(), wal);
+            reader.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MILLIS + ";");
+            ConcurrencyBenchmark benchmark = new ConcurrencyBenchmark(reader, writer, rows, batch, pauseMillis);
+            benchmark.fill();
+            return benchmark.run(wal ? "wal" : "rollback", iterations);
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            writer.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Open a second connection to the database the writer created. In WAL mode it's configured
+     * as the app's connections are. With the rollback journal it's opened as is, as configuring
+     * it would turn write-ahead logging back on for the file.
+     */
+    private static JdbcSqlDatabase openReader(String path, boolean wal) {
+        if (wal) {
+            return JdbcSqlDatabase.openInventory(path);
+        }
+        try {
+            return new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite:" + path));
+        } catch (SQLException e) {
+            throw new StorageException("Cannot open " + path, e);
+        }
+    }
+
+    private void fill() {
+        List<Product> products = new ArrayList<>(mBatch);
+        for (int n = 1; n <= mRows; n++) {
+            products.add(newProduct(n));
+            if (products.size() == mBatch || n == mRows) {
+                mRepository.insertProducts(products);
+                products.clear();
+            }
+        }
+    }
+
+    /**
+     * Time the reader alone, then while the writer inserts batches on its own thread, and print
+     * how many batches the writer committed and how many reads gave up waiting for it.
+     */
+    private BenchmarkResult[] run(String mode, int iterations) throws InterruptedException {
+        BenchmarkResult idle = measure(mode + "_idle", iterations);
+
+        Writer writer = new Writer();
+        Thread thread = new Thread(writer, "writer");
+        long start = System.nanoTime();
+        thread.start();
+        BenchmarkResult writing;
+        try {
+            writing = measure(mode + "_writing", iterations);
+        } finally {
+            writer.mStopped = true;
+            thread.join();
+        }
+        if (writer.mFailure != null) {
+            throw writer.mFailure;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.US, "%9s  writer committed %d batches of %d products, %.1f per second",
+                "", writer.mBatches, mBatch, writer.mBatches / seconds));
+        System.out.println(String.format(Locale.US, "%9s  %d reads gave up after waiting %d ms for the writer",
+                "", mTimeouts, BUSY_TIMEOUT_MILLIS));
+        return new BenchmarkResult[]{idle, writing};
+    }
+
+    /**
+     * Read a tenth of the given number of pages to warm up, then time reading the given number
+     * of pages after random products. A read that gives up waiting for the writer is timed up to
+     * then, and counted in {@link #mTimeouts}.
+     */
+    private BenchmarkResult measure(String name, int iterations) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            readPage();
+        }
+        mTimeouts = 0;
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            readPage();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, 50, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private void readPage() {
+        SqlDatabase.Rows rows;
+        try {
+            rows = mReader.query(SQL_QUERY_PAGE, mRandom.nextInt(mRows));
+        } catch (StorageException e) {
+            // Locked out by the writer for longer than the busy timeout
+            mTimeouts++;
+            return;
+        }
+        try {
+            while (rows.moveToNext()) {
+                SqliteInventoryRepository.readProduct(rows);
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    private static Product newProduct(int n) {
+        return new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                String.format(Locale.US, "555-%04d", n % 10000), n % 100, n % 20, 2);
+    }
+
+    /**
+     * Inserts batches of products, each in its own transaction, until stopped.
+     */
+    private final class Writer implements Runnable {
+
+        /**
+         * Set by the reader's thread once it's done
+         */
+        volatile boolean mStopped;
+
+        /**
+         * Number of batches committed, and what made the writer fail, if it did
+         */
+        int mBatches;
+        RuntimeException mFailure;
+
+        @Override
+        public void run() {
+            List<Product> products = new ArrayList<>(mBatch);
+            int n = mRows;
+            try {
+                while (!mStopped) {
+                    products.clear();
+                    for (int i = 0; i < mBatch; i++) {
+                        products.add(newProduct(++n));
+                    }
+                    mRepository.insertProducts(products);
+                    mBatches++;
+                    Thread.sleep(mPauseMillis);
+                }
+            } catch (RuntimeException e) {
+                mFailure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
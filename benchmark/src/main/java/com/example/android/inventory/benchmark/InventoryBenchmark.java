@@ -0,0 +1,517 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.ProductRules;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures the statements the app runs, with the inventory-core schema and repository used by
+ * InventoryProvider, on SQLite over JDBC on a plain JVM. For every table size asked for, a fresh
+ * database is filled with that many products and each operation is timed on its own after a
+ * warm-up.
+ * <p>
+ * Usage: InventoryBenchmark [--rows 1000,100000,1000000] [--scale 1.0]
+ * [--output results.json] [--baseline baseline.json] [--tolerance 0.5]
+ * <p>
+ * With a baseline, the run fails with exit code 1 if the median latency of any operation is more
+ * than the tolerance above the baseline's.
+ */
+public final class InventoryBenchmark {
+
+    /**
+     * Encoding of the results files
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Products inserted per transaction while filling the table, and by a batched insert, as
+     * bulkInsert() would
+     */
+    private static final int FILL_BATCH_SIZE = 10000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    /**
+     * Products read by a page query, as ProductPageLoader reads them
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Every column of a product, as read by the repository
+     */
+    private static final String COLUMNS = ProductTable.SELECT_COLUMNS;
+
+    /**
+     * Queries run by the provider itself rather than the repository, see InventoryProvider
+     */
+    private static final String SQL_QUERY_PAGE = "SELECT " + COLUMNS + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable._ID + " > ? ORDER BY " + ProductTable._ID + " ASC LIMIT " + PAGE_SIZE;
+    private static final String SQL_QUERY_ALL = "SELECT " + COLUMNS + " FROM " + ProductTable.TABLE_NAME
+            + " ORDER BY " + ProductTable._ID + " ASC";
+    private static final String SQL_SCAN = "SELECT count(*) FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_NAME + " LIKE '%99' OR " + ProductTable.COLUMN_AUTHOR + " LIKE '%99'";
+    private static final String SQL_SEARCH_MATCH = "SELECT " + COLUMNS + " FROM " + ProductTable.TABLE_NAME
+            + " JOIN " + ProductTable.SEARCH_TABLE_NAME + " ON " + ProductTable.TABLE_NAME + "." + ProductTable._ID
+            + " = " + ProductTable.SEARCH_TABLE_NAME + ".docid WHERE " + ProductTable.SEARCH_TABLE_NAME
+            + " MATCH ? ORDER BY length(offsets(" + ProductTable.SEARCH_TABLE_NAME + ")) DESC";
+    private static final String SQL_SEARCH_LIKE = "SELECT " + COLUMNS + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_NAME + " LIKE ? OR " + ProductTable.COLUMN_AUTHOR + " LIKE ?";
+    private static final String SQL_QUERY_INSERTED = "SELECT " + ProductTable._ID + " FROM "
+            + ProductTable.TABLE_NAME + " WHERE " + ProductTable._ID + " > ? ORDER BY " + ProductTable._ID;
+
+    /**
+     * A single timed operation.
+     */
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Multiplier of the number of iterations, to trade precision for time
+     */
+    private final double mScale;
+
+    /**
+     * Seeded, so every run reads and writes the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, the repository writing to it, and its number of products
+     */
+    private JdbcSqlDatabase mDatabase;
+    private SqliteInventoryRepository mRepository;
+    private int mRows;
+
+    /**
+     * Version of SQLite the benchmark ran with
+     */
+    private String mSqliteVersion;
+
+    /**
+     * IDs of the products inserted by the insert operations, deleted by the delete operation
+     */
+    private final ArrayList<Long> mInsertedIds = new ArrayList<>();
+
+    private InventoryBenchmark(double scale) {
+        mScale = scale;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String rowsArg = "1000,100000,1000000";
+        double scale = 1.0;
+        String output = null;
+        String baseline = null;
+        double tolerance = 0.5;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rowsArg = value;
+            } else if ("--scale".equals(arg)) {
+                scale = Double.parseDouble(value);
+            } else if ("--output".equals(arg)) {
+                output = value;
+            } else if ("--baseline".equals(arg)) {
+                baseline = value;
+            } else if ("--tolerance".equals(arg)) {
+                tolerance = Double.parseDouble(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        InventoryBenchmark benchmark = new InventoryBenchmark(scale);
+        List<BenchmarkResult> results = new ArrayList<>();
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        for (String rows : rowsArg.split(",")) {
+            results.addAll(benchmark.run(Integer.parseInt(rows.trim())));
+        }
+
+        if (output != null) {
+            writeResults(new File(output), results, benchmark.mSqliteVersion);
+        }
+        if (baseline != null && !compare(readResults(new File(baseline)), results, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fill a new database with the given number of products, and time every operation on it.
+     */
+    private List<BenchmarkResult> run(int rows) throws IOException {
+        File file = File.createTempFile("inventory-benchmark", ".db");
+        // The database is created with the schema of the app, and configured as on a device
+        mDatabase = JdbcSqlDatabase.openInventory(file.getPath());
+        mRepository = new SqliteInventoryRepository(mDatabase);
+        mRows = rows;
+        mInsertedIds.clear();
+        List<BenchmarkResult> results = new ArrayList<>();
+        try {
+            mSqliteVersion = queryString("SELECT sqlite_version()");
+            fill(rows);
+
+            results.add(measurePointLookup());
+            results.add(measurePageQuery());
+            results.add(measureCursorIteration());
+            results.add(measureFullScan());
+            results.add(measureSearchMatch());
+            results.add(measureSearchLike());
+            results.add(measureUpdateQuantity());
+            results.add(measureSingleInsert());
+            results.add(measureBatchInsert());
+            readInsertedIds();
+            results.add(measureDelete());
+        } finally {
+            mDatabase.close();
+            deleteDatabase(file);
+        }
+        return results;
+    }
+
+    /**
+     * Insert the given number of products, with their initial stock movements, in large
+     * transactions. Product IDs go from 1 to the number of products.
+     */
+    private void fill(int rows) {
+        mDatabase.beginTransaction();
+        try {
+            for (int id = 1; id <= rows; id++) {
+                mRepository.insertProduct(newProduct(id));
+                if (id % FILL_BATCH_SIZE == 0) {
+                    mDatabase.setTransactionSuccessful();
+                    mDatabase.endTransaction();
+                    mDatabase.beginTransaction();
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private static Product newProduct(int n) {
+        return new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                String.format(Locale.US, "555-%04d", n % 10000), n % 100, n % 20, 2);
+    }
+
+    /**
+     * Read one product by ID, as a single product query that misses the cache does.
+     */
+    private BenchmarkResult measurePointLookup() {
+        return measure("point_lookup", 1, iterations(10000), new Operation() {
+            @Override
+            public void run() {
+                mRepository.getProduct(randomId());
+            }
+        });
+    }
+
+    /**
+     * Read a page of products after a random one, as the catalogue loads them.
+     */
+    private BenchmarkResult measurePageQuery() {
+        return measure("page_query", PAGE_SIZE, iterations(2000), new Operation() {
+            @Override
+            public void run() {
+                readAll(mDatabase.query(SQL_QUERY_PAGE, randomId()));
+            }
+        });
+    }
+
+    /**
+     * Read every column of every product, as an export does.
+     */
+    private BenchmarkResult measureCursorIteration() {
+        return measure("cursor_iteration", mRows, scanIterations(), new Operation() {
+            @Override
+            public void run() {
+                readAll(mDatabase.query(SQL_QUERY_ALL));
+            }
+        });
+    }
+
+    /**
+     * Count the products matching a condition no index can serve, which visits every row.
+     */
+    private BenchmarkResult measureFullScan() {
+        return measure("full_scan", mRows, scanIterations(), new Operation() {
+            @Override
+            public void run() {
+                SqlDatabase.Rows rows = mDatabase.query(SQL_SCAN);
+                try {
+                    rows.moveToNext();
+                    rows.getLong(0);
+                } finally {
+                    rows.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Search the products for a random number, through the full-text index, ranked as the
+     * search URI does. The number prefixes an author's and a few books' names.
+     */
+    private BenchmarkResult measureSearchMatch() {
+        return measure("search_match", 1, iterations(2000), new Operation() {
+            @Override
+            public void run() {
+                readAll(mDatabase.query(SQL_SEARCH_MATCH, randomSearchTerm() + "*"));
+            }
+        });
+    }
+
+    /**
+     * Search the products for a random number by matching the name and the author with LIKE,
+     * which no index serves, so every row is read.
+     */
+    private BenchmarkResult measureSearchLike() {
+        return measure("search_like", mRows, scanIterations(), new Operation() {
+            @Override
+            public void run() {
+                String pattern = "%" + randomSearchTerm() + "%";
+                readAll(mDatabase.query(SQL_SEARCH_LIKE, pattern, pattern));
+            }
+        });
+    }
+
+    /**
+     * Sell or restock one copy of a random product and record the movement, in one transaction,
+     * as an adjust URI does.
+     */
+    private BenchmarkResult measureUpdateQuantity() {
+        return measure("update_quantity", 1, iterations(2000), new Operation() {
+            private int mDelta = 1;
+
+            @Override
+            public void run() {
+                mDelta = -mDelta;
+                mRepository.adjustQuantity(randomId(), mDelta, ProductRules.defaultReason(mDelta));
+            }
+        });
+    }
+
+    /**
+     * Insert one product and its initial movement in one transaction, as insert() does.
+     */
+    private BenchmarkResult measureSingleInsert() {
+        return measure("insert_single", 1, iterations(1000), new Operation() {
+            @Override
+            public void run() {
+                mRepository.insertProduct(newProduct(mRandom.nextInt(mRows) + 1));
+            }
+        });
+    }
+
+    /**
+     * Insert a chunk of products in one transaction, as bulkInsert() does for an import.
+     */
+    private BenchmarkResult measureBatchInsert() {
+        return measure("insert_batch", INSERT_BATCH_SIZE, iterations(20), new Operation() {
+            @Override
+            public void run() {
+                List<Product> products = new ArrayList<>(INSERT_BATCH_SIZE);
+                for (int i = 0; i < INSERT_BATCH_SIZE; i++) {
+                    products.add(newProduct(mRandom.nextInt(mRows) + 1));
+                }
+                mRepository.insertProducts(products);
+            }
+        });
+    }
+
+    /**
+     * Collect the IDs of the products inserted by the insert operations, which all come after
+     * the products the table was filled with.
+     */
+    private void readInsertedIds() {
+        SqlDatabase.Rows rows = mDatabase.query(SQL_QUERY_INSERTED, mRows);
+        try {
+            while (rows.moveToNext()) {
+                mInsertedIds.add(rows.getLong(0));
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Delete one of the products inserted by the insert operations, in its own transaction.
+     */
+    private BenchmarkResult measureDelete() {
+        int iterations = Math.min(iterations(1000), mInsertedIds.size() * 10 / 11);
+        return measure("delete", 1, iterations, new Operation() {
+            @Override
+            public void run() {
+                mRepository.deleteProduct(mInsertedIds.remove(mInsertedIds.size() - 1));
+            }
+        });
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int rowsPerOp, int iterations, Operation operation) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, rowsPerOp, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private int iterations(int count) {
+        return Math.max(1, (int) (count * mScale));
+    }
+
+    /**
+     * Return the number of times to read the whole table: fewer the bigger it is.
+     */
+    private int scanIterations() {
+        return Math.max(3, iterations(Math.min(50, 5000000 / mRows)));
+    }
+
+    private long randomId() {
+        return mRandom.nextInt(mRows) + 1;
+    }
+
+    /**
+     * Return the number of a random author, of four digits so it matches few products.
+     */
+    private int randomSearchTerm() {
+        return 1000 + mRandom.nextInt(4000);
+    }
+
+    /**
+     * Read every column of every product of the given rows, then close them.
+     */
+    private static void readAll(SqlDatabase.Rows rows) {
+        try {
+            while (rows.moveToNext()) {
+                SqliteInventoryRepository.readProduct(rows);
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    private String queryString(String sql) {
+        SqlDatabase.Rows rows = mDatabase.query(sql);
+        try {
+            rows.moveToNext();
+            return rows.getString(0);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Delete the given database file along with its WAL and journal files.
+     */
+    static void deleteDatabase(File file) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            File part = new File(file.getPath() + suffix);
+            if (part.exists() && !part.delete()) {
+                System.err.println("Failed to delete " + part);
+            }
+        }
+    }
+
+    /**
+     * Write the results as a JSON array, whose first element describes the environment and
+     * every other one is a result on its own line.
+     */
+    private static void writeResults(File file, List<BenchmarkResult> results, String sqliteVersion)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+            writer.write(String.format(Locale.US,
+                    "[\n{\"sqlite_version\":\"%s\",\"java_version\":\"%s\",\"os\":\"%s %s\"}",
+                    sqliteVersion, System.getProperty("java.version"), System.getProperty("os.name"),
+                    System.getProperty("os.arch")));
+            for (BenchmarkResult result : results) {
+                writer.write(",\n");
+                writer.write(result.toJson());
+            }
+            writer.write("\n]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read the results of a file written by {@link #writeResults}.
+     */
+    private static List<BenchmarkResult> readResults(File file) throws IOException {
+        List<BenchmarkResult> results = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                BenchmarkResult result = BenchmarkResult.fromJson(line);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    /**
+     * Print every operation whose median latency is more than the given tolerance above the
+     * baseline's, and return true if there's none. Operations missing from the baseline are
+     * skipped.
+     */
+    private static boolean compare(List<BenchmarkResult> baseline, List<BenchmarkResult> results,
+                                   double tolerance) {
+        Map<String, BenchmarkResult> baselineByKey = new HashMap<>();
+        for (BenchmarkResult result : baseline) {
+            baselineByKey.put(result.mRows + " " + result.mOperation, result);
+        }
+        boolean passed = true;
+        for (BenchmarkResult result : results) {
+            BenchmarkResult expected = baselineByKey.get(result.mRows + " " + result.mOperation);
+            if (expected != null && result.mP50Micros > expected.mP50Micros * (1 + tolerance)) {
+                System.out.println(String.format(Locale.US, "REGRESSION %s at %d rows: p50 %.1f us, baseline %.1f us",
+                        result.mOperation, result.mRows, result.mP50Micros, expected.mP50Micros));
+                passed = false;
+            }
+        }
+        if (passed) {
+            System.out.println("No regression above " + Math.round(tolerance * 100) + "% of the baseline");
+        }
+        return passed;
+    }
+}
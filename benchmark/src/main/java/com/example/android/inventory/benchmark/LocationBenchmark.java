@@ -0,0 +1,306 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema.LocationTable;
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.StockLevelTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares reading the catalogue with the total on hand kept in the quantity of every product,
+ * as the catalogue does, with adding up the stock levels of every product at every location
+ * instead. Every product is stocked at every location. Also times what keeping the total costs
+ * the writes: a transfer between two locations, and a sale, which the triggers add to the level
+ * at the default location.
+ * <p>
+ * Usage: LocationBenchmark [--rows 100000] [--locations 10] [--iterations 200]
+ */
+public final class LocationBenchmark {
+
+    /**
+     * A page of the catalogue after the given ID, with the total on hand of every product read
+     * from its quantity, or added up from its levels
+     */
+    private static final String SQL_PAGE_TOTAL = "SELECT "
+            + ProductTable._ID + ", " + ProductTable.COLUMN_NAME + ", " + ProductTable.COLUMN_PRICE + ", "
+            + ProductTable.COLUMN_QUANTITY + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable._ID + " > ? ORDER BY " + ProductTable._ID + " LIMIT 50";
+    private static final String SQL_PAGE_GROUP_BY = "SELECT "
+            + ProductTable.TABLE_NAME + "." + ProductTable._ID + ", " + ProductTable.COLUMN_NAME + ", "
+            + ProductTable.COLUMN_PRICE + ", sum(" + StockLevelTable.TABLE_NAME + "." + StockLevelTable.COLUMN_QUANTITY
+            + ") FROM " + ProductTable.TABLE_NAME + " JOIN " + StockLevelTable.TABLE_NAME + " ON "
+            + StockLevelTable.COLUMN_PRODUCT_ID + " = " + ProductTable.TABLE_NAME + "." + ProductTable._ID
+            + " WHERE " + ProductTable.TABLE_NAME + "." + ProductTable._ID + " > ? GROUP BY "
+            + ProductTable.TABLE_NAME + "." + ProductTable._ID + " ORDER BY "
+            + ProductTable.TABLE_NAME + "." + ProductTable._ID + " LIMIT 50";
+
+    /**
+     * Number of products in stock, as the catalogue's in stock filter counts them, from the
+     * quantity of every product, or from its levels
+     */
+    private static final String SQL_IN_STOCK_TOTAL = "SELECT count(*) FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_QUANTITY + " > 0";
+    private static final String SQL_IN_STOCK_GROUP_BY = "SELECT count(*) FROM (SELECT "
+            + StockLevelTable.COLUMN_PRODUCT_ID + " FROM " + StockLevelTable.TABLE_NAME + " GROUP BY "
+            + StockLevelTable.COLUMN_PRODUCT_ID + " HAVING sum(" + StockLevelTable.COLUMN_QUANTITY + ") > 0)";
+
+    /**
+     * A page of the stock at one location after the given product ID, as the provider reads it
+     */
+    private static final String SQL_LOCATION_PAGE = "SELECT "
+            + StockLevelTable.TABLE_NAME + "." + StockLevelTable.COLUMN_PRODUCT_ID + ", "
+            + ProductTable.COLUMN_NAME + ", " + StockLevelTable.TABLE_NAME + "." + StockLevelTable.COLUMN_QUANTITY
+            + " FROM " + StockLevelTable.TABLE_NAME + " JOIN " + ProductTable.TABLE_NAME + " ON "
+            + ProductTable.TABLE_NAME + "." + ProductTable._ID + " = " + StockLevelTable.COLUMN_PRODUCT_ID
+            + " WHERE " + StockLevelTable.COLUMN_LOCATION_ID + " = ? AND "
+            + StockLevelTable.TABLE_NAME + "." + StockLevelTable.COLUMN_PRODUCT_ID + " > ? ORDER BY "
+            + StockLevelTable.TABLE_NAME + "." + StockLevelTable.COLUMN_PRODUCT_ID + " LIMIT 50";
+
+    /**
+     * Checks that the levels of every product add up to its quantity
+     */
+    private static final String SQL_COUNT_MISMATCHES = "SELECT count(*) FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_QUANTITY + " != (SELECT sum(" + StockLevelTable.COLUMN_QUANTITY
+            + ") FROM " + StockLevelTable.TABLE_NAME + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID + " = "
+            + ProductTable.TABLE_NAME + "." + ProductTable._ID + ")";
+
+    /**
+     * A single timed operation.
+     */
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Seeded, so every run reads and writes the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, its repository, and its number of products and locations
+     */
+    private final JdbcSqlDatabase mDatabase;
+    private final SqliteInventoryRepository mRepository;
+    private final int mRows;
+    private final int mLocations;
+
+    private LocationBenchmark(JdbcSqlDatabase database, int rows, int locations) {
+        mDatabase = database;
+        mRepository = new SqliteInventoryRepository(database);
+        mRows = rows;
+        mLocations = locations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int locations = 10;
+        int iterations = 200;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--locations".equals(arg)) {
+                locations = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        if (locations < 2) {
+            throw new IllegalArgumentException("Transfers need at least 2 locations");
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("location-benchmark", ".db");
+        if (!file.delete()) {
+            throw new IllegalStateException("Failed to delete " + file);
+        }
+        JdbcSqlDatabase database = JdbcSqlDatabase.openInventory(file.getPath());
+        try {
+            LocationBenchmark benchmark = new LocationBenchmark(database, rows, locations);
+            benchmark.fill();
+            benchmark.run(iterations);
+        } finally {
+            database.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Insert the products at the default location and the other locations, then transfer one
+     * copy of every product to each of the other locations, so every product has a level at
+     * every location.
+     */
+    private void fill() {
+        List<Product> products = new ArrayList<>(500);
+        for (int n = 1; n <= mRows; n++) {
+            products.add(new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                    String.format(Locale.US, "555-%04d", n % 50), n % 100, mLocations + n % 20, 2));
+            if (products.size() == 500 || n == mRows) {
+                mRepository.insertProducts(products);
+                products.clear();
+            }
+        }
+        for (int location = 2; location <= mLocations; location++) {
+            mRepository.insertLocation("Location " + location);
+        }
+        mDatabase.beginTransaction();
+        try {
+            for (long id = 1; id <= mRows; id++) {
+                for (int location = 2; location <= mLocations; location++) {
+                    mRepository.transferStock(id, LocationTable.DEFAULT_ID, location, 1);
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Time the reads both ways and the writes, check the levels still add up to the totals, and
+     * print how much faster reading the totals is.
+     */
+    private void run(int iterations) {
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        BenchmarkResult pageTotal = measure("page_total", 50, iterations * 50, new PageOperation(SQL_PAGE_TOTAL));
+        BenchmarkResult pageGroupBy = measure("page_group_by", 50 * mLocations, iterations * 50,
+                new PageOperation(SQL_PAGE_GROUP_BY));
+        BenchmarkResult inStockTotal = measure("in_stock_total", mRows, iterations,
+                new CountOperation(SQL_IN_STOCK_TOTAL));
+        BenchmarkResult inStockGroupBy = measure("in_stock_group_by", mRows * mLocations, iterations,
+                new CountOperation(SQL_IN_STOCK_GROUP_BY));
+        measure("location_page", 50, iterations * 50, new Operation() {
+            @Override
+            public void run() {
+                SqlDatabase.Rows rows = mDatabase.query(SQL_LOCATION_PAGE, mRandom.nextInt(mLocations) + 1,
+                        mRandom.nextInt(mRows));
+                try {
+                    while (rows.moveToNext()) {
+                        rows.getString(1);
+                    }
+                } finally {
+                    rows.close();
+                }
+            }
+        });
+        measure("transfer", 2, iterations * 50, new Operation() {
+            @Override
+            public void run() {
+                int from = mRandom.nextInt(mLocations) + 1;
+                int to = from % mLocations + 1;
+                mRepository.transferStock(randomId(), from, to, 1);
+            }
+        });
+        measure("sale", 2, iterations * 50, new Operation() {
+            @Override
+            public void run() {
+                long id = randomId();
+                if (mRepository.adjustQuantity(id, -1, MovementTable.REASON_SALE) == null) {
+                    mRepository.adjustQuantity(id, 1, MovementTable.REASON_RESTOCK);
+                }
+            }
+        });
+        long mismatches = queryLong(SQL_COUNT_MISMATCHES);
+        if (mismatches != 0) {
+            throw new IllegalStateException(mismatches + " products don't match their stock levels");
+        }
+
+        System.out.println(String.format(Locale.US, "%9s  page median is %.1fx faster from the totals", "",
+                pageGroupBy.mP50Micros / pageTotal.mP50Micros));
+        System.out.println(String.format(Locale.US, "%9s  in stock count median is %.1fx faster from the totals",
+                "", inStockGroupBy.mP50Micros / inStockTotal.mP50Micros));
+    }
+
+    /**
+     * Reads a page of the catalogue after a random product, reading every column of every row.
+     */
+    private final class PageOperation implements Operation {
+
+        private final String mSql;
+
+        PageOperation(String sql) {
+            mSql = sql;
+        }
+
+        @Override
+        public void run() {
+            SqlDatabase.Rows rows = mDatabase.query(mSql, mRandom.nextInt(mRows));
+            try {
+                while (rows.moveToNext()) {
+                    rows.getLong(0);
+                    rows.getString(1);
+                    rows.getLong(2);
+                    rows.getLong(3);
+                }
+            } finally {
+                rows.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a query returning a single number.
+     */
+    private final class CountOperation implements Operation {
+
+        private final String mSql;
+
+        CountOperation(String sql) {
+            mSql = sql;
+        }
+
+        @Override
+        public void run() {
+            queryLong(mSql);
+        }
+    }
+
+    private long queryLong(String sql) {
+        SqlDatabase.Rows rows = mDatabase.query(sql);
+        try {
+            rows.moveToNext();
+            return rows.getLong(0);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int rowsPerOp, int iterations, Operation operation) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, rowsPerOp, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private long randomId() {
+        return mRandom.nextInt(mRows) + 1;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures selling books by scanning their barcode. Compares finding a product by its ISBN
+ * through the unique index with finding it by scanning the table, as it would be without the
+ * index, then times a scan sold in its own transaction, and a burst of scans sold in one
+ * transaction, as the app's write queue does with the scans made within its coalescing window.
+ * <p>
+ * Usage: ScanBenchmark [--rows 100000] [--burst 20] [--iterations 200]
+ */
+public final class ScanBenchmark {
+
+    /**
+     * Reads the product with the given ISBN, by the unique index, or by a table scan as the
+     * unary + keeps SQLite from using the index
+     */
+    private static final String SQL_FIND_INDEXED = "SELECT " + ProductTable._ID + ", "
+            + ProductTable.COLUMN_QUANTITY + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_ISBN + " = ?";
+    private static final String SQL_FIND_SCAN = "SELECT " + ProductTable._ID + ", "
+            + ProductTable.COLUMN_QUANTITY + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE +" + ProductTable.COLUMN_ISBN + " = ?";
+
+    /**
+     * First ISBN given to a product, followed by one per product, 13 digits like an ISBN-13
+     */
+    private static final long FIRST_ISBN = 9780000000000L;
+
+    /**
+     * A single timed operation.
+     */
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Seeded, so every run scans the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, its repository, and its number of products
+     */
+    private final JdbcSqlDatabase mDatabase;
+    private final SqliteInventoryRepository mRepository;
+    private final int mRows;
+
+    /**
+     * Number of scans sold and restocked, which must match the ledger
+     */
+    private int mSold;
+    private int mRestocked;
+
+    private ScanBenchmark(JdbcSqlDatabase database, int rows) {
+        mDatabase = database;
+        mRepository = new SqliteInventoryRepository(database);
+        mRows = rows;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int burst = 20;
+        int iterations = 200;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--burst".equals(arg)) {
+                burst = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("scan-benchmark", ".db");
+        if (!file.delete()) {
+            throw new IllegalStateException("Failed to delete " + file);
+        }
+        JdbcSqlDatabase database = JdbcSqlDatabase.openInventory(file.getPath());
+        try {
+            ScanBenchmark benchmark = new ScanBenchmark(database, rows);
+            benchmark.fill();
+            benchmark.run(burst, iterations);
+        } finally {
+            database.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Insert the products, each with its own ISBN.
+     */
+    private void fill() {
+        List<Product> products = new ArrayList<>(500);
+        for (int n = 1; n <= mRows; n++) {
+            products.add(new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                    String.format(Locale.US, "555-%04d", n % 50), n % 100, 10 + n % 20, 2,
+                    String.valueOf(FIRST_ISBN + n)));
+            if (products.size() == 500 || n == mRows) {
+                mRepository.insertProducts(products);
+                products.clear();
+            }
+        }
+    }
+
+    /**
+     * Time the lookups both ways and the sales, check every sale was recorded, and print how much
+     * faster the index finds a product and how many scans a minute each way of selling sustains.
+     */
+    private void run(final int burst, int iterations) {
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        BenchmarkResult findIndexed = measure("find_indexed", 1, iterations * 50,
+                new FindOperation(SQL_FIND_INDEXED));
+        BenchmarkResult findScan = measure("find_table_scan", mRows, iterations,
+                new FindOperation(SQL_FIND_SCAN));
+        BenchmarkResult single = measure("scan_sale", 1, iterations * 50, new Operation() {
+            @Override
+            public void run() {
+                sell(randomIsbn());
+            }
+        });
+        BenchmarkResult batched = measure("scan_burst", burst, iterations, new Operation() {
+            @Override
+            public void run() {
+                mDatabase.beginTransaction();
+                try {
+                    for (int i = 0; i < burst; i++) {
+                        sell(randomIsbn());
+                    }
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        });
+        check();
+
+        System.out.println(String.format(Locale.US, "%9s  finding a product median is %.1fx faster by the index",
+                "", findScan.mP50Micros / findIndexed.mP50Micros));
+        System.out.println(String.format(Locale.US,
+                "%9s  %.0f scans/min one transaction each, %.0f scans/min in bursts of %d", "",
+                60e6 / single.mP50Micros, 60e6 * burst / batched.mP50Micros, burst));
+    }
+
+    /**
+     * Sell a copy of the product with the given ISBN, or restock it if it's sold out, as the
+     * provider does for a scan.
+     */
+    private void sell(String isbn) {
+        if (mRepository.adjustQuantityByIsbn(isbn, -1, MovementTable.REASON_SALE) != null) {
+            mSold++;
+        } else if (mRepository.adjustQuantityByIsbn(isbn, 1, MovementTable.REASON_RESTOCK) != null) {
+            mRestocked++;
+        } else {
+            throw new IllegalStateException("No product has ISBN " + isbn);
+        }
+    }
+
+    /**
+     * Check that every sale and restock was recorded in the ledger.
+     */
+    private void check() {
+        SqlDatabase.Rows rows = mDatabase.query("SELECT count(*) FROM " + MovementTable.TABLE_NAME
+                + " WHERE " + MovementTable.COLUMN_REASON + " != ?", MovementTable.REASON_INITIAL);
+        try {
+            rows.moveToNext();
+            if (rows.getLong(0) != mSold + mRestocked) {
+                throw new IllegalStateException("Ledger has " + rows.getLong(0) + " movements instead of "
+                        + (mSold + mRestocked));
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Reads the product with a random ISBN.
+     */
+    private final class FindOperation implements Operation {
+
+        private final String mSql;
+
+        FindOperation(String sql) {
+            mSql = sql;
+        }
+
+        @Override
+        public void run() {
+            SqlDatabase.Rows rows = mDatabase.query(mSql, randomIsbn());
+            try {
+                if (!rows.moveToNext()) {
+                    throw new IllegalStateException("Product not found");
+                }
+                rows.getLong(1);
+            } finally {
+                rows.close();
+            }
+        }
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int rowsPerOp, int iterations, Operation operation) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, rowsPerOp, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private String randomIsbn() {
+        return String.valueOf(FIRST_ISBN + mRandom.nextInt(mRows) + 1);
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.CatalogQuery;
+import com.example.android.inventory.core.CatalogSnapshot;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.QuantityDeltas;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures keeping the catalogue in a {@link CatalogSnapshot}. Compares the heap the snapshot
+ * takes with one object per product, as the catalogue kept before, and with the bytes a Cursor's
+ * window takes for the same products, which Android refills 2 MB at a time while the list is
+ * scrolled. Then times loading the snapshot, patching one product, and binding products from it,
+ * and counts the bytes allocated per product bound.
+ * <p>
+ * Usage: SnapshotBenchmark [--rows 100000] [--iterations 200]
+ */
+public final class SnapshotBenchmark {
+
+    /**
+     * Reads the catalogue in ID order, with the columns the app's list shows
+     */
+    private static final String SQL_CATALOGUE = "SELECT " + ProductTable._ID + ", " + ProductTable.COLUMN_NAME + ", "
+            + ProductTable.COLUMN_AUTHOR + ", " + ProductTable.COLUMN_PRICE + ", " + ProductTable.COLUMN_QUANTITY
+            + " FROM " + ProductTable.TABLE_NAME + " ORDER BY " + ProductTable._ID;
+
+    /**
+     * Size of a Cursor's window, and of one of its field slots: a type and an 8 byte value or
+     * offset, as laid out by Android's CursorWindow
+     */
+    private static final int WINDOW_BYTES = 2 * 1024 * 1024;
+    private static final int FIELD_SLOT_BYTES = 12;
+
+    /**
+     * Products bound per timed operation, about a screen and a half of scrolling
+     */
+    private static final int BIND_ROWS = 20;
+
+    /**
+     * Products with sales tapped and not written yet while binding, as after a burst at the till
+     */
+    private static final int PENDING_PRODUCTS = 10;
+
+    /**
+     * A single timed operation.
+     */
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * One product as the catalogue kept them before the snapshot: an object with its own strings
+     * and formatted price.
+     */
+    private static final class ProductRow {
+        final long mId;
+        final String mName;
+        final String mAuthor;
+        final long mPrice;
+        final String mPriceText;
+        final int mQuantity;
+
+        ProductRow(long id, String name, String author, long price, String priceText, int quantity) {
+            mId = id;
+            mName = name;
+            mAuthor = author;
+            mPrice = price;
+            mPriceText = priceText;
+            mQuantity = quantity;
+        }
+    }
+
+    /**
+     * Seeded, so every run binds and patches the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, and its number of products
+     */
+    private final JdbcSqlDatabase mDatabase;
+    private final int mRows;
+
+    /**
+     * Snapshot being patched and bound, and where the bound products are written
+     */
+    private CatalogSnapshot mSnapshot;
+    private final char[] mPriceChars = new char[CatalogSnapshot.MAX_DECIMAL_LENGTH + 4];
+    private final char[] mQuantityChars = new char[CatalogSnapshot.MAX_DECIMAL_LENGTH];
+
+    /**
+     * Sales not written yet, added to the quantities bound as the catalogue adds those of its
+     * write queue
+     */
+    private final QuantityDeltas mPendingDeltas = new QuantityDeltas();
+
+    /**
+     * Sum of what was bound, so binding can't be optimized away
+     */
+    private long mChecksum;
+
+    private SnapshotBenchmark(JdbcSqlDatabase database, int rows) {
+        mDatabase = database;
+        mRows = rows;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int iterations = 200;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("snapshot-benchmark", ".db");
+        if (!file.delete()) {
+            throw new IllegalStateException("Failed to delete " + file);
+        }
+        JdbcSqlDatabase database = JdbcSqlDatabase.openInventory(file.getPath());
+        try {
+            SnapshotBenchmark benchmark = new SnapshotBenchmark(database, rows);
+            benchmark.fill();
+            benchmark.measureHeap();
+            benchmark.run(iterations);
+        } finally {
+            database.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Insert the products. Authors repeat, as they do in a bookshop's catalogue.
+     */
+    private void fill() {
+        SqliteInventoryRepository repository = new SqliteInventoryRepository(mDatabase);
+        List<Product> products = new ArrayList<>(500);
+        for (int n = 1; n <= mRows; n++) {
+            products.add(new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                    String.format(Locale.US, "555-%04d", n % 50), n % 100, 10 + n % 20, 2));
+            if (products.size() == 500 || n == mRows) {
+                repository.insertProducts(products);
+                products.clear();
+            }
+        }
+    }
+
+    /**
+     * Print the heap the snapshot and the objects take, and the bytes of a Cursor window.
+     */
+    private void measureHeap() {
+        long before = usedHeap();
+        CatalogSnapshot snapshot = loadSnapshot();
+        long snapshotBytes = usedHeap() - before;
+
+        before = usedHeap();
+        List<ProductRow> objects = loadObjects();
+        long objectBytes = usedHeap() - before;
+
+        long windowBytes = getWindowBytes();
+        System.out.println(String.format(Locale.US, "%9s  %-28s %10s %10s", "rows", "catalogue kept as", "MB", "bytes/row"));
+        printHeap("snapshot, heap", snapshotBytes);
+        printHeap("object per product, heap", objectBytes);
+        printHeap("cursor window, all rows", windowBytes);
+        System.out.println(String.format(Locale.US, "%9s  scrolling through the cursor refills its %d MB window %d times",
+                "", WINDOW_BYTES / (1024 * 1024), (windowBytes + WINDOW_BYTES - 1) / WINDOW_BYTES));
+        System.out.println();
+
+        // Keep both reachable until they've been measured
+        mSnapshot = snapshot;
+        mChecksum += objects.size();
+    }
+
+    /**
+     * Time loading and patching the snapshot, and binding from it, print how many bytes binding a
+     * product allocates, from the snapshot and from strings as a Cursor returns them.
+     */
+    private void run(int iterations) {
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        measure("load", mRows, Math.max(1, iterations / 20), new Operation() {
+            @Override
+            public void run() {
+                mSnapshot = loadSnapshot();
+            }
+        });
+        measure("patch", 1, iterations, new Operation() {
+            @Override
+            public void run() {
+                int position = mRandom.nextInt(mRows);
+                mSnapshot = mSnapshot.edit().set(position, mSnapshot.getId(position), mSnapshot.getName(position),
+                        mSnapshot.getAuthor(position), mSnapshot.getPrice(position),
+                        mSnapshot.getQuantity(position) + 1).build();
+            }
+        });
+        for (int i = 0; i < PENDING_PRODUCTS; i++) {
+            mPendingDeltas.add(mSnapshot.getId(mRandom.nextInt(mRows)), -1);
+        }
+        BindOperation bindSnapshot = new BindOperation(false);
+        BindOperation bindStrings = new BindOperation(true);
+        measure("bind_snapshot", BIND_ROWS, iterations * 50, bindSnapshot);
+        measure("bind_strings", BIND_ROWS, iterations * 50, bindStrings);
+
+        System.out.println(String.format(Locale.US, "%9s  binding a product allocates %d bytes from the snapshot, %d from strings",
+                "", allocatedPerRow(bindSnapshot), allocatedPerRow(bindStrings)));
+        if (mChecksum == 0) {
+            throw new IllegalStateException("Nothing bound");
+        }
+    }
+
+    /**
+     * Read the catalogue into a snapshot.
+     */
+    private CatalogSnapshot loadSnapshot() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(mRows);
+        SqlDatabase.Rows rows = mDatabase.query(SQL_CATALOGUE);
+        try {
+            while (rows.moveToNext()) {
+                builder.add(rows.getLong(0), rows.getString(1), rows.getString(2),
+                        rows.isNull(3) ? CatalogSnapshot.NO_PRICE : (int) rows.getLong(3), (int) rows.getLong(4));
+            }
+        } finally {
+            rows.close();
+        }
+        CatalogSnapshot snapshot = builder.build();
+        if (snapshot.size() != mRows || snapshot.indexOfId(snapshot.getId(mRows - 1), CatalogQuery.SORT_ID) != mRows - 1) {
+            throw new IllegalStateException("Snapshot has " + snapshot.size() + " products instead of " + mRows);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Read the catalogue into one object per product.
+     */
+    private List<ProductRow> loadObjects() {
+        List<ProductRow> objects = new ArrayList<>(mRows);
+        SqlDatabase.Rows rows = mDatabase.query(SQL_CATALOGUE);
+        try {
+            while (rows.moveToNext()) {
+                String price = rows.getString(3);
+                objects.add(new ProductRow(rows.getLong(0), rows.getString(1), rows.getString(2), rows.getLong(3),
+                        price + " USD", (int) rows.getLong(4)));
+            }
+        } finally {
+            rows.close();
+        }
+        return objects;
+    }
+
+    /**
+     * Return the bytes a CursorWindow takes for every product: a 4 byte offset per row, a field
+     * slot per column, and the strings in UTF-8 with their terminating NUL. The numbers are held
+     * in their slots.
+     */
+    private long getWindowBytes() {
+        long bytes = 0;
+        SqlDatabase.Rows rows = mDatabase.query(SQL_CATALOGUE);
+        try {
+            while (rows.moveToNext()) {
+                bytes += 4 + 5 * FIELD_SLOT_BYTES;
+                bytes += rows.getString(1).getBytes(StandardCharsets.UTF_8).length + 1;
+                bytes += rows.getString(2).getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        } finally {
+            rows.close();
+        }
+        return bytes;
+    }
+
+    private void printHeap(String name, long bytes) {
+        System.out.println(String.format(Locale.US, "%9d  %-28s %10.1f %10.1f",
+                mRows, name, bytes / (1024.0 * 1024.0), (double) bytes / mRows));
+    }
+
+    /**
+     * Return the bytes used on the heap after collecting the garbage.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Return the bytes the given operation allocates per product bound, or -1 if the VM doesn't
+     * count the bytes its threads allocate.
+     */
+    private long allocatedPerRow(Operation operation) {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+        int count = 10000;
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < count; i++) {
+            operation.run();
+        }
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        return allocated / ((long) count * BIND_ROWS);
+    }
+
+    /**
+     * Binds the products at consecutive positions, as a list scrolling through them does: from
+     * the snapshot, writing the price and quantity into buffers, or from strings, as a Cursor
+     * returns the price and quantity when read with getString. The quantity includes the sales
+     * not written yet, looked up holding a lock as the write queue does.
+     */
+    private final class BindOperation implements Operation {
+
+        private final boolean mStrings;
+
+        /**
+         * Position of the first product bound next
+         */
+        private int mPosition;
+
+        BindOperation(boolean strings) {
+            mStrings = strings;
+        }
+
+        @Override
+        public void run() {
+            CatalogSnapshot snapshot = mSnapshot;
+            for (int i = 0; i < BIND_ROWS; i++) {
+                int position = mPosition;
+                mPosition = position + 1 == snapshot.size() ? 0 : position + 1;
+                mChecksum += snapshot.getName(position).length() + snapshot.getAuthor(position).length();
+                int pendingDelta;
+                synchronized (mPendingDeltas) {
+                    pendingDelta = mPendingDeltas.get(snapshot.getId(position));
+                }
+                if (mStrings) {
+                    String price = String.valueOf(snapshot.getPrice(position)) + " USD";
+                    String quantity = String.valueOf(snapshot.getQuantity(position) + pendingDelta);
+                    mChecksum += price.length() + quantity.length();
+                } else {
+                    int priceLength = CatalogSnapshot.writeDecimal(snapshot.getPrice(position), mPriceChars, 0);
+                    " USD".getChars(0, 4, mPriceChars, priceLength);
+                    int quantity = snapshot.getQuantity(position) + pendingDelta;
+                    mChecksum += priceLength + 4 + CatalogSnapshot.writeDecimal(quantity, mQuantityChars, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int rowsPerOp, int iterations, Operation operation) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, rowsPerOp, nanos);
+        System.out.println(result);
+        return result;
+    }
+}
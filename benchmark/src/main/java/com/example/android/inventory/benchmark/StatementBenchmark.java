@@ -0,0 +1,260 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the single product statements run on every tap of the app, compiled once and bound
+ * with primitives as the repository runs them, with the same statements built and parsed on every
+ * call as SQLiteDatabase.query(), update() and delete() do.
+ * <p>
+ * Usage: StatementBenchmark [--rows 100000] [--iterations 20000]
+ */
+public final class StatementBenchmark {
+
+    /**
+     * Every column of a product
+     */
+    private static final String[] COLUMNS = ProductTable.COLUMNS;
+
+    /**
+     * A single timed operation, which may fail as it runs JDBC statements directly.
+     */
+    private interface Operation {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Seeded, so every run reads and writes the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, and its number of products
+     */
+    private final JdbcSqlDatabase mDatabase;
+    private final int mRows;
+
+    private StatementBenchmark(JdbcSqlDatabase database, int rows) {
+        mDatabase = database;
+        mRows = rows;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int iterations = 20000;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("statement-benchmark", ".db");
+        JdbcSqlDatabase database = JdbcSqlDatabase.openInventory(file.getPath());
+        try {
+            StatementBenchmark benchmark = new StatementBenchmark(database, rows);
+            benchmark.fill();
+            benchmark.run(iterations);
+        } finally {
+            database.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Insert the products, in one transaction.
+     */
+    private void fill() {
+        SqliteInventoryRepository repository = new SqliteInventoryRepository(mDatabase);
+        mDatabase.beginTransaction();
+        try {
+            for (int n = 1; n <= mRows; n++) {
+                repository.insertProduct(new Product(Product.NO_ID, "Book " + n, "Author " + n,
+                        "Supplier " + (n % 50), "555-0100", n % 100, 1000, 2));
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Time each statement parsed on every call, then compiled once, and print how much faster the
+     * compiled one is.
+     */
+    private void run(int iterations) throws SQLException {
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        final Connection connection = mDatabase.getConnection();
+
+        BenchmarkResult parsed = measure("lookup_parsed", iterations, new Operation() {
+            @Override
+            public void run() throws SQLException {
+                PreparedStatement statement = connection.prepareStatement(buildSelect());
+                try {
+                    statement.setString(1, String.valueOf(randomId()));
+                    readRow(statement.executeQuery());
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+        final SqliteInventoryRepository repository = new SqliteInventoryRepository(mDatabase);
+        BenchmarkResult compiled = measure("lookup_compiled", iterations, new Operation() {
+            @Override
+            public void run() {
+                repository.getProduct(randomId());
+            }
+        });
+        printSpeedUp(parsed, compiled);
+
+        parsed = measure("adjust_parsed", iterations, new Operation() {
+            private int mDelta = 1;
+
+            @Override
+            public void run() throws SQLException {
+                mDelta = -mDelta;
+                PreparedStatement statement = connection.prepareStatement(buildAdjust());
+                try {
+                    statement.setObject(1, mDelta);
+                    statement.setObject(2, randomId());
+                    statement.executeUpdate();
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+        final SqlDatabase.Statement adjust = mDatabase.compileStatement(buildAdjust());
+        compiled = measure("adjust_compiled", iterations, new Operation() {
+            private int mDelta = 1;
+
+            @Override
+            public void run() {
+                mDelta = -mDelta;
+                adjust.bindLong(1, mDelta);
+                adjust.bindLong(2, randomId());
+                adjust.executeUpdateDelete();
+            }
+        });
+        adjust.close();
+        printSpeedUp(parsed, compiled);
+
+        // The deletes look for products past the end of the table, so every iteration does the
+        // same work and the table is left as it is
+        parsed = measure("delete_parsed", iterations, new Operation() {
+            @Override
+            public void run() throws SQLException {
+                PreparedStatement statement = connection.prepareStatement(buildDelete());
+                try {
+                    statement.setString(1, String.valueOf(randomId() + mRows));
+                    statement.executeUpdate();
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+        final SqlDatabase.Statement delete = mDatabase.compileStatement(buildDelete());
+        compiled = measure("delete_compiled", iterations, new Operation() {
+            @Override
+            public void run() {
+                delete.bindLong(1, randomId() + mRows);
+                delete.executeUpdateDelete();
+            }
+        });
+        delete.close();
+        printSpeedUp(parsed, compiled);
+    }
+
+    /**
+     * Build the query of one product by ID, as SQLiteQueryBuilder does for query().
+     */
+    private static String buildSelect() {
+        return new StringBuilder("SELECT ").append(ProductTable.SELECT_COLUMNS)
+                .append(" FROM ").append(ProductTable.TABLE_NAME)
+                .append(" WHERE ").append(ProductTable._ID).append("=?").toString();
+    }
+
+    /**
+     * Build the quantity adjustment of one product, as the repository runs it.
+     */
+    private static String buildAdjust() {
+        return new StringBuilder("UPDATE ").append(ProductTable.TABLE_NAME)
+                .append(" SET ").append(ProductTable.COLUMN_QUANTITY).append(" = ")
+                .append(ProductTable.COLUMN_QUANTITY).append(" + ?1 WHERE ")
+                .append(ProductTable._ID).append(" = ?2 AND ")
+                .append(ProductTable.COLUMN_QUANTITY).append(" + ?1 >= 0").toString();
+    }
+
+    /**
+     * Build the deletion of one product, as SQLiteDatabase.delete() does.
+     */
+    private static String buildDelete() {
+        return new StringBuilder("DELETE FROM ").append(ProductTable.TABLE_NAME)
+                .append(" WHERE ").append(ProductTable._ID).append("=?").toString();
+    }
+
+    /**
+     * Read every column of the first row of the given results, then close them.
+     */
+    private static void readRow(ResultSet results) throws SQLException {
+        try {
+            if (results.next()) {
+                for (int i = 1; i <= COLUMNS.length; i++) {
+                    results.getString(i);
+                }
+            }
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int iterations, Operation operation)
+            throws SQLException {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, 1, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private static void printSpeedUp(BenchmarkResult parsed, BenchmarkResult compiled) {
+        System.out.println(String.format(Locale.US, "%9s  compiled median is %.2fx faster", "",
+                parsed.mP50Micros / compiled.mP50Micros));
+    }
+
+    private long randomId() {
+        return mRandom.nextInt(mRows) + 1;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.InventorySchema;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.SupplierTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.SqlDatabase;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the per-supplier queries on the version 7 schema, which repeats the supplier name and
+ * phone in every product, with the same queries once the version 8 migration has moved them to
+ * the suppliers table. Both run on the same products in the same file, before and after the
+ * migration, which is timed as well, along with the size of the file.
+ * <p>
+ * Usage: SupplierBenchmark [--rows 100000] [--suppliers 500] [--iterations 50]
+ */
+public final class SupplierBenchmark {
+
+    /**
+     * Last schema version storing the supplier in every product
+     */
+    private static final int DENORMALIZED_VERSION = 7;
+
+    /**
+     * Inserts a product into the version 7 inventory table
+     */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductTable.TABLE_NAME + " ("
+            + ProductTable.COLUMN_NAME + ", "
+            + ProductTable.COLUMN_AUTHOR + ", "
+            + ProductTable.COLUMN_SUPP_NAME + ", "
+            + ProductTable.COLUMN_SUPP_PHONE + ", "
+            + ProductTable.COLUMN_PRICE + ", "
+            + ProductTable.COLUMN_QUANTITY + ", "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Number of products, units and stock value of every supplier, before and after the migration
+     */
+    private static final String SQL_AGGREGATE_DENORMALIZED = "SELECT "
+            + ProductTable.COLUMN_SUPP_NAME + ", " + ProductTable.COLUMN_SUPP_PHONE + ", count(*), sum("
+            + ProductTable.COLUMN_QUANTITY + "), sum(" + ProductTable.COLUMN_PRICE + " * "
+            + ProductTable.COLUMN_QUANTITY + ") FROM " + ProductTable.TABLE_NAME + " GROUP BY "
+            + ProductTable.COLUMN_SUPP_NAME + ", " + ProductTable.COLUMN_SUPP_PHONE;
+    private static final String SQL_AGGREGATE_NORMALIZED = "SELECT "
+            + SupplierTable.TABLE_NAME + "." + SupplierTable.COLUMN_NAME + ", "
+            + SupplierTable.TABLE_NAME + "." + SupplierTable.COLUMN_PHONE + ", count(*), sum("
+            + ProductTable.COLUMN_QUANTITY + "), sum(" + ProductTable.COLUMN_PRICE + " * "
+            + ProductTable.COLUMN_QUANTITY + ") FROM " + ProductTable.TABLE_NAME + " JOIN "
+            + SupplierTable.TABLE_NAME + " ON " + SupplierTable.TABLE_NAME + "." + SupplierTable._ID + " = "
+            + ProductTable.TABLE_NAME + "." + ProductTable.COLUMN_SUPPLIER_ID + " GROUP BY "
+            + ProductTable.TABLE_NAME + "." + ProductTable.COLUMN_SUPPLIER_ID;
+
+    /**
+     * Stock value of the products of one supplier, looked up by name, before and after the
+     * migration
+     */
+    private static final String SQL_SUPPLIER_DENORMALIZED = "SELECT sum(" + ProductTable.COLUMN_PRICE
+            + " * " + ProductTable.COLUMN_QUANTITY + ") FROM " + ProductTable.TABLE_NAME + " WHERE "
+            + ProductTable.COLUMN_SUPP_NAME + " = ?";
+    private static final String SQL_SUPPLIER_NORMALIZED = "SELECT sum(" + ProductTable.COLUMN_PRICE
+            + " * " + ProductTable.COLUMN_QUANTITY + ") FROM " + ProductTable.TABLE_NAME + " WHERE "
+            + ProductTable.COLUMN_SUPPLIER_ID + " IN (SELECT " + SupplierTable._ID + " FROM "
+            + SupplierTable.TABLE_NAME + " WHERE " + SupplierTable.COLUMN_NAME + " = ?)";
+
+    /**
+     * A single timed operation.
+     */
+    private interface Operation {
+        void run();
+    }
+
+    /**
+     * Seeded, so every run looks up the same suppliers
+     */
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Database being measured, and its number of products and suppliers
+     */
+    private final JdbcSqlDatabase mDatabase;
+    private final int mRows;
+    private final int mSuppliers;
+
+    private SupplierBenchmark(JdbcSqlDatabase database, int rows, int suppliers) {
+        mDatabase = database;
+        mRows = rows;
+        mSuppliers = suppliers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int suppliers = 500;
+        int iterations = 50;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--suppliers".equals(arg)) {
+                suppliers = Integer.parseInt(value);
+            } else if ("--iterations".equals(arg)) {
+                iterations = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        File file = File.createTempFile("supplier-benchmark", ".db");
+        // Opened without openInventory(), which would bring the schema to the current version
+        JdbcSqlDatabase database = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite:" + file));
+        try {
+            database.execute("PRAGMA journal_mode = WAL;");
+            SupplierBenchmark benchmark = new SupplierBenchmark(database, rows, suppliers);
+            benchmark.fill();
+            benchmark.run(iterations);
+        } finally {
+            database.close();
+            InventoryBenchmark.deleteDatabase(file);
+        }
+    }
+
+    /**
+     * Create the version 7 schema and insert the products, in one transaction.
+     */
+    private void fill() {
+        mDatabase.beginTransaction();
+        try {
+            InventorySchema.create(mDatabase, DENORMALIZED_VERSION);
+            SqlDatabase.Statement insert = mDatabase.compileStatement(SQL_INSERT_PRODUCT);
+            for (int n = 1; n <= mRows; n++) {
+                int supplier = n % mSuppliers;
+                insert.bindString(1, "Book " + n);
+                insert.bindString(2, "Author " + (n % 5000));
+                insert.bindString(3, supplierName(supplier));
+                insert.bindString(4, String.format(Locale.US, "555-%04d", supplier));
+                insert.bindLong(5, n % 100);
+                insert.bindLong(6, n % 20);
+                insert.bindLong(7, 2);
+                insert.executeInsert();
+            }
+            insert.close();
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Time the queries on the version 7 schema, migrate it, time them again and print how the
+     * latencies and the size of the file changed.
+     */
+    private void run(int iterations) {
+        System.out.println(String.format(Locale.US, "%9s  %-17s %7s %10s %10s %10s %10s %12s",
+                "rows", "operation", "iters", "mean us", "p50 us", "p95 us", "p99 us", "ops/s"));
+        BenchmarkResult aggregateBefore = measure("aggregate_v7", mRows, iterations,
+                new QueryOperation(SQL_AGGREGATE_DENORMALIZED, false));
+        BenchmarkResult supplierBefore = measure("one_supplier_v7", mRows / mSuppliers, iterations * 100,
+                new QueryOperation(SQL_SUPPLIER_DENORMALIZED, true));
+        long sizeBefore = databaseSize();
+
+        long start = System.nanoTime();
+        mDatabase.beginTransaction();
+        try {
+            InventorySchema.upgrade(mDatabase, DENORMALIZED_VERSION, DENORMALIZED_VERSION + 1);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        double migrationMillis = (System.nanoTime() - start) / 1e6;
+
+        BenchmarkResult aggregateAfter = measure("aggregate_v8", mRows, iterations,
+                new QueryOperation(SQL_AGGREGATE_NORMALIZED, false));
+        BenchmarkResult supplierAfter = measure("one_supplier_v8", mRows / mSuppliers, iterations * 100,
+                new QueryOperation(SQL_SUPPLIER_NORMALIZED, true));
+        long sizeAfter = databaseSize();
+
+        System.out.println(String.format(Locale.US, "%9s  aggregate median is %.2fx faster", "",
+                aggregateBefore.mP50Micros / aggregateAfter.mP50Micros));
+        System.out.println(String.format(Locale.US, "%9s  one supplier median is %.2fx faster", "",
+                supplierBefore.mP50Micros / supplierAfter.mP50Micros));
+        System.out.println(String.format(Locale.US, "%9s  migration took %.0f ms", "", migrationMillis));
+        System.out.println(String.format(Locale.US, "%9s  database is %d KiB before, %d KiB after", "",
+                sizeBefore / 1024, sizeAfter / 1024));
+    }
+
+    /**
+     * Runs a query and reads every column of every row, with a random supplier name as argument
+     * if it takes one.
+     */
+    private final class QueryOperation implements Operation {
+
+        private final String mSql;
+        private final boolean mBySupplier;
+
+        QueryOperation(String sql, boolean bySupplier) {
+            mSql = sql;
+            mBySupplier = bySupplier;
+        }
+
+        @Override
+        public void run() {
+            SqlDatabase.Rows rows = mBySupplier
+                    ? mDatabase.query(mSql, supplierName(mRandom.nextInt(mSuppliers)))
+                    : mDatabase.query(mSql);
+            try {
+                while (rows.moveToNext()) {
+                    rows.getString(0);
+                }
+            } finally {
+                rows.close();
+            }
+        }
+    }
+
+    /**
+     * Return the size of the database once vacuumed, in bytes.
+     */
+    private long databaseSize() {
+        mDatabase.execute("VACUUM;");
+        return queryLong("PRAGMA page_count;") * queryLong("PRAGMA page_size;");
+    }
+
+    private long queryLong(String sql) {
+        SqlDatabase.Rows rows = mDatabase.query(sql);
+        try {
+            rows.moveToNext();
+            return rows.getLong(0);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Run the given operation a tenth of the given number of times to warm up, then time it the
+     * given number of times.
+     */
+    private BenchmarkResult measure(String name, int rowsPerOp, int iterations, Operation operation) {
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.run();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        BenchmarkResult result = new BenchmarkResult(mRows, name, rowsPerOp, nanos);
+        System.out.println(result);
+        return result;
+    }
+
+    private static String supplierName(int supplier) {
+        return "Supplier " + supplier + " Book Distribution Ltd";
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.HttpSyncTransport;
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.JdbcSqlDatabase;
+import com.example.android.inventory.core.Product;
+import com.example.android.inventory.core.SqlDatabase;
+import com.example.android.inventory.core.SqliteInventoryRepository;
+import com.example.android.inventory.core.SyncEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures syncing two devices through the stand-in server over HTTP on localhost, sending only
+ * the changes since the last sync, against sending and receiving every product as a full dump
+ * would. Device A starts with all the products and device B with none; after the first sync
+ * each round sells copies of some products on A, restocks some on B, many of them the same
+ * products, and reprices a few on A, then syncs A, B and A again. The bytes are those of the
+ * gzipped request and response bodies.
+ * <p>
+ * Usage: SyncBenchmark [--rows 100000] [--changes 1000] [--rounds 3]
+ */
+public final class SyncBenchmark {
+
+    /**
+     * Reads what must match on both devices once they're synced
+     */
+    private static final String SQL_READ_STATE = "SELECT "
+            + ProductTable.COLUMN_GLOBAL_ID + ", "
+            + ProductTable.COLUMN_QUANTITY + ", "
+            + ProductTable.COLUMN_PRICE + " FROM " + ProductTable.TABLE_NAME
+            + " ORDER BY " + ProductTable.COLUMN_GLOBAL_ID;
+
+    /**
+     * A device: its database, repository, connection to the server and sync engine.
+     */
+    private static final class Device {
+
+        final File mFile;
+        final JdbcSqlDatabase mDatabase;
+        final SqliteInventoryRepository mRepository;
+        final HttpSyncTransport mTransport;
+        final SyncEngine mEngine;
+
+        Device(String name, String serverUrl) throws IOException {
+            mFile = File.createTempFile("sync-benchmark-" + name, ".db");
+            if (!mFile.delete()) {
+                throw new IOException("Failed to delete " + mFile);
+            }
+            mDatabase = JdbcSqlDatabase.openInventory(mFile.getPath());
+            mRepository = new SqliteInventoryRepository(mDatabase);
+            mTransport = new HttpSyncTransport(serverUrl);
+            mEngine = new SyncEngine(mRepository, mTransport, SyncEngine.DEFAULT_BATCH_SIZE);
+        }
+
+        long getBytes() {
+            return mTransport.getBytesSent() + mTransport.getBytesReceived();
+        }
+
+        void close() {
+            mDatabase.close();
+            InventoryBenchmark.deleteDatabase(mFile);
+        }
+    }
+
+    /**
+     * Seeded, so every run changes the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    private final Device mDeviceA;
+    private final Device mDeviceB;
+    private final int mRows;
+
+    /**
+     * Number of copies on hand once every sale and restock has been merged
+     */
+    private long mExpectedUnits;
+
+    private SyncBenchmark(Device deviceA, Device deviceB, int rows) {
+        mDeviceA = deviceA;
+        mDeviceB = deviceB;
+        mRows = rows;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100000;
+        int changes = 1000;
+        int rounds = 3;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--rows".equals(arg)) {
+                rows = Integer.parseInt(value);
+            } else if ("--changes".equals(arg)) {
+                changes = Integer.parseInt(value);
+            } else if ("--rounds".equals(arg)) {
+                rounds = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+
+        Class.forName("org.sqlite.JDBC");
+        SyncStandInServer server = new SyncStandInServer();
+        server.start(0);
+        String url = "http://localhost:" + server.getPort();
+        Device deviceA = new Device("a", url);
+        Device deviceB = new Device("b", url);
+        try {
+            SyncBenchmark benchmark = new SyncBenchmark(deviceA, deviceB, rows);
+            benchmark.run(changes, rounds);
+        } finally {
+            deviceA.close();
+            deviceB.close();
+            server.stop();
+        }
+    }
+
+    private void run(int changes, int rounds) throws IOException {
+        fill();
+        System.out.println(String.format(Locale.US, "%9s  %-17s %8s %12s %10s", "rows", "sync", "changes",
+                "bytes", "ms"));
+        measure("initial", 0, false);
+
+        long deltaBytes = 0;
+        double deltaMillis = 0;
+        long fullBytes = 0;
+        double fullMillis = 0;
+        for (int round = 0; round < rounds; round++) {
+            change(changes);
+            long[] delta = measure("delta", changes, false);
+            deltaBytes += delta[0];
+            deltaMillis += delta[1] / 1e6;
+            check();
+
+            change(changes);
+            long[] full = measure("full_dump", changes, true);
+            fullBytes += full[0];
+            fullMillis += full[1] / 1e6;
+            check();
+        }
+        System.out.println(String.format(Locale.US,
+                "%9s  delta sync sends %.1fx fewer bytes and is %.1fx faster than a full dump", "",
+                (double) fullBytes / deltaBytes, fullMillis / deltaMillis));
+    }
+
+    /**
+     * Insert the products on device A.
+     */
+    private void fill() {
+        List<Product> products = new ArrayList<>(500);
+        for (int n = 1; n <= mRows; n++) {
+            products.add(new Product(Product.NO_ID, "Book " + n, "Author " + (n % 5000), "Supplier " + (n % 50),
+                    String.format(Locale.US, "555-%04d", n % 50), n % 100, 10 + n % 20, 2));
+            mExpectedUnits += 10 + n % 20;
+            if (products.size() == 500 || n == mRows) {
+                mDeviceA.mRepository.insertProducts(products);
+                products.clear();
+            }
+        }
+    }
+
+    /**
+     * Sell a copy of the given number of random products on device A and restock as many on
+     * device B, drawn from the same half of the products so many are changed on both, and
+     * reprice a tenth as many on device A.
+     */
+    private void change(int count) {
+        for (int i = 0; i < count; i++) {
+            if (mDeviceA.mRepository.adjustQuantity(randomId(mRows / 2), -1, MovementTable.REASON_SALE) != null) {
+                mExpectedUnits--;
+            }
+            if (mDeviceB.mRepository.adjustQuantity(randomId(mRows / 2), 5, MovementTable.REASON_RESTOCK) != null) {
+                mExpectedUnits += 5;
+            }
+        }
+        for (int i = 0; i < count / 10; i++) {
+            mDeviceA.mDatabase.executeUpdateDelete("UPDATE " + ProductTable.TABLE_NAME + " SET "
+                    + ProductTable.COLUMN_PRICE + " = " + ProductTable.COLUMN_PRICE + " + 1 WHERE "
+                    + ProductTable._ID + " = ?", randomId(mRows));
+        }
+    }
+
+    /**
+     * Sync device A, device B, then device A again to bring it the changes of B, and print and
+     * return the bytes sent and received, and the nanoseconds it took.
+     */
+    private long[] measure(String name, int changes, boolean all) throws IOException {
+        long bytes = mDeviceA.getBytes() + mDeviceB.getBytes();
+        long start = System.nanoTime();
+        for (Device device : new Device[]{mDeviceA, mDeviceB, mDeviceA}) {
+            if (all) {
+                device.mEngine.syncAll();
+            } else {
+                device.mEngine.sync();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = mDeviceA.getBytes() + mDeviceB.getBytes() - bytes;
+        System.out.println(String.format(Locale.US, "%9d  %-17s %8d %12d %10.1f", mRows, name, changes, bytes,
+                nanos / 1e6));
+        return new long[]{bytes, nanos};
+    }
+
+    /**
+     * Check that both devices hold the same products with the same quantities and prices, and
+     * that no sale or restock was lost.
+     */
+    private void check() {
+        long units = 0;
+        SqlDatabase.Rows rowsA = mDeviceA.mDatabase.query(SQL_READ_STATE);
+        SqlDatabase.Rows rowsB = mDeviceB.mDatabase.query(SQL_READ_STATE);
+        try {
+            int count = 0;
+            while (rowsA.moveToNext()) {
+                if (!rowsB.moveToNext() || !rowsA.getString(0).equals(rowsB.getString(0))
+                        || rowsA.getLong(1) != rowsB.getLong(1) || rowsA.getLong(2) != rowsB.getLong(2)) {
+                    throw new IllegalStateException("Devices differ at product " + rowsA.getString(0));
+                }
+                units += rowsA.getLong(1);
+                count++;
+            }
+            if (rowsB.moveToNext() || count != mRows) {
+                throw new IllegalStateException("Devices hold different products");
+            }
+            if (units != mExpectedUnits) {
+                throw new IllegalStateException("Devices hold " + units + " copies instead of " + mExpectedUnits);
+            }
+        } finally {
+            rowsA.close();
+            rowsB.close();
+        }
+    }
+
+    private long randomId(int bound) {
+        return mRandom.nextInt(bound) + 1;
+    }
+}
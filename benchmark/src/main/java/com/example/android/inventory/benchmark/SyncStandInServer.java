@@ -0,0 +1,279 @@
+package com.example.android.inventory.benchmark;
+
+import com.example.android.inventory.core.HttpSyncTransport;
+import com.example.android.inventory.core.SyncBatch;
+import com.example.android.inventory.core.SyncRow;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stand-in for the sync server the devices push their changes to and pull the other devices'
+ * changes from, see SyncEngine and HttpSyncTransport. It keeps the products in memory, so it
+ * starts empty every time: enough to try syncing devices or emulators on a workstation, and to
+ * measure the protocol, not to keep an inventory.
+ * <p>
+ * Every change to a product gets the next version of the server's clock, which is the sync
+ * token devices pull after. Deleted products are kept as tombstones.
+ * <p>
+ * Usage: SyncStandInServer [--port 8080]
+ */
+public final class SyncStandInServer {
+
+    /**
+     * A product as the server holds it.
+     */
+    private static final class Entry {
+
+        /**
+         * Latest merged values of the product
+         */
+        SyncRow mRow;
+
+        /**
+         * Device whose push made the latest change, which doesn't need to pull it
+         */
+        String mOrigin;
+
+        Entry(SyncRow row, String origin) {
+            mRow = row;
+            mOrigin = origin;
+        }
+    }
+
+    /**
+     * The HTTP server, once started
+     */
+    private HttpServer mServer;
+
+    /**
+     * Products by global ID, and by version
+     */
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private final TreeMap<Long, Entry> mChanges = new TreeMap<>();
+
+    /**
+     * Highest local version taken from every device, so a batch pushed again isn't counted twice
+     */
+    private final Map<String, Long> mPushTokens = new HashMap<>();
+
+    /**
+     * Version of the latest change
+     */
+    private long mClock;
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            if ("--port".equals(arg)) {
+                port = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        SyncStandInServer server = new SyncStandInServer();
+        server.start(port);
+        // An emulator reaches the host at 10.0.2.2
+        System.out.println("Sync server listening on http://localhost:" + server.getPort());
+    }
+
+    /**
+     * Start listening on the given port, or on any free port if it's 0.
+     */
+    public void start(int port) throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(port), 0);
+        mServer.createContext("/push", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendError(exchange, 405);
+                    return;
+                }
+                Map<String, String> parameters = parseQuery(exchange);
+                String deviceId = parameters.get("device");
+                if (deviceId == null) {
+                    sendError(exchange, 400);
+                    return;
+                }
+                SyncBatch changes;
+                InputStream in = exchange.getRequestBody();
+                try {
+                    changes = SyncBatch.read(in);
+                } catch (IOException e) {
+                    sendError(exchange, 400);
+                    return;
+                } finally {
+                    in.close();
+                }
+                send(exchange, push(deviceId, changes));
+            }
+        });
+        mServer.createContext("/pull", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Map<String, String> parameters = parseQuery(exchange);
+                long since;
+                int limit;
+                try {
+                    since = Long.parseLong(parameters.get("since"));
+                    limit = Integer.parseInt(parameters.get("limit"));
+                } catch (NumberFormatException e) {
+                    sendError(exchange, 400);
+                    return;
+                }
+                send(exchange, pull(parameters.get("device"), since, limit));
+            }
+        });
+        mServer.start();
+    }
+
+    /**
+     * Stop listening, waiting for the exchanges in progress to finish.
+     */
+    public void stop() {
+        mServer.stop(0);
+    }
+
+    /**
+     * Return the port the server listens on.
+     */
+    public int getPort() {
+        return mServer.getAddress().getPort();
+    }
+
+    /**
+     * Merge the given changes pushed by the given device, and return the merged rows.
+     */
+    private synchronized SyncBatch push(String deviceId, SyncBatch changes) {
+        Long pushToken = mPushTokens.get(deviceId);
+        long taken = pushToken != null ? pushToken : 0;
+        List<SyncRow> merged = new ArrayList<>(changes.mRows.size());
+        for (SyncRow change : changes.mRows) {
+            merged.add(merge(deviceId, change, change.mVersion > taken));
+            taken = Math.max(taken, change.mVersion);
+        }
+        mPushTokens.put(deviceId, taken);
+        return new SyncBatch(merged, mClock, false);
+    }
+
+    /**
+     * Merge one pushed change and return the product as merged. The latest values win, the
+     * quantity delta is added unless it was already, and a deleted product stays deleted. A
+     * change that changes nothing keeps its version, so no device pulls it.
+     *
+     * @param addDelta false if the device pushed the change already
+     */
+    private SyncRow merge(String deviceId, SyncRow change, boolean addDelta) {
+        Entry entry = mEntries.get(change.mGlobalId);
+        if (entry == null) {
+            SyncRow row = change.mDeleted ? change : withQuantity(change, change.mUpdatedAt,
+                    Math.max(0, addDelta ? change.mQuantity : 0));
+            entry = new Entry(row, deviceId);
+            mEntries.put(change.mGlobalId, entry);
+            return bump(entry, row, deviceId);
+        }
+
+        SyncRow current = entry.mRow;
+        if (current.mDeleted) {
+            return current;
+        }
+        if (change.mDeleted) {
+            return bump(entry, SyncRow.deleted(current.mGlobalId, 0, change.mUpdatedAt), deviceId);
+        }
+        SyncRow values = change.mUpdatedAt > current.mUpdatedAt ? change : current;
+        int quantity = addDelta ? Math.max(0, current.mQuantity + change.mQuantity) : current.mQuantity;
+        if (quantity == current.mQuantity && values.hasSameValues(current)) {
+            return current;
+        }
+        return bump(entry, withQuantity(values, Math.max(change.mUpdatedAt, current.mUpdatedAt), quantity),
+                deviceId);
+    }
+
+    /**
+     * Store the given row as the latest change of the given entry, with the next version.
+     */
+    private SyncRow bump(Entry entry, SyncRow row, String deviceId) {
+        mChanges.remove(entry.mRow.mVersion);
+        entry.mRow = new SyncRow(row.mGlobalId, ++mClock, row.mUpdatedAt, row.mDeleted, row.mName, row.mAuthor,
+                row.mSupplierName, row.mSupplierPhone, row.mPrice, row.mReorderThreshold, row.mQuantity, row.mIsbn);
+        entry.mOrigin = deviceId;
+        mChanges.put(mClock, entry);
+        return entry.mRow;
+    }
+
+    private static SyncRow withQuantity(SyncRow row, long updatedAt, int quantity) {
+        return new SyncRow(row.mGlobalId, row.mVersion, updatedAt, false, row.mName, row.mAuthor, row.mSupplierName,
+                row.mSupplierPhone, row.mPrice, row.mReorderThreshold, quantity, row.mIsbn);
+    }
+
+    /**
+     * Return at most the given number of products changed after the given version, leaving out
+     * those last changed by the given device.
+     */
+    private synchronized SyncBatch pull(String deviceId, long since, int limit) {
+        List<SyncRow> rows = new ArrayList<>(Math.min(limit, mChanges.size()));
+        long token = since;
+        Iterator<Map.Entry<Long, Entry>> changes = mChanges.tailMap(since, false).entrySet().iterator();
+        while (changes.hasNext() && rows.size() < limit) {
+            Map.Entry<Long, Entry> change = changes.next();
+            token = change.getKey();
+            if (deviceId == null || !deviceId.equals(change.getValue().mOrigin)) {
+                rows.add(change.getValue().mRow);
+            }
+        }
+        return new SyncBatch(rows, token, changes.hasNext());
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals != -1) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, SyncBatch batch) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        batch.write(body);
+        exchange.getResponseHeaders().set("Content-Type", HttpSyncTransport.CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.size());
+        OutputStream out = exchange.getResponseBody();
+        try {
+            body.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.inventory.core;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports a CSV catalogue into an inventory database file from the command line, with the same
+ * rules as the app's importer. The database is created if it doesn't exist, and can then be
+ * copied to a device, or pulled from one, updated and pushed back.
+ * <p>
+ * Usage: CatalogImportCli &lt;database file&gt; &lt;catalogue.csv&gt;
+ */
+public final class CatalogImportCli {
+
+    /**
+     * Number of products inserted per transaction, as in the app
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * Number of rejected products whose reason is printed
+     */
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private CatalogImportCli() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: CatalogImportCli <database file> <catalogue.csv>");
+            System.exit(2);
+        }
+
+        JdbcSqlDatabase database = null;
+        try {
+            database = JdbcSqlDatabase.openInventory(args[0]);
+            importCsv(new SqliteInventoryRepository(database), args[1]);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Import failed: " + e.getMessage()
+                    + (e.getCause() != null ? " (" + e.getCause().getMessage() + ")" : ""));
+            System.exit(1);
+        } finally {
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+
+    /**
+     * Import the products of the given CSV file, whose first record names the columns, in chunks
+     * of {@link #CHUNK_SIZE}. Invalid products are skipped and reported.
+     */
+    private static void importCsv(InventoryRepository repository, String path) throws IOException {
+        int rowsRead = 0;
+        int rowsImported = 0;
+        int rowsRejected = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path),
+                Charset.forName("UTF-8")));
+        try {
+            CsvReader csv = new CsvReader(reader);
+            List<String> header = csv.readRecord();
+            if (header == null) {
+                System.out.println("Imported 0 products");
+                return;
+            }
+            int[] positions = CatalogRows.mapHeader(header);
+            if (positions[0] == -1) {
+                throw new IOException("CSV file requires a " + CatalogRows.COLUMNS[0] + " column");
+            }
+
+            List<Product> chunk = new ArrayList<>(CHUNK_SIZE);
+            int[] chunkLines = new int[CHUNK_SIZE];
+            String[] row = new String[CatalogRows.COLUMNS.length];
+            List<String> record;
+            while ((record = csv.readRecord()) != null) {
+                rowsRead++;
+                CatalogRows.readRecord(record, positions, row);
+                try {
+                    chunkLines[chunk.size()] = csv.getRecordLine();
+                    chunk.add(CatalogRows.toProduct(row));
+                } catch (IllegalArgumentException e) {
+                    if (++rowsRejected <= MAX_REPORTED_REJECTIONS) {
+                        System.err.println("Line " + csv.getRecordLine() + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+                if (chunk.size() == CHUNK_SIZE) {
+                    int duplicates = insertChunk(repository, chunk, chunkLines, rowsRejected);
+                    rowsImported += chunk.size() - duplicates;
+                    rowsRejected += duplicates;
+                    chunk.clear();
+                }
+            }
+            int duplicates = insertChunk(repository, chunk, chunkLines, rowsRejected);
+            rowsImported += chunk.size() - duplicates;
+            rowsRejected += duplicates;
+        } finally {
+            reader.close();
+        }
+        System.out.println("Read " + rowsRead + " products, imported " + rowsImported + ", rejected "
+                + rowsRejected);
+    }
+
+    /**
+     * Insert the given products in one transaction, and report those whose ISBN was taken, as
+     * long as fewer than {@link #MAX_REPORTED_REJECTIONS} products were rejected before. Return
+     * the number of products not inserted.
+     *
+     * @param lines        line of the file of each product
+     * @param rowsRejected number of products rejected before these
+     */
+    private static int insertChunk(InventoryRepository repository, List<Product> chunk, int[] lines,
+                                   int rowsRejected) {
+        int[] duplicates = repository.insertProducts(chunk);
+        for (int position : duplicates) {
+            if (++rowsRejected <= MAX_REPORTED_REJECTIONS) {
+                System.err.println("Line " + lines[position] + ": ISBN " + chunk.get(position).mIsbn
+                        + " already belongs to another product");
+            }
+        }
+        return duplicates.length;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the catalogue one page at a time and keeps the pages loaded up to date as products
+ * change. When a single product is updated, only that product is read again and replaced in the
+ * pages already loaded. The pages are only read again when products are inserted or deleted, or
+ * when a product changed a column the catalogue is sorted or filtered by, which may move it in
+ * the list.
+ * <p>
+ * Changes are reported with {@link #onChange(List, String)} from any thread, and taken by the
+ * next {@link #load(Pages, boolean, Source)}. Products are read through a {@link Source}, so the
+ * app reads them from its provider, and tests from wherever they like.
+ */
+public final class CatalogPager {
+
+    /**
+     * Reads the products of the catalogue, in its order and with its filters.
+     */
+    public interface Source {
+
+        /**
+         * Read at most the given number of products following the last one of the given
+         * builder, or from the first if it's empty, and add them to it. Return the number of
+         * products added.
+         */
+        int readPage(CatalogSnapshot.Builder builder, int limit);
+
+        /**
+         * Read the product with the given ID again and replace it at the given position of the
+         * given builder. Return false if it doesn't exist anymore.
+         */
+        boolean readProduct(CatalogSnapshot.Builder builder, int position, long id);
+    }
+
+    /**
+     * Order of the catalogue, one of the SORT constants of {@link CatalogQuery}
+     */
+    private final String mSort;
+
+    /**
+     * Number of products read per page
+     */
+    private final int mPageSize;
+
+    /**
+     * Columns the catalogue is sorted or filtered by. A product changing one of them may move or
+     * leave the list, so it can't be patched in place.
+     */
+    private final Set<String> mOrderColumns = new HashSet<>();
+
+    /**
+     * IDs of the products updated since the last load. Guarded by itself, like
+     * {@link #mRefreshRequested}.
+     */
+    private final Set<Long> mPendingChanges = new HashSet<>();
+
+    /**
+     * True when products have been inserted or deleted since the last load, so all pages have
+     * to be read again
+     */
+    private boolean mRefreshRequested = true;
+
+    /**
+     * Constructs a pager without any page loaded.
+     *
+     * @param sort          order of the catalogue, one of the SORT constants of
+     *                      {@link CatalogQuery}
+     * @param inStockOnly   true if the catalogue only lists products in stock
+     * @param priceFiltered true if the catalogue only lists products within a price range
+     * @param pageSize      number of products read per page
+     */
+    public CatalogPager(String sort, boolean inStockOnly, boolean priceFiltered, int pageSize) {
+        mSort = sort;
+        mPageSize = pageSize;
+        if (!sort.equals(CatalogQuery.SORT_ID)) {
+            mOrderColumns.add(new CatalogQuery(sort).getSortColumn());
+        }
+        if (inStockOnly) {
+            mOrderColumns.add(ProductTable.COLUMN_QUANTITY);
+        }
+        if (priceFiltered) {
+            mOrderColumns.add(ProductTable.COLUMN_PRICE);
+        }
+    }
+
+    /**
+     * Record a change notified for the given URI of the products. Only the products URI and its
+     * descendants are expected, so a URI of two segments is that of a single product, and
+     * anything else may concern more than one.
+     *
+     * @param pathSegments   segments of the path of the notification URI, or null if the
+     *                       notification didn't say what changed
+     * @param changedColumns columns the notification says were updated, separated by commas, or
+     *                       null if it doesn't say
+     */
+    public void onChange(List<String> pathSegments, String changedColumns) {
+        long id = parseUpdatedProductId(pathSegments, changedColumns);
+        synchronized (mPendingChanges) {
+            if (id >= 0) {
+                mPendingChanges.add(id);
+            } else {
+                mRefreshRequested = true;
+            }
+        }
+    }
+
+    /**
+     * Return the ID of the product whose columns were updated according to the given
+     * notification, or -1 if it may concern more than the values of a single product, or if one
+     * of the changed columns is one the catalogue is sorted or filtered by.
+     */
+    private long parseUpdatedProductId(List<String> pathSegments, String changedColumns) {
+        if (pathSegments == null || changedColumns == null || pathSegments.size() != 2) {
+            return -1;
+        }
+        for (String column : changedColumns.split(",")) {
+            if (mOrderColumns.contains(column)) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(pathSegments.get(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Bring the given pages up to date with the changes recorded since they were loaded, and
+     * return the new pages, leaving the given ones untouched. Reads every page again if products
+     * were inserted or deleted, or nothing was loaded yet, and otherwise only the products that
+     * changed.
+     *
+     * @param previous pages loaded last, or null
+     * @param append   true to also read the page after the last one, if there's one
+     */
+    public Pages load(Pages previous, boolean append, Source source) {
+        boolean refresh;
+        Set<Long> changedIds;
+        synchronized (mPendingChanges) {
+            refresh = mRefreshRequested || previous == null;
+            changedIds = new HashSet<>(mPendingChanges);
+            mRefreshRequested = false;
+            mPendingChanges.clear();
+        }
+
+        CatalogSnapshot.Builder builder;
+        int pageCount;
+        boolean hasMore;
+        if (refresh) {
+            // Products were inserted or deleted (or nothing is loaded yet), so read as many
+            // pages as were shown before to keep the user's place in the list
+            int shownPageCount = previous == null ? 1 : previous.mPageCount;
+            builder = new CatalogSnapshot.Builder(shownPageCount * mPageSize);
+            pageCount = 0;
+            hasMore = true;
+            while (pageCount < shownPageCount && hasMore) {
+                hasMore = source.readPage(builder, mPageSize) == mPageSize;
+                pageCount++;
+            }
+        } else {
+            // Keep the products that are already shown, and only read the ones that changed.
+            // None of them changed its sort key, so products that aren't loaded come after the
+            // last page and will be read with their own page.
+            builder = previous.mSnapshot.edit();
+            pageCount = previous.mPageCount;
+            hasMore = previous.mHasMore;
+            for (long id : changedIds) {
+                int position = builder.indexOfId(id, mSort);
+                if (position >= 0 && !source.readProduct(builder, position, id)) {
+                    builder.remove(position);
+                }
+            }
+
+            if (append && hasMore) {
+                hasMore = source.readPage(builder, mPageSize) == mPageSize;
+                pageCount++;
+            }
+        }
+        return new Pages(builder.build(), pageCount, hasMore, refresh, changedIds);
+    }
+
+    /**
+     * Record again the changes the given pages were loaded with, as they were never shown, so
+     * the next load makes them again.
+     */
+    public void restore(Pages pages) {
+        synchronized (mPendingChanges) {
+            mRefreshRequested |= pages.mRefreshed;
+            mPendingChanges.addAll(pages.mChangedIds);
+        }
+    }
+
+    /**
+     * The products of the pages loaded so far, in the order of the catalogue, and what the load
+     * that read them did.
+     */
+    public static final class Pages {
+
+        /**
+         * Products loaded, never changed once built, so the catalogue can diff them against
+         * the next ones
+         */
+        public final CatalogSnapshot mSnapshot;
+
+        /**
+         * Number of pages loaded
+         */
+        public final int mPageCount;
+
+        /**
+         * False once a page came back with fewer products than a page holds
+         */
+        public final boolean mHasMore;
+
+        /**
+         * Whether this load read all pages again, and the products it read again
+         */
+        final boolean mRefreshed;
+        final Set<Long> mChangedIds;
+
+        Pages(CatalogSnapshot snapshot, int pageCount, boolean hasMore, boolean refreshed, Set<Long> changedIds) {
+            mSnapshot = snapshot;
+            mPageCount = pageCount;
+            mHasMore = hasMore;
+            mRefreshed = refreshed;
+            mChangedIds = changedIds;
+        }
+    }
+}
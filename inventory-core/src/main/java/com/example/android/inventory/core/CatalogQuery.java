@@ -0,0 +1,214 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A query of the catalogue in one of the supported orders, optionally filtered, one page at a
+ * time. Every order is served by an index of the inventory table, so SQLite walks the index and
+ * stops after a page instead of sorting the whole table, and pages continue after the sort key
+ * and ID of the last product shown (keyset pagination).
+ * <p>
+ * Filters are written so SQLite can't serve them with another index and sort afterwards: a
+ * column that isn't the sort key is compared as +column, which hides its index from the planner.
+ */
+public final class CatalogQuery {
+
+    /**
+     * Supported orders, all ascending. Products with the same sort key come in ID order.
+     */
+    public static final String SORT_ID = "id";
+    public static final String SORT_NAME = "name";
+    public static final String SORT_AUTHOR = "author";
+    public static final String SORT_PRICE = "price";
+    public static final String SORT_QUANTITY = "quantity";
+
+    /**
+     * Supported orders, and the column each one sorts by, at the same position
+     */
+    private static final String[] SORTS = {SORT_ID, SORT_NAME, SORT_AUTHOR, SORT_PRICE, SORT_QUANTITY};
+    private static final String[] SORT_COLUMNS = {ProductTable._ID, ProductTable.COLUMN_NAME,
+            ProductTable.COLUMN_AUTHOR, ProductTable.COLUMN_PRICE, ProductTable.COLUMN_QUANTITY};
+
+    /**
+     * Order and column the products are sorted by
+     */
+    private final String mSort;
+    private final String mSortColumn;
+
+    /**
+     * Conditions of the query, joined with AND, and their arguments in order
+     */
+    private final StringBuilder mSelection = new StringBuilder();
+    private final List<String> mSelectionArgs = new ArrayList<>();
+
+    /**
+     * @param sort one of the SORT constants, or null for {@link #SORT_ID}
+     * @throws IllegalArgumentException if the order isn't supported
+     */
+    public CatalogQuery(String sort) {
+        mSort = sort == null ? SORT_ID : sort;
+        mSortColumn = getSortColumn(mSort);
+        if (mSortColumn == null) {
+            throw new IllegalArgumentException("Unsupported sort " + sort);
+        }
+    }
+
+    /**
+     * Return the column sorted by for the given order, or null if it isn't supported.
+     */
+    private static String getSortColumn(String sort) {
+        for (int i = 0; i < SORTS.length; i++) {
+            if (SORTS[i].equals(sort)) {
+                return SORT_COLUMNS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the order whose ORDER BY clause is the given one, ignoring case and spacing, or null
+     * if no supported order sorts that way.
+     */
+    public static String getSortForOrderBy(String orderBy) {
+        String normalized = orderBy.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+        for (String sort : SORTS) {
+            if (new CatalogQuery(sort).getOrderBy().toLowerCase(Locale.US).equals(normalized)) {
+                return sort;
+            }
+        }
+        // A sort on the ID alone may leave out the direction
+        return normalized.equals(ProductTable._ID) ? SORT_ID : null;
+    }
+
+    /**
+     * Return the order of the query, one of the SORT constants.
+     */
+    public String getSort() {
+        return mSort;
+    }
+
+    /**
+     * Return the column the products are sorted by.
+     */
+    public String getSortColumn() {
+        return mSortColumn;
+    }
+
+    /**
+     * Only return products with a quantity above 0.
+     */
+    public CatalogQuery inStockOnly() {
+        addCondition(compared(ProductTable.COLUMN_QUANTITY) + " > 0");
+        return this;
+    }
+
+    /**
+     * Only return products whose price is at least the given one.
+     */
+    public CatalogQuery minPrice(long price) {
+        addCondition(compared(ProductTable.COLUMN_PRICE) + " >= " + integerArg(), String.valueOf(price));
+        return this;
+    }
+
+    /**
+     * Only return products whose price is at most the given one.
+     */
+    public CatalogQuery maxPrice(long price) {
+        addCondition(compared(ProductTable.COLUMN_PRICE) + " <= " + integerArg(), String.valueOf(price));
+        return this;
+    }
+
+    /**
+     * Only return the products coming after the given one in the order of the query, i.e. the
+     * page after the last product shown.
+     *
+     * @param key value of the sort column of the last product shown, null if it has none. Ignored
+     *            when sorting by ID.
+     * @param id  of the last product shown
+     * @throws IllegalArgumentException if the key of a numeric order isn't a number
+     */
+    public CatalogQuery after(String key, long id) {
+        String idArg = String.valueOf(id);
+        if (mSort.equals(SORT_ID)) {
+            addCondition(ProductTable._ID + " > ?", idArg);
+        } else if (key == null) {
+            // NULLs sort first, so the page goes on with the other products without a key, then
+            // with all the products that have one
+            addCondition("((" + mSortColumn + " IS NULL AND " + ProductTable._ID + " > ?) OR "
+                    + mSortColumn + " IS NOT NULL)", idArg);
+        } else {
+            String keyArg = isNumeric() ? String.valueOf(parseKey(key)) : key;
+            String arg = isNumeric() ? integerArg() : "?";
+            // The first condition is a range on the sort index, the second one skips the products
+            // with the same key that were already shown
+            addCondition(mSortColumn + " >= " + arg + " AND (" + mSortColumn + " > " + arg + " OR "
+                    + ProductTable._ID + " > ?)", keyArg, keyArg, idArg);
+        }
+        return this;
+    }
+
+    /**
+     * Return the conditions of the query, or null if there are none.
+     */
+    public String getSelection() {
+        return mSelection.length() == 0 ? null : mSelection.toString();
+    }
+
+    /**
+     * Return the arguments of the conditions, in order.
+     */
+    public String[] getSelectionArgs() {
+        return mSelectionArgs.toArray(new String[mSelectionArgs.size()]);
+    }
+
+    /**
+     * Return the ORDER BY clause of the query.
+     */
+    public String getOrderBy() {
+        return mSort.equals(SORT_ID)
+                ? ProductTable._ID + " ASC"
+                : mSortColumn + " ASC, " + ProductTable._ID + " ASC";
+    }
+
+    private boolean isNumeric() {
+        return mSort.equals(SORT_PRICE) || mSort.equals(SORT_QUANTITY);
+    }
+
+    /**
+     * Return the given column as compared by a filter: as it is if it's the sort key, so the
+     * filter is a range of the sort index, and as +column otherwise.
+     */
+    private String compared(String column) {
+        return column.equals(mSortColumn) ? column : "+" + column;
+    }
+
+    /**
+     * Return a parameter compared as an integer. Android binds every selection argument as text,
+     * which an expression without affinity (such as +column) would compare as text.
+     */
+    private static String integerArg() {
+        return "CAST(? AS INTEGER)";
+    }
+
+    private static long parseKey(String key) {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sort key " + key);
+        }
+    }
+
+    private void addCondition(String condition, String... args) {
+        if (mSelection.length() > 0) {
+            mSelection.append(" AND ");
+        }
+        mSelection.append('(').append(condition).append(')');
+        for (String arg : args) {
+            mSelectionArgs.add(arg);
+        }
+    }
+}
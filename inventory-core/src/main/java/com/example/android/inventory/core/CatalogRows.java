@@ -0,0 +1,112 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Products as rows of text, the way catalogue files hold them: one value per column of
+ * {@link #COLUMNS}, in that order. Shared by the importers and exporters of every format.
+ */
+public final class CatalogRows {
+
+    /**
+     * Columns of a product that are imported and exported, keyed by their column name in every
+     * format
+     */
+    public static final String[] COLUMNS = {
+            ProductTable.COLUMN_NAME,
+            ProductTable.COLUMN_AUTHOR,
+            ProductTable.COLUMN_SUPP_NAME,
+            ProductTable.COLUMN_SUPP_PHONE,
+            ProductTable.COLUMN_PRICE,
+            ProductTable.COLUMN_QUANTITY,
+            ProductTable.COLUMN_REORDER_THRESHOLD,
+            ProductTable.COLUMN_ISBN};
+
+    private CatalogRows() {
+    }
+
+    /**
+     * Return the position of the given name in {@link #COLUMNS}, or -1.
+     */
+    public static int indexOfColumn(String name) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find where each of the {@link #COLUMNS} is in the header of a CSV file, ignoring a byte
+     * order mark and letter case. Return the position of each column in the header, or -1 for
+     * the columns it doesn't have.
+     */
+    public static int[] mapHeader(List<String> header) {
+        int[] positions = new int[COLUMNS.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = -1;
+        }
+        for (int i = 0; i < header.size(); i++) {
+            int column = indexOfColumn(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.US));
+            if (column >= 0) {
+                positions[column] = i;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Fill the given row with the values of a CSV record, at the positions returned by
+     * {@link #mapHeader}. Columns missing from the record are null.
+     */
+    public static void readRecord(List<String> record, int[] positions, String[] row) {
+        for (int i = 0; i < row.length; i++) {
+            row[i] = positions[i] >= 0 && positions[i] < record.size() ? record.get(positions[i]) : null;
+        }
+    }
+
+    /**
+     * Turn a row into a new product and check it, throwing an {@link IllegalArgumentException}
+     * with the reason if it isn't valid. Values are trimmed, empty numbers are left to their
+     * default of 0, and the ISBN is normalized.
+     *
+     * @param row values in the order of {@link #COLUMNS}
+     */
+    public static Product toProduct(String[] row) {
+        Product product = new Product(Product.NO_ID,
+                trim(row[0]),
+                trim(row[1]),
+                trim(row[2]),
+                trim(row[3]),
+                parseNumber(COLUMNS[4], row[4]),
+                parseNumber(COLUMNS[5], row[5]),
+                parseNumber(COLUMNS[6], row[6]),
+                ProductRules.normalizeIsbn(row[7]));
+        ProductRules.checkNewProduct(product);
+        return product;
+    }
+
+    private static String trim(String value) {
+        return value == null ? null : value.trim();
+    }
+
+    /**
+     * Parse a price, quantity or reorder threshold, throwing an {@link IllegalArgumentException} with the same
+     * message as the provider if it isn't a whole number.
+     */
+    private static int parseNumber(String column, String value) {
+        value = trim(value);
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Book requires valid " + column);
+        }
+    }
+}
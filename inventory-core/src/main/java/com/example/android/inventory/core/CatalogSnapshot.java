@@ -0,0 +1,365 @@
+package com.example.android.inventory.core;
+
+import java.util.Arrays;
+
+/**
+ * The products of the catalogue as shown in the list, stored by column: one array of IDs, prices
+ * and quantities, and one of names and authors, with equal strings shared through
+ * {@link String#intern()}. 100,000 products take a few MB and no object per product besides their
+ * strings, so a list can bind any of them without allocating, and without going back to the
+ * database. The VM's table of interned strings lets go of the ones no snapshot uses anymore.
+ * <p>
+ * A snapshot never changes once built. It's changed by editing a copy with a {@link Builder},
+ * which leaves the snapshot a list may still be showing or diffing untouched.
+ */
+public final class CatalogSnapshot {
+
+    /**
+     * Price of a product that has none
+     */
+    public static final int NO_PRICE = -1;
+
+    /**
+     * Longest text of an int, with its sign
+     */
+    public static final int MAX_DECIMAL_LENGTH = 11;
+
+    /**
+     * A catalogue without products
+     */
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(new long[0], new String[0], new String[0],
+            new int[0], new int[0], 0);
+
+    /**
+     * Columns of the products, of which only the first {@link #mSize} values are used
+     */
+    private final long[] mIds;
+    private final String[] mNames;
+    private final String[] mAuthors;
+    private final int[] mPrices;
+    private final int[] mQuantities;
+
+    /**
+     * Number of products
+     */
+    private final int mSize;
+
+    private CatalogSnapshot(long[] ids, String[] names, String[] authors, int[] prices, int[] quantities, int size) {
+        mIds = ids;
+        mNames = names;
+        mAuthors = authors;
+        mPrices = prices;
+        mQuantities = quantities;
+        mSize = size;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public long getId(int position) {
+        checkPosition(position, mSize);
+        return mIds[position];
+    }
+
+    public String getName(int position) {
+        checkPosition(position, mSize);
+        return mNames[position];
+    }
+
+    public String getAuthor(int position) {
+        checkPosition(position, mSize);
+        return mAuthors[position];
+    }
+
+    /**
+     * Return the price of the product at the given position, or {@link #NO_PRICE}.
+     */
+    public int getPrice(int position) {
+        checkPosition(position, mSize);
+        return mPrices[position];
+    }
+
+    /**
+     * Return the quantity of the product at the given position, as stored in the database.
+     */
+    public int getQuantity(int position) {
+        checkPosition(position, mSize);
+        return mQuantities[position];
+    }
+
+    /**
+     * Return the position of the product with the given ID, or -1 if it isn't in the snapshot.
+     *
+     * @param sort order of the products, one of the SORT constants of {@link CatalogQuery}
+     */
+    public int indexOfId(long id, String sort) {
+        return indexOfId(mIds, mSize, id, sort);
+    }
+
+    /**
+     * Return the value the product at the given position is sorted by in the given order, as
+     * passed to {@link CatalogQuery#after(String, long)}, or null if it has none.
+     *
+     * @param sort one of the SORT constants of {@link CatalogQuery}
+     */
+    public String getSortKey(int position, String sort) {
+        checkPosition(position, mSize);
+        return getSortKey(mNames, mAuthors, mPrices, mQuantities, position, sort);
+    }
+
+    /**
+     * Return true if the product at the given position shows the same as the product at the
+     * other position of the other snapshot. Interned strings are compared by reference
+     * first, so unchanged products are compared without reading their text.
+     */
+    public boolean contentsEqual(int position, CatalogSnapshot other, int otherPosition) {
+        checkPosition(position, mSize);
+        checkPosition(otherPosition, other.mSize);
+        return mIds[position] == other.mIds[otherPosition]
+                && mQuantities[position] == other.mQuantities[otherPosition]
+                && mPrices[position] == other.mPrices[otherPosition]
+                && equal(mNames[position], other.mNames[otherPosition])
+                && equal(mAuthors[position], other.mAuthors[otherPosition]);
+    }
+
+    /**
+     * Return a builder starting with the products of this snapshot.
+     */
+    public Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * Write the given value in decimal into the given buffer from the given offset, so it can be
+     * shown without making a String, and return the offset after its last digit.
+     *
+     * @param buffer with room for {@link #MAX_DECIMAL_LENGTH} characters from the offset
+     */
+    public static int writeDecimal(int value, char[] buffer, int offset) {
+        if (value == Integer.MIN_VALUE) {
+            String text = Integer.toString(value);
+            text.getChars(0, text.length(), buffer, offset);
+            return offset + text.length();
+        }
+        if (value < 0) {
+            buffer[offset++] = '-';
+            value = -value;
+        }
+        int end = offset;
+        for (int rest = value; rest >= 10; rest /= 10) {
+            end++;
+        }
+        int next = end + 1;
+        do {
+            buffer[end--] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return next;
+    }
+
+    private static int indexOfId(long[] ids, int size, long id, String sort) {
+        if (!CatalogQuery.SORT_ID.equals(sort)) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        // Sorted by ID, so search in halves
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        return position < 0 ? -1 : position;
+    }
+
+    private static String getSortKey(String[] names, String[] authors, int[] prices, int[] quantities,
+                                     int position, String sort) {
+        switch (sort) {
+            case CatalogQuery.SORT_NAME:
+                return names[position];
+            case CatalogQuery.SORT_AUTHOR:
+                return authors[position];
+            case CatalogQuery.SORT_PRICE:
+                return prices[position] == NO_PRICE ? null : String.valueOf(prices[position]);
+            case CatalogQuery.SORT_QUANTITY:
+                return String.valueOf(quantities[position]);
+            default:
+                return null;
+        }
+    }
+
+    private static void checkPosition(int position, int size) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size + " products");
+        }
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Builds a snapshot by adding, replacing and removing products. A builder edits its own copy
+     * of the columns, made when it first changes them, and hands them over to the snapshot it
+     * builds, so it can't be used afterwards.
+     */
+    public static final class Builder {
+
+        private long[] mIds;
+        private String[] mNames;
+        private String[] mAuthors;
+        private int[] mPrices;
+        private int[] mQuantities;
+        private int mSize;
+
+        /**
+         * True while the columns are still those of the snapshot the builder started with
+         */
+        private boolean mShared;
+
+        /**
+         * True once the snapshot has been built
+         */
+        private boolean mBuilt;
+
+        /**
+         * Constructs a builder without products.
+         *
+         * @param capacity number of products expected
+         */
+        public Builder(int capacity) {
+            mIds = new long[capacity];
+            mNames = new String[capacity];
+            mAuthors = new String[capacity];
+            mPrices = new int[capacity];
+            mQuantities = new int[capacity];
+        }
+
+        private Builder(CatalogSnapshot snapshot) {
+            mIds = snapshot.mIds;
+            mNames = snapshot.mNames;
+            mAuthors = snapshot.mAuthors;
+            mPrices = snapshot.mPrices;
+            mQuantities = snapshot.mQuantities;
+            mSize = snapshot.mSize;
+            mShared = true;
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        public long getId(int position) {
+            checkPosition(position, mSize);
+            return mIds[position];
+        }
+
+        /**
+         * Return the position of the product with the given ID, or -1 if it hasn't been added.
+         *
+         * @param sort order of the products, one of the SORT constants of {@link CatalogQuery}
+         */
+        public int indexOfId(long id, String sort) {
+            return CatalogSnapshot.indexOfId(mIds, mSize, id, sort);
+        }
+
+        /**
+         * Return the value the product at the given position is sorted by, as
+         * {@link CatalogSnapshot#getSortKey(int, String)} does.
+         */
+        public String getSortKey(int position, String sort) {
+            checkPosition(position, mSize);
+            return CatalogSnapshot.getSortKey(mNames, mAuthors, mPrices, mQuantities, position, sort);
+        }
+
+        /**
+         * Add a product after the others.
+         *
+         * @param price of the product, or {@link #NO_PRICE}
+         */
+        public Builder add(long id, String name, String author, int price, int quantity) {
+            ensureCapacity(mSize + 1);
+            put(mSize++, id, name, author, price, quantity);
+            return this;
+        }
+
+        /**
+         * Replace the product at the given position.
+         *
+         * @param price of the product, or {@link #NO_PRICE}
+         */
+        public Builder set(int position, long id, String name, String author, int price, int quantity) {
+            checkPosition(position, mSize);
+            ensureCapacity(mSize);
+            put(position, id, name, author, price, quantity);
+            return this;
+        }
+
+        /**
+         * Remove the product at the given position, moving the ones after it up.
+         */
+        public Builder remove(int position) {
+            checkPosition(position, mSize);
+            ensureCapacity(mSize);
+            int moved = mSize - position - 1;
+            System.arraycopy(mIds, position + 1, mIds, position, moved);
+            System.arraycopy(mNames, position + 1, mNames, position, moved);
+            System.arraycopy(mAuthors, position + 1, mAuthors, position, moved);
+            System.arraycopy(mPrices, position + 1, mPrices, position, moved);
+            System.arraycopy(mQuantities, position + 1, mQuantities, position, moved);
+            mSize--;
+            // Let the strings of the last product go
+            mNames[mSize] = null;
+            mAuthors[mSize] = null;
+            return this;
+        }
+
+        /**
+         * Return the snapshot of the products added.
+         *
+         * @throws IllegalStateException if the snapshot has been built already
+         */
+        public CatalogSnapshot build() {
+            if (mBuilt) {
+                throw new IllegalStateException("Snapshot already built");
+            }
+            mBuilt = true;
+            return mSize == 0 ? EMPTY : new CatalogSnapshot(mIds, mNames, mAuthors, mPrices, mQuantities, mSize);
+        }
+
+        private void put(int position, long id, String name, String author, int price, int quantity) {
+            mIds[position] = id;
+            mNames[position] = intern(name);
+            mAuthors[position] = intern(author);
+            mPrices[position] = price;
+            mQuantities[position] = quantity;
+        }
+
+        private static String intern(String value) {
+            return value == null ? null : value.intern();
+        }
+
+        /**
+         * Make the columns the builder's own, with room for the given number of products.
+         */
+        private void ensureCapacity(int capacity) {
+            if (mBuilt) {
+                throw new IllegalStateException("Snapshot already built");
+            }
+            if (!mShared && capacity <= mIds.length) {
+                return;
+            }
+            int length = Math.max(capacity, mShared ? mIds.length : mIds.length + (mIds.length >> 1) + 1);
+            mIds = Arrays.copyOf(mIds, length);
+            mNames = Arrays.copyOf(mNames, length);
+            mAuthors = Arrays.copyOf(mAuthors, length);
+            mPrices = Arrays.copyOf(mPrices, length);
+            mQuantities = Arrays.copyOf(mQuantities, length);
+            mShared = false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.android.inventory.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma separated values one record at a time, so only the current record is held in
+ * memory. Fields may be quoted with double quotes, in which case they can contain commas, line
+ * breaks and doubled double quotes.
+ */
+public final class CsvReader {
+
+    /**
+     * Longest field accepted, so a file with an unbalanced quote can't use up all memory
+     */
+    private static final int MAX_FIELD_LENGTH = 64 * 1024;
+
+    /**
+     * Source of the characters, expected to be buffered
+     */
+    private final Reader mReader;
+
+    /**
+     * The field being read
+     */
+    private final StringBuilder mField = new StringBuilder();
+
+    /**
+     * Character read ahead of the current one, or -2 if none
+     */
+    private int mPeeked = -2;
+
+    /**
+     * Line the last record returned started on, counting from 1
+     */
+    private int mRecordLine;
+
+    /**
+     * Line the reader is currently on, counting from 1
+     */
+    private int mLine = 1;
+
+    public CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Return the line the last record returned by {@link #readRecord()} started on.
+     */
+    public int getRecordLine() {
+        return mRecordLine;
+    }
+
+    /**
+     * Read the next record, skipping blank lines. Return null at the end of the input.
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+        mRecordLine = mLine;
+
+        List<String> record = new ArrayList<>();
+        while (true) {
+            mField.setLength(0);
+            if (c == '"') {
+                // Quoted field: read up to the closing quote, keeping separators and line breaks
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field starting on line " + mRecordLine);
+                    }
+                    if (c == '"') {
+                        if (peek() != '"') {
+                            break;
+                        }
+                        read();
+                    }
+                    append(c);
+                }
+                c = read();
+                // Tolerate anything between the closing quote and the next separator
+                while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                    c = read();
+                }
+            } else {
+                while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                    append(c);
+                    c = read();
+                }
+            }
+            record.add(mField.toString());
+            if (c != ',') {
+                return record;
+            }
+            c = read();
+        }
+    }
+
+    private void append(int c) throws IOException {
+        if (mField.length() == MAX_FIELD_LENGTH) {
+            throw new IOException("Field on line " + mRecordLine + " is too long");
+        }
+        mField.append((char) c);
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (mPeeked != -2) {
+            c = mPeeked;
+            mPeeked = -2;
+        } else {
+            c = mReader.read();
+        }
+        if (c == '\n') {
+            mLine++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (mPeeked == -2) {
+            mPeeked = mReader.read();
+        }
+        return mPeeked;
+    }
+}
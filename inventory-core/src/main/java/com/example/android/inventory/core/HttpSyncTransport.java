@@ -0,0 +1,153 @@
+package com.example.android.inventory.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * {@link SyncTransport} to a sync server over HTTP, with {@link HttpURLConnection} so it runs
+ * on Android as on the JVM. Changes are pushed with POST {base}/push?device={id} and pulled with
+ * GET {base}/pull?device={id}&amp;since={token}&amp;limit={rows}, both ways as gzipped
+ * {@link SyncBatch}es. Counts the bytes of the bodies it sends and receives.
+ */
+public class HttpSyncTransport implements SyncTransport {
+
+    /**
+     * Media type of a batch
+     */
+    public static final String CONTENT_TYPE = "application/x-inventory-sync";
+
+    /**
+     * How long to wait for the server to accept the connection, and then to answer
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * URL of the server, without a trailing slash
+     */
+    private final String mBaseUrl;
+
+    /**
+     * Bytes of the bodies sent and received so far
+     */
+    private long mBytesSent;
+    private long mBytesReceived;
+
+    public HttpSyncTransport(String baseUrl) {
+        mBaseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public SyncBatch push(String deviceId, SyncBatch changes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        changes.write(body);
+        HttpURLConnection connection = open("/push?device=" + encode(deviceId));
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            connection.setFixedLengthStreamingMode(body.size());
+            OutputStream out = connection.getOutputStream();
+            try {
+                body.writeTo(out);
+            } finally {
+                out.close();
+            }
+            mBytesSent += body.size();
+            return readResponse(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public SyncBatch pull(String deviceId, long since, int limit) throws IOException {
+        HttpURLConnection connection = open("/pull?since=" + since + "&limit=" + limit
+                + (deviceId != null ? "&device=" + encode(deviceId) : ""));
+        try {
+            return readResponse(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Return the number of bytes of the request bodies sent so far.
+     */
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    /**
+     * Return the number of bytes of the response bodies received so far.
+     */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mBaseUrl + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        // Batches are gzipped already
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    /**
+     * Read the batch the server answered with.
+     *
+     * @throws IOException if the server answered with an error
+     */
+    private SyncBatch readResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Sync server answered " + code + " " + connection.getResponseMessage());
+        }
+        InputStream in = new FilterInputStream(connection.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    mBytesReceived++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    mBytesReceived += count;
+                }
+                return count;
+            }
+        };
+        try {
+            SyncBatch batch = SyncBatch.read(in);
+            // Read the rest of the body, so it's counted and the connection can be reused
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer, 0, buffer.length) != -1) {
+                // Discard it
+            }
+            return batch;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.android.inventory.core;
+
+import java.util.List;
+
+/**
+ * Reads and writes the products of the inventory, applying the {@link ProductRules}. Every write
+ * is atomic, and also atomic with the transaction of the caller if there is one, so the stock
+ * movements ledger always adds up to the quantities.
+ */
+public interface InventoryRepository {
+
+    /**
+     * Return the product with the given ID, or null if there's none.
+     */
+    Product getProduct(long id);
+
+    /**
+     * Return the ID of the product with the given ISBN, as normalized by
+     * {@link ProductRules#normalizeIsbn}, or -1 if there's none.
+     */
+    long findProductByIsbn(String isbn);
+
+    /**
+     * Insert a new product and record its quantity as its initial stock movement. The
+     * {@link Product#mId} of the product is ignored.
+     *
+     * @return the ID of the new product, or -1 if it couldn't be inserted, e.g. because another
+     * product has its ISBN
+     * @throws IllegalArgumentException if the product isn't valid
+     */
+    long insertProduct(Product product);
+
+    /**
+     * Insert many products in one transaction. Every product is checked before anything is
+     * written, so an invalid product rejects them all.
+     *
+     * @return the positions in the list of the products that weren't inserted because another
+     * product, already stored or earlier in the list, has their ISBN, in increasing order, or
+     * an empty array if all were inserted
+     * @throws IllegalArgumentException if any of the products isn't valid
+     */
+    int[] insertProducts(List<Product> products);
+
+    /**
+     * Return the ID of the supplier with the given name and phone, inserting it if there's none
+     * yet, so every distinct supplier is stored once however many products it supplies.
+     *
+     * @return the ID of the supplier, or -1 if both the name and phone are null
+     */
+    long internSupplier(String name, String phone);
+
+    /**
+     * Add the given amount to the quantity of a product, in one statement so concurrent changes
+     * can't overwrite each other, and record the change with the given reason unless the amount
+     * is 0.
+     *
+     * @param delta  amount to add, negative to remove stock
+     * @param reason recorded for the change, see {@link ProductRules#defaultReason}
+     * @return the change, or null if the product doesn't exist or its quantity would drop below 0
+     */
+    StockChange adjustQuantity(long id, int delta, String reason);
+
+    /**
+     * Add the given amount to the quantity of the product with the given ISBN, as
+     * {@link #adjustQuantity} does, finding the product in the same statement. This is what a
+     * barcode scan at the till runs.
+     *
+     * @param isbn as normalized by {@link ProductRules#normalizeIsbn}
+     * @return the change, or null if no product has the ISBN or its quantity would drop below 0
+     */
+    StockChange adjustQuantityByIsbn(String isbn, int delta, String reason);
+
+    /**
+     * Insert a new location to keep stock at, see {@link InventorySchema.LocationTable}.
+     *
+     * @return the ID of the new location, or -1 if there's already one with the given name
+     */
+    long insertLocation(String name);
+
+    /**
+     * Move the given number of copies of a product from one location to another, in one
+     * transaction so the copies are never at both or at neither. The total on hand doesn't
+     * change, so no stock movement is recorded.
+     *
+     * @param count number of copies to move, greater than 0
+     * @return true if they were moved, false if the product doesn't have that many copies at the
+     * source location
+     * @throws IllegalArgumentException if the count isn't positive, the locations are the same or
+     *                                  the destination doesn't exist
+     */
+    boolean transferStock(long productId, long fromLocationId, long toLocationId, int count);
+
+    /**
+     * Delete a product. Its stock movements are kept.
+     *
+     * @return the number of products deleted, 0 or 1
+     */
+    int deleteProduct(long id);
+
+    /**
+     * Record a change to the quantity of a product in the stock movements ledger, which also adds
+     * it to the product's daily totals. Must be called in the transaction making the change.
+     */
+    void recordMovement(long productId, long delta, String reason);
+}
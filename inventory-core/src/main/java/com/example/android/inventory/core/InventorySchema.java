@@ -0,0 +1,1001 @@
+package com.example.android.inventory.core;
+
+/**
+ * Tables, columns and migrations of the inventory database. The app's database helper and the
+ * JVM tools create and upgrade the database through this class, so every copy of the database
+ * has the same schema at the same {@link #VERSION}.
+ */
+public final class InventorySchema {
+
+    /**
+     * Database version. If you change the database schema, you must increment the database version
+     * and add the matching step to {@link #migrate(SqlDatabase, int)}.
+     */
+    public static final int VERSION = 12;
+
+    /**
+     * The inventory table. Each row represents a single product.
+     */
+    public static final class ProductTable {
+
+        /**
+         * Name of database table for inventory
+         */
+        public static final String TABLE_NAME = "inventory";
+
+        /**
+         * Name of the full-text search table mirroring the name, author and supplier name of
+         * every product. Its docid is the {@link #_ID} of the product.
+         */
+        public static final String SEARCH_TABLE_NAME = "inventory_search";
+
+        /**
+         * Unique ID number for the product, INTEGER
+         */
+        public static final String _ID = "_id";
+
+        /**
+         * Name and author of the product, TEXT
+         */
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_AUTHOR = "author";
+
+        /**
+         * ID of the supplier of the product in {@link SupplierTable}, or null if it has none,
+         * INTEGER
+         */
+        public static final String COLUMN_SUPPLIER_ID = "supplier_id";
+
+        /**
+         * Name and phone of the supplier of the product, TEXT. Since version 8 they're stored once
+         * per supplier in {@link SupplierTable}, and the columns of the inventory table are left
+         * null: read them with {@link #selectColumn(String)}.
+         */
+        public static final String COLUMN_SUPP_NAME = "supplier_name";
+        public static final String COLUMN_SUPP_PHONE = "supplier_phone";
+
+        /**
+         * Price in USD, quantity on hand and reorder threshold of the product, INTEGER
+         */
+        public static final String COLUMN_PRICE = "price";
+        public static final String COLUMN_QUANTITY = "quantity";
+        public static final String COLUMN_REORDER_THRESHOLD = "reorder_threshold";
+
+        /**
+         * Identity of the product shared by every device it's synced to, a random hex string
+         * unique across devices, TEXT
+         */
+        public static final String COLUMN_GLOBAL_ID = "global_id";
+
+        /**
+         * Value of the sync clock at the last local change of the product, see
+         * {@link SyncStateTable#COLUMN_CLOCK}, INTEGER. Products changed since the last push are
+         * those above {@link SyncStateTable#COLUMN_PUSH_TOKEN}.
+         */
+        public static final String COLUMN_VERSION = "version";
+
+        /**
+         * When the product was last changed, on any device, in milliseconds since the epoch,
+         * INTEGER. The latest change of a product wins, but for its quantity.
+         */
+        public static final String COLUMN_UPDATED_AT = "updated_at";
+
+        /**
+         * Quantity of the product as of the last sync, INTEGER. The difference with the quantity
+         * is what was sold or restocked here since, which is pushed as a delta and merged with
+         * the deltas of the other devices.
+         */
+        public static final String COLUMN_SYNCED_QUANTITY = "synced_quantity";
+
+        /**
+         * Number of times the product was changed, INTEGER. Unlike {@link #COLUMN_VERSION} it
+         * also counts the changes pulled by the sync engine, so an editor can tell whether the
+         * product changed since it read it.
+         */
+        public static final String COLUMN_ROW_VERSION = "row_version";
+
+        /**
+         * ISBN or other barcode printed on the product, digits only, or null if it has none,
+         * TEXT. Unique, so a scan finds at most one product, see
+         * {@link ProductRules#normalizeIsbn(String)}.
+         */
+        public static final String COLUMN_ISBN = "isbn";
+
+        /**
+         * Every column of a product, in the order {@link Product} is read in
+         */
+        public static final String[] COLUMNS = {
+                _ID,
+                COLUMN_NAME,
+                COLUMN_AUTHOR,
+                COLUMN_SUPP_NAME,
+                COLUMN_SUPP_PHONE,
+                COLUMN_PRICE,
+                COLUMN_QUANTITY,
+                COLUMN_REORDER_THRESHOLD,
+                COLUMN_ISBN};
+
+        /**
+         * Select list reading {@link #COLUMNS} from the inventory table, see
+         * {@link #selectColumn(String)}
+         */
+        public static final String SELECT_COLUMNS;
+
+        static {
+            StringBuilder columns = new StringBuilder();
+            for (String column : COLUMNS) {
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                }
+                columns.append(selectColumn(column));
+            }
+            SELECT_COLUMNS = columns.toString();
+        }
+
+        private ProductTable() {
+        }
+
+        /**
+         * Return the SQL reading the given column of a product from the inventory table, named
+         * after the column. The supplier name and phone are looked up in {@link SupplierTable}
+         * by its primary key, which costs one index seek per row read, like a join; unlike a join
+         * it leaves the other column names unambiguous in the selection and order of a query.
+         */
+        public static String selectColumn(String column) {
+            if (column.equals(COLUMN_SUPP_NAME)) {
+                return selectSupplier(SupplierTable.COLUMN_NAME) + " AS " + column;
+            }
+            if (column.equals(COLUMN_SUPP_PHONE)) {
+                return selectSupplier(SupplierTable.COLUMN_PHONE) + " AS " + column;
+            }
+            return TABLE_NAME + "." + column + " AS " + column;
+        }
+
+        /**
+         * Return the subquery reading the given column of the supplier of a product, null when
+         * the product has no supplier or the column is empty.
+         */
+        private static String selectSupplier(String supplierColumn) {
+            return "(SELECT nullif(" + SupplierTable.TABLE_NAME + "." + supplierColumn + ", '') FROM "
+                    + SupplierTable.TABLE_NAME + " WHERE " + SupplierTable.TABLE_NAME + "." + SupplierTable._ID
+                    + " = " + TABLE_NAME + "." + COLUMN_SUPPLIER_ID + ")";
+        }
+    }
+
+    /**
+     * The suppliers table. Each row is one distinct pair of supplier name and phone, which the
+     * products of that supplier point to instead of repeating them. Rows are never changed, so a
+     * supplier record can be shared by any number of products.
+     */
+    public static final class SupplierTable {
+
+        /**
+         * Name of database table for suppliers
+         */
+        public static final String TABLE_NAME = "suppliers";
+
+        /**
+         * Unique ID number for the supplier, INTEGER
+         */
+        public static final String _ID = "_id";
+
+        /**
+         * Name and phone of the supplier, empty rather than null when unknown so the pair is
+         * unique, TEXT
+         */
+        public static final String COLUMN_NAME = "name";
+        public static final String COLUMN_PHONE = "phone";
+
+        private SupplierTable() {
+        }
+    }
+
+    /**
+     * The locations table. Each row is a place stock is kept, such as the shop floor, a back room
+     * or a warehouse.
+     */
+    public static final class LocationTable {
+
+        /**
+         * Name of database table for locations
+         */
+        public static final String TABLE_NAME = "locations";
+
+        /**
+         * Unique ID number for the location, INTEGER
+         */
+        public static final String _ID = "_id";
+
+        /**
+         * Name of the location, unique, TEXT
+         */
+        public static final String COLUMN_NAME = "name";
+
+        /**
+         * ID and name of the location every database starts with. The stock of every product
+         * is there until it's transferred elsewhere, and every change to the quantity of a
+         * product that doesn't name a location is made there.
+         */
+        public static final long DEFAULT_ID = 1;
+        public static final String DEFAULT_NAME = "Shop";
+
+        private LocationTable() {
+        }
+    }
+
+    /**
+     * The stock levels table, holding the quantity of every product at every location it has
+     * been stocked at. The levels of a product always add up to its
+     * {@link ProductTable#COLUMN_QUANTITY}, which the triggers keep as the total on hand, so the
+     * catalogue reads one number per product instead of adding up its levels.
+     */
+    public static final class StockLevelTable {
+
+        /**
+         * Name of database table for stock levels
+         */
+        public static final String TABLE_NAME = "stock_levels";
+
+        /**
+         * ID of the product and of the location, INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+        public static final String COLUMN_LOCATION_ID = "location_id";
+
+        /**
+         * Number of copies of the product at the location, INTEGER. Only the default location
+         * can go below 0, when stock kept elsewhere is sold without being transferred first.
+         */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        private StockLevelTable() {
+        }
+    }
+
+    /**
+     * The tombstones of the products deleted here, so their deletion can be pushed to the sync
+     * server. The deleted products themselves are gone, so none of the queries of the inventory
+     * table have to skip them.
+     */
+    public static final class TombstoneTable {
+
+        /**
+         * Name of database table for tombstones
+         */
+        public static final String TABLE_NAME = "sync_tombstones";
+
+        /**
+         * {@link ProductTable#COLUMN_GLOBAL_ID} of the deleted product, TEXT
+         */
+        public static final String COLUMN_GLOBAL_ID = "global_id";
+
+        /**
+         * Value of the sync clock when the product was deleted, and when that was, in
+         * milliseconds since the epoch, INTEGER
+         */
+        public static final String COLUMN_VERSION = "version";
+        public static final String COLUMN_DELETED_AT = "deleted_at";
+
+        private TombstoneTable() {
+        }
+    }
+
+    /**
+     * The sync state table, holding a single row of what this device has synced so far.
+     */
+    public static final class SyncStateTable {
+
+        /**
+         * Name of database table for the sync state
+         */
+        public static final String TABLE_NAME = "sync_state";
+
+        /**
+         * Random identity of this device, sent with every push and pull, TEXT
+         */
+        public static final String COLUMN_DEVICE_ID = "device_id";
+
+        /**
+         * Counter of the local changes, incremented by every insert, update and deletion of a
+         * product and stored in its version, INTEGER
+         */
+        public static final String COLUMN_CLOCK = "clock";
+
+        /**
+         * Highest local version the server has acknowledged, and sync token of the last change
+         * pulled from the server, INTEGER
+         */
+        public static final String COLUMN_PUSH_TOKEN = "push_token";
+        public static final String COLUMN_PULL_TOKEN = "pull_token";
+
+        /**
+         * 1 while changes pulled from the server are being written, so the triggers don't record
+         * them as local changes to push back, INTEGER
+         */
+        public static final String COLUMN_APPLYING = "applying";
+
+        private SyncStateTable() {
+        }
+    }
+
+    /**
+     * The stock movements ledger. Each row records a change to the quantity of a product, written
+     * in the same transaction as the change. The table is append-only.
+     */
+    public static final class MovementTable {
+
+        /**
+         * Name of database table for stock movements
+         */
+        public static final String TABLE_NAME = "stock_movements";
+
+        /**
+         * Unique ID number for the movement, INTEGER
+         */
+        public static final String _ID = "_id";
+
+        /**
+         * ID of the product, amount added to its quantity and when, in milliseconds since the
+         * epoch, INTEGER
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+        public static final String COLUMN_DELTA = "delta";
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+
+        /**
+         * Why the quantity changed, TEXT
+         */
+        public static final String COLUMN_REASON = "reason";
+
+        /**
+         * Possible values for the reason of a movement.
+         */
+        public static final String REASON_INITIAL = "initial";
+        public static final String REASON_SALE = "sale";
+        public static final String REASON_RESTOCK = "restock";
+        public static final String REASON_CORRECTION = "correction";
+        public static final String REASON_SYNC = "sync";
+
+        private MovementTable() {
+        }
+    }
+
+    /**
+     * The daily stock table, totalling the stock movements of every product per day.
+     */
+    public static final class DailyStockTable {
+
+        /**
+         * Name of database table for daily stock totals
+         */
+        public static final String TABLE_NAME = "stock_daily";
+
+        /**
+         * ID of the product, INTEGER, and day as YYYY-MM-DD in local time, TEXT
+         */
+        public static final String COLUMN_PRODUCT_ID = "product_id";
+        public static final String COLUMN_DAY = "day";
+
+        /**
+         * Stock added, stock removed and number of movements on the day, INTEGER
+         */
+        public static final String COLUMN_UNITS_IN = "units_in";
+        public static final String COLUMN_UNITS_OUT = "units_out";
+        public static final String COLUMN_MOVEMENT_COUNT = "movement_count";
+
+        private DailyStockTable() {
+        }
+    }
+
+    /**
+     * The summary tables, holding the totals of the whole inventory and of every supplier.
+     */
+    public static final class SummaryTable {
+
+        /**
+         * Name of the database table holding the single row of inventory totals
+         */
+        public static final String TABLE_NAME = "inventory_summary";
+
+        /**
+         * Name of the database table holding the totals of every supplier
+         */
+        public static final String SUPPLIER_TABLE_NAME = "supplier_summary";
+
+        /**
+         * Number of products, books on hand and their worth in USD, INTEGER
+         */
+        public static final String COLUMN_SKU_COUNT = "sku_count";
+        public static final String COLUMN_UNITS = "units";
+        public static final String COLUMN_VALUATION = "valuation";
+
+        /**
+         * Number of products with no books on hand, INTEGER. Only in the inventory totals.
+         */
+        public static final String COLUMN_OUT_OF_STOCK = "out_of_stock";
+
+        /**
+         * Name of the supplier, empty for products without one, TEXT. Only in the supplier
+         * totals.
+         */
+        public static final String COLUMN_SUPPLIER = "supplier";
+
+        private SummaryTable() {
+        }
+    }
+
+    /**
+     * Condition met by the products at or below their reorder threshold. Queries for low stock
+     * must use exactly this condition for SQLite to pick the partial index on it.
+     */
+    public static final String LOW_STOCK_CONDITION =
+            ProductTable.COLUMN_QUANTITY + " <= " + ProductTable.COLUMN_REORDER_THRESHOLD;
+
+    /**
+     * SQL returning a new random global ID, see {@link ProductTable#COLUMN_GLOBAL_ID}
+     */
+    private static final String NEW_GLOBAL_ID = "lower(hex(randomblob(16)))";
+
+    /**
+     * SQL returning the current time in milliseconds since the epoch
+     */
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /**
+     * Pieces of the sync tracking triggers: their condition, which leaves out the changes the
+     * sync engine pulled, the statement ticking the clock, the clock, and the assignments
+     * stamping a product with it
+     */
+    private static final String SYNC_WHEN_LOCAL = " WHEN (SELECT " + SyncStateTable.COLUMN_APPLYING + " FROM "
+            + SyncStateTable.TABLE_NAME + ") = 0";
+    private static final String SYNC_TICK = "UPDATE " + SyncStateTable.TABLE_NAME + " SET "
+            + SyncStateTable.COLUMN_CLOCK + " = " + SyncStateTable.COLUMN_CLOCK + " + 1; ";
+    private static final String SYNC_CLOCK = "(SELECT " + SyncStateTable.COLUMN_CLOCK + " FROM "
+            + SyncStateTable.TABLE_NAME + ")";
+    private static final String SYNC_STAMP = ProductTable.COLUMN_VERSION + " = " + SYNC_CLOCK + ", "
+            + ProductTable.COLUMN_UPDATED_AT + " = " + NOW_MILLIS;
+
+    private InventorySchema() {
+    }
+
+    /**
+     * Create the schema of the current version in an empty database.
+     */
+    public static void create(SqlDatabase db) {
+        create(db, VERSION);
+    }
+
+    /**
+     * Create the schema as it was at the given version in an empty database, to measure or check
+     * the migrations after it.
+     */
+    public static void create(SqlDatabase db, int version) {
+        // Create a String that contains the SQL statement to create the inventory table
+        String SQL_CREATE_INVENTORY_TABLE = "CREATE TABLE " + ProductTable.TABLE_NAME + " ("
+                + ProductTable._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ProductTable.COLUMN_NAME + " TEXT NOT NULL, "
+                + ProductTable.COLUMN_AUTHOR + " TEXT, "
+                + ProductTable.COLUMN_SUPP_NAME + " TEXT, "
+                + ProductTable.COLUMN_SUPP_PHONE + " TEXT, "
+                + ProductTable.COLUMN_PRICE + " INTEGER NOT NULL DEFAULT 0,"
+                + ProductTable.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0);";
+
+        // Execute the SQL statement
+        db.execute(SQL_CREATE_INVENTORY_TABLE);
+
+        // Bring the version 1 schema up to date with the same steps an upgrade would run, so
+        // fresh installs and upgraded installs always end up with identical schemas
+        upgrade(db, 1, version);
+    }
+
+    /**
+     * Run every migration step between the old and the new version in order. The caller runs
+     * them inside a transaction.
+     */
+    public static void upgrade(SqlDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrate(db, version);
+        }
+    }
+
+    /**
+     * Upgrade the database from the previous version to the given one.
+     *
+     * @param db      the database to upgrade
+     * @param version the version to upgrade to
+     */
+    private static void migrate(SqlDatabase db, int version) {
+        switch (version) {
+            case 2:
+                // Index the columns the catalogue is looked up and sorted by
+                createIndex(db, ProductTable.COLUMN_NAME);
+                createIndex(db, ProductTable.COLUMN_AUTHOR);
+                createIndex(db, ProductTable.COLUMN_SUPP_NAME);
+                createIndex(db, ProductTable.COLUMN_QUANTITY);
+                break;
+            case 3:
+                createSearchTable(db);
+                break;
+            case 4:
+                createStockLedger(db);
+                break;
+            case 5:
+                createSummaryTables(db);
+                break;
+            case 6:
+                db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                        + ProductTable.COLUMN_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0;");
+                createLowStockIndex(db);
+                break;
+            case 7:
+                // Index the last column the catalogue can be sorted by, see CatalogQuery
+                createIndex(db, ProductTable.COLUMN_PRICE);
+                break;
+            case 8:
+                normalizeSuppliers(db);
+                break;
+            case 9:
+                createSyncTracking(db);
+                break;
+            case 10:
+                // Count every change of a product, see ProductTable.COLUMN_ROW_VERSION. Local
+                // changes are counted by the trigger stamping them for sync, at no extra cost
+                db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                        + ProductTable.COLUMN_ROW_VERSION + " INTEGER NOT NULL DEFAULT 0;");
+                db.execute("DROP TRIGGER " + ProductTable.TABLE_NAME + "_sync_update;");
+                createSyncUpdateTrigger(db, "", ", " + ProductTable.COLUMN_ROW_VERSION + " = "
+                        + ProductTable.COLUMN_ROW_VERSION + " + 1");
+                break;
+            case 11:
+                createStockLevels(db);
+                break;
+            case 12:
+                // A scan looks the product up by its barcode, so the unique index serves it with
+                // one seek. Products without a barcode leave it null, which doesn't collide.
+                db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                        + ProductTable.COLUMN_ISBN + " TEXT;");
+                db.execute("CREATE UNIQUE INDEX " + ProductTable.TABLE_NAME + "_" + ProductTable.COLUMN_ISBN
+                        + "_index ON " + ProductTable.TABLE_NAME + " (" + ProductTable.COLUMN_ISBN + ");");
+                // Changing the barcode counts as a change of the product like any other column,
+                // so an editor saving over it is told
+                db.execute("DROP TRIGGER " + ProductTable.TABLE_NAME + "_sync_update;");
+                createSyncUpdateTrigger(db, ", " + ProductTable.COLUMN_ISBN, ", " + ProductTable.COLUMN_ROW_VERSION
+                        + " = " + ProductTable.COLUMN_ROW_VERSION + " + 1");
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+    /**
+     * Create the full-text search table, fill it from the existing products and add the triggers
+     * that keep it in sync with the inventory table.
+     */
+    private static void createSearchTable(SqlDatabase db) {
+        String searchColumns = ProductTable.COLUMN_NAME + ", "
+                + ProductTable.COLUMN_AUTHOR + ", "
+                + ProductTable.COLUMN_SUPP_NAME;
+
+        db.execute("CREATE VIRTUAL TABLE " + ProductTable.SEARCH_TABLE_NAME
+                + " USING fts4(" + searchColumns + ");");
+        db.execute("INSERT INTO " + ProductTable.SEARCH_TABLE_NAME + " (docid, " + searchColumns + ") "
+                + "SELECT " + ProductTable._ID + ", " + searchColumns + " FROM " + ProductTable.TABLE_NAME + ";");
+        createSearchTriggers(db, ProductTable.COLUMN_SUPP_NAME);
+    }
+
+    /**
+     * Add the triggers that keep the full-text search table in sync with the inventory table.
+     *
+     * @param supplierColumn column of the inventory table the supplier of a product is stored in,
+     *                       {@link ProductTable#COLUMN_SUPP_NAME} before version 8 and
+     *                       {@link ProductTable#COLUMN_SUPPLIER_ID} since
+     */
+    private static void createSearchTriggers(SqlDatabase db, String supplierColumn) {
+        String searchColumns = ProductTable.COLUMN_NAME + ", "
+                + ProductTable.COLUMN_AUTHOR + ", "
+                + ProductTable.COLUMN_SUPP_NAME;
+        String newValues = "new." + ProductTable.COLUMN_NAME + ", "
+                + "new." + ProductTable.COLUMN_AUTHOR + ", "
+                + supplierName("new", supplierColumn);
+
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_search_insert AFTER INSERT ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + ProductTable.SEARCH_TABLE_NAME + " (docid, " + searchColumns + ") "
+                + "VALUES (new." + ProductTable._ID + ", " + newValues + "); END;");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_search_update AFTER UPDATE OF "
+                + ProductTable.COLUMN_NAME + ", " + ProductTable.COLUMN_AUTHOR + ", " + supplierColumn
+                + " ON " + ProductTable.TABLE_NAME + " BEGIN "
+                + "UPDATE " + ProductTable.SEARCH_TABLE_NAME + " SET "
+                + ProductTable.COLUMN_NAME + " = new." + ProductTable.COLUMN_NAME + ", "
+                + ProductTable.COLUMN_AUTHOR + " = new." + ProductTable.COLUMN_AUTHOR + ", "
+                + ProductTable.COLUMN_SUPP_NAME + " = " + supplierName("new", supplierColumn)
+                + " WHERE docid = old." + ProductTable._ID + "; END;");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_search_delete AFTER DELETE ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + ProductTable.SEARCH_TABLE_NAME
+                + " WHERE docid = old." + ProductTable._ID + "; END;");
+    }
+
+    /**
+     * Create the stock movements ledger and its daily totals, with the triggers that keep the
+     * totals up to date and the ledger append-only. The quantity of every existing product is
+     * recorded as its initial movement, so the movements of a product always add up to its
+     * quantity.
+     */
+    private static void createStockLedger(SqlDatabase db) {
+        db.execute("CREATE TABLE " + MovementTable.TABLE_NAME + " ("
+                + MovementTable._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + MovementTable.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                + MovementTable.COLUMN_DELTA + " INTEGER NOT NULL, "
+                + MovementTable.COLUMN_REASON + " TEXT NOT NULL, "
+                + MovementTable.COLUMN_TIMESTAMP + " INTEGER NOT NULL);");
+        // Serves the history of a product, latest first, without sorting
+        db.execute("CREATE INDEX " + MovementTable.TABLE_NAME + "_product_index ON " + MovementTable.TABLE_NAME
+                + " (" + MovementTable.COLUMN_PRODUCT_ID + ", " + MovementTable.COLUMN_TIMESTAMP + ");");
+
+        db.execute("CREATE TABLE " + DailyStockTable.TABLE_NAME + " ("
+                + DailyStockTable.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                + DailyStockTable.COLUMN_DAY + " TEXT NOT NULL, "
+                + DailyStockTable.COLUMN_UNITS_IN + " INTEGER NOT NULL DEFAULT 0, "
+                + DailyStockTable.COLUMN_UNITS_OUT + " INTEGER NOT NULL DEFAULT 0, "
+                + DailyStockTable.COLUMN_MOVEMENT_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + DailyStockTable.COLUMN_PRODUCT_ID + ", " + DailyStockTable.COLUMN_DAY + "));");
+
+        // Add every new movement to the total of its product and day. There's no upsert before
+        // SQLite 3.24, so make sure the row exists first, then add to it.
+        String day = "date(new." + MovementTable.COLUMN_TIMESTAMP + " / 1000, 'unixepoch', 'localtime')";
+        db.execute("CREATE TRIGGER " + MovementTable.TABLE_NAME + "_rollup AFTER INSERT ON "
+                + MovementTable.TABLE_NAME + " BEGIN "
+                + "INSERT OR IGNORE INTO " + DailyStockTable.TABLE_NAME + " ("
+                + DailyStockTable.COLUMN_PRODUCT_ID + ", " + DailyStockTable.COLUMN_DAY + ") "
+                + "VALUES (new." + MovementTable.COLUMN_PRODUCT_ID + ", " + day + "); "
+                + "UPDATE " + DailyStockTable.TABLE_NAME + " SET "
+                + DailyStockTable.COLUMN_UNITS_IN + " = " + DailyStockTable.COLUMN_UNITS_IN
+                + " + max(new." + MovementTable.COLUMN_DELTA + ", 0), "
+                + DailyStockTable.COLUMN_UNITS_OUT + " = " + DailyStockTable.COLUMN_UNITS_OUT
+                + " + max(-new." + MovementTable.COLUMN_DELTA + ", 0), "
+                + DailyStockTable.COLUMN_MOVEMENT_COUNT + " = " + DailyStockTable.COLUMN_MOVEMENT_COUNT + " + 1 "
+                + "WHERE " + DailyStockTable.COLUMN_PRODUCT_ID + " = new." + MovementTable.COLUMN_PRODUCT_ID
+                + " AND " + DailyStockTable.COLUMN_DAY + " = " + day + "; END;");
+
+        // The ledger is history: it's only ever appended to
+        db.execute("CREATE TRIGGER " + MovementTable.TABLE_NAME + "_no_update BEFORE UPDATE ON "
+                + MovementTable.TABLE_NAME + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END;");
+        db.execute("CREATE TRIGGER " + MovementTable.TABLE_NAME + "_no_delete BEFORE DELETE ON "
+                + MovementTable.TABLE_NAME + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END;");
+
+        db.execute("INSERT INTO " + MovementTable.TABLE_NAME + " ("
+                + MovementTable.COLUMN_PRODUCT_ID + ", " + MovementTable.COLUMN_DELTA + ", "
+                + MovementTable.COLUMN_REASON + ", " + MovementTable.COLUMN_TIMESTAMP + ") "
+                + "SELECT " + ProductTable._ID + ", " + ProductTable.COLUMN_QUANTITY + ", '"
+                + MovementTable.REASON_INITIAL + "', " + System.currentTimeMillis()
+                + " FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable.COLUMN_QUANTITY + " != 0;");
+    }
+
+    /**
+     * Create the tables totalling the whole inventory and every supplier, fill them from the
+     * existing products and add the triggers that keep them up to date. Every write to a product
+     * only adds its old values out of the totals and its new values into them, so the totals
+     * never have to be computed from scratch again.
+     */
+    private static void createSummaryTables(SqlDatabase db) {
+        db.execute("CREATE TABLE " + SummaryTable.TABLE_NAME + " ("
+                + SummaryTable.COLUMN_SKU_COUNT + " INTEGER NOT NULL, "
+                + SummaryTable.COLUMN_UNITS + " INTEGER NOT NULL, "
+                + SummaryTable.COLUMN_VALUATION + " INTEGER NOT NULL, "
+                + SummaryTable.COLUMN_OUT_OF_STOCK + " INTEGER NOT NULL);");
+        db.execute("INSERT INTO " + SummaryTable.TABLE_NAME + " SELECT "
+                + "count(*), "
+                + "ifnull(sum(" + ProductTable.COLUMN_QUANTITY + "), 0), "
+                + "ifnull(sum(" + ProductTable.COLUMN_PRICE + " * " + ProductTable.COLUMN_QUANTITY + "), 0), "
+                + "ifnull(sum(" + ProductTable.COLUMN_QUANTITY + " <= 0), 0) "
+                + "FROM " + ProductTable.TABLE_NAME + ";");
+
+        db.execute("CREATE TABLE " + SummaryTable.SUPPLIER_TABLE_NAME + " ("
+                + SummaryTable.COLUMN_SUPPLIER + " TEXT PRIMARY KEY NOT NULL, "
+                + SummaryTable.COLUMN_SKU_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryTable.COLUMN_UNITS + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryTable.COLUMN_VALUATION + " INTEGER NOT NULL DEFAULT 0);");
+        db.execute("INSERT INTO " + SummaryTable.SUPPLIER_TABLE_NAME + " SELECT "
+                + "ifnull(" + ProductTable.COLUMN_SUPP_NAME + ", ''), "
+                + "count(*), "
+                + "sum(" + ProductTable.COLUMN_QUANTITY + "), "
+                + "sum(" + ProductTable.COLUMN_PRICE + " * " + ProductTable.COLUMN_QUANTITY + ") "
+                + "FROM " + ProductTable.TABLE_NAME
+                + " GROUP BY ifnull(" + ProductTable.COLUMN_SUPP_NAME + ", '');");
+
+        createSummaryTriggers(db, ProductTable.COLUMN_SUPP_NAME);
+    }
+
+    /**
+     * Add the triggers that keep the summary tables up to date with the inventory table.
+     *
+     * @param supplierColumn column of the inventory table the supplier of a product is stored in,
+     *                       as for {@link #createSearchTriggers(SqlDatabase, String)}
+     */
+    private static void createSummaryTriggers(SqlDatabase db, String supplierColumn) {
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_summary_insert AFTER INSERT ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + addToSummary("new", "+", supplierColumn) + " END;");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_summary_update AFTER UPDATE OF "
+                + ProductTable.COLUMN_PRICE + ", " + ProductTable.COLUMN_QUANTITY + ", " + supplierColumn
+                + " ON " + ProductTable.TABLE_NAME + " BEGIN "
+                + addToSummary("old", "-", supplierColumn) + " " + addToSummary("new", "+", supplierColumn)
+                + " END;");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_summary_delete AFTER DELETE ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + addToSummary("old", "-", supplierColumn) + " END;");
+    }
+
+    /**
+     * Return the trigger statements adding the given row of the inventory table to the summary
+     * tables, or taking it out of them.
+     *
+     * @param row            "new" or "old"
+     * @param operator       "+" to add the row, "-" to take it out
+     * @param supplierColumn column the supplier of the row is stored in
+     */
+    private static String addToSummary(String row, String operator, String supplierColumn) {
+        String quantity = row + "." + ProductTable.COLUMN_QUANTITY;
+        String value = row + "." + ProductTable.COLUMN_PRICE + " * " + quantity;
+        String supplier = "ifnull(" + supplierName(row, supplierColumn) + ", '')";
+        StringBuilder statements = new StringBuilder();
+        statements.append("UPDATE ").append(SummaryTable.TABLE_NAME).append(" SET ")
+                .append(SummaryTable.COLUMN_SKU_COUNT).append(" = ").append(SummaryTable.COLUMN_SKU_COUNT)
+                .append(' ').append(operator).append(" 1, ")
+                .append(SummaryTable.COLUMN_UNITS).append(" = ").append(SummaryTable.COLUMN_UNITS)
+                .append(' ').append(operator).append(' ').append(quantity).append(", ")
+                .append(SummaryTable.COLUMN_VALUATION).append(" = ").append(SummaryTable.COLUMN_VALUATION)
+                .append(' ').append(operator).append(" (").append(value).append("), ")
+                .append(SummaryTable.COLUMN_OUT_OF_STOCK).append(" = ").append(SummaryTable.COLUMN_OUT_OF_STOCK)
+                .append(' ').append(operator).append(" (").append(quantity).append(" <= 0); ");
+        if ("+".equals(operator)) {
+            statements.append("INSERT OR IGNORE INTO ").append(SummaryTable.SUPPLIER_TABLE_NAME)
+                    .append(" (").append(SummaryTable.COLUMN_SUPPLIER).append(") VALUES (")
+                    .append(supplier).append("); ");
+        }
+        statements.append("UPDATE ").append(SummaryTable.SUPPLIER_TABLE_NAME).append(" SET ")
+                .append(SummaryTable.COLUMN_SKU_COUNT).append(" = ").append(SummaryTable.COLUMN_SKU_COUNT)
+                .append(' ').append(operator).append(" 1, ")
+                .append(SummaryTable.COLUMN_UNITS).append(" = ").append(SummaryTable.COLUMN_UNITS)
+                .append(' ').append(operator).append(' ').append(quantity).append(", ")
+                .append(SummaryTable.COLUMN_VALUATION).append(" = ").append(SummaryTable.COLUMN_VALUATION)
+                .append(' ').append(operator).append(" (").append(value).append(") ")
+                .append("WHERE ").append(SummaryTable.COLUMN_SUPPLIER).append(" = ").append(supplier).append("; ");
+        if ("-".equals(operator)) {
+            // Suppliers without products are dropped
+            statements.append("DELETE FROM ").append(SummaryTable.SUPPLIER_TABLE_NAME)
+                    .append(" WHERE ").append(SummaryTable.COLUMN_SUPPLIER).append(" = ").append(supplier)
+                    .append(" AND ").append(SummaryTable.COLUMN_SKU_COUNT).append(" = 0;");
+        }
+        return statements.toString();
+    }
+
+    /**
+     * Return the SQL reading the supplier name of the given row of the inventory table in a
+     * trigger, null if it has none.
+     *
+     * @param row            "new" or "old"
+     * @param supplierColumn column the supplier of the row is stored in
+     */
+    private static String supplierName(String row, String supplierColumn) {
+        if (!supplierColumn.equals(ProductTable.COLUMN_SUPPLIER_ID)) {
+            return row + "." + supplierColumn;
+        }
+        return "(SELECT nullif(" + SupplierTable.COLUMN_NAME + ", '') FROM " + SupplierTable.TABLE_NAME
+                + " WHERE " + SupplierTable._ID + " = " + row + "." + ProductTable.COLUMN_SUPPLIER_ID + ")";
+    }
+
+    /**
+     * Move the supplier name and phone repeated on every product into the suppliers table, one row
+     * per distinct pair, and point the products at it. The old columns can't be dropped before
+     * SQLite 3.35, so they're set to null, which only takes a byte of the record header. The
+     * search and summary tables already hold the supplier names, so their triggers are dropped
+     * while the products are rewritten, then created again to read the names from the suppliers
+     * table.
+     */
+    private static void normalizeSuppliers(SqlDatabase db) {
+        db.execute("CREATE TABLE " + SupplierTable.TABLE_NAME + " ("
+                + SupplierTable._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SupplierTable.COLUMN_NAME + " TEXT NOT NULL DEFAULT '', "
+                + SupplierTable.COLUMN_PHONE + " TEXT NOT NULL DEFAULT '', "
+                + "UNIQUE (" + SupplierTable.COLUMN_NAME + ", " + SupplierTable.COLUMN_PHONE + "));");
+        db.execute("INSERT INTO " + SupplierTable.TABLE_NAME + " ("
+                + SupplierTable.COLUMN_NAME + ", " + SupplierTable.COLUMN_PHONE + ") "
+                + "SELECT DISTINCT ifnull(" + ProductTable.COLUMN_SUPP_NAME + ", ''), ifnull("
+                + ProductTable.COLUMN_SUPP_PHONE + ", '') FROM " + ProductTable.TABLE_NAME
+                + " WHERE " + ProductTable.COLUMN_SUPP_NAME + " IS NOT NULL OR "
+                + ProductTable.COLUMN_SUPP_PHONE + " IS NOT NULL;");
+        db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN " + ProductTable.COLUMN_SUPPLIER_ID
+                + " INTEGER REFERENCES " + SupplierTable.TABLE_NAME + " (" + SupplierTable._ID + ");");
+
+        for (String trigger : new String[]{"search_insert", "search_update", "search_delete", "summary_insert",
+                "summary_update", "summary_delete"}) {
+            db.execute("DROP TRIGGER " + ProductTable.TABLE_NAME + "_" + trigger + ";");
+        }
+        db.execute("UPDATE " + ProductTable.TABLE_NAME + " SET "
+                + ProductTable.COLUMN_SUPPLIER_ID + " = (SELECT " + SupplierTable._ID + " FROM "
+                + SupplierTable.TABLE_NAME + " WHERE "
+                + SupplierTable.COLUMN_NAME + " = ifnull(" + ProductTable.TABLE_NAME + "."
+                + ProductTable.COLUMN_SUPP_NAME + ", '') AND "
+                + SupplierTable.COLUMN_PHONE + " = ifnull(" + ProductTable.TABLE_NAME + "."
+                + ProductTable.COLUMN_SUPP_PHONE + ", '')), "
+                + ProductTable.COLUMN_SUPP_NAME + " = NULL, "
+                + ProductTable.COLUMN_SUPP_PHONE + " = NULL "
+                + "WHERE " + ProductTable.COLUMN_SUPP_NAME + " IS NOT NULL OR "
+                + ProductTable.COLUMN_SUPP_PHONE + " IS NOT NULL;");
+        createSearchTriggers(db, ProductTable.COLUMN_SUPPLIER_ID);
+        createSummaryTriggers(db, ProductTable.COLUMN_SUPPLIER_ID);
+
+        // The supplier name index only holds nulls now; the products of a supplier are found by
+        // its ID instead
+        db.execute("DROP INDEX IF EXISTS " + ProductTable.TABLE_NAME + "_" + ProductTable.COLUMN_SUPP_NAME
+                + "_index;");
+        createIndex(db, ProductTable.COLUMN_SUPPLIER_ID);
+    }
+
+    /**
+     * Add the change tracking the sync engine pushes from: a global ID, a version and a time of
+     * last change to every product, tombstones of the deleted products and the sync state. The
+     * existing products get their ID as version and the clock starts from the highest, so the
+     * first sync pushes all of them. Triggers stamp every later change, unless the sync engine is
+     * writing what it pulled from the server.
+     */
+    private static void createSyncTracking(SqlDatabase db) {
+        db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                + ProductTable.COLUMN_GLOBAL_ID + " TEXT;");
+        db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                + ProductTable.COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0;");
+        db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                + ProductTable.COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0;");
+        db.execute("ALTER TABLE " + ProductTable.TABLE_NAME + " ADD COLUMN "
+                + ProductTable.COLUMN_SYNCED_QUANTITY + " INTEGER NOT NULL DEFAULT 0;");
+        db.execute("UPDATE " + ProductTable.TABLE_NAME + " SET "
+                + ProductTable.COLUMN_GLOBAL_ID + " = " + NEW_GLOBAL_ID + ", "
+                + ProductTable.COLUMN_VERSION + " = " + ProductTable._ID + ", "
+                + ProductTable.COLUMN_UPDATED_AT + " = " + NOW_MILLIS + ";");
+        db.execute("CREATE UNIQUE INDEX " + ProductTable.TABLE_NAME + "_" + ProductTable.COLUMN_GLOBAL_ID
+                + "_index ON " + ProductTable.TABLE_NAME + " (" + ProductTable.COLUMN_GLOBAL_ID + ");");
+        createIndex(db, ProductTable.COLUMN_VERSION);
+
+        db.execute("CREATE TABLE " + TombstoneTable.TABLE_NAME + " ("
+                + TombstoneTable.COLUMN_GLOBAL_ID + " TEXT PRIMARY KEY NOT NULL, "
+                + TombstoneTable.COLUMN_VERSION + " INTEGER NOT NULL, "
+                + TombstoneTable.COLUMN_DELETED_AT + " INTEGER NOT NULL);");
+        db.execute("CREATE INDEX " + TombstoneTable.TABLE_NAME + "_" + TombstoneTable.COLUMN_VERSION
+                + "_index ON " + TombstoneTable.TABLE_NAME + " (" + TombstoneTable.COLUMN_VERSION + ");");
+
+        db.execute("CREATE TABLE " + SyncStateTable.TABLE_NAME + " ("
+                + SyncStateTable.COLUMN_DEVICE_ID + " TEXT NOT NULL, "
+                + SyncStateTable.COLUMN_CLOCK + " INTEGER NOT NULL, "
+                + SyncStateTable.COLUMN_PUSH_TOKEN + " INTEGER NOT NULL DEFAULT 0, "
+                + SyncStateTable.COLUMN_PULL_TOKEN + " INTEGER NOT NULL DEFAULT 0, "
+                + SyncStateTable.COLUMN_APPLYING + " INTEGER NOT NULL DEFAULT 0);");
+        db.execute("INSERT INTO " + SyncStateTable.TABLE_NAME + " ("
+                + SyncStateTable.COLUMN_DEVICE_ID + ", " + SyncStateTable.COLUMN_CLOCK + ") SELECT "
+                + NEW_GLOBAL_ID + ", ifnull(max(" + ProductTable._ID + "), 0) FROM " + ProductTable.TABLE_NAME + ";");
+
+        // Every trigger ticks the clock and stamps the product with it, unless the sync engine
+        // is applying pulled changes. Stamping the product only updates the tracking columns,
+        // which no trigger watches.
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_sync_insert AFTER INSERT ON "
+                + ProductTable.TABLE_NAME + SYNC_WHEN_LOCAL + " BEGIN " + SYNC_TICK
+                + "UPDATE " + ProductTable.TABLE_NAME + " SET "
+                + ProductTable.COLUMN_GLOBAL_ID + " = " + NEW_GLOBAL_ID + ", " + SYNC_STAMP
+                + " WHERE " + ProductTable._ID + " = new." + ProductTable._ID + "; END;");
+        createSyncUpdateTrigger(db, "", "");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_sync_delete AFTER DELETE ON "
+                + ProductTable.TABLE_NAME + SYNC_WHEN_LOCAL + " AND old." + ProductTable.COLUMN_GLOBAL_ID
+                + " IS NOT NULL BEGIN " + SYNC_TICK
+                + "INSERT OR REPLACE INTO " + TombstoneTable.TABLE_NAME + " VALUES (old."
+                + ProductTable.COLUMN_GLOBAL_ID + ", " + SYNC_CLOCK + ", " + NOW_MILLIS + "); END;");
+    }
+
+    /**
+     * Create the trigger stamping the local changes of a product for sync, which also fires on
+     * the given extra columns and sets the given extra assignments, each preceded by a comma.
+     */
+    private static void createSyncUpdateTrigger(SqlDatabase db, String extraColumns, String extraAssignments) {
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_sync_update AFTER UPDATE OF "
+                + ProductTable.COLUMN_NAME + ", "
+                + ProductTable.COLUMN_AUTHOR + ", "
+                + ProductTable.COLUMN_SUPPLIER_ID + ", "
+                + ProductTable.COLUMN_PRICE + ", "
+                + ProductTable.COLUMN_QUANTITY + ", "
+                + ProductTable.COLUMN_REORDER_THRESHOLD + extraColumns + " ON " + ProductTable.TABLE_NAME
+                + SYNC_WHEN_LOCAL
+                + " BEGIN " + SYNC_TICK + "UPDATE " + ProductTable.TABLE_NAME + " SET " + SYNC_STAMP
+                + extraAssignments + " WHERE " + ProductTable._ID + " = new." + ProductTable._ID + "; END;");
+    }
+
+    /**
+     * Create the locations and the stock levels of every product at them, with all the existing
+     * stock at the default location. Transfers between locations only move stock between levels,
+     * so the total on hand stays the same. Triggers keep the levels in step with every other
+     * write to the products: a new product's stock and every change to its quantity are made at
+     * the default location, and a deleted product's levels go with it. The triggers only fire on
+     * the quantity, not on the other columns, and don't depend on the sync state, as pulled
+     * changes must be stocked somewhere too.
+     */
+    private static void createStockLevels(SqlDatabase db) {
+        db.execute("CREATE TABLE " + LocationTable.TABLE_NAME + " ("
+                + LocationTable._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + LocationTable.COLUMN_NAME + " TEXT NOT NULL UNIQUE);");
+        db.execute("INSERT INTO " + LocationTable.TABLE_NAME + " VALUES (" + LocationTable.DEFAULT_ID + ", '"
+                + LocationTable.DEFAULT_NAME + "');");
+
+        db.execute("CREATE TABLE " + StockLevelTable.TABLE_NAME + " ("
+                + StockLevelTable.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                + StockLevelTable.COLUMN_LOCATION_ID + " INTEGER NOT NULL REFERENCES "
+                + LocationTable.TABLE_NAME + " (" + LocationTable._ID + "), "
+                + StockLevelTable.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + StockLevelTable.COLUMN_PRODUCT_ID + ", "
+                + StockLevelTable.COLUMN_LOCATION_ID + "));");
+        // Serves the stock at one location in product order, without sorting
+        db.execute("CREATE INDEX " + StockLevelTable.TABLE_NAME + "_location_index ON "
+                + StockLevelTable.TABLE_NAME + " (" + StockLevelTable.COLUMN_LOCATION_ID + ", "
+                + StockLevelTable.COLUMN_PRODUCT_ID + ", " + StockLevelTable.COLUMN_QUANTITY + ");");
+        db.execute("INSERT INTO " + StockLevelTable.TABLE_NAME + " SELECT "
+                + ProductTable._ID + ", " + LocationTable.DEFAULT_ID + ", " + ProductTable.COLUMN_QUANTITY
+                + " FROM " + ProductTable.TABLE_NAME + ";");
+
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_stock_insert AFTER INSERT ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + StockLevelTable.TABLE_NAME + " VALUES (new." + ProductTable._ID + ", "
+                + LocationTable.DEFAULT_ID + ", new." + ProductTable.COLUMN_QUANTITY + "); END;");
+        // Every product has a level at the default location from its insertion on, and levels
+        // are never dropped while the product exists, so the change can be added to it directly
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_stock_update AFTER UPDATE OF "
+                + ProductTable.COLUMN_QUANTITY + " ON " + ProductTable.TABLE_NAME
+                + " WHEN new." + ProductTable.COLUMN_QUANTITY + " != old." + ProductTable.COLUMN_QUANTITY
+                + " BEGIN UPDATE " + StockLevelTable.TABLE_NAME + " SET " + StockLevelTable.COLUMN_QUANTITY
+                + " = " + StockLevelTable.COLUMN_QUANTITY + " + new." + ProductTable.COLUMN_QUANTITY
+                + " - old." + ProductTable.COLUMN_QUANTITY
+                + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID + " = new." + ProductTable._ID
+                + " AND " + StockLevelTable.COLUMN_LOCATION_ID + " = " + LocationTable.DEFAULT_ID + "; END;");
+        db.execute("CREATE TRIGGER " + ProductTable.TABLE_NAME + "_stock_delete AFTER DELETE ON "
+                + ProductTable.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + StockLevelTable.TABLE_NAME + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID
+                + " = old." + ProductTable._ID + "; END;");
+    }
+
+    /**
+     * Create a partial index holding only the products at or below their reorder threshold, so
+     * listing them reads those rows instead of scanning the whole table. Partial indexes need
+     * SQLite 3.8.0 (Android 5.0); older versions list low stock with a table scan. Also run every
+     * time a writable database is opened, as it may have been created before a system update
+     * brought partial indexes.
+     */
+    public static void createLowStockIndex(SqlDatabase db) {
+        if (!supportsPartialIndexes(db)) {
+            return;
+        }
+        db.execute("CREATE INDEX IF NOT EXISTS " + ProductTable.TABLE_NAME + "_low_stock_index ON "
+                + ProductTable.TABLE_NAME + " (" + ProductTable._ID + ") WHERE " + LOW_STOCK_CONDITION + ";");
+    }
+
+    /**
+     * Return true if the SQLite library is version 3.8.0 or later.
+     */
+    private static boolean supportsPartialIndexes(SqlDatabase db) {
+        String[] version;
+        SqlDatabase.Rows rows = db.query("SELECT sqlite_version();");
+        try {
+            rows.moveToNext();
+            version = rows.getString(0).split("\\.");
+        } finally {
+            rows.close();
+        }
+        int major = Integer.parseInt(version[0]);
+        int minor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+        return major > 3 || (major == 3 && minor >= 8);
+    }
+
+    /**
+     * Create an index on a single column of the inventory table.
+     */
+    private static void createIndex(SqlDatabase db, String column) {
+        db.execute("CREATE INDEX IF NOT EXISTS " + ProductTable.TABLE_NAME + "_" + column + "_index ON "
+                + ProductTable.TABLE_NAME + " (" + column + ");");
+    }
+}
@@ -0,0 +1,419 @@
+package com.example.android.inventory.core;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link SqlDatabase} on a JDBC connection to an SQLite database, for running the inventory on a
+ * plain JVM. Needs an SQLite JDBC driver, such as sqlite-jdbc, on the class path at run time.
+ * <p>
+ * Statements are compiled once per connection and reused, so the rows of a query must be closed
+ * before the same query runs again. Not thread safe: use one instance per thread.
+ */
+public class JdbcSqlDatabase implements SqlDatabase {
+
+    /**
+     * Number of pages the page cache may hold, as on a device
+     */
+    private static final int CACHE_SIZE_PAGES = 512;
+
+    /**
+     * Number of pages the write-ahead log may grow to before a commit checkpoints it, as on a
+     * device
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /**
+     * The connection to the database
+     */
+    private final Connection mConnection;
+
+    /**
+     * Compiled statements, by their SQL
+     */
+    private final Map<String, PreparedStatement> mStatements = new HashMap<>();
+
+    /**
+     * Whether each open transaction, innermost last, has been marked successful
+     */
+    private final List<Boolean> mTransactions = new ArrayList<>();
+
+    /**
+     * True once a nested transaction has ended without being marked successful, so the outermost
+     * one rolls back
+     */
+    private boolean mTransactionFailed;
+
+    public JdbcSqlDatabase(Connection connection) {
+        mConnection = connection;
+    }
+
+    /**
+     * Open the inventory database in the given file, creating it or upgrading it to the current
+     * {@link InventorySchema#VERSION} as needed. The version is kept in the user_version pragma,
+     * as Android does, so a file created here can be opened by the app and the other way round.
+     *
+     * @throws StorageException if the database can't be opened, or is newer than this code
+     */
+    public static JdbcSqlDatabase openInventory(String path) {
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        } catch (SQLException e) {
+            throw new StorageException("Cannot open " + path, e);
+        }
+        JdbcSqlDatabase db = new JdbcSqlDatabase(connection);
+        try {
+            // Configure the connection as the app's database helper configures its own
+            db.execute("PRAGMA journal_mode = WAL;");
+            db.execute("PRAGMA synchronous = NORMAL;");
+            db.execute("PRAGMA cache_size = " + CACHE_SIZE_PAGES + ";");
+            db.execute("PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES + ";");
+
+            int version = db.getUserVersion();
+            if (version > InventorySchema.VERSION) {
+                throw new StorageException("Database version " + version + " of " + path + " is newer than "
+                        + InventorySchema.VERSION);
+            }
+            if (version < InventorySchema.VERSION) {
+                db.beginTransaction();
+                try {
+                    if (version == 0) {
+                        InventorySchema.create(db);
+                    } else {
+                        InventorySchema.upgrade(db, version, InventorySchema.VERSION);
+                    }
+                    db.execute("PRAGMA user_version = " + InventorySchema.VERSION + ";");
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+            InventorySchema.createLowStockIndex(db);
+            return db;
+        } catch (RuntimeException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the version of the schema, 0 for a new database.
+     */
+    private int getUserVersion() {
+        Rows rows = query("PRAGMA user_version;");
+        try {
+            return rows.moveToNext() ? (int) rows.getLong(0) : 0;
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Return the connection to the database.
+     */
+    public Connection getConnection() {
+        return mConnection;
+    }
+
+    @Override
+    public Statement compileStatement(String sql) {
+        try {
+            return new CompiledStatement(sql, mConnection.prepareStatement(sql));
+        } catch (SQLException e) {
+            throw new StorageException("Failed to compile " + sql, e);
+        }
+    }
+
+    @Override
+    public void execute(String sql, Object... bindArgs) {
+        try {
+            PreparedStatement statement = prepare(sql, bindArgs);
+            statement.execute();
+            ResultSet results = statement.getResultSet();
+            if (results != null) {
+                results.close();
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Failed to execute " + sql, e);
+        }
+    }
+
+    @Override
+    public long executeInsert(String sql, Object... bindArgs) {
+        try {
+            if (prepare(sql, bindArgs).executeUpdate() == 0) {
+                return -1;
+            }
+            return getLastInsertRowId();
+        } catch (SQLException e) {
+            throw new StorageException("Failed to execute " + sql, e);
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object... bindArgs) {
+        try {
+            return prepare(sql, bindArgs).executeUpdate();
+        } catch (SQLException e) {
+            throw new StorageException("Failed to execute " + sql, e);
+        }
+    }
+
+    @Override
+    public Rows query(String sql, Object... bindArgs) {
+        try {
+            return new ResultSetRows(prepare(sql, bindArgs).executeQuery());
+        } catch (SQLException e) {
+            throw new StorageException("Failed to query " + sql, e);
+        }
+    }
+
+    /**
+     * Return the row ID of the last row inserted on the connection.
+     */
+    private long getLastInsertRowId() throws SQLException {
+        ResultSet results = prepare("SELECT last_insert_rowid();").executeQuery();
+        try {
+            return results.next() ? results.getLong(1) : -1;
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * Return the compiled statement for the given SQL, with the given arguments bound.
+     */
+    private PreparedStatement prepare(String sql, Object... bindArgs) throws SQLException {
+        PreparedStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = mConnection.prepareStatement(sql);
+            mStatements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+        }
+        for (int i = 0; i < bindArgs.length; i++) {
+            Object arg = bindArgs[i];
+            if (arg == null) {
+                statement.setNull(i + 1, Types.NULL);
+            } else if (arg instanceof Double || arg instanceof Float) {
+                statement.setDouble(i + 1, ((Number) arg).doubleValue());
+            } else if (arg instanceof Number) {
+                statement.setLong(i + 1, ((Number) arg).longValue());
+            } else {
+                statement.setString(i + 1, arg.toString());
+            }
+        }
+        return statement;
+    }
+
+    @Override
+    public void beginTransaction() {
+        if (mTransactions.isEmpty()) {
+            try {
+                mConnection.setAutoCommit(false);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to begin transaction", e);
+            }
+            mTransactionFailed = false;
+        }
+        mTransactions.add(Boolean.FALSE);
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        if (mTransactions.isEmpty()) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        mTransactions.set(mTransactions.size() - 1, Boolean.TRUE);
+    }
+
+    @Override
+    public void endTransaction() {
+        if (mTransactions.isEmpty()) {
+            throw new IllegalStateException("No transaction in progress");
+        }
+        if (!mTransactions.remove(mTransactions.size() - 1)) {
+            mTransactionFailed = true;
+        }
+        if (!mTransactions.isEmpty()) {
+            return;
+        }
+        try {
+            if (mTransactionFailed) {
+                mConnection.rollback();
+            } else {
+                mConnection.commit();
+            }
+            mConnection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw new StorageException("Failed to end transaction", e);
+        }
+    }
+
+    /**
+     * Release the compiled statements and close the connection.
+     */
+    public void close() {
+        try {
+            for (PreparedStatement statement : mStatements.values()) {
+                statement.close();
+            }
+            mStatements.clear();
+            mConnection.close();
+        } catch (SQLException e) {
+            throw new StorageException("Failed to close database", e);
+        }
+    }
+
+    /**
+     * A statement compiled on the connection, apart from the ones cached by SQL.
+     */
+    private final class CompiledStatement implements Statement {
+
+        private final String mSql;
+
+        private final PreparedStatement mStatement;
+
+        CompiledStatement(String sql, PreparedStatement statement) {
+            mSql = sql;
+            mStatement = statement;
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            try {
+                mStatement.setLong(index, value);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to bind " + mSql, e);
+            }
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            try {
+                mStatement.setString(index, value);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to bind " + mSql, e);
+            }
+        }
+
+        @Override
+        public void bindNull(int index) {
+            try {
+                mStatement.setNull(index, Types.NULL);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to bind " + mSql, e);
+            }
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            try {
+                ResultSet results = mStatement.executeQuery();
+                try {
+                    return results.next() ? results.getLong(1) : -1;
+                } finally {
+                    results.close();
+                }
+            } catch (SQLException e) {
+                throw new StorageException("Failed to query " + mSql, e);
+            }
+        }
+
+        @Override
+        public long executeInsert() {
+            try {
+                if (mStatement.executeUpdate() == 0) {
+                    return -1;
+                }
+                return getLastInsertRowId();
+            } catch (SQLException e) {
+                throw new StorageException("Failed to execute " + mSql, e);
+            }
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            try {
+                return mStatement.executeUpdate();
+            } catch (SQLException e) {
+                throw new StorageException("Failed to execute " + mSql, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                mStatement.close();
+            } catch (SQLException e) {
+                throw new StorageException("Failed to close " + mSql, e);
+            }
+        }
+    }
+
+    /**
+     * Rows read from a JDBC result set.
+     */
+    private static final class ResultSetRows implements Rows {
+
+        private final ResultSet mResults;
+
+        ResultSetRows(ResultSet results) {
+            mResults = results;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            try {
+                return mResults.next();
+            } catch (SQLException e) {
+                throw new StorageException("Failed to read row", e);
+            }
+        }
+
+        @Override
+        public long getLong(int column) {
+            try {
+                return mResults.getLong(column + 1);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to read column " + column, e);
+            }
+        }
+
+        @Override
+        public String getString(int column) {
+            try {
+                return mResults.getString(column + 1);
+            } catch (SQLException e) {
+                throw new StorageException("Failed to read column " + column, e);
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            try {
+                return mResults.getObject(column + 1) == null;
+            } catch (SQLException e) {
+                throw new StorageException("Failed to read column " + column, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                mResults.close();
+            } catch (SQLException e) {
+                throw new StorageException("Failed to close rows", e);
+            }
+        }
+    }
+}
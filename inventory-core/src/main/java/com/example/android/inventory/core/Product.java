@@ -0,0 +1,78 @@
+package com.example.android.inventory.core;
+
+/**
+ * A product of the inventory, as stored in one row of {@link InventorySchema.ProductTable}.
+ * Products are immutable: a change is made by writing a new product through the
+ * {@link InventoryRepository}.
+ */
+public final class Product {
+
+    /**
+     * ID of a product that hasn't been inserted yet
+     */
+    public static final long NO_ID = -1;
+
+    /**
+     * Unique ID of the product, or {@link #NO_ID}
+     */
+    public final long mId;
+
+    /**
+     * Name and author of the product. The author may be null.
+     */
+    public final String mName;
+    public final String mAuthor;
+
+    /**
+     * Name and phone of the supplier of the product, either of which may be null
+     */
+    public final String mSupplierName;
+    public final String mSupplierPhone;
+
+    /**
+     * Price in USD, number of books on hand, and quantity at or below which the product should
+     * be reordered
+     */
+    public final int mPrice;
+    public final int mQuantity;
+    public final int mReorderThreshold;
+
+    /**
+     * ISBN or other barcode of the product, normalized by {@link ProductRules#normalizeIsbn}, or
+     * null if it has none
+     */
+    public final String mIsbn;
+
+    /**
+     * Constructs a product without a barcode.
+     */
+    public Product(long id, String name, String author, String supplierName, String supplierPhone,
+                   int price, int quantity, int reorderThreshold) {
+        this(id, name, author, supplierName, supplierPhone, price, quantity, reorderThreshold, null);
+    }
+
+    public Product(long id, String name, String author, String supplierName, String supplierPhone,
+                   int price, int quantity, int reorderThreshold, String isbn) {
+        mId = id;
+        mName = name;
+        mAuthor = author;
+        mSupplierName = supplierName;
+        mSupplierPhone = supplierPhone;
+        mPrice = price;
+        mQuantity = quantity;
+        mReorderThreshold = reorderThreshold;
+        mIsbn = isbn;
+    }
+
+    /**
+     * Return true if the product is at or below its reorder threshold.
+     */
+    public boolean isLowOnStock() {
+        return ProductRules.isLow(mQuantity, mReorderThreshold);
+    }
+
+    @Override
+    public String toString() {
+        return "Product{id=" + mId + ", name=" + mName + ", quantity=" + mQuantity + "}";
+    }
+}
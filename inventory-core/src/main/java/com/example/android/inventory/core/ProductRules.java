@@ -0,0 +1,146 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+
+/**
+ * Business rules of the inventory: what makes a product valid, when a product is low on stock,
+ * and which stock changes are allowed. Every way of writing products (the content provider, the
+ * importers and the JVM tools) checks them here, so they all accept and reject the same products
+ * with the same messages.
+ */
+public final class ProductRules {
+
+    private ProductRules() {
+    }
+
+    /**
+     * Check that the given product can be inserted, throwing an {@link IllegalArgumentException}
+     * if it can't.
+     */
+    public static void checkNewProduct(Product product) {
+        checkNewProduct(product.mName, product.mPrice, product.mQuantity, product.mReorderThreshold);
+        if (product.mIsbn != null && !product.mIsbn.equals(normalizeIsbn(product.mIsbn))) {
+            throw new IllegalArgumentException("Book requires valid isbn");
+        }
+    }
+
+    /**
+     * Check the values of a new product, throwing an {@link IllegalArgumentException} if they
+     * don't describe a valid product. The numbers may be null when they're left to their
+     * defaults.
+     */
+    public static void checkNewProduct(String name, Integer price, Integer quantity, Integer reorderThreshold) {
+        // Check that the name is not null
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Book requires valid name");
+        }
+
+        // If the price is provided, check that it's greater than or equal to 0 USD
+        if (price != null && price < 0) {
+            throw new IllegalArgumentException("Book requires valid price");
+        }
+        // If the quantity is provided, check that it's greater than or equal to 0
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Book requires valid quantity");
+        }
+        // If the reorder threshold is provided, check that it's greater than or equal to 0
+        if (reorderThreshold != null && reorderThreshold < 0) {
+            throw new IllegalArgumentException("Book requires valid reorder_threshold");
+        }
+    }
+
+    /**
+     * Check the new name of an existing product.
+     */
+    public static void checkName(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Product requires a name");
+        }
+    }
+
+    /**
+     * Check the new price of an existing product, which may be null to reset it.
+     */
+    public static void checkPrice(Integer price) {
+        // Check that the price is greater than or equal to 0 USD
+        if (price != null && price < 0) {
+            throw new IllegalArgumentException("Product requires valid price");
+        }
+    }
+
+    /**
+     * Check the new quantity of an existing product, which may be null to reset it.
+     */
+    public static void checkQuantity(Integer quantity) {
+        // Check that the quantity is greater than or equal to 0
+        if (quantity != null && quantity < 0) {
+            throw new IllegalArgumentException("Product requires valid quantity");
+        }
+    }
+
+    /**
+     * Check the new reorder threshold of an existing product.
+     */
+    public static void checkReorderThreshold(Integer reorderThreshold) {
+        // Check that the threshold is greater than or equal to 0
+        if (reorderThreshold == null || reorderThreshold < 0) {
+            throw new IllegalArgumentException("Product requires valid reorder threshold");
+        }
+    }
+
+    /**
+     * Return the given ISBN or barcode as it's stored: the digits, and the X check digit of an
+     * ISBN-10, without the hyphens and spaces it's often printed with. Return null if it's null
+     * or blank, as the product has no barcode then. Scanners send the digits of an EAN-8, UPC-A,
+     * EAN-13 (which ISBN-13 is) or GTIN-14.
+     *
+     * @throws IllegalArgumentException if what's left isn't 8 to 14 digits
+     */
+    public static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if ((c == 'X' || c == 'x') && digits.length() == 9 && i == isbn.length() - 1) {
+                digits.append('X');
+            } else if (c != '-' && c != ' ') {
+                throw new IllegalArgumentException("Product requires valid ISBN");
+            }
+        }
+        if (digits.length() == 0) {
+            return null;
+        }
+        if (digits.length() < 8 || digits.length() > 14) {
+            throw new IllegalArgumentException("Product requires valid ISBN");
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Return true if the given quantity is at or below the given threshold. Matches
+     * {@link InventorySchema#LOW_STOCK_CONDITION}.
+     */
+    public static boolean isLow(long quantity, long threshold) {
+        return quantity <= threshold;
+    }
+
+    /**
+     * Return true if the given amount can be added to the given quantity, i.e. the quantity
+     * doesn't drop below 0.
+     */
+    public static boolean canAdjust(long quantity, long delta) {
+        return quantity + delta >= 0;
+    }
+
+    /**
+     * Return the reason recorded for a change of the given amount when none is given: a sale when
+     * stock is removed and a restock otherwise.
+     */
+    public static String defaultReason(long delta) {
+        return delta < 0 ? MovementTable.REASON_SALE : MovementTable.REASON_RESTOCK;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.android.inventory.core;
+
+import java.util.Arrays;
+
+/**
+ * Changes to the quantities of products that haven't been written yet, keyed by product ID. The
+ * IDs and changes are kept in arrays, in the order the products were first changed, and found
+ * through an open addressing table of their positions, so looking up the change of a product
+ * while a list binds it neither boxes its ID nor allocates.
+ * <p>
+ * Not thread safe: the app's write queue guards its deltas with a lock.
+ */
+public final class QuantityDeltas {
+
+    /**
+     * IDs of the products and their changes, of which only the first {@link #mSize} are used
+     */
+    private long[] mIds;
+    private int[] mDeltas;
+    private int mSize;
+
+    /**
+     * Position in {@link #mIds} of the product hashed to each slot, plus one, or 0 for an empty
+     * slot. Its length is a power of two at least twice the number of products, so probes stay
+     * short.
+     */
+    private int[] mSlots;
+
+    public QuantityDeltas() {
+        mIds = new long[8];
+        mDeltas = new int[8];
+        mSlots = new int[16];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public long getId(int position) {
+        checkPosition(position);
+        return mIds[position];
+    }
+
+    public int getDelta(int position) {
+        checkPosition(position);
+        return mDeltas[position];
+    }
+
+    /**
+     * Return the change to the quantity of the product with the given ID, or 0 if it has none.
+     */
+    public int get(long id) {
+        int position = mSlots[findSlot(id)] - 1;
+        return position < 0 ? 0 : mDeltas[position];
+    }
+
+    /**
+     * Add the given change to the quantity of the product with the given ID.
+     */
+    public void add(long id, int delta) {
+        int slot = findSlot(id);
+        int position = mSlots[slot] - 1;
+        if (position >= 0) {
+            mDeltas[position] += delta;
+            return;
+        }
+        if (mSize == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mSize * 2);
+            mDeltas = Arrays.copyOf(mDeltas, mSize * 2);
+        }
+        mIds[mSize] = id;
+        mDeltas[mSize] = delta;
+        mSize++;
+        mSlots[slot] = mSize;
+        if (mSize * 2 > mSlots.length) {
+            rehash(mSlots.length * 2);
+        }
+    }
+
+    /**
+     * Remove the change to the quantity of the product with the given ID, and return it, or 0
+     * if it had none. The last product changed takes its position.
+     */
+    public int remove(long id) {
+        int position = mSlots[findSlot(id)] - 1;
+        if (position < 0) {
+            return 0;
+        }
+        int delta = mDeltas[position];
+        mSize--;
+        mIds[position] = mIds[mSize];
+        mDeltas[position] = mDeltas[mSize];
+        // Removing is rare, so the positions are simply hashed again
+        rehash(mSlots.length);
+        return delta;
+    }
+
+    public void clear() {
+        mSize = 0;
+        Arrays.fill(mSlots, 0);
+    }
+
+    /**
+     * Return the slot of the product with the given ID, or the empty slot where it would go.
+     */
+    private int findSlot(long id) {
+        int mask = mSlots.length - 1;
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (mSlots[slot] != 0 && mIds[mSlots[slot] - 1] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int slotCount) {
+        if (slotCount == mSlots.length) {
+            Arrays.fill(mSlots, 0);
+        } else {
+            mSlots = new int[slotCount];
+        }
+        for (int position = 0; position < mSize; position++) {
+            mSlots[findSlot(mIds[position])] = position + 1;
+        }
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + mSize + " products");
+        }
+    }
+}
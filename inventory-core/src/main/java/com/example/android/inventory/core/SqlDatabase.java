@@ -0,0 +1,120 @@
+package com.example.android.inventory.core;
+
+/**
+ * The SQLite database the inventory is stored in, as seen by {@link InventorySchema} and
+ * {@link SqliteInventoryRepository}. Implemented on top of the Android SQLite classes by the app,
+ * and on top of JDBC by {@link JdbcSqlDatabase}, so the same statements run on a device and on a
+ * plain JVM.
+ * <p>
+ * Bind arguments may be null, a String, or a Number. Failures are thrown as
+ * {@link StorageException} or as the platform's own unchecked SQL exception.
+ */
+public interface SqlDatabase {
+
+    /**
+     * Rows returned by {@link #query}, read forwards once. Columns are numbered from 0, in the
+     * order of the query.
+     */
+    interface Rows {
+
+        /**
+         * Move to the next row. Return false once there are no more rows.
+         */
+        boolean moveToNext();
+
+        /**
+         * Return the value of the given column of the current row.
+         */
+        long getLong(int column);
+
+        String getString(int column);
+
+        boolean isNull(int column);
+
+        /**
+         * Release the rows. Must be called once done with them.
+         */
+        void close();
+    }
+
+    /**
+     * A statement compiled once and run many times, with new arguments bound each time. Bound
+     * arguments stay bound until they're replaced. Not thread safe: a statement must only be used
+     * by one thread at a time.
+     */
+    interface Statement {
+
+        /**
+         * Bind a value to the given parameter, numbered from 1.
+         */
+        void bindLong(int index, long value);
+
+        void bindString(int index, String value);
+
+        void bindNull(int index);
+
+        /**
+         * Run the statement as an INSERT. Return the row ID of the inserted row, or -1 if no row
+         * was inserted.
+         */
+        long executeInsert();
+
+        /**
+         * Run the statement as an UPDATE or DELETE. Return the number of rows it changed.
+         */
+        int executeUpdateDelete();
+
+        /**
+         * Run the statement as a query returning a single number. Return the number in the first
+         * column of the first row, or -1 if there's no row.
+         */
+        long simpleQueryForLong();
+
+        /**
+         * Release the statement.
+         */
+        void close();
+    }
+
+    /**
+     * Compile the given statement, so it can run many times without being parsed again.
+     */
+    Statement compileStatement(String sql);
+
+    /**
+     * Run a statement that returns no rows, such as DDL or a PRAGMA setting.
+     */
+    void execute(String sql, Object... bindArgs);
+
+    /**
+     * Run an INSERT statement. Return the row ID of the inserted row, or -1 if no row was
+     * inserted.
+     */
+    long executeInsert(String sql, Object... bindArgs);
+
+    /**
+     * Run an UPDATE or DELETE statement. Return the number of rows it changed.
+     */
+    int executeUpdateDelete(String sql, Object... bindArgs);
+
+    /**
+     * Run a query. The caller must close the rows returned.
+     */
+    Rows query(String sql, Object... bindArgs);
+
+    /**
+     * Begin a transaction. Transactions nest: the outermost one commits only if it and every
+     * nested transaction were marked successful, otherwise everything is rolled back.
+     */
+    void beginTransaction();
+
+    /**
+     * Mark the current transaction as successful.
+     */
+    void setTransactionSuccessful();
+
+    /**
+     * End the current transaction, committing or rolling it back if it's the outermost one.
+     */
+    void endTransaction();
+}
@@ -0,0 +1,448 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.LocationTable;
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.StockLevelTable;
+import com.example.android.inventory.core.InventorySchema.SupplierTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link InventoryRepository} storing the products in the SQLite schema of
+ * {@link InventorySchema}, on any {@link SqlDatabase}.
+ * <p>
+ * The writes run on every tap of a sale or a restock, and on every row of an import, so their
+ * statements are compiled once per thread and bound with primitives, rather than parsed and bound
+ * from boxed arguments on each call.
+ */
+public class SqliteInventoryRepository implements InventoryRepository {
+
+    /**
+     * Reads every column of the product with the given ID. Package-private, so the tests can check
+     * its query plan
+     */
+    static final String SQL_GET_PRODUCT = "SELECT " + ProductTable.SELECT_COLUMNS
+            + " FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable._ID + " = ?";
+
+    /**
+     * Inserts a product with every column but its ID
+     */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductTable.TABLE_NAME + " ("
+            + ProductTable.COLUMN_NAME + ", "
+            + ProductTable.COLUMN_AUTHOR + ", "
+            + ProductTable.COLUMN_SUPPLIER_ID + ", "
+            + ProductTable.COLUMN_PRICE + ", "
+            + ProductTable.COLUMN_QUANTITY + ", "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + ", "
+            + ProductTable.COLUMN_ISBN + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Reads the ID of the product with the given ISBN, by its unique index. Package-private, like
+     * {@link #SQL_GET_PRODUCT}
+     */
+    static final String SQL_FIND_ISBN = "SELECT " + ProductTable._ID
+            + " FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable.COLUMN_ISBN + " = ?";
+
+    /**
+     * Reads the ID of the supplier with the given name and phone
+     */
+    private static final String SQL_FIND_SUPPLIER = "SELECT " + SupplierTable._ID
+            + " FROM " + SupplierTable.TABLE_NAME
+            + " WHERE " + SupplierTable.COLUMN_NAME + " = ? AND " + SupplierTable.COLUMN_PHONE + " = ?";
+
+    /**
+     * Inserts a supplier
+     */
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + SupplierTable.TABLE_NAME + " ("
+            + SupplierTable.COLUMN_NAME + ", "
+            + SupplierTable.COLUMN_PHONE + ") VALUES (?, ?)";
+
+    /**
+     * Adds the first argument to the quantity of the product with the second argument as ID, as long
+     * as the quantity doesn't drop below 0
+     */
+    private static final String SQL_ADJUST_QUANTITY = "UPDATE " + ProductTable.TABLE_NAME
+            + " SET " + ProductTable.COLUMN_QUANTITY + " = " + ProductTable.COLUMN_QUANTITY + " + ?1"
+            + " WHERE " + ProductTable._ID + " = ?2"
+            + " AND " + ProductTable.COLUMN_QUANTITY + " + ?1 >= 0";
+
+    /**
+     * Adds the first argument to the quantity of the product with the second argument as ISBN,
+     * as long as the quantity doesn't drop below 0. The product is found by the unique index on
+     * the ISBN, so a scan costs one seek and no lookup of its ID first.
+     */
+    private static final String SQL_ADJUST_QUANTITY_BY_ISBN = "UPDATE " + ProductTable.TABLE_NAME
+            + " SET " + ProductTable.COLUMN_QUANTITY + " = " + ProductTable.COLUMN_QUANTITY + " + ?1"
+            + " WHERE " + ProductTable.COLUMN_ISBN + " = ?2"
+            + " AND " + ProductTable.COLUMN_QUANTITY + " + ?1 >= 0";
+
+    /**
+     * Reads back the stock of a product whose quantity has just been adjusted
+     */
+    private static final String SQL_GET_STOCK = "SELECT "
+            + ProductTable.COLUMN_QUANTITY + ", "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + ", "
+            + ProductTable.COLUMN_NAME
+            + " FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable._ID + " = ?";
+
+    /**
+     * Inserts a location, unless there's one with the same name
+     */
+    private static final String SQL_INSERT_LOCATION = "INSERT OR IGNORE INTO " + LocationTable.TABLE_NAME
+            + " (" + LocationTable.COLUMN_NAME + ") VALUES (?)";
+
+    /**
+     * Removes the first argument from the level of the product with the second argument as ID at
+     * the location with the third argument as ID, as long as the level has that many
+     */
+    private static final String SQL_TAKE_STOCK = "UPDATE " + StockLevelTable.TABLE_NAME
+            + " SET " + StockLevelTable.COLUMN_QUANTITY + " = " + StockLevelTable.COLUMN_QUANTITY + " - ?1"
+            + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID + " = ?2"
+            + " AND " + StockLevelTable.COLUMN_LOCATION_ID + " = ?3"
+            + " AND " + StockLevelTable.COLUMN_QUANTITY + " >= ?1";
+
+    /**
+     * Adds the first argument to the level of the product with the second argument as ID at the
+     * location with the third argument as ID, inserting the level if the product had none there.
+     * There's no upsert before SQLite 3.24, so the level is inserted with the sum, or replaced by
+     * it if it exists, which takes one statement instead of an insert and an update. Nothing is
+     * inserted if the location doesn't exist.
+     */
+    private static final String SQL_PUT_STOCK = "INSERT OR REPLACE INTO " + StockLevelTable.TABLE_NAME
+            + " SELECT ?2, " + LocationTable._ID + ", ?1 + ifnull((SELECT "
+            + StockLevelTable.COLUMN_QUANTITY + " FROM " + StockLevelTable.TABLE_NAME
+            + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID + " = ?2"
+            + " AND " + StockLevelTable.COLUMN_LOCATION_ID + " = ?3), 0)"
+            + " FROM " + LocationTable.TABLE_NAME + " WHERE " + LocationTable._ID + " = ?3";
+
+    /**
+     * Deletes the product with the given ID
+     */
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable._ID + " = ?";
+
+    /**
+     * Appends a movement to the stock ledger
+     */
+    private static final String SQL_INSERT_MOVEMENT = "INSERT INTO " + MovementTable.TABLE_NAME + " ("
+            + MovementTable.COLUMN_PRODUCT_ID + ", "
+            + MovementTable.COLUMN_DELTA + ", "
+            + MovementTable.COLUMN_REASON + ", "
+            + MovementTable.COLUMN_TIMESTAMP + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * Database the products are stored in
+     */
+    private final SqlDatabase mDatabase;
+
+    /**
+     * Compiled {@link #SQL_INSERT_PRODUCT}
+     */
+    private final ThreadStatement mInsertProduct;
+
+    /**
+     * Compiled {@link #SQL_FIND_SUPPLIER} and {@link #SQL_INSERT_SUPPLIER}
+     */
+    private final ThreadStatement mFindSupplier;
+    private final ThreadStatement mInsertSupplier;
+
+    /**
+     * Compiled {@link #SQL_ADJUST_QUANTITY}
+     */
+    private final ThreadStatement mAdjustQuantity;
+
+    /**
+     * Compiled {@link #SQL_FIND_ISBN} and {@link #SQL_ADJUST_QUANTITY_BY_ISBN}
+     */
+    private final ThreadStatement mFindIsbn;
+    private final ThreadStatement mAdjustQuantityByIsbn;
+
+    /**
+     * Compiled {@link #SQL_TAKE_STOCK} and {@link #SQL_PUT_STOCK}
+     */
+    private final ThreadStatement mTakeStock;
+    private final ThreadStatement mPutStock;
+
+    /**
+     * Compiled {@link #SQL_DELETE_PRODUCT}
+     */
+    private final ThreadStatement mDeleteProduct;
+
+    /**
+     * Compiled {@link #SQL_INSERT_MOVEMENT}
+     */
+    private final ThreadStatement mInsertMovement;
+
+    public SqliteInventoryRepository(SqlDatabase database) {
+        mDatabase = database;
+        mInsertProduct = new ThreadStatement(database, SQL_INSERT_PRODUCT);
+        mFindSupplier = new ThreadStatement(database, SQL_FIND_SUPPLIER);
+        mInsertSupplier = new ThreadStatement(database, SQL_INSERT_SUPPLIER);
+        mAdjustQuantity = new ThreadStatement(database, SQL_ADJUST_QUANTITY);
+        mFindIsbn = new ThreadStatement(database, SQL_FIND_ISBN);
+        mAdjustQuantityByIsbn = new ThreadStatement(database, SQL_ADJUST_QUANTITY_BY_ISBN);
+        mTakeStock = new ThreadStatement(database, SQL_TAKE_STOCK);
+        mPutStock = new ThreadStatement(database, SQL_PUT_STOCK);
+        mDeleteProduct = new ThreadStatement(database, SQL_DELETE_PRODUCT);
+        mInsertMovement = new ThreadStatement(database, SQL_INSERT_MOVEMENT);
+    }
+
+    /**
+     * Return the database the products are stored in, e.g. to wrap several writes in one
+     * transaction.
+     */
+    public SqlDatabase getDatabase() {
+        return mDatabase;
+    }
+
+    @Override
+    public Product getProduct(long id) {
+        SqlDatabase.Rows rows = mDatabase.query(SQL_GET_PRODUCT, id);
+        try {
+            return rows.moveToNext() ? readProduct(rows) : null;
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Read a product from the current row, whose columns are {@link ProductTable#COLUMNS} as
+     * read by {@link ProductTable#SELECT_COLUMNS}.
+     */
+    public static Product readProduct(SqlDatabase.Rows rows) {
+        return new Product(rows.getLong(0), rows.getString(1), rows.getString(2), rows.getString(3),
+                rows.getString(4), (int) rows.getLong(5), (int) rows.getLong(6), (int) rows.getLong(7),
+                rows.getString(8));
+    }
+
+    @Override
+    public long findProductByIsbn(String isbn) {
+        SqlDatabase.Statement statement = mFindIsbn.get();
+        statement.bindString(1, isbn);
+        return statement.simpleQueryForLong();
+    }
+
+    @Override
+    public long insertProduct(Product product) {
+        ProductRules.checkNewProduct(product);
+        long id;
+        mDatabase.beginTransaction();
+        try {
+            id = insertProductRow(product);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return id;
+    }
+
+    @Override
+    public int[] insertProducts(List<Product> products) {
+        // Reject the whole batch before touching the database if any product is invalid
+        for (Product product : products) {
+            ProductRules.checkNewProduct(product);
+        }
+
+        int[] rejected = new int[products.size()];
+        int rejectedCount = 0;
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < products.size(); i++) {
+                if (insertProductRow(products.get(i)) == -1) {
+                    rejected[rejectedCount++] = i;
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return Arrays.copyOf(rejected, rejectedCount);
+    }
+
+    /**
+     * Insert a product row, and record its initial quantity as a stock movement. Must be called
+     * inside a transaction. Return the ID of the new product, or -1 if the insertion failed,
+     * which it does if another product has the same ISBN.
+     */
+    private long insertProductRow(Product product) {
+        // Checked here rather than left to the unique index, whose failure each database reports
+        // its own way, so a duplicate only fails its own row, e.g. when a catalogue is imported
+        // twice
+        if (product.mIsbn != null && findProductByIsbn(product.mIsbn) != -1) {
+            return -1;
+        }
+        SqlDatabase.Statement statement = mInsertProduct.get();
+        statement.bindString(1, product.mName);
+        ThreadStatement.bindText(statement, 2, product.mAuthor);
+        long supplierId = internSupplier(product.mSupplierName, product.mSupplierPhone);
+        if (supplierId == -1) {
+            statement.bindNull(3);
+        } else {
+            statement.bindLong(3, supplierId);
+        }
+        statement.bindLong(4, product.mPrice);
+        statement.bindLong(5, product.mQuantity);
+        statement.bindLong(6, product.mReorderThreshold);
+        ThreadStatement.bindText(statement, 7, product.mIsbn);
+        long id = statement.executeInsert();
+        if (id != -1 && product.mQuantity != 0) {
+            recordMovement(id, product.mQuantity, MovementTable.REASON_INITIAL);
+        }
+        return id;
+    }
+
+    @Override
+    public long internSupplier(String name, String phone) {
+        if (name == null && phone == null) {
+            return -1;
+        }
+        // Unknown values are stored empty, so the pair stays unique
+        String supplierName = name == null ? "" : name;
+        String supplierPhone = phone == null ? "" : phone;
+        mDatabase.beginTransaction();
+        try {
+            SqlDatabase.Statement find = mFindSupplier.get();
+            find.bindString(1, supplierName);
+            find.bindString(2, supplierPhone);
+            long id = find.simpleQueryForLong();
+            if (id == -1) {
+                SqlDatabase.Statement insert = mInsertSupplier.get();
+                insert.bindString(1, supplierName);
+                insert.bindString(2, supplierPhone);
+                id = insert.executeInsert();
+                if (id == -1) {
+                    throw new StorageException("Failed to insert supplier " + supplierName);
+                }
+            }
+            mDatabase.setTransactionSuccessful();
+            return id;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public StockChange adjustQuantity(long id, int delta, String reason) {
+        StockChange change = null;
+        mDatabase.beginTransaction();
+        try {
+            SqlDatabase.Statement statement = mAdjustQuantity.get();
+            statement.bindLong(1, delta);
+            statement.bindLong(2, id);
+            if (statement.executeUpdateDelete() != 0) {
+                if (delta != 0) {
+                    recordMovement(id, delta, reason);
+                }
+                change = readStockChange(id, delta);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return change;
+    }
+
+    @Override
+    public StockChange adjustQuantityByIsbn(String isbn, int delta, String reason) {
+        StockChange change = null;
+        mDatabase.beginTransaction();
+        try {
+            SqlDatabase.Statement statement = mAdjustQuantityByIsbn.get();
+            statement.bindLong(1, delta);
+            statement.bindString(2, isbn);
+            if (statement.executeUpdateDelete() != 0) {
+                // The ID is only needed for the ledger and the change, and the row is in the page
+                // cache after the update, so finding it again costs no I/O
+                long id = findProductByIsbn(isbn);
+                if (delta != 0) {
+                    recordMovement(id, delta, reason);
+                }
+                change = readStockChange(id, delta);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return change;
+    }
+
+    /**
+     * Read back a product whose quantity has just been changed by the given amount.
+     */
+    private StockChange readStockChange(long id, int delta) {
+        SqlDatabase.Rows rows = mDatabase.query(SQL_GET_STOCK, id);
+        try {
+            if (!rows.moveToNext()) {
+                return null;
+            }
+            long quantity = rows.getLong(0);
+            return new StockChange(id, rows.getString(2), quantity - delta, quantity, rows.getLong(1));
+        } finally {
+            rows.close();
+        }
+    }
+
+    @Override
+    public long insertLocation(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Location requires a name");
+        }
+        return mDatabase.executeInsert(SQL_INSERT_LOCATION, name.trim());
+    }
+
+    @Override
+    public boolean transferStock(long productId, long fromLocationId, long toLocationId, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Transfer requires a positive count");
+        }
+        if (fromLocationId == toLocationId) {
+            throw new IllegalArgumentException("Transfer requires two different locations");
+        }
+        mDatabase.beginTransaction();
+        try {
+            SqlDatabase.Statement take = mTakeStock.get();
+            take.bindLong(1, count);
+            take.bindLong(2, productId);
+            take.bindLong(3, fromLocationId);
+            if (take.executeUpdateDelete() == 0) {
+                // Nothing was written, so there's nothing to roll back
+                mDatabase.setTransactionSuccessful();
+                return false;
+            }
+            SqlDatabase.Statement put = mPutStock.get();
+            put.bindLong(1, count);
+            put.bindLong(2, productId);
+            put.bindLong(3, toLocationId);
+            if (put.executeInsert() == -1) {
+                // Thrown before the transaction is marked successful, so the copies taken from
+                // the source are put back
+                throw new IllegalArgumentException("Unknown location " + toLocationId);
+            }
+            mDatabase.setTransactionSuccessful();
+            return true;
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public int deleteProduct(long id) {
+        SqlDatabase.Statement statement = mDeleteProduct.get();
+        statement.bindLong(1, id);
+        return statement.executeUpdateDelete();
+    }
+
+    @Override
+    public void recordMovement(long productId, long delta, String reason) {
+        SqlDatabase.Statement statement = mInsertMovement.get();
+        statement.bindLong(1, productId);
+        statement.bindLong(2, delta);
+        ThreadStatement.bindText(statement, 3, reason);
+        statement.bindLong(4, System.currentTimeMillis());
+        if (statement.executeInsert() == -1) {
+            throw new StorageException("Failed to record movement of product " + productId);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.android.inventory.core;
+
+/**
+ * A change to the quantity of a product made by {@link InventoryRepository#adjustQuantity} or
+ * {@link InventoryRepository#adjustQuantityByIsbn}.
+ */
+public final class StockChange {
+
+    /**
+     * ID and name of the product
+     */
+    public final long mProductId;
+    public final String mName;
+
+    /**
+     * Quantity of the product before and after the change
+     */
+    public final long mOldQuantity;
+    public final long mNewQuantity;
+
+    /**
+     * Reorder threshold of the product
+     */
+    public final long mThreshold;
+
+    public StockChange(long productId, String name, long oldQuantity, long newQuantity, long threshold) {
+        mProductId = productId;
+        mName = name;
+        mOldQuantity = oldQuantity;
+        mNewQuantity = newQuantity;
+        mThreshold = threshold;
+    }
+
+    /**
+     * Return true if the change moved the product across its reorder threshold, either down to
+     * low stock or back up above it.
+     */
+    public boolean crossesThreshold() {
+        return ProductRules.isLow(mOldQuantity, mThreshold) != ProductRules.isLow(mNewQuantity, mThreshold);
+    }
+}
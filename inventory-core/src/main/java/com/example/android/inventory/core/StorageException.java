@@ -0,0 +1,17 @@
+package com.example.android.inventory.core;
+
+/**
+ * Thrown when a {@link SqlDatabase} can't run a statement.
+ */
+public class StorageException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.android.inventory.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A batch of rows pushed to or pulled from the sync server, with the sync token it brings the
+ * receiver up to and whether more rows follow.
+ * <p>
+ * On the wire a batch is gzipped UTF-8 text: a header line, then one line per row with its
+ * fields separated by tabs. Tabs, line breaks and backslashes in the values are escaped with a
+ * backslash, and null values are written as \N. Deleted rows only have their first four fields.
+ * Version 2 of the format added the ISBN as the last field of product rows.
+ * Product rows repeat the same suppliers and shapes of values, so they compress several times.
+ */
+public final class SyncBatch {
+
+    /**
+     * First field of the header line, which names the format and its version
+     */
+    private static final String MAGIC = "inventory-sync/2";
+
+    /**
+     * Encoding of the text
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Written for a null value
+     */
+    private static final String NULL = "\\N";
+
+    /**
+     * Rows of the batch, in the order of their versions
+     */
+    public final List<SyncRow> mRows;
+
+    /**
+     * Sync token of the last row of the batch, or of the server when it answers a push
+     */
+    public final long mToken;
+
+    /**
+     * True if there are more rows after this batch
+     */
+    public final boolean mMore;
+
+    public SyncBatch(List<SyncRow> rows, long token, boolean more) {
+        mRows = Collections.unmodifiableList(rows);
+        mToken = token;
+        mMore = more;
+    }
+
+    /**
+     * Write the batch, gzipped, to the given stream, which is left open.
+     */
+    public void write(OutputStream out) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, UTF_8));
+        writer.write(MAGIC + '\t' + mToken + '\t' + (mMore ? 1 : 0) + '\t' + mRows.size() + '\n');
+        for (SyncRow row : mRows) {
+            writer.write(escape(row.mGlobalId));
+            writer.write('\t');
+            writer.write(Long.toString(row.mVersion));
+            writer.write('\t');
+            writer.write(Long.toString(row.mUpdatedAt));
+            writer.write('\t');
+            writer.write(row.mDeleted ? '1' : '0');
+            if (!row.mDeleted) {
+                for (String value : new String[]{row.mName, row.mAuthor, row.mSupplierName, row.mSupplierPhone}) {
+                    writer.write('\t');
+                    writer.write(escape(value));
+                }
+                writer.write('\t');
+                writer.write(Integer.toString(row.mPrice));
+                writer.write('\t');
+                writer.write(Integer.toString(row.mReorderThreshold));
+                writer.write('\t');
+                writer.write(Integer.toString(row.mQuantity));
+                writer.write('\t');
+                writer.write(escape(row.mIsbn));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Read a batch written by {@link #write(OutputStream)} from the given stream, which is left
+     * open.
+     *
+     * @throws IOException if the stream doesn't hold a whole batch
+     */
+    public static SyncBatch read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in), UTF_8));
+        String[] header = split(reader.readLine());
+        if (header.length != 4 || !MAGIC.equals(header[0])) {
+            throw new IOException("Not a sync batch");
+        }
+        try {
+            long token = Long.parseLong(header[1]);
+            boolean more = "1".equals(header[2]);
+            int count = Integer.parseInt(header[3]);
+            List<SyncRow> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rows.add(readRow(split(reader.readLine())));
+            }
+            return new SyncBatch(rows, token, more);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed sync batch", e);
+        }
+    }
+
+    private static SyncRow readRow(String[] fields) throws IOException {
+        if (fields.length == 4 && "1".equals(fields[3])) {
+            return SyncRow.deleted(unescape(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        }
+        if (fields.length != 12) {
+            throw new IOException("Malformed sync row with " + fields.length + " fields");
+        }
+        return new SyncRow(unescape(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), false,
+                unescape(fields[4]), unescape(fields[5]), unescape(fields[6]), unescape(fields[7]),
+                Integer.parseInt(fields[8]), Integer.parseInt(fields[9]), Integer.parseInt(fields[10]),
+                unescape(fields[11]));
+    }
+
+    /**
+     * Split the given line at its tabs, which are never escaped.
+     *
+     * @throws IOException if there's no line, because the stream ended early
+     */
+    private static String[] split(String line) throws IOException {
+        if (line == null) {
+            throw new IOException("Truncated sync batch");
+        }
+        return line.split("\t", -1);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = escapeOf(c);
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    /**
+     * Return the escape sequence of the given character, or null if it's written as it is.
+     */
+    private static String escapeOf(char c) {
+        switch (c) {
+            case '\\':
+                return "\\\\";
+            case '\t':
+                return "\\t";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            default:
+                return null;
+        }
+    }
+
+    private static String unescape(String value) {
+        if (NULL.equals(value)) {
+            return null;
+        }
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
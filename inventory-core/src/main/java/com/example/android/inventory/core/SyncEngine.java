@@ -0,0 +1,419 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.SyncStateTable;
+import com.example.android.inventory.core.InventorySchema.TombstoneTable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Syncs the inventory of this device with a sync server, through a {@link SyncTransport}. Only
+ * the products changed since the last sync travel: first the local changes are pushed, in
+ * batches of the versions above the push token, then the changes of the other devices are
+ * pulled, in batches of the server's changes after the pull token. Each batch is written in its
+ * own transaction along with the token it brings the device up to, so a sync cut short resumes
+ * where it stopped.
+ * <p>
+ * The latest change of a product wins, but for its quantity: every device pushes what it sold or
+ * restocked since the last sync as a delta, and the server adds up the deltas of all the devices.
+ * A product deleted on any device is deleted everywhere. Quantities never drop below 0, so
+ * copies sold on two devices at once beyond the stock are lost rather than owed.
+ * <p>
+ * Not thread safe: run one sync at a time, off the main thread, as it waits on the network.
+ */
+public class SyncEngine {
+
+    /**
+     * Number of rows per batch, enough to amortize a round trip while keeping each batch's
+     * transaction short
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Reads the identity of the device and its tokens
+     */
+    private static final String SQL_READ_STATE = "SELECT "
+            + SyncStateTable.COLUMN_DEVICE_ID + ", "
+            + SyncStateTable.COLUMN_PUSH_TOKEN + ", "
+            + SyncStateTable.COLUMN_PULL_TOKEN + " FROM " + SyncStateTable.TABLE_NAME;
+
+    /**
+     * Reads the products and tombstones whose version is above the first argument, in the order of
+     * their versions, up to the second argument of them. Products carry the change of their
+     * quantity since the last sync and their ISBN, followed by their quantity.
+     */
+    private static final String SQL_READ_CHANGES = "SELECT "
+            + ProductTable.COLUMN_GLOBAL_ID + ", "
+            + ProductTable.COLUMN_VERSION + ", "
+            + ProductTable.COLUMN_UPDATED_AT + ", 0, "
+            + ProductTable.COLUMN_NAME + ", "
+            + ProductTable.COLUMN_AUTHOR + ", "
+            + ProductTable.selectColumn(ProductTable.COLUMN_SUPP_NAME) + ", "
+            + ProductTable.selectColumn(ProductTable.COLUMN_SUPP_PHONE) + ", "
+            + ProductTable.COLUMN_PRICE + ", "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + ", "
+            + ProductTable.COLUMN_QUANTITY + " - " + ProductTable.COLUMN_SYNCED_QUANTITY + ", "
+            + ProductTable.COLUMN_ISBN + ", "
+            + ProductTable.COLUMN_QUANTITY
+            + " FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_VERSION + " > CAST(?1 AS INTEGER)"
+            + " UNION ALL SELECT "
+            + TombstoneTable.COLUMN_GLOBAL_ID + ", "
+            + TombstoneTable.COLUMN_VERSION + ", "
+            + TombstoneTable.COLUMN_DELETED_AT + ", 1, NULL, NULL, NULL, NULL, 0, 0, 0, NULL, 0"
+            + " FROM " + TombstoneTable.TABLE_NAME
+            + " WHERE " + TombstoneTable.COLUMN_VERSION + " > CAST(?1 AS INTEGER)"
+            + " ORDER BY 2 LIMIT CAST(?2 AS INTEGER)";
+
+    /**
+     * Reads the ID, quantity, synced quantity and ISBN of the product with the given global ID
+     */
+    private static final String SQL_FIND_PRODUCT = "SELECT "
+            + ProductTable._ID + ", "
+            + ProductTable.COLUMN_QUANTITY + ", "
+            + ProductTable.COLUMN_SYNCED_QUANTITY + ", "
+            + ProductTable.COLUMN_ISBN
+            + " FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable.COLUMN_GLOBAL_ID + " = ?";
+
+    /**
+     * Sets the quantity and the synced quantity of the product with the given ID, counting a
+     * change of its row version if the quantity changed, as the triggers don't
+     */
+    private static final String SQL_MERGE_QUANTITY = "UPDATE " + ProductTable.TABLE_NAME + " SET "
+            + ProductTable.COLUMN_ROW_VERSION + " = " + ProductTable.COLUMN_ROW_VERSION
+            + " + (" + ProductTable.COLUMN_QUANTITY + " IS NOT ?1), "
+            + ProductTable.COLUMN_QUANTITY + " = ?1, "
+            + ProductTable.COLUMN_SYNCED_QUANTITY + " = ?2 WHERE " + ProductTable._ID + " = ?3";
+
+    /**
+     * Overwrites the values of the product with the given ID, unless it was changed after the
+     * given time, counting a change of its row version if any value changed
+     */
+    private static final String SQL_OVERWRITE_PRODUCT = "UPDATE " + ProductTable.TABLE_NAME + " SET "
+            + ProductTable.COLUMN_ROW_VERSION + " = " + ProductTable.COLUMN_ROW_VERSION + " + ("
+            + ProductTable.COLUMN_NAME + " IS NOT ?1 OR "
+            + ProductTable.COLUMN_AUTHOR + " IS NOT ?2 OR "
+            + ProductTable.COLUMN_SUPPLIER_ID + " IS NOT ?3 OR "
+            + ProductTable.COLUMN_PRICE + " IS NOT ?4 OR "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + " IS NOT ?5 OR "
+            + ProductTable.COLUMN_ISBN + " IS NOT ?6), "
+            + ProductTable.COLUMN_NAME + " = ?1, "
+            + ProductTable.COLUMN_AUTHOR + " = ?2, "
+            + ProductTable.COLUMN_SUPPLIER_ID + " = ?3, "
+            + ProductTable.COLUMN_PRICE + " = ?4, "
+            + ProductTable.COLUMN_REORDER_THRESHOLD + " = ?5, "
+            + ProductTable.COLUMN_ISBN + " = ?6, "
+            + ProductTable.COLUMN_UPDATED_AT + " = ?7"
+            + " WHERE " + ProductTable._ID + " = ?8 AND " + ProductTable.COLUMN_UPDATED_AT + " <= ?7";
+
+    /**
+     * Gives the product with the given ID, just inserted from a pulled row, its global ID and
+     * time of last change
+     */
+    private static final String SQL_TRACK_PRODUCT = "UPDATE " + ProductTable.TABLE_NAME + " SET "
+            + ProductTable.COLUMN_GLOBAL_ID + " = ?, "
+            + ProductTable.COLUMN_UPDATED_AT + " = ?, "
+            + ProductTable.COLUMN_SYNCED_QUANTITY + " = " + ProductTable.COLUMN_QUANTITY
+            + " WHERE " + ProductTable._ID + " = ?";
+
+    /**
+     * Deletes the product with the given global ID
+     */
+    private static final String SQL_DELETE_PRODUCT = "DELETE FROM " + ProductTable.TABLE_NAME
+            + " WHERE " + ProductTable.COLUMN_GLOBAL_ID + " = ?";
+
+    /**
+     * Marks whether pulled changes are being written, see {@link SyncStateTable#COLUMN_APPLYING}
+     */
+    private static final String SQL_SET_APPLYING = "UPDATE " + SyncStateTable.TABLE_NAME + " SET "
+            + SyncStateTable.COLUMN_APPLYING + " = ?";
+
+    /**
+     * Sets the push token, and forgets the tombstones it covers as the server has them
+     */
+    private static final String SQL_SET_PUSH_TOKEN = "UPDATE " + SyncStateTable.TABLE_NAME + " SET "
+            + SyncStateTable.COLUMN_PUSH_TOKEN + " = ?";
+    private static final String SQL_DELETE_TOMBSTONES = "DELETE FROM " + TombstoneTable.TABLE_NAME
+            + " WHERE " + TombstoneTable.COLUMN_VERSION + " <= ?";
+
+    /**
+     * Sets the pull token
+     */
+    private static final String SQL_SET_PULL_TOKEN = "UPDATE " + SyncStateTable.TABLE_NAME + " SET "
+            + SyncStateTable.COLUMN_PULL_TOKEN + " = ?";
+
+    /**
+     * Outcome of a sync.
+     */
+    public static final class Result {
+
+        /**
+         * Number of changed products and deletions pushed, and pulled
+         */
+        public final int mPushed;
+        public final int mPulled;
+
+        Result(int pushed, int pulled) {
+            mPushed = pushed;
+            mPulled = pulled;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{pushed=" + mPushed + ", pulled=" + mPulled + "}";
+        }
+    }
+
+    /**
+     * Repository writing the pulled products, and its database
+     */
+    private final SqliteInventoryRepository mRepository;
+    private final SqlDatabase mDatabase;
+
+    /**
+     * Connection to the server
+     */
+    private final SyncTransport mTransport;
+
+    /**
+     * Maximum number of rows per batch
+     */
+    private final int mBatchSize;
+
+    /**
+     * Compiled statements writing every row from the server
+     */
+    private final ThreadStatement mMergeQuantity;
+    private final ThreadStatement mOverwriteProduct;
+    private final ThreadStatement mTrackProduct;
+    private final ThreadStatement mDeleteProduct;
+
+    public SyncEngine(SqliteInventoryRepository repository, SyncTransport transport, int batchSize) {
+        mRepository = repository;
+        mDatabase = repository.getDatabase();
+        mTransport = transport;
+        mBatchSize = batchSize;
+        mMergeQuantity = new ThreadStatement(mDatabase, SQL_MERGE_QUANTITY);
+        mOverwriteProduct = new ThreadStatement(mDatabase, SQL_OVERWRITE_PRODUCT);
+        mTrackProduct = new ThreadStatement(mDatabase, SQL_TRACK_PRODUCT);
+        mDeleteProduct = new ThreadStatement(mDatabase, SQL_DELETE_PRODUCT);
+    }
+
+    /**
+     * Push the local changes since the last sync, then pull the changes of the other devices.
+     */
+    public Result sync() throws IOException {
+        return sync(false);
+    }
+
+    /**
+     * Push every product and pull every product of the server, as a full dump would, e.g. after
+     * the server lost its data. Quantities still only change by the deltas since the last sync.
+     */
+    public Result syncAll() throws IOException {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.execute(SQL_SET_PUSH_TOKEN, 0);
+            mDatabase.execute(SQL_SET_PULL_TOKEN, 0);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+        return sync(true);
+    }
+
+    private Result sync(boolean all) throws IOException {
+        String deviceId;
+        long pushToken;
+        long pullToken;
+        SqlDatabase.Rows state = mDatabase.query(SQL_READ_STATE);
+        try {
+            if (!state.moveToNext()) {
+                throw new StorageException("No sync state");
+            }
+            deviceId = state.getString(0);
+            pushToken = state.getLong(1);
+            pullToken = state.getLong(2);
+        } finally {
+            state.close();
+        }
+
+        int pushed = 0;
+        while (true) {
+            List<SyncRow> changes = new ArrayList<>(mBatchSize);
+            // Quantity of every product as it was pushed, to tell what changed here meanwhile
+            Map<String, Integer> pushedQuantities = new HashMap<>();
+            SqlDatabase.Rows rows = mDatabase.query(SQL_READ_CHANGES, pushToken, mBatchSize);
+            try {
+                while (rows.moveToNext()) {
+                    SyncRow row = readRow(rows);
+                    changes.add(row);
+                    pushedQuantities.put(row.mGlobalId, (int) rows.getLong(12));
+                }
+            } finally {
+                rows.close();
+            }
+            if (changes.isEmpty()) {
+                break;
+            }
+            long batchToken = changes.get(changes.size() - 1).mVersion;
+            SyncBatch merged = mTransport.push(deviceId, new SyncBatch(changes, batchToken, false));
+            applyPushed(merged, pushedQuantities, batchToken);
+            pushToken = batchToken;
+            pushed += changes.size();
+        }
+
+        int pulled = 0;
+        while (true) {
+            SyncBatch batch = mTransport.pull(all ? null : deviceId, pullToken, mBatchSize);
+            applyPulled(batch);
+            pullToken = batch.mToken;
+            pulled += batch.mRows.size();
+            if (!batch.mMore) {
+                break;
+            }
+        }
+        return new Result(pushed, pulled);
+    }
+
+    private static SyncRow readRow(SqlDatabase.Rows rows) {
+        return new SyncRow(rows.getString(0), rows.getLong(1), rows.getLong(2), rows.getLong(3) != 0,
+                rows.getString(4), rows.getString(5), rows.getString(6), rows.getString(7),
+                (int) rows.getLong(8), (int) rows.getLong(9), (int) rows.getLong(10), rows.getString(11));
+    }
+
+    /**
+     * Write the rows the server merged the pushed changes into, and move the push token past
+     * them, in one transaction.
+     */
+    private void applyPushed(SyncBatch merged, Map<String, Integer> pushedQuantities, long pushToken) {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.execute(SQL_SET_APPLYING, 1);
+            for (SyncRow row : merged.mRows) {
+                Integer pushedQuantity = pushedQuantities.get(row.mGlobalId);
+                applyRow(row, pushedQuantity);
+            }
+            mDatabase.execute(SQL_SET_APPLYING, 0);
+            mDatabase.execute(SQL_SET_PUSH_TOKEN, pushToken);
+            mDatabase.execute(SQL_DELETE_TOMBSTONES, pushToken);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Write the pulled rows and move the pull token past them, in one transaction.
+     */
+    private void applyPulled(SyncBatch batch) {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.execute(SQL_SET_APPLYING, 1);
+            for (SyncRow row : batch.mRows) {
+                applyRow(row, null);
+            }
+            mDatabase.execute(SQL_SET_APPLYING, 0);
+            mDatabase.execute(SQL_SET_PULL_TOKEN, batch.mToken);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Write a row from the server. Its quantity replaces the synced quantity, and whatever was
+     * sold or restocked here since is added to it: since the last sync for a pulled row, since
+     * the push for a row answering one. Its other values only replace older ones.
+     * <p>
+     * An ISBN belongs to a single product, so if another product has the row's ISBN here, as
+     * when the same book was added on two devices, that product keeps it, and the pulled product
+     * keeps the ISBN it had here, or none if it's new, rather than failing the whole batch.
+     *
+     * @param pushedQuantity quantity of the product when it was pushed, or null for a pulled row
+     */
+    private void applyRow(SyncRow row, Integer pushedQuantity) {
+        if (row.mDeleted) {
+            SqlDatabase.Statement delete = mDeleteProduct.get();
+            delete.bindString(1, row.mGlobalId);
+            delete.executeUpdateDelete();
+            return;
+        }
+
+        long id = -1;
+        long quantity = 0;
+        long syncedQuantity = 0;
+        String isbn = row.mIsbn;
+        SqlDatabase.Rows rows = mDatabase.query(SQL_FIND_PRODUCT, row.mGlobalId);
+        try {
+            if (rows.moveToNext()) {
+                id = rows.getLong(0);
+                quantity = rows.getLong(1);
+                syncedQuantity = rows.getLong(2);
+                if (isbn != null && isIsbnTaken(isbn, id)) {
+                    isbn = rows.getString(3);
+                }
+            }
+        } finally {
+            rows.close();
+        }
+
+        if (id == -1) {
+            if (pushedQuantity != null) {
+                // Deleted here while it was being pushed: its tombstone is pushed next
+                return;
+            }
+            if (isbn != null && isIsbnTaken(isbn, -1)) {
+                isbn = null;
+            }
+            id = mRepository.insertProduct(new Product(Product.NO_ID, row.mName, row.mAuthor, row.mSupplierName,
+                    row.mSupplierPhone, row.mPrice, row.mQuantity, row.mReorderThreshold, isbn));
+            SqlDatabase.Statement track = mTrackProduct.get();
+            track.bindString(1, row.mGlobalId);
+            track.bindLong(2, row.mUpdatedAt);
+            track.bindLong(3, id);
+            track.executeUpdateDelete();
+            return;
+        }
+
+        long localDelta = quantity - (pushedQuantity != null ? pushedQuantity : syncedQuantity);
+        long newQuantity = Math.max(0, row.mQuantity + localDelta);
+        SqlDatabase.Statement merge = mMergeQuantity.get();
+        merge.bindLong(1, newQuantity);
+        merge.bindLong(2, row.mQuantity);
+        merge.bindLong(3, id);
+        merge.executeUpdateDelete();
+        if (newQuantity != quantity) {
+            mRepository.recordMovement(id, newQuantity - quantity, MovementTable.REASON_SYNC);
+        }
+
+        SqlDatabase.Statement overwrite = mOverwriteProduct.get();
+        overwrite.bindString(1, row.mName);
+        ThreadStatement.bindText(overwrite, 2, row.mAuthor);
+        long supplierId = mRepository.internSupplier(row.mSupplierName, row.mSupplierPhone);
+        if (supplierId == -1) {
+            overwrite.bindNull(3);
+        } else {
+            overwrite.bindLong(3, supplierId);
+        }
+        overwrite.bindLong(4, row.mPrice);
+        overwrite.bindLong(5, row.mReorderThreshold);
+        ThreadStatement.bindText(overwrite, 6, isbn);
+        overwrite.bindLong(7, row.mUpdatedAt);
+        overwrite.bindLong(8, id);
+        overwrite.executeUpdateDelete();
+    }
+
+    /**
+     * Return true if a product other than the one with the given ID has the given ISBN here.
+     */
+    private boolean isIsbnTaken(String isbn, long id) {
+        long holder = mRepository.findProductByIsbn(isbn);
+        return holder != -1 && holder != id;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.inventory.core;
+
+/**
+ * One product as it travels between a device and the sync server: its change tracking, and
+ * either its values or the fact that it was deleted. Rows are immutable.
+ * <p>
+ * A row pushed by a device carries the change of its quantity since the last sync, which the
+ * server adds to its own quantity so that sales and restocks made on several devices add up.
+ * A row sent by the server carries the merged quantity.
+ */
+public final class SyncRow {
+
+    /**
+     * {@link InventorySchema.ProductTable#COLUMN_GLOBAL_ID} of the product
+     */
+    public final String mGlobalId;
+
+    /**
+     * Local version of a pushed row, or version of a row on the server, which is the sync token
+     * of its last change
+     */
+    public final long mVersion;
+
+    /**
+     * When the product was last changed or deleted, in milliseconds since the epoch
+     */
+    public final long mUpdatedAt;
+
+    /**
+     * True if the product was deleted, in which case its values are null or 0
+     */
+    public final boolean mDeleted;
+
+    /**
+     * Name, author and supplier of the product, the last three of which may be null
+     */
+    public final String mName;
+    public final String mAuthor;
+    public final String mSupplierName;
+    public final String mSupplierPhone;
+
+    /**
+     * Price and reorder threshold of the product
+     */
+    public final int mPrice;
+    public final int mReorderThreshold;
+
+    /**
+     * Change of the quantity since the last sync in a pushed row, quantity in a row from the
+     * server
+     */
+    public final int mQuantity;
+
+    /**
+     * ISBN or other barcode of the product, normalized, or null if it has none
+     */
+    public final String mIsbn;
+
+    public SyncRow(String globalId, long version, long updatedAt, boolean deleted, String name, String author,
+                   String supplierName, String supplierPhone, int price, int reorderThreshold, int quantity,
+                   String isbn) {
+        mGlobalId = globalId;
+        mVersion = version;
+        mUpdatedAt = updatedAt;
+        mDeleted = deleted;
+        mName = name;
+        mAuthor = author;
+        mSupplierName = supplierName;
+        mSupplierPhone = supplierPhone;
+        mPrice = price;
+        mReorderThreshold = reorderThreshold;
+        mQuantity = quantity;
+        mIsbn = isbn;
+    }
+
+    /**
+     * Return the tombstone of the deleted product with the given global ID.
+     */
+    public static SyncRow deleted(String globalId, long version, long deletedAt) {
+        return new SyncRow(globalId, version, deletedAt, true, null, null, null, null, 0, 0, 0, null);
+    }
+
+    /**
+     * Return true if the given row has the same values as this one, ignoring the quantity and the
+     * change tracking.
+     */
+    public boolean hasSameValues(SyncRow row) {
+        return mDeleted == row.mDeleted
+                && equal(mName, row.mName)
+                && equal(mAuthor, row.mAuthor)
+                && equal(mSupplierName, row.mSupplierName)
+                && equal(mSupplierPhone, row.mSupplierPhone)
+                && mPrice == row.mPrice
+                && mReorderThreshold == row.mReorderThreshold
+                && equal(mIsbn, row.mIsbn);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "SyncRow{globalId=" + mGlobalId + ", version=" + mVersion
+                + (mDeleted ? ", deleted" : ", name=" + mName + ", quantity=" + mQuantity) + "}";
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.android.inventory.core;
+
+import java.io.IOException;
+
+/**
+ * The connection of a device to the sync server, see {@link SyncEngine}.
+ */
+public interface SyncTransport {
+
+    /**
+     * Send the given local changes to the server, and return the rows as the server merged them,
+     * in the same order, with the server's sync token. The device pushes its changes in the order
+     * of their versions, and pushes a batch again if the answer was lost, so the server must only
+     * add the quantity deltas of rows above the highest version it has taken from that device.
+     *
+     * @param deviceId identity of the device pushing the changes
+     */
+    SyncBatch push(String deviceId, SyncBatch changes) throws IOException;
+
+    /**
+     * Return at most the given number of rows changed on the server after the given sync token,
+     * in the order of their changes.
+     *
+     * @param deviceId identity of the device pulling the changes, whose own changes are left out,
+     *                 or null to pull every change
+     */
+    SyncBatch pull(String deviceId, long since, int limit) throws IOException;
+}
@@ -0,0 +1,40 @@
+package com.example.android.inventory.core;
+
+/**
+ * A statement compiled once for every thread that runs it. Each thread binds and runs its own
+ * copy, so the hot statements are never parsed again nor locked: a lock shared by the threads
+ * could deadlock with one of them holding the database's write connection in a transaction.
+ */
+final class ThreadStatement extends ThreadLocal<SqlDatabase.Statement> {
+
+    /**
+     * Database the statement is compiled on
+     */
+    private final SqlDatabase mDatabase;
+
+    /**
+     * SQL of the statement
+     */
+    private final String mSql;
+
+    ThreadStatement(SqlDatabase database, String sql) {
+        mDatabase = database;
+        mSql = sql;
+    }
+
+    @Override
+    protected SqlDatabase.Statement initialValue() {
+        return mDatabase.compileStatement(mSql);
+    }
+
+    /**
+     * Bind the given text, or null, to the given parameter of the statement.
+     */
+    static void bindText(SqlDatabase.Statement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
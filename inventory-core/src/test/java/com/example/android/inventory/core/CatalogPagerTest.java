@@ -0,0 +1,214 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which changes to the products the catalogue's pager patches in place by reading the
+ * one product again, and which make it read its pages again, by counting the reads it asks for.
+ */
+public class CatalogPagerTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private CatalogueSource mSource;
+
+    @Before
+    public void setUp() {
+        mSource = new CatalogueSource();
+        for (int n = 1; n <= 35; n++) {
+            mSource.mProducts.add(new long[]{n, 100 + n, 5});
+        }
+    }
+
+    @Test
+    public void quantityChangeReadsOnlyThatProduct() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_NAME, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+
+        mSource.mProducts.get(6)[2] = 4;
+        pager.onChange(productPath(7), ProductTable.COLUMN_QUANTITY);
+        CatalogPager.Pages patched = pager.load(pages, false, mSource);
+
+        assertEquals("page reads", 0, mSource.mPageReads);
+        assertEquals("product reads", 1, mSource.mProductReads);
+        assertEquals(4, patched.mSnapshot.getQuantity(6));
+        assertEquals("patch in place", 5, pages.mSnapshot.getQuantity(6));
+        assertEquals(2, patched.mPageCount);
+    }
+
+    @Test
+    public void changeOfProductNotLoadedReadsNothing() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_NAME, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+
+        pager.onChange(productPath(30), ProductTable.COLUMN_QUANTITY);
+        pager.load(pages, false, mSource);
+
+        assertEquals("page reads", 0, mSource.mPageReads);
+        assertEquals("product reads", 0, mSource.mProductReads);
+    }
+
+    @Test
+    public void deletedProductIsDropped() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_ID, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+
+        mSource.mProducts.remove(2);
+        pager.onChange(productPath(3), ProductTable.COLUMN_QUANTITY);
+        CatalogPager.Pages patched = pager.load(pages, false, mSource);
+
+        assertEquals("page reads", 0, mSource.mPageReads);
+        assertEquals(2 * PAGE_SIZE - 1, patched.mSnapshot.size());
+        assertEquals(-1, patched.mSnapshot.indexOfId(3, CatalogQuery.SORT_ID));
+    }
+
+    @Test
+    public void changeOfSortColumnReadsThePagesAgain() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_QUANTITY, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+
+        pager.onChange(productPath(7), ProductTable.COLUMN_NAME + "," + ProductTable.COLUMN_QUANTITY);
+        CatalogPager.Pages refreshed = pager.load(pages, false, mSource);
+
+        assertEquals("page reads", 2, mSource.mPageReads);
+        assertEquals("product reads", 0, mSource.mProductReads);
+        assertEquals(2, refreshed.mPageCount);
+    }
+
+    @Test
+    public void changeOfFilterColumnReadsThePagesAgain() {
+        CatalogPager inStock = new CatalogPager(CatalogQuery.SORT_NAME, true, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(inStock);
+        inStock.onChange(productPath(7), ProductTable.COLUMN_QUANTITY);
+        inStock.load(pages, false, mSource);
+        assertEquals("page reads when filtered by stock", 2, mSource.mPageReads);
+        assertEquals(0, mSource.mProductReads);
+
+        CatalogPager priced = new CatalogPager(CatalogQuery.SORT_NAME, false, true, PAGE_SIZE);
+        pages = loadTwoPages(priced);
+        priced.onChange(productPath(7), ProductTable.COLUMN_PRICE);
+        priced.load(pages, false, mSource);
+        assertEquals("page reads when filtered by price", 2, mSource.mPageReads);
+        assertEquals(0, mSource.mProductReads);
+    }
+
+    @Test
+    public void insertOrDeleteReadsThePagesAgain() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_NAME, false, false, PAGE_SIZE);
+        for (List<String> path : Arrays.asList(null, Arrays.asList("inventory"),
+                Arrays.asList("inventory", "isbn"))) {
+            CatalogPager.Pages pages = loadTwoPages(pager);
+            pager.onChange(path, path == null ? null : ProductTable.COLUMN_QUANTITY);
+            pager.load(pages, false, mSource);
+            assertEquals("page reads after " + path, 2, mSource.mPageReads);
+        }
+        // A notification that doesn't say which columns changed may have changed any
+        CatalogPager.Pages pages = loadTwoPages(pager);
+        pager.onChange(productPath(7), null);
+        pager.load(pages, false, mSource);
+        assertEquals("page reads without changed columns", 2, mSource.mPageReads);
+    }
+
+    @Test
+    public void canceledLoadIsMadeAgain() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_NAME, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+
+        pager.onChange(productPath(7), ProductTable.COLUMN_QUANTITY);
+        pager.restore(pager.load(pages, false, mSource));
+        mSource.mProductReads = 0;
+        pager.load(pages, false, mSource);
+
+        assertEquals("page reads", 0, mSource.mPageReads);
+        assertEquals("product reads", 1, mSource.mProductReads);
+    }
+
+    @Test
+    public void appendStopsAtTheLastPage() {
+        CatalogPager pager = new CatalogPager(CatalogQuery.SORT_ID, false, false, PAGE_SIZE);
+        CatalogPager.Pages pages = loadTwoPages(pager);
+        pages = pager.load(pages, true, mSource);
+        assertTrue(pages.mHasMore);
+        pages = pager.load(pages, true, mSource);
+
+        assertFalse(pages.mHasMore);
+        assertEquals(4, pages.mPageCount);
+        assertEquals(35, pages.mSnapshot.size());
+    }
+
+    /**
+     * Load the first page, append the second, then reset the counts of reads.
+     */
+    private CatalogPager.Pages loadTwoPages(CatalogPager pager) {
+        CatalogPager.Pages pages = pager.load(pager.load(null, false, mSource), true, mSource);
+        assertEquals(2 * PAGE_SIZE, pages.mSnapshot.size());
+        mSource.mPageReads = 0;
+        mSource.mProductReads = 0;
+        return pages;
+    }
+
+    private static List<String> productPath(long id) {
+        return Arrays.asList("inventory", String.valueOf(id));
+    }
+
+    /**
+     * Products already in the order of the catalogue, as ID, price and quantity, counting the
+     * reads made.
+     */
+    private static final class CatalogueSource implements CatalogPager.Source {
+
+        final List<long[]> mProducts = new ArrayList<>();
+        int mPageReads;
+        int mProductReads;
+
+        @Override
+        public int readPage(CatalogSnapshot.Builder builder, int limit) {
+            mPageReads++;
+            int start = 0;
+            if (builder.size() > 0) {
+                long lastId = builder.getId(builder.size() - 1);
+                while (mProducts.get(start)[0] != lastId) {
+                    start++;
+                }
+                start++;
+            }
+            int count = 0;
+            for (int i = start; i < mProducts.size() && count < limit; i++, count++) {
+                add(builder, -1, mProducts.get(i));
+            }
+            return count;
+        }
+
+        @Override
+        public boolean readProduct(CatalogSnapshot.Builder builder, int position, long id) {
+            mProductReads++;
+            for (long[] product : mProducts) {
+                if (product[0] == id) {
+                    add(builder, position, product);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void add(CatalogSnapshot.Builder builder, int position, long[] product) {
+            String name = "Book " + product[0];
+            if (position < 0) {
+                builder.add(product[0], name, "Author", (int) product[1], (int) product[2]);
+            } else {
+                builder.set(position, product[0], name, "Author", (int) product[1], (int) product[2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.android.inventory.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the decimal text of quantities and prices written without making a String, and that
+ * editing a snapshot leaves the one it started from as it was.
+ */
+public class CatalogSnapshotTest {
+
+    private CatalogSnapshot mSource;
+
+    @Before
+    public void setUp() {
+        mSource = new CatalogSnapshot.Builder(3)
+                .add(1, "First", "Author 1", 100, 1)
+                .add(2, "Second", "Author 2", CatalogSnapshot.NO_PRICE, 2)
+                .add(3, "Third", null, 300, 3)
+                .build();
+    }
+
+    @Test
+    public void writeDecimal() {
+        int[] values = {0, 7, -1, 10, -10, 42, -42, 1234567890, -1234567890, Integer.MAX_VALUE,
+                Integer.MIN_VALUE + 1, Integer.MIN_VALUE};
+        for (int value : values) {
+            // Written after the offset, leaving the characters around it alone
+            char[] buffer = new char[2 + CatalogSnapshot.MAX_DECIMAL_LENGTH + 1];
+            Arrays.fill(buffer, '#');
+            int end = CatalogSnapshot.writeDecimal(value, buffer, 2);
+
+            String expected = Integer.toString(value);
+            assertEquals(expected, new String(buffer, 2, end - 2));
+            assertEquals("##", new String(buffer, 0, 2));
+            for (int i = end; i < buffer.length; i++) {
+                assertEquals("character after " + expected, '#', buffer[i]);
+            }
+        }
+    }
+
+    @Test
+    public void setLeavesSourceUntouched() {
+        CatalogSnapshot edited = mSource.edit().set(1, 2, "Renamed", "Author 9", 250, 20).build();
+
+        assertSource();
+        assertEquals(3, edited.size());
+        assertEquals("Renamed", edited.getName(1));
+        assertEquals("Author 9", edited.getAuthor(1));
+        assertEquals(250, edited.getPrice(1));
+        assertEquals(20, edited.getQuantity(1));
+        assertEquals("Third", edited.getName(2));
+    }
+
+    @Test
+    public void removeLeavesSourceUntouched() {
+        CatalogSnapshot middle = mSource.edit().remove(1).build();
+        assertSource();
+        assertEquals(2, middle.size());
+        assertEquals(1, middle.getId(0));
+        assertEquals(3, middle.getId(1));
+        assertEquals("Third", middle.getName(1));
+        assertEquals(300, middle.getPrice(1));
+
+        // Removing the last product lets its strings go in the builder's copy only
+        CatalogSnapshot last = mSource.edit().remove(2).build();
+        assertSource();
+        assertEquals(2, last.size());
+        assertEquals("Second", last.getName(1));
+
+        CatalogSnapshot all = mSource.edit().remove(0).remove(0).remove(0).build();
+        assertSource();
+        assertEquals(0, all.size());
+    }
+
+    @Test
+    public void editsOfEditsLeaveEachOtherUntouched() {
+        CatalogSnapshot first = mSource.edit().set(0, 1, "Changed", "Author 1", 100, 5).build();
+        CatalogSnapshot second = first.edit().remove(0).add(4, "Fourth", "Author 4", 400, 4).build();
+
+        assertSource();
+        assertEquals("Changed", first.getName(0));
+        assertEquals(3, first.size());
+        assertEquals(3, second.size());
+        assertEquals(2, second.getId(0));
+        assertEquals(4, second.getId(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void buildTwice() {
+        CatalogSnapshot.Builder builder = mSource.edit().remove(0);
+        builder.build();
+        builder.build();
+    }
+
+    /**
+     * Check the source snapshot still has the products it was built with.
+     */
+    private void assertSource() {
+        assertEquals(3, mSource.size());
+        assertEquals(1, mSource.getId(0));
+        assertEquals("First", mSource.getName(0));
+        assertEquals("Author 1", mSource.getAuthor(0));
+        assertEquals(100, mSource.getPrice(0));
+        assertEquals(1, mSource.getQuantity(0));
+        assertEquals(2, mSource.getId(1));
+        assertEquals("Second", mSource.getName(1));
+        assertEquals("Author 2", mSource.getAuthor(1));
+        assertEquals(CatalogSnapshot.NO_PRICE, mSource.getPrice(1));
+        assertEquals(2, mSource.getQuantity(1));
+        assertEquals(3, mSource.getId(2));
+        assertEquals("Third", mSource.getName(2));
+        assertNull(mSource.getAuthor(2));
+        assertEquals(300, mSource.getPrice(2));
+        assertEquals(3, mSource.getQuantity(2));
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.LocationTable;
+import com.example.android.inventory.core.InventorySchema.MovementTable;
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+import com.example.android.inventory.core.InventorySchema.StockLevelTable;
+import com.example.android.inventory.core.InventorySchema.SummaryTable;
+import com.example.android.inventory.core.InventorySchema.SupplierTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Upgrades a version 1 database full of products to the current version, and checks it ends up
+ * with the schema of a new database and with the summary, ledger, stock levels and search tables
+ * agreeing with the inventory table, before and after more writes.
+ */
+public class InventorySchemaTest {
+
+    /**
+     * Products of the version 1 database
+     */
+    private static final int PRODUCTS = 500;
+
+    /**
+     * Supplier name of a product, read from the suppliers table as the triggers do
+     */
+    private static final String SUPPLIER_NAME = "(SELECT nullif(" + SupplierTable.COLUMN_NAME + ", '') FROM "
+            + SupplierTable.TABLE_NAME + " WHERE " + SupplierTable._ID + " = " + ProductTable.TABLE_NAME + "."
+            + ProductTable.COLUMN_SUPPLIER_ID + ")";
+
+    private JdbcSqlDatabase mUpgraded;
+    private JdbcSqlDatabase mCreated;
+
+    @Before
+    public void setUp() throws SQLException {
+        mUpgraded = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite::memory:"));
+        mCreated = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite::memory:"));
+    }
+
+    @After
+    public void tearDown() {
+        mUpgraded.close();
+        mCreated.close();
+    }
+
+    @Test
+    public void upgradeMatchesCreate() {
+        fillVersion1(mUpgraded);
+        upgrade(mUpgraded);
+        InventorySchema.create(mCreated);
+
+        assertEquals(readSchema(mCreated), readSchema(mUpgraded));
+    }
+
+    @Test
+    public void upgradeKeepsDerivedTablesInStep() {
+        fillVersion1(mUpgraded);
+        upgrade(mUpgraded);
+        assertEquals(PRODUCTS, count(mUpgraded, "SELECT count(*) FROM " + ProductTable.TABLE_NAME));
+        assertDerivedTablesMatch(mUpgraded);
+
+        // The triggers keep them in step with writes made after the upgrade too
+        SqliteInventoryRepository repository = new SqliteInventoryRepository(mUpgraded);
+        long id = repository.insertProduct(new Product(Product.NO_ID, "New book", "New author", "Supplier 3",
+                "555-0003", 12, 7, 2, "9780306406157"));
+        assertNotEquals(-1, id);
+        repository.adjustQuantity(id, -3, MovementTable.REASON_SALE);
+        repository.adjustQuantity(1, 5, MovementTable.REASON_RESTOCK);
+        long locationId = repository.insertLocation("Storeroom");
+        repository.transferStock(id, LocationTable.DEFAULT_ID, locationId, 2);
+        mUpgraded.execute("UPDATE " + ProductTable.TABLE_NAME + " SET " + ProductTable.COLUMN_NAME + " = 'Renamed', "
+                + ProductTable.COLUMN_PRICE + " = 99 WHERE " + ProductTable._ID + " = 2");
+        repository.deleteProduct(3);
+        assertDerivedTablesMatch(mUpgraded);
+    }
+
+    @Test
+    public void createdDatabaseStartsConsistent() {
+        InventorySchema.create(mCreated);
+        assertDerivedTablesMatch(mCreated);
+    }
+
+    @Test
+    public void isbnChangeCountsAsAChange() {
+        InventorySchema.create(mCreated);
+        long id = new SqliteInventoryRepository(mCreated).insertProduct(new Product(Product.NO_ID, "Book",
+                "Author", "Supplier", "555-0000", 10, 5, 2, null));
+        String rowVersion = "SELECT " + ProductTable.COLUMN_ROW_VERSION + " FROM " + ProductTable.TABLE_NAME
+                + " WHERE " + ProductTable._ID + " = " + id;
+        long before = count(mCreated, rowVersion);
+
+        mCreated.execute("UPDATE " + ProductTable.TABLE_NAME + " SET " + ProductTable.COLUMN_ISBN
+                + " = '9780306406157' WHERE " + ProductTable._ID + " = " + id);
+
+        assertEquals(before + 1, count(mCreated, rowVersion));
+    }
+
+    /**
+     * Create the version 1 schema and fill it, with products missing their author or supplier,
+     * suppliers shared by several products, and products out of stock.
+     */
+    private static void fillVersion1(JdbcSqlDatabase db) {
+        InventorySchema.create(db, 1);
+        for (int n = 1; n <= PRODUCTS; n++) {
+            db.execute("INSERT INTO " + ProductTable.TABLE_NAME + " ("
+                            + ProductTable.COLUMN_NAME + ", " + ProductTable.COLUMN_AUTHOR + ", "
+                            + ProductTable.COLUMN_SUPP_NAME + ", " + ProductTable.COLUMN_SUPP_PHONE + ", "
+                            + ProductTable.COLUMN_PRICE + ", " + ProductTable.COLUMN_QUANTITY + ") VALUES (?, ?, ?, ?, ?, ?)",
+                    "Book " + n,
+                    n % 7 == 0 ? null : "Author " + (n % 40),
+                    n % 11 == 0 ? null : "Supplier " + (n % 5),
+                    n % 11 == 0 ? null : "555-000" + (n % 5),
+                    n % 50,
+                    n % 9 == 0 ? 0 : n % 30);
+        }
+    }
+
+    private static void upgrade(JdbcSqlDatabase db) {
+        db.beginTransaction();
+        try {
+            InventorySchema.upgrade(db, 1, InventorySchema.VERSION);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Check the summary, ledger, stock levels and search tables against the inventory table.
+     */
+    private static void assertDerivedTablesMatch(JdbcSqlDatabase db) {
+        assertEquals("summary", readAll(db, 4, "SELECT count(*), ifnull(sum(" + ProductTable.COLUMN_QUANTITY + "), 0), "
+                        + "ifnull(sum(" + ProductTable.COLUMN_PRICE + " * " + ProductTable.COLUMN_QUANTITY + "), 0), "
+                        + "ifnull(sum(" + ProductTable.COLUMN_QUANTITY + " <= 0), 0) FROM " + ProductTable.TABLE_NAME),
+                readAll(db, 4, "SELECT " + SummaryTable.COLUMN_SKU_COUNT + ", " + SummaryTable.COLUMN_UNITS + ", "
+                        + SummaryTable.COLUMN_VALUATION + ", " + SummaryTable.COLUMN_OUT_OF_STOCK + " FROM "
+                        + SummaryTable.TABLE_NAME));
+        assertEquals("supplier summary", readAll(db, 4, "SELECT ifnull(" + SUPPLIER_NAME + ", ''), count(*), "
+                        + "sum(" + ProductTable.COLUMN_QUANTITY + "), "
+                        + "sum(" + ProductTable.COLUMN_PRICE + " * " + ProductTable.COLUMN_QUANTITY + ") FROM "
+                        + ProductTable.TABLE_NAME + " GROUP BY 1 ORDER BY 1"),
+                readAll(db, 4, "SELECT " + SummaryTable.COLUMN_SUPPLIER + ", " + SummaryTable.COLUMN_SKU_COUNT + ", "
+                        + SummaryTable.COLUMN_UNITS + ", " + SummaryTable.COLUMN_VALUATION + " FROM "
+                        + SummaryTable.SUPPLIER_TABLE_NAME + " ORDER BY 1"));
+
+        assertEquals("products whose movements don't add up to their quantity", 0, count(db,
+                "SELECT count(*) FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable.COLUMN_QUANTITY
+                        + " != (SELECT ifnull(sum(" + MovementTable.COLUMN_DELTA + "), 0) FROM "
+                        + MovementTable.TABLE_NAME + " WHERE " + MovementTable.COLUMN_PRODUCT_ID + " = "
+                        + ProductTable.TABLE_NAME + "." + ProductTable._ID + ")"));
+
+        assertEquals("products whose stock levels don't add up to their quantity", 0, count(db,
+                "SELECT count(*) FROM " + ProductTable.TABLE_NAME + " WHERE " + ProductTable.COLUMN_QUANTITY
+                        + " != (SELECT ifnull(sum(" + StockLevelTable.COLUMN_QUANTITY + "), 0) FROM "
+                        + StockLevelTable.TABLE_NAME + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID + " = "
+                        + ProductTable.TABLE_NAME + "." + ProductTable._ID + ")"));
+        assertEquals("stock levels of deleted products", 0, count(db,
+                "SELECT count(*) FROM " + StockLevelTable.TABLE_NAME + " WHERE " + StockLevelTable.COLUMN_PRODUCT_ID
+                        + " NOT IN (SELECT " + ProductTable._ID + " FROM " + ProductTable.TABLE_NAME + ")"));
+
+        assertEquals("search rows", readAll(db, 4, "SELECT " + ProductTable._ID + ", " + ProductTable.COLUMN_NAME + ", "
+                        + ProductTable.COLUMN_AUTHOR + ", " + SUPPLIER_NAME + " FROM " + ProductTable.TABLE_NAME
+                        + " ORDER BY 1"),
+                readAll(db, 4, "SELECT docid, " + ProductTable.COLUMN_NAME + ", " + ProductTable.COLUMN_AUTHOR + ", "
+                        + ProductTable.COLUMN_SUPP_NAME + " FROM " + ProductTable.SEARCH_TABLE_NAME + " ORDER BY 1"));
+    }
+
+    /**
+     * Return every table, index and trigger with its SQL.
+     */
+    private static List<List<String>> readSchema(JdbcSqlDatabase db) {
+        return readAll(db, 4, "SELECT type, name, tbl_name, sql FROM sqlite_master ORDER BY type, name");
+    }
+
+    private static long count(JdbcSqlDatabase db, String sql) {
+        return Long.parseLong(readAll(db, 1, sql).get(0).get(0));
+    }
+
+    /**
+     * Return every row of the given query, as the text of its given number of columns.
+     */
+    private static List<List<String>> readAll(JdbcSqlDatabase db, int columns, String sql) {
+        List<List<String>> rows = new ArrayList<>();
+        SqlDatabase.Rows cursor = db.query(sql);
+        try {
+            while (cursor.moveToNext()) {
+                List<String> row = new ArrayList<>();
+                for (int column = 0; column < columns; column++) {
+                    row.add(cursor.getString(column));
+                }
+                rows.add(row);
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
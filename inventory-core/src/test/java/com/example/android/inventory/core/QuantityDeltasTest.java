@@ -0,0 +1,144 @@
+package com.example.android.inventory.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Adds, looks up and removes the changes of many products, through the table of positions
+ * growing and being hashed again, and checks each product still finds its own change.
+ */
+public class QuantityDeltasTest {
+
+    /**
+     * Products changed, enough for the table to grow several times from its first 16 slots
+     */
+    private static final int PRODUCTS = 1000;
+
+    private QuantityDeltas mDeltas;
+
+    @Before
+    public void setUp() {
+        mDeltas = new QuantityDeltas();
+    }
+
+    @Test
+    public void findsEveryChangeAcrossRehash() {
+        for (int n = 0; n < PRODUCTS; n++) {
+            mDeltas.add(idOf(n), n - PRODUCTS / 2);
+        }
+        // Adding to a product already changed adds up, without taking another position
+        for (int n = 0; n < PRODUCTS; n += 3) {
+            mDeltas.add(idOf(n), 1);
+        }
+
+        assertEquals(PRODUCTS, mDeltas.size());
+        for (int n = 0; n < PRODUCTS; n++) {
+            assertEquals("change of product " + n, expectedDelta(n), mDeltas.get(idOf(n)));
+            assertEquals("products in the order first changed", idOf(n), mDeltas.getId(n));
+        }
+        assertEquals("product never changed", 0, mDeltas.get(idOf(PRODUCTS)));
+
+        // Remove every other product, and the others still find theirs
+        for (int n = 0; n < PRODUCTS; n += 2) {
+            assertEquals(expectedDelta(n), mDeltas.remove(idOf(n)));
+        }
+        assertEquals(PRODUCTS / 2, mDeltas.size());
+        for (int n = 0; n < PRODUCTS; n++) {
+            assertEquals("change of product " + n, n % 2 == 0 ? 0 : expectedDelta(n), mDeltas.get(idOf(n)));
+        }
+        assertEquals("product already removed", 0, mDeltas.remove(idOf(0)));
+
+        // Positions freed by removing are taken again
+        for (int n = 0; n < PRODUCTS; n += 2) {
+            mDeltas.add(idOf(n), 5);
+        }
+        assertEquals(PRODUCTS, mDeltas.size());
+        for (int n = 0; n < PRODUCTS; n++) {
+            assertEquals("change of product " + n, n % 2 == 0 ? 5 : expectedDelta(n), mDeltas.get(idOf(n)));
+        }
+    }
+
+    @Test
+    public void removeLast() {
+        mDeltas.add(1, 10);
+        mDeltas.add(2, 20);
+        mDeltas.add(3, 30);
+
+        assertEquals(30, mDeltas.remove(3));
+
+        assertEquals(2, mDeltas.size());
+        assertEquals(1, mDeltas.getId(0));
+        assertEquals(2, mDeltas.getId(1));
+        assertEquals(0, mDeltas.get(3));
+        assertEquals(20, mDeltas.get(2));
+
+        assertEquals(10, mDeltas.remove(1));
+        assertEquals(20, mDeltas.remove(2));
+        assertTrue(mDeltas.isEmpty());
+        assertEquals(0, mDeltas.get(1));
+        assertEquals(0, mDeltas.get(2));
+    }
+
+    @Test
+    public void removeMiddle() {
+        mDeltas.add(1, 10);
+        mDeltas.add(2, 20);
+        mDeltas.add(3, 30);
+
+        assertEquals(20, mDeltas.remove(2));
+
+        // The last product changed takes the freed position
+        assertEquals(2, mDeltas.size());
+        assertEquals(1, mDeltas.getId(0));
+        assertEquals(10, mDeltas.getDelta(0));
+        assertEquals(3, mDeltas.getId(1));
+        assertEquals(30, mDeltas.getDelta(1));
+        assertEquals(0, mDeltas.get(2));
+        assertEquals(30, mDeltas.get(3));
+
+        mDeltas.add(3, 1);
+        assertEquals(31, mDeltas.getDelta(1));
+        mDeltas.add(2, -4);
+        assertEquals(3, mDeltas.size());
+        assertEquals(2, mDeltas.getId(2));
+        assertEquals(-4, mDeltas.get(2));
+    }
+
+    @Test
+    public void clear() {
+        for (int n = 0; n < PRODUCTS; n++) {
+            mDeltas.add(idOf(n), 1);
+        }
+        mDeltas.clear();
+
+        assertTrue(mDeltas.isEmpty());
+        for (int n = 0; n < PRODUCTS; n++) {
+            assertEquals(0, mDeltas.get(idOf(n)));
+        }
+        mDeltas.add(idOf(7), 2);
+        assertEquals(1, mDeltas.size());
+        assertEquals(2, mDeltas.get(idOf(7)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void positionPastSize() {
+        mDeltas.add(1, 10);
+        mDeltas.remove(1);
+        mDeltas.getId(0);
+    }
+
+    /**
+     * Return the ID of the given product, spread over the high and low bits so they collide in
+     * the table as IDs of real products might.
+     */
+    private static long idOf(int n) {
+        return n % 2 == 0 ? n + 1 : ((long) n << 32) | 1;
+    }
+
+    private static int expectedDelta(int n) {
+        return n - PRODUCTS / 2 + (n % 3 == 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that every order and filter of the catalogue, and the lookups of
+ * a single product, are served by an index rather than by scanning or sorting the inventory table.
+ */
+public class QueryPlanTest {
+
+    /**
+     * Number of products of a catalogue page, as the app asks for
+     */
+    private static final int PAGE_SIZE = 50;
+
+    private JdbcSqlDatabase mDatabase;
+
+    @Before
+    public void setUp() throws SQLException {
+        mDatabase = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite::memory:"));
+        InventorySchema.create(mDatabase);
+        InventorySchema.createLowStockIndex(mDatabase);
+        // Give the planner statistics of a real catalogue rather than of an empty table
+        SqliteInventoryRepository repository = new SqliteInventoryRepository(mDatabase);
+        List<Product> products = new ArrayList<>();
+        for (int n = 1; n <= 2000; n++) {
+            products.add(new Product(Product.NO_ID, "Book " + n, "Author " + (n % 100), "Supplier " + (n % 10),
+                    "555-000" + (n % 10), n % 100, n % 30, 5, String.valueOf(9780000000000L + n)));
+        }
+        repository.insertProducts(products);
+        mDatabase.execute("ANALYZE;");
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void everyCatalogueQueryIsServedByAnIndex() {
+        String[] sorts = {CatalogQuery.SORT_ID, CatalogQuery.SORT_NAME, CatalogQuery.SORT_AUTHOR,
+                CatalogQuery.SORT_PRICE, CatalogQuery.SORT_QUANTITY};
+        for (String sort : sorts) {
+            for (int filters = 0; filters < 8; filters++) {
+                for (boolean nextPage : new boolean[]{false, true}) {
+                    CatalogQuery query = new CatalogQuery(sort);
+                    if ((filters & 1) != 0) {
+                        query.inStockOnly();
+                    }
+                    if ((filters & 2) != 0) {
+                        query.minPrice(10);
+                    }
+                    if ((filters & 4) != 0) {
+                        query.maxPrice(90);
+                    }
+                    if (nextPage) {
+                        query.after(sort.equals(CatalogQuery.SORT_NAME) || sort.equals(CatalogQuery.SORT_AUTHOR)
+                                ? "M" : "10", 100);
+                    }
+                    String sql = "SELECT " + ProductTable.SELECT_COLUMNS + " FROM " + ProductTable.TABLE_NAME
+                            + (query.getSelection() == null ? "" : " WHERE " + query.getSelection())
+                            + " ORDER BY " + query.getOrderBy() + " LIMIT " + PAGE_SIZE;
+                    List<String> plan = explain(sql, (Object[]) query.getSelectionArgs());
+                    assertNotSorted(sql, plan);
+                    // Ordered by ID, SQLite walks the table itself, which is the ID's index
+                    if (!sort.equals(CatalogQuery.SORT_ID)) {
+                        assertNoTableScan(sql, plan);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void productIsReadByItsId() {
+        List<String> plan = explain(SqliteInventoryRepository.SQL_GET_PRODUCT, 1L);
+        assertNoTableScan(SqliteInventoryRepository.SQL_GET_PRODUCT, plan);
+        assertUses(SqliteInventoryRepository.SQL_GET_PRODUCT, plan, "INTEGER PRIMARY KEY");
+    }
+
+    @Test
+    public void productIsFoundByItsIsbn() {
+        List<String> plan = explain(SqliteInventoryRepository.SQL_FIND_ISBN, "9780000000001");
+        assertNoTableScan(SqliteInventoryRepository.SQL_FIND_ISBN, plan);
+        assertUses(SqliteInventoryRepository.SQL_FIND_ISBN, plan,
+                ProductTable.TABLE_NAME + "_" + ProductTable.COLUMN_ISBN + "_index");
+    }
+
+    @Test
+    public void lowStockIsReadFromItsPartialIndex() {
+        String sql = "SELECT " + ProductTable.SELECT_COLUMNS + " FROM " + ProductTable.TABLE_NAME
+                + " WHERE " + InventorySchema.LOW_STOCK_CONDITION + " ORDER BY " + ProductTable._ID;
+        List<String> plan = explain(sql);
+        assertNoTableScan(sql, plan);
+        assertNotSorted(sql, plan);
+        assertUses(sql, plan, ProductTable.TABLE_NAME + "_low_stock_index");
+    }
+
+    /**
+     * Return the details of the plan of the given query, one per step.
+     */
+    private List<String> explain(String sql, Object... bindArgs) {
+        List<String> plan = new ArrayList<>();
+        SqlDatabase.Rows rows = mDatabase.query("EXPLAIN QUERY PLAN " + sql, bindArgs);
+        try {
+            while (rows.moveToNext()) {
+                plan.add(rows.getString(3));
+            }
+        } finally {
+            rows.close();
+        }
+        return plan;
+    }
+
+    /**
+     * Fail if a step of the plan reads the whole inventory table without an index.
+     */
+    private static void assertNoTableScan(String sql, List<String> plan) {
+        for (String step : plan) {
+            if (step.startsWith("SCAN TABLE " + ProductTable.TABLE_NAME) && !step.contains(" USING ")) {
+                fail("Table scan in " + plan + " of " + sql);
+            }
+        }
+    }
+
+    /**
+     * Fail if the plan sorts the rows rather than reading them in order from an index.
+     */
+    private static void assertNotSorted(String sql, List<String> plan) {
+        for (String step : plan) {
+            assertFalse("Sort in " + plan + " of " + sql, step.startsWith("USE TEMP B-TREE"));
+        }
+    }
+
+    private static void assertUses(String sql, List<String> plan, String index) {
+        for (String step : plan) {
+            if (step.contains(index)) {
+                return;
+            }
+        }
+        fail("No " + index + " in " + plan + " of " + sql);
+    }
+}
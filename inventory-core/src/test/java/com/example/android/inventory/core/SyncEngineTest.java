@@ -0,0 +1,196 @@
+package com.example.android.inventory.core;
+
+import com.example.android.inventory.core.InventorySchema.ProductTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Syncs two devices through an in-memory server, every batch going through the wire format, and
+ * checks that the ISBN of a product reaches the other device, and what happens when it's
+ * already taken there.
+ */
+public class SyncEngineTest {
+
+    private static final String ISBN = "9780306406157";
+    private static final String OTHER_ISBN = "9781861972712";
+
+    private FakeServer mServer;
+    private JdbcSqlDatabase mDatabaseA;
+    private JdbcSqlDatabase mDatabaseB;
+    private SqliteInventoryRepository mDeviceA;
+    private SqliteInventoryRepository mDeviceB;
+
+    @Before
+    public void setUp() throws SQLException {
+        mServer = new FakeServer();
+        mDatabaseA = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite::memory:"));
+        mDatabaseB = new JdbcSqlDatabase(DriverManager.getConnection("jdbc:sqlite::memory:"));
+        InventorySchema.create(mDatabaseA);
+        InventorySchema.create(mDatabaseB);
+        mDeviceA = new SqliteInventoryRepository(mDatabaseA);
+        mDeviceB = new SqliteInventoryRepository(mDatabaseB);
+    }
+
+    @After
+    public void tearDown() {
+        mDatabaseA.close();
+        mDatabaseB.close();
+    }
+
+    @Test
+    public void isbnReachesTheOtherDevice() throws IOException {
+        mDeviceA.insertProduct(newProduct("Book", ISBN));
+        sync(mDeviceA);
+        sync(mDeviceB);
+
+        long id = mDeviceB.findProductByIsbn(ISBN);
+        assertNotEquals("pulled product found by its ISBN", -1, id);
+        assertEquals("Book", mDeviceB.getProduct(id).mName);
+
+        // Changing only the ISBN is a change like any other
+        mDatabaseA.execute("UPDATE " + ProductTable.TABLE_NAME + " SET " + ProductTable.COLUMN_ISBN + " = ?",
+                OTHER_ISBN);
+        sync(mDeviceA);
+        sync(mDeviceB);
+
+        assertEquals(-1, mDeviceB.findProductByIsbn(ISBN));
+        assertEquals(id, mDeviceB.findProductByIsbn(OTHER_ISBN));
+    }
+
+    @Test
+    public void isbnTakenHereStaysWithItsProduct() throws IOException {
+        long idA = mDeviceA.insertProduct(newProduct("Book", ISBN));
+        long idB = mDeviceB.insertProduct(newProduct("Same book", ISBN));
+        sync(mDeviceA);
+        sync(mDeviceB);
+        sync(mDeviceA);
+
+        // Both devices have both products, and each keeps the ISBN on the one it had
+        assertEquals(2, count(mDatabaseA));
+        assertEquals(2, count(mDatabaseB));
+        assertEquals(idA, mDeviceA.findProductByIsbn(ISBN));
+        assertEquals(idB, mDeviceB.findProductByIsbn(ISBN));
+        assertNull(mDeviceB.getProduct(findByName(mDatabaseB, "Book")).mIsbn);
+        assertNull(mDeviceA.getProduct(findByName(mDatabaseA, "Same book")).mIsbn);
+    }
+
+    @Test
+    public void isbnTakenHereLeavesTheProductItsOwn() throws IOException {
+        mDeviceA.insertProduct(newProduct("Book", ISBN));
+        sync(mDeviceA);
+        sync(mDeviceB);
+        long idB = mDeviceB.insertProduct(newProduct("Other book", OTHER_ISBN));
+
+        // A gives its product the ISBN B's other product has
+        mDatabaseA.execute("UPDATE " + ProductTable.TABLE_NAME + " SET " + ProductTable.COLUMN_ISBN + " = ?, "
+                + ProductTable.COLUMN_PRICE + " = 99", OTHER_ISBN);
+        sync(mDeviceA);
+        sync(mDeviceB);
+
+        assertEquals(idB, mDeviceB.findProductByIsbn(OTHER_ISBN));
+        long pulled = mDeviceB.findProductByIsbn(ISBN);
+        assertNotEquals("pulled product keeps its ISBN", -1, pulled);
+        assertEquals("other values are still pulled", 99, mDeviceB.getProduct(pulled).mPrice);
+    }
+
+    private void sync(SqliteInventoryRepository device) throws IOException {
+        new SyncEngine(device, mServer, 2).sync();
+    }
+
+    private static Product newProduct(String name, String isbn) {
+        return new Product(Product.NO_ID, name, "Author", "Supplier", "555-0000", 10, 5, 2, isbn);
+    }
+
+    private static long count(JdbcSqlDatabase db) {
+        return readLong(db, "SELECT count(*) FROM " + ProductTable.TABLE_NAME);
+    }
+
+    private static long findByName(JdbcSqlDatabase db, String name) {
+        return readLong(db, "SELECT " + ProductTable._ID + " FROM " + ProductTable.TABLE_NAME + " WHERE "
+                + ProductTable.COLUMN_NAME + " = ?", name);
+    }
+
+    private static long readLong(JdbcSqlDatabase db, String sql, Object... bindArgs) {
+        SqlDatabase.Rows rows = db.query(sql, bindArgs);
+        try {
+            rows.moveToNext();
+            return rows.getLong(0);
+        } finally {
+            rows.close();
+        }
+    }
+
+    /**
+     * Writes the given batch to bytes and reads it back, as it would travel.
+     */
+    private static SyncBatch overTheWire(SyncBatch batch) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batch.write(out);
+        return SyncBatch.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * A server keeping the latest pushed values of every product and adding up the quantity
+     * deltas. The tests never push a batch again, so it takes every push as new.
+     */
+    private static final class FakeServer implements SyncTransport {
+
+        private final TreeMap<Long, SyncRow> mChanges = new TreeMap<>();
+        private final Map<String, SyncRow> mRows = new HashMap<>();
+        private final Map<Long, String> mOrigins = new HashMap<>();
+        private long mClock;
+
+        @Override
+        public SyncBatch push(String deviceId, SyncBatch changes) throws IOException {
+            List<SyncRow> merged = new ArrayList<>();
+            for (SyncRow change : overTheWire(changes).mRows) {
+                SyncRow current = mRows.get(change.mGlobalId);
+                int quantity = current == null ? change.mQuantity : current.mQuantity + change.mQuantity;
+                SyncRow row = new SyncRow(change.mGlobalId, ++mClock, change.mUpdatedAt, change.mDeleted,
+                        change.mName, change.mAuthor, change.mSupplierName, change.mSupplierPhone, change.mPrice,
+                        change.mReorderThreshold, Math.max(0, quantity), change.mIsbn);
+                if (current != null) {
+                    mChanges.remove(current.mVersion);
+                }
+                mRows.put(row.mGlobalId, row);
+                mChanges.put(row.mVersion, row);
+                mOrigins.put(row.mVersion, deviceId);
+                merged.add(row);
+            }
+            return overTheWire(new SyncBatch(merged, mClock, false));
+        }
+
+        @Override
+        public SyncBatch pull(String deviceId, long since, int limit) throws IOException {
+            List<SyncRow> rows = new ArrayList<>();
+            long token = since;
+            for (Map.Entry<Long, SyncRow> change : mChanges.tailMap(since, false).entrySet()) {
+                if (rows.size() == limit) {
+                    return overTheWire(new SyncBatch(rows, token, true));
+                }
+                token = change.getKey();
+                if (!deviceId.equals(mOrigins.get(token))) {
+                    rows.add(change.getValue());
+                }
+            }
+            return overTheWire(new SyncBatch(rows, token, false));
+        }
+    }
+}